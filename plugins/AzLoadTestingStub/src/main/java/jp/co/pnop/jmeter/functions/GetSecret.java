@@ -3,6 +3,10 @@ package jp.co.pnop.jmeter.functions;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.azure.core.credential.TokenCredential;
 import com.azure.core.http.rest.Response;
@@ -30,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jp.co.pnop.jmeter.util.httpclient.AzUtilHttpClient;
+import jp.co.pnop.jmeter.util.throughput.AzUtilBlockingExecutor;
 
 public class GetSecret extends AbstractFunction {
     
@@ -47,6 +52,7 @@ public class GetSecret extends AbstractFunction {
     private static final String PLUGIN = "azure_load_testing_stub";
     private static final String JMPROPS_CATEGORY = PLUGIN.toLowerCase();
     private static final String JMPROPS_GET_SECRET = new StringBuilder(JMPROPS_CATEGORY).append(".get_secret.").toString();
+    private static final String JMPROPS_PREFETCH_SECRETS = new StringBuilder(JMPROPS_CATEGORY).append(".prefetch_secrets").toString();
     private static final String ENV_CATEGORY = PLUGIN.toUpperCase();
     private static final String ENV_GET_SECRET = new StringBuilder(ENV_CATEGORY).append("_GET_SECRET").toString();
 
@@ -77,6 +83,12 @@ public class GetSecret extends AbstractFunction {
     private static final String CLIENT_CERTIFICATE_PEM = "PEM";
     private static final String CLIENT_CERTIFICATE_PFX = "PFX";
 
+    // a secret fetched ahead is used only by a call within this time, later calls fetch it again
+    private static final long PREFETCH_MAX_AGE_MILLIS = 60000;
+
+    // Key Vault secrets fetched ahead on the shared executor, by secret name of the function; empty unless prefetching is on
+    private static final Map<String, Prefetch> prefetches = new ConcurrentHashMap<>();
+
     static {
         desc.add("Secret name");
     }
@@ -105,7 +117,7 @@ public class GetSecret extends AbstractFunction {
             switch (storeType) {
                 //// KeyVault
                 case KEY_VAULT:
-                secret = getKeyVaultSecret(secretNameParam);
+                secret = takeKeyVaultSecret(secretNameParam);
                 break;
 
                 //// jmeter.properties or user.properties
@@ -163,6 +175,46 @@ public class GetSecret extends AbstractFunction {
         }
     }
 
+    /**
+     * Get a Key Vault secret. If "azure_load_testing_stub.prefetch_secrets" is true, fetch the other
+     * Key Vault secrets of the properties at the same time: the user-defined variables call the function
+     * for one secret after the other, and each call blocks on Key Vault (and on Azure AD), so the first
+     * call starts the others on the shared executor. It is off by default, because it reads every
+     * Key Vault secret of the properties, whether the test plan uses it or not.
+     */
+    private String takeKeyVaultSecret(String secretNameParam) throws Exception {
+        Prefetch prefetch = prefetches.remove(secretNameParam);
+        if (prefetch == null || System.currentTimeMillis() - prefetch.startMillis > PREFETCH_MAX_AGE_MILLIS) {
+            if (JMeterUtils.getPropDefault(JMPROPS_PREFETCH_SECRETS, false)) {
+                prefetchKeyVaultSecrets(secretNameParam);
+            }
+            return getKeyVaultSecret(secretNameParam);
+        }
+        try {
+            return prefetch.secret.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+
+    private void prefetchKeyVaultSecrets(String secretNameParam) {
+        String storeTypeSuffix = ".".concat(STORE_TYPE);
+        for (String name : JMeterUtils.getJMeterProperties().stringPropertyNames()) {
+            if (!name.startsWith(JMPROPS_GET_SECRET) || !name.endsWith(storeTypeSuffix)) {
+                continue;
+            }
+            String otherSecretName = name.substring(JMPROPS_GET_SECRET.length(), name.length() - storeTypeSuffix.length());
+            // an interactive sign-in is left to the call that needs it
+            if (otherSecretName.equals(secretNameParam)
+                || !JMeterUtils.getPropDefault(name, "").trim().equalsIgnoreCase(KEY_VAULT)
+                || getKeyVaultProp(otherSecretName, AUTH_TYPE).equalsIgnoreCase(INTERACTIVE_BROWSER)) {
+                continue;
+            }
+            prefetches.computeIfAbsent(otherSecretName,
+                k -> new Prefetch(AzUtilBlockingExecutor.supplyAsync(() -> getKeyVaultSecret(k))));
+        }
+    }
+
     private String getKeyVaultSecret(String secretNameParam) {
         TokenCredential credential = getCredential(secretNameParam);
         if (credential == null) {
@@ -316,6 +368,15 @@ public class GetSecret extends AbstractFunction {
         return desc;
     }
 
+    private static class Prefetch {
+        private final long startMillis = System.currentTimeMillis();
+        private final CompletableFuture<String> secret;
+
+        Prefetch(CompletableFuture<String> secret) {
+            this.secret = secret;
+        }
+    }
+
     class GetSecretException extends Exception {
         private static final long serialVersionUID = 1L; 
 
@@ -0,0 +1,57 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+
+/**
+ * Iteration over the message table the AMQP samplers do on every sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzAmqpMessagesBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int messageCount;
+
+    private AzAmqpMessages messages;
+
+    @Setup
+    public void setup() {
+        messages = new AzAmqpMessages();
+        for (int i = 0; i < messageCount; i++) {
+            AzAmqpMessage msg = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+            msg.setMessage("message ".concat(String.valueOf(i)));
+            messages.addMessage(msg);
+        }
+    }
+
+    @Benchmark
+    public int iterate() {
+        int length = 0;
+        PropertyIterator iter = messages.iterator();
+        while (iter.hasNext()) {
+            AzAmqpMessage msg = (AzAmqpMessage) iter.next().getObjectValue();
+            length += msg.getMessage().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,85 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+
+import com.azure.core.amqp.implementation.MessageSerializer;
+import com.azure.core.util.tracing.Tracer;
+import com.azure.core.util.tracing.TracerProvider;
+import com.azure.messaging.eventhubs.EventDataBatch;
+import com.azure.messaging.servicebus.ServiceBusMessageBatch;
+
+/**
+ * Creates message batches without a connection.
+ * <p>
+ * The SDKs only hand out batches from a connected producer, so the package-private
+ * constructors are called by reflection. Arguments are chosen by parameter type so
+ * that minor SDK updates that add parameters keep working.
+ */
+public class AzBenchmarkBatches {
+
+    public static final int EVENT_HUBS_MAX_BATCH_SIZE = 1024 * 1024;
+    public static final int SERVICE_BUS_MAX_BATCH_SIZE = 256 * 1024;
+
+    private static final String SERVICE_BUS_SERIALIZER = "com.azure.messaging.servicebus.ServiceBusMessageSerializer";
+
+    private AzBenchmarkBatches() {
+    }
+
+    public static EventDataBatch newEventDataBatch() {
+        return newBatch(EventDataBatch.class, EVENT_HUBS_MAX_BATCH_SIZE, null);
+    }
+
+    public static ServiceBusMessageBatch newServiceBusMessageBatch() {
+        return newBatch(ServiceBusMessageBatch.class, SERVICE_BUS_MAX_BATCH_SIZE, SERVICE_BUS_SERIALIZER);
+    }
+
+    private static <T> T newBatch(Class<T> batchClass, int maxSize, String serializerClass) {
+        try {
+            return batchClass.cast(newInstance(batchClass, maxSize, serializerClass, null));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Could not create ".concat(batchClass.getSimpleName()), ex);
+        }
+    }
+
+    private static Object newInstance(Class<?> type, int maxSize, String serializerClass, String text) throws ReflectiveOperationException {
+        Constructor<?> constructor = type.getDeclaredConstructors()[0];
+        constructor.setAccessible(true);
+        Class<?>[] types = constructor.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = argumentOf(types[i], maxSize, serializerClass, text);
+        }
+        return constructor.newInstance(args);
+    }
+
+    private static Object argumentOf(Class<?> type, int maxSize, String serializerClass, String text) throws ReflectiveOperationException {
+        if (type == int.class || type == Integer.class) {
+            return maxSize;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return false;
+        } else if (type == Tracer.class) {
+            return TracerProvider.getDefaultProvider().createTracer("benchmarks", null, null, null);
+        } else if (type == MessageSerializer.class && serializerClass != null) {
+            Constructor<?> serializer = Class.forName(serializerClass).getDeclaredConstructor();
+            serializer.setAccessible(true);
+            return serializer.newInstance();
+        } else if (type.isInterface()) {
+            // Only used to build error messages.
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, methodArgs) -> null);
+        } else if (type.getName().startsWith("com.azure.messaging.")) {
+            // tracing and metrics of the SDK, which are disabled without OpenTelemetry
+            try {
+                Field noop = type.getDeclaredField("NOOP_INSTANCE");
+                noop.setAccessible(true);
+                return noop.get(null);
+            } catch (NoSuchFieldException ex) {
+                // namespace and entity path, which must not be null
+                return newInstance(type, maxSize, serializerClass, "benchmarks");
+            }
+        }
+        // partition id, partition key, entity path and host name
+        return type == String.class ? text : null;
+    }
+}
@@ -0,0 +1,78 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.azure.messaging.eventhubs.EventDataBatch;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.azureeventhubs.sampler.AzEventHubsSampler;
+
+/**
+ * EventData creation and batching of the Event Hubs sampler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzEventHubsBatchBenchmark {
+
+    @Param({AzAmqpMessages.MESSAGE_TYPE_STRING, AzAmqpMessages.MESSAGE_TYPE_BASE64})
+    public String messageType;
+
+    @Param({"128", "4096"})
+    public int bodySize;
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    private AzAmqpMessages messages;
+
+    @Setup
+    public void setup() {
+        String body;
+        if (messageType.equals(AzAmqpMessages.MESSAGE_TYPE_BASE64)) {
+            byte[] bin = new byte[bodySize];
+            new Random(0).nextBytes(bin);
+            body = Base64.getEncoder().encodeToString(bin);
+        } else {
+            body = StringUtils.repeat('x', bodySize);
+        }
+
+        messages = new AzAmqpMessages();
+        for (int i = 0; i < batchSize; i++) {
+            AzAmqpMessage msg = new AzAmqpMessage(messageType);
+            msg.setMessage(body);
+            messages.addMessage(msg);
+        }
+    }
+
+    @Benchmark
+    public int buildBatch() throws Exception {
+        EventDataBatch batch = AzBenchmarkBatches.newEventDataBatch();
+        PropertyIterator iter = messages.iterator();
+        while (iter.hasNext()) {
+            AzAmqpMessage msg = (AzAmqpMessage) iter.next().getObjectValue();
+            batch.tryAdd(AzEventHubsSampler.createEventData(msg));
+        }
+        return batch.getSizeInBytes();
+    }
+}
@@ -0,0 +1,107 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP stand-in for the two REST calls of the plugins that go through the shared HTTP client:
+ * Put Message of Storage Queue ("POST /devstoreaccount1/{queue}/messages") and Get Secret of
+ * Key Vault ("GET /secrets/{name}/{version}").
+ * <p>
+ * Every request gets the same small response, without parsing or authentication, so that the
+ * time and CPU of a request are those of the client.
+ */
+public class AzHttpStandIn implements AutoCloseable {
+
+    public static final String ACCOUNT_NAME = "devstoreaccount1";
+    public static final String ACCOUNT_KEY
+        = "Eby8vdM02xNOcqFlqUwJPLlmEtlCDXJ1OUzFT50uSRZ6IFsuFq2UVErCz4I6tq/K1SZFPTOtr/KBHBeksoGMGw==";
+
+    private static final byte[] PUT_MESSAGE_RESPONSE = ("<?xml version=\"1.0\" encoding=\"utf-8\"?><QueueMessagesList><QueueMessage>"
+        + "<MessageId>5974b586-0df3-4e2d-ad0c-18e3892bfca2</MessageId>"
+        + "<InsertionTime>Fri, 09 Oct 2009 21:04:30 GMT</InsertionTime>"
+        + "<ExpirationTime>Fri, 16 Oct 2009 21:04:30 GMT</ExpirationTime>"
+        + "<PopReceipt>YzQ4Yzg1MDIGM0MDFiZDAwYzEw</PopReceipt>"
+        + "<TimeNextVisible>Fri, 09 Oct 2009 23:29:20 GMT</TimeNextVisible>"
+        + "</QueueMessage></QueueMessagesList>").getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public AzHttpStandIn() throws IOException {
+        // without TCP_NODELAY, the response body waits for the delayed ACK of the headers (about 40 ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:".concat(String.valueOf(server.getAddress().getPort()));
+    }
+
+    /**
+     * Connection string in the format used by Azurite.
+     */
+    public String getConnectionString() {
+        return "DefaultEndpointsProtocol=http;AccountName=".concat(ACCOUNT_NAME).concat(";")
+            .concat("AccountKey=").concat(ACCOUNT_KEY).concat(";")
+            .concat("QueueEndpoint=").concat(getUrl()).concat("/").concat(ACCOUNT_NAME).concat(";");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) > 0) {
+                    // discard the request body
+                }
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            exchange.getResponseHeaders().add("x-ms-request-id", UUID.randomUUID().toString());
+            if (exchange.getRequestMethod().equals("POST") && path.endsWith("/messages")) {
+                exchange.getResponseHeaders().add("x-ms-version", "2020-10-02");
+                send(exchange, 201, "application/xml", PUT_MESSAGE_RESPONSE);
+            } else if (exchange.getRequestMethod().equals("GET") && path.startsWith("/secrets/")) {
+                String name = path.substring("/secrets/".length());
+                send(exchange, 200, "application/json; charset=utf-8", ("{\"value\":\"secret\",\"id\":\"".concat(getUrl())
+                    .concat(path).concat("\",\"attributes\":{\"enabled\":true},\"tags\":{\"name\":\"").concat(name).concat("\"}}"))
+                    .getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 404, "application/json", "{\"error\":{\"code\":\"NotFound\"}}".getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
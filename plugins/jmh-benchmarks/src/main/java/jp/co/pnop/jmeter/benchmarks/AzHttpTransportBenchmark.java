@@ -0,0 +1,142 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.co.pnop.jmeter.protocol.azurestoragequeue.common.AzStorageConnectionParams;
+import jp.co.pnop.jmeter.protocol.azurestoragequeue.sampler.AzStorageQueueSampler;
+import jp.co.pnop.jmeter.util.httpclient.AzUtilHttpClient;
+
+/**
+ * Latency and CPU per request of the HTTP transports of the shared client ("azure_util_httpclient.transport"),
+ * against a local stand-in of Storage Queue and Key Vault.
+ * <p>
+ * ns/op is the latency of a request. The process CPU time per request is printed after each iteration;
+ * it includes the CPU of the stand-in, which is the same for every transport.
+ * The Key Vault request is the one of GetSecret, sent on the shared client without the SecretClient,
+ * because the SecretClient accepts bearer tokens only over https.
+ * The jdk transport needs Java 11 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzHttpTransportBenchmark {
+
+    @Param({AzUtilHttpClient.TRANSPORT_NETTY, AzUtilHttpClient.TRANSPORT_OKHTTP, AzUtilHttpClient.TRANSPORT_JDK})
+    public String transport;
+
+    private AzHttpStandIn standIn;
+    private AzStorageQueueSampler sampler;
+    private HttpClient httpClient;
+    private String secretUrl;
+
+    private final AtomicLong requests = new AtomicLong();
+    private long startCpuTime;
+
+    @Setup
+    public void setup() throws Exception {
+        File properties = File.createTempFile("jmeter", ".properties");
+        properties.deleteOnExit();
+        JMeterUtils.loadJMeterProperties(properties.getAbsolutePath());
+        // every value of the parameter runs in a new fork, so the shared client is created with this transport
+        JMeterUtils.setProperty("azure_util_httpclient.transport", transport);
+        standIn = new AzHttpStandIn();
+
+        AzStorageConnectionParams params = new AzStorageConnectionParams();
+        params.clear();
+        params.setAuthType(AzStorageConnectionParams.AUTHTYPE_CONNECTION_STRING);
+        params.setConnectionString(standIn.getConnectionString());
+        params.setQueueName("benchmark");
+        sampler = new AzStorageQueueSampler();
+        sampler.clear();
+        sampler.setName("Storage Queue transport");
+        sampler.setStorageConnectionParams(params);
+        sampler.setMessageType(AzStorageQueueSampler.MESSAGE_TYPE_STRING);
+        sampler.setMessage(StringUtils.repeat('x', 256));
+
+        httpClient = AzUtilHttpClient.httpClientBase();
+        secretUrl = standIn.getUrl().concat("/secrets/benchmark/0123456789abcdef0123456789abcdef?api-version=7.2");
+    }
+
+    @TearDown
+    public void tearDown() {
+        standIn.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        requests.set(0);
+        startCpuTime = processCpuTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        long count = requests.get();
+        if (count > 0 && startCpuTime >= 0) {
+            System.out.println(String.format("%n%s: %.1f us CPU per request (%d requests)",
+                transport, (processCpuTime() - startCpuTime) / 1000.0 / count, count));
+        }
+    }
+
+    @Benchmark
+    public SampleResult storageQueueSendMessage() {
+        SampleResult res = sampler.sample(null);
+        if (!res.isSuccessful()) {
+            throw new IllegalStateException(res.getResponseMessage());
+        }
+        requests.incrementAndGet();
+        return res;
+    }
+
+    @Benchmark
+    public String keyVaultGetSecret() {
+        HttpRequest request = new HttpRequest(HttpMethod.GET, secretUrl)
+            .setHeader("Authorization", "Bearer benchmark")
+            .setHeader("Accept", "application/json");
+        HttpResponse response = httpClient.send(request).block();
+        String body = response.getBodyAsString().block();
+        if (response.getStatusCode() != 200) {
+            throw new IllegalStateException(body);
+        }
+        requests.incrementAndGet();
+        return body;
+    }
+
+    /**
+     * @return the CPU time of the process in nanoseconds, or -1 if the JVM does not report it
+     */
+    private static long processCpuTime() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,89 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.azure.messaging.servicebus.ServiceBusMessage;
+import com.azure.messaging.servicebus.ServiceBusMessageBatch;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusMessageBuilder;
+
+/**
+ * Message building of the Service Bus sampler: ServiceBusMessage creation,
+ * property parsing and tryAddMessage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzServiceBusMessageBenchmark {
+
+    @Param({"false", "true"})
+    public boolean withProperties;
+
+    @Param({"128", "4096"})
+    public int bodySize;
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    private AzAmqpMessage message;
+    private AzAmqpMessages messages;
+
+    @Setup
+    public void setup() {
+        message = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+        message.setMessage(StringUtils.repeat('x', bodySize));
+        if (withProperties) {
+            message.setMessageId("message-id");
+            message.setGroupId("session-1");
+            message.setContentType("application/json");
+            message.setLabel("benchmark");
+            message.setCustomProperties("{\"prop1\": \"value1\", \"prop2\": 2}");
+            message.setStandardProperties("{\"correlation-id\": \"correlation\", \"reply-to\": \"foo@example.com\", \"ttl\": \"3 HOURS\"}");
+        }
+
+        messages = new AzAmqpMessages();
+        for (int i = 0; i < batchSize; i++) {
+            messages.addMessage((AzAmqpMessage) message.clone());
+        }
+    }
+
+    @Benchmark
+    public ServiceBusMessage buildMessage() throws Exception {
+        return AzServiceBusMessageBuilder.build(message, "benchmark");
+    }
+
+    @Benchmark
+    public String describeMessage() {
+        return AzServiceBusMessageBuilder.describe(message, 1);
+    }
+
+    @Benchmark
+    public int buildBatch() throws Exception {
+        ServiceBusMessageBatch batch = AzBenchmarkBatches.newServiceBusMessageBatch();
+        PropertyIterator iter = messages.iterator();
+        while (iter.hasNext()) {
+            AzAmqpMessage msg = (AzAmqpMessage) iter.next().getObjectValue();
+            batch.tryAddMessage(AzServiceBusMessageBuilder.build(msg, "benchmark"));
+        }
+        return batch.getSizeInBytes();
+    }
+}
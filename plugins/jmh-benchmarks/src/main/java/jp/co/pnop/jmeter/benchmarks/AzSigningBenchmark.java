@@ -0,0 +1,69 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.engine.util.CompoundVariable;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.co.pnop.jmeter.functions.AzCosmosDbAuthZ;
+import jp.co.pnop.jmeter.functions.HmacEncodeFunction;
+
+/**
+ * Signing done by the __hmac and __AzCosmosDbAuthZ functions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzSigningBenchmark {
+
+    private static final String KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWYwMTIzNDU2Nzg5YWJjZGVmMDEyMzQ1Njc4OWFiY2RlZg==";
+
+    private HmacEncodeFunction hmac;
+    private AzCosmosDbAuthZ cosmosDbAuthZ;
+
+    @Setup
+    public void setup() throws Exception {
+        JMeterContextService.getContext().setVariables(new JMeterVariables());
+
+        hmac = new HmacEncodeFunction();
+        hmac.setParameters(Arrays.asList(
+            new CompoundVariable("HmacSHA256"),
+            new CompoundVariable("GET\n/dbs/MyDatabase/colls/MyCollection\nmon, 01 jan 2024 00:00:00 gmt\n\n"),
+            new CompoundVariable(KEY)
+        ));
+
+        cosmosDbAuthZ = new AzCosmosDbAuthZ();
+        cosmosDbAuthZ.setParameters(Arrays.asList(
+            new CompoundVariable(KEY),
+            new CompoundVariable("xMsDate"),
+            new CompoundVariable("GET"),
+            new CompoundVariable("docs"),
+            new CompoundVariable("dbs/MyDatabase/colls/MyCollection")
+        ));
+    }
+
+    @Benchmark
+    public String hmac() throws Exception {
+        return hmac.execute(null, null);
+    }
+
+    @Benchmark
+    public String cosmosDbAuthZ() throws Exception {
+        return cosmosDbAuthZ.execute(null, null);
+    }
+}
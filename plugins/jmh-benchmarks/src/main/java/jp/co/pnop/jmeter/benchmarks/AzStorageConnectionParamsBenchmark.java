@@ -0,0 +1,56 @@
+package jp.co.pnop.jmeter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.co.pnop.jmeter.protocol.azurestoragequeue.common.AzStorageConnectionParams;
+
+/**
+ * Masking of the connection parameters reported with every Storage Queue sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzStorageConnectionParamsBenchmark {
+
+    @Param({AzStorageConnectionParams.AUTHTYPE_CONNECTION_STRING, AzStorageConnectionParams.AUTHTYPE_SAS})
+    public String authType;
+
+    private AzStorageConnectionParams params;
+
+    @Setup
+    public void setup() {
+        params = new AzStorageConnectionParams();
+        params.setAuthType(authType);
+        params.setQueueName("benchmark");
+        if (authType.equals(AzStorageConnectionParams.AUTHTYPE_SAS)) {
+            params.setEndpointUrl("https://account.queue.core.windows.net/benchmark"
+                + "?sv=2020-08-04&ss=q&srt=sco&sp=rwdlacup&se=2030-01-01T00:00:00Z&st=2021-01-01T00:00:00Z&spr=https"
+                + "&sig=0123456789abcdef0123456789abcdef0123456789abcdef");
+            params.setSasToken("sv=2020-08-04&sig=0123456789abcdef");
+        } else {
+            params.setConnectionString("DefaultEndpointsProtocol=https;AccountName=account;"
+                + "AccountKey=0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef==;"
+                + "EndpointSuffix=core.windows.net");
+        }
+    }
+
+    @Benchmark
+    public String getMaskedParams() throws Exception {
+        return params.getMaskedParams();
+    }
+}
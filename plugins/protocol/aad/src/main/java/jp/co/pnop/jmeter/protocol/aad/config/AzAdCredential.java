@@ -11,22 +11,19 @@ import org.apache.jmeter.testelement.property.StringProperty;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.jmeter.testelement.TestStateListener;
-import java.net.InetSocketAddress;
 
 import com.azure.core.http.HttpClient;
-import com.azure.core.http.ProxyOptions;
-import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
 import com.azure.identity.ManagedIdentityCredentialBuilder;
 import com.azure.identity.ClientCertificateCredentialBuilder;
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.azure.identity.UsernamePasswordCredentialBuilder;
 import com.azure.identity.InteractiveBrowserCredentialBuilder;
 
-import org.apache.jmeter.util.JMeterUtils;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jp.co.pnop.jmeter.util.httpclient.AzUtilHttpClient;
+
 public class AzAdCredential extends ConfigTestElement implements TestStateListener {
 
     private static final long serialVersionUID = 1L;
@@ -255,24 +252,7 @@ public class AzAdCredential extends ConfigTestElement implements TestStateListen
         String requestBody = "";
 
         private HttpClient httpClientBase() {
-            final String proxyHost = JMeterUtils.getPropDefault("https.proxyHost", "").trim();
-            final int proxyPort = Integer.parseInt(JMeterUtils.getPropDefault("https.proxyPort", "3128").trim());
-            String nonProxyHosts = JMeterUtils.getPropDefault("https.nonProxyHosts", "").trim();
-            final String proxyUser = JMeterUtils.getPropDefault("http.proxyUser", "").trim();
-            final String proxyPass = JMeterUtils.getPropDefault("http.proxyPass", "");
-
-            nonProxyHosts = nonProxyHosts.concat("|169.254.169.254").replaceFirst("^|", "");
-
-            if (proxyHost.length() > 0) {
-                InetSocketAddress address = new InetSocketAddress(proxyHost, proxyPort);
-                
-                ProxyOptions options = new ProxyOptions(ProxyOptions.Type.HTTP, address).setNonProxyHosts(nonProxyHosts);
-                if (proxyUser.length() > 0) {
-                    options.setCredentials(proxyUser, proxyPass);
-                }
-                return (HttpClient) new NettyAsyncHttpClientBuilder().proxy(options).build();
-            }
-            return HttpClient.createDefault();
+            return AzUtilHttpClient.httpClientBase();
         }
 
         AzAdCredentialComponentImpl() {
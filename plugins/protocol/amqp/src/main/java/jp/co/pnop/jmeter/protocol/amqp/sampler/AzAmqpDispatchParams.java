@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.amqp.sampler;
+
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jorphan.util.JOrphanUtils;
+
+public class AzAmqpDispatchParams extends AbstractTestElement {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String DISPATCH_PARAMS = "dispatchParams"; //$NON-NLS$
+    public static final String DISPATCH_MODE = "Dispatch.mode"; //$NON-NLS$
+    public static final String TARGET_RATE = "Dispatch.targetRate"; //$NON-NLS$
+    public static final String DURATION = "Dispatch.duration"; //$NON-NLS$
+    public static final String DRAIN_TIMEOUT = "Dispatch.drainTimeout"; //$NON-NLS$
+
+    public static final String DISPATCH_MODE_CLOSED = "Closed model (one send per sample)";
+    public static final String DISPATCH_MODE_OPEN = "Open model (target arrival rate)";
+
+    private static final long DEFAULT_DURATION = 10; // sec
+    private static final long DEFAULT_DRAIN_TIMEOUT = 30; // sec
+
+    /**
+     * Create a new dispatch parameters object with the closed model.
+     */
+    public AzAmqpDispatchParams() {
+        super();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        setProperty(new StringProperty(DISPATCH_MODE, DISPATCH_MODE_CLOSED));
+        setProperty(new StringProperty(TARGET_RATE, ""));
+        setProperty(new StringProperty(DURATION, ""));
+        setProperty(new StringProperty(DRAIN_TIMEOUT, ""));
+    }
+
+    public void setDispatchMode(String dispatchMode) {
+        setProperty(new StringProperty(DISPATCH_MODE, dispatchMode));
+    }
+
+    public String getDispatchMode() {
+        return getPropertyAsString(DISPATCH_MODE, DISPATCH_MODE_CLOSED);
+    }
+
+    public boolean isOpenModel() {
+        return getDispatchMode().equals(DISPATCH_MODE_OPEN);
+    }
+
+    public void setTargetRate(String targetRate) {
+        setProperty(new StringProperty(TARGET_RATE, targetRate));
+    }
+
+    public String getTargetRate() {
+        return getPropertyAsString(TARGET_RATE);
+    }
+
+    public void setDuration(String duration) {
+        setProperty(new StringProperty(DURATION, duration));
+    }
+
+    public String getDuration() {
+        return getPropertyAsString(DURATION);
+    }
+
+    public void setDrainTimeout(String drainTimeout) {
+        setProperty(new StringProperty(DRAIN_TIMEOUT, drainTimeout));
+    }
+
+    public String getDrainTimeout() {
+        return getPropertyAsString(DRAIN_TIMEOUT);
+    }
+
+    /**
+     * Get the target rate in messages per second.
+     *
+     * @return the target rate
+     * @throws NumberFormatException if the target rate is not a positive number
+     */
+    public double getTargetRateValue() {
+        double rate;
+        try {
+            rate = Double.parseDouble(getTargetRate().trim());
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [Target rate]"));
+        }
+        if (rate <= 0) {
+            throw new NumberFormatException("Target rate must be greater than 0. [Target rate]");
+        }
+        return rate;
+    }
+
+    /**
+     * Get the length of the dispatch window in milliseconds.
+     *
+     * @return the dispatch window
+     */
+    public long getDurationMillis() {
+        return toMillis(getDuration(), DEFAULT_DURATION, "Duration");
+    }
+
+    /**
+     * Get how long to wait for outstanding sends after the dispatch window in milliseconds.
+     *
+     * @return the drain timeout
+     */
+    public long getDrainTimeoutMillis() {
+        return toMillis(getDrainTimeout(), DEFAULT_DRAIN_TIMEOUT, "Drain timeout");
+    }
+
+    private static long toMillis(String seconds, long defaultSeconds, String label) {
+        if (JOrphanUtils.isBlank(seconds)) {
+            return defaultSeconds * 1000;
+        }
+        try {
+            return (long) (Double.parseDouble(seconds.trim()) * 1000);
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(label).concat("]"));
+        }
+    }
+}
@@ -20,6 +20,8 @@ package jp.co.pnop.jmeter.protocol.amqp.sampler;
 import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.property.StringProperty;
 
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+
 //import org.slf4j.Logger;
 //import org.slf4j.LoggerFactory;
 
@@ -37,6 +39,9 @@ public class AzAmqpMessage extends AbstractTestElement {
     private static final String CONTENT_TYPE = "Message.contentType"; //$NON-NLS$
     private static final String LABEL = "Message.label"; //$NON-NLS$
     private static final String STANDARD_PROPERTIES = "Message.standardProperties"; //$NON-NLS$
+    private static final String COMPRESSION = "Message.compression"; //$NON-NLS$
+
+    private transient boolean bodyCacheable = true;
 
     public AzAmqpMessage() {
     }
@@ -57,6 +62,7 @@ public class AzAmqpMessage extends AbstractTestElement {
         setProperty(new StringProperty(CONTENT_TYPE, ""));
         setProperty(new StringProperty(LABEL, ""));
         setProperty(new StringProperty(STANDARD_PROPERTIES, ""));
+        setProperty(new StringProperty(COMPRESSION, AzUtilCompression.COMPRESSION_NONE));
     }
 
     /**
@@ -220,4 +226,39 @@ public class AzAmqpMessage extends AbstractTestElement {
     public String getStandardProperties() {
         return getPropertyAsString(STANDARD_PROPERTIES);
     }
+
+    /**
+     * Set the compression of the body.
+     *
+     * @param compression the new compression
+     */
+    public void setCompression(String compression) {
+        setProperty(new StringProperty(COMPRESSION, compression));
+    }
+
+    /**
+     * Get the compression of the body.
+     *
+     * @return the compression, "None" if not set
+     */
+    public String getCompression() {
+        return getPropertyAsString(COMPRESSION, AzUtilCompression.COMPRESSION_NONE);
+    }
+
+    /**
+     * Set whether the compressed body can be cached.
+     * Bodies that are sent only once, e.g. records of a message feeder, should not be cached.
+     *
+     * @param bodyCacheable whether the compressed body can be cached
+     */
+    public void setBodyCacheable(boolean bodyCacheable) {
+        this.bodyCacheable = bodyCacheable;
+    }
+
+    /**
+     * @return whether the compressed body can be cached
+     */
+    public boolean isBodyCacheable() {
+        return bodyCacheable;
+    }
 }
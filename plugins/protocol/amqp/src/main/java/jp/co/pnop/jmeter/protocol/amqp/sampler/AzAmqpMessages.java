@@ -38,6 +38,8 @@ public class AzAmqpMessages extends AbstractTestElement {
     public static final String MESSAGE_TYPE_STRING = "String";
     public static final String MESSAGE_TYPE_BASE64 = "Base64 encoded binary";
     public static final String MESSAGE_TYPE_FILE = "File";
+    public static final String MESSAGE_TYPE_GENERATED = "Generated payload";
+    public static final String MESSAGE_TYPE_FEEDER = "Message feeder";
 
     /**
      * Create a new Messages object with no messages.
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.amqp.sampler;
+
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jorphan.util.JOrphanUtils;
+
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpRetryPolicy;
+
+public class AzAmqpRetryParams extends AbstractTestElement {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String RETRY_PARAMS = "retryParams"; //$NON-NLS$
+    public static final String MAX_ATTEMPTS = "Retry.maxAttempts"; //$NON-NLS$
+    public static final String INITIAL_BACKOFF = "Retry.initialBackoff"; //$NON-NLS$
+    public static final String MAX_BACKOFF = "Retry.maxBackoff"; //$NON-NLS$
+    public static final String JITTER = "Retry.jitter"; //$NON-NLS$
+
+    private static final double DEFAULT_INITIAL_BACKOFF = 0.1; // sec
+    private static final double DEFAULT_MAX_BACKOFF = 5; // sec
+    private static final double DEFAULT_JITTER = 0.5;
+
+    /**
+     * Create a new retry parameters object with a single attempt (no retry).
+     */
+    public AzAmqpRetryParams() {
+        super();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        setProperty(new StringProperty(MAX_ATTEMPTS, ""));
+        setProperty(new StringProperty(INITIAL_BACKOFF, ""));
+        setProperty(new StringProperty(MAX_BACKOFF, ""));
+        setProperty(new StringProperty(JITTER, ""));
+    }
+
+    public void setMaxAttempts(String maxAttempts) {
+        setProperty(new StringProperty(MAX_ATTEMPTS, maxAttempts));
+    }
+
+    public String getMaxAttempts() {
+        return getPropertyAsString(MAX_ATTEMPTS);
+    }
+
+    public void setInitialBackoff(String initialBackoff) {
+        setProperty(new StringProperty(INITIAL_BACKOFF, initialBackoff));
+    }
+
+    public String getInitialBackoff() {
+        return getPropertyAsString(INITIAL_BACKOFF);
+    }
+
+    public void setMaxBackoff(String maxBackoff) {
+        setProperty(new StringProperty(MAX_BACKOFF, maxBackoff));
+    }
+
+    public String getMaxBackoff() {
+        return getPropertyAsString(MAX_BACKOFF);
+    }
+
+    public void setJitter(String jitter) {
+        setProperty(new StringProperty(JITTER, jitter));
+    }
+
+    public String getJitter() {
+        return getPropertyAsString(JITTER);
+    }
+
+    /**
+     * Create the retry policy of a sample. The policy counts the attempts of the sample, so create one per sample.
+     *
+     * @return the retry policy
+     * @throws NumberFormatException if a parameter is not a number
+     */
+    public AzAmqpRetryPolicy createPolicy() {
+        int maxAttempts = 1;
+        if (!JOrphanUtils.isBlank(getMaxAttempts())) {
+            try {
+                maxAttempts = Integer.parseInt(getMaxAttempts().trim());
+            } catch (NumberFormatException ex) {
+                throw new NumberFormatException(ex.getMessage().concat(" [Max attempts]"));
+            }
+            if (maxAttempts <= 0) {
+                throw new NumberFormatException("Max attempts must be greater than 0. [Max attempts]");
+            }
+        }
+        double jitter = toDouble(getJitter(), DEFAULT_JITTER, "Jitter");
+        if (jitter < 0 || jitter > 1) {
+            throw new NumberFormatException("Jitter must be between 0 and 1. [Jitter]");
+        }
+        return new AzAmqpRetryPolicy(
+            maxAttempts,
+            (long) (toDouble(getInitialBackoff(), DEFAULT_INITIAL_BACKOFF, "Initial backoff") * 1000),
+            (long) (toDouble(getMaxBackoff(), DEFAULT_MAX_BACKOFF, "Max backoff") * 1000),
+            jitter);
+    }
+
+    private static double toDouble(String value, double defaultValue, String label) {
+        if (JOrphanUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(label).concat("]"));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.amqp.sampler.gui;
+
+import java.awt.BorderLayout;
+import java.util.Collection;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.apache.jmeter.config.gui.AbstractConfigGui;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.gui.JLabeledChoice;
+import org.apache.jorphan.gui.JLabeledTextField;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpDispatchParams;
+
+public class AzAmqpDispatchParamsPanel extends AbstractConfigGui implements ChangeListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private JLabeledChoice dispatchMode;
+    private String[] DISPATCH_MODE_LABELS = {
+        AzAmqpDispatchParams.DISPATCH_MODE_CLOSED,
+        AzAmqpDispatchParams.DISPATCH_MODE_OPEN
+    };
+    private JLabeledTextField targetRate;
+    private JLabeledTextField duration;
+    private JLabeledTextField drainTimeout;
+
+    public AzAmqpDispatchParamsPanel() {
+        init();
+    }
+
+    @Override
+    public Collection<String> getMenuCategories() {
+        return null;
+    }
+
+    @Override
+    public String getLabelResource() {
+        return null; // $NON-NLS-1$
+    }
+
+    /* Implements JMeterGUIComponent.createTestElement() */
+    @Override
+    public TestElement createTestElement() {
+        AzAmqpDispatchParams params = new AzAmqpDispatchParams();
+        modifyTestElement(params);
+        return (TestElement) params.clone();
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        element.clear();
+        super.configureTestElement(element);
+
+        element.setProperty(AzAmqpDispatchParams.DISPATCH_MODE, dispatchMode.getText());
+        element.setProperty(AzAmqpDispatchParams.TARGET_RATE, targetRate.getText());
+        element.setProperty(AzAmqpDispatchParams.DURATION, duration.getText());
+        element.setProperty(AzAmqpDispatchParams.DRAIN_TIMEOUT, drainTimeout.getText());
+    }
+
+    /**
+     * A newly created component can be initialized with the contents of a Test
+     * Element object by calling this method. The component is responsible for
+     * querying the Test Element object for the relevant information to display
+     * in its GUI.
+     *
+     * @param element
+     *            the TestElement to configure
+     */
+    @Override
+    public void configure(TestElement element) {
+        if (element == null) {
+            clearGui();
+            return;
+        }
+        super.configure(element);
+
+        dispatchMode.setText(element.getPropertyAsString(AzAmqpDispatchParams.DISPATCH_MODE, AzAmqpDispatchParams.DISPATCH_MODE_CLOSED));
+        targetRate.setText(element.getPropertyAsString(AzAmqpDispatchParams.TARGET_RATE));
+        duration.setText(element.getPropertyAsString(AzAmqpDispatchParams.DURATION));
+        drainTimeout.setText(element.getPropertyAsString(AzAmqpDispatchParams.DRAIN_TIMEOUT));
+        toggleDispatchMode();
+    }
+
+    /**
+     * Implements JMeterGUIComponent.clearGui
+     */
+    @Override
+    public void clearGui() {
+        super.clearGui();
+
+        dispatchMode.setText(AzAmqpDispatchParams.DISPATCH_MODE_CLOSED);
+        targetRate.setText("");
+        duration.setText("");
+        drainTimeout.setText("");
+        toggleDispatchMode();
+    }
+
+    /**
+     * Initialize the components and layout of this component.
+     */
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        setLayout(new BorderLayout(0, 5));
+
+        JLabel dispatchModeLabel = new JLabel("Dispatch mode:");
+        dispatchMode = new JLabeledChoice("", DISPATCH_MODE_LABELS);
+        dispatchMode.setName(AzAmqpDispatchParams.DISPATCH_MODE);
+        dispatchMode.addChangeListener(this);
+
+        JPanel dispatchModePanel = new JPanel(new BorderLayout(5, 0));
+        dispatchModePanel.add(dispatchModeLabel, BorderLayout.WEST);
+        dispatchModePanel.add(dispatchMode, BorderLayout.CENTER);
+
+        targetRate = new JLabeledTextField("Target rate (messages/sec):");
+        targetRate.setName(AzAmqpDispatchParams.TARGET_RATE);
+
+        duration = new JLabeledTextField("Dispatch window per sample (sec):");
+        duration.setName(AzAmqpDispatchParams.DURATION);
+
+        drainTimeout = new JLabeledTextField("Wait for outstanding sends (sec):");
+        drainTimeout.setName(AzAmqpDispatchParams.DRAIN_TIMEOUT);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Dispatch Configuration"));
+        panel.add(dispatchModePanel);
+        panel.add(targetRate);
+        panel.add(duration);
+        panel.add(drainTimeout);
+
+        add(panel, BorderLayout.CENTER);
+        toggleDispatchMode();
+    }
+
+    @Override
+    public void stateChanged(ChangeEvent event) {
+        if (event.getSource().equals(dispatchMode)) {
+            toggleDispatchMode();
+        }
+    }
+
+    /**
+     * enable/disable fields related to dispatchMode
+     */
+    private void toggleDispatchMode() {
+        boolean openModel = AzAmqpDispatchParams.DISPATCH_MODE_OPEN.equals(dispatchMode.getText());
+        targetRate.setEnabled(openModel);
+        duration.setEnabled(openModel);
+        drainTimeout.setEnabled(openModel);
+    }
+}
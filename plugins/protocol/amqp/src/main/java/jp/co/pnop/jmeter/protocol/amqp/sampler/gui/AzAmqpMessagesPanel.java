@@ -52,6 +52,7 @@ import org.apache.jorphan.reflect.Functor;
 
 import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
 import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
 
 //import org.slf4j.Logger;
 //import org.slf4j.LoggerFactory;
@@ -90,6 +91,7 @@ public class AzAmqpMessagesPanel extends AbstractSamplerGui implements ActionLis
         COLUMN_NAMES.put("CONTENT_TYPE", "content type"); //$NON-NLS-1$
         COLUMN_NAMES.put("LABEL", "label/subject"); //$NON-NLS-1$
         COLUMN_NAMES.put("STANDARD_PROPERTIES", "headers/properties/annotations"); //$NON-NLS-1$
+        COLUMN_NAMES.put("COMPRESSION", "compression"); //$NON-NLS-1$
     }
 
     public AzAmqpMessagesPanel() {
@@ -262,11 +264,11 @@ public class AzAmqpMessagesPanel extends AbstractSamplerGui implements ActionLis
      */
     protected void initializeTableModel() {
         tableModel = new ObjectTableModel(
-            new String[] { COLUMN_NAMES.get("MESSAGE_TYPE"), COLUMN_NAMES.get("MESSAGE") },
+            new String[] { COLUMN_NAMES.get("MESSAGE_TYPE"), COLUMN_NAMES.get("MESSAGE"), COLUMN_NAMES.get("COMPRESSION") },
             AzAmqpMessage.class,
-            new Functor[] { new Functor("getMessageType"), new Functor("getMessage") },
-            new Functor[] { new Functor("setMessageType"), new Functor("setMessage") },
-            new Class[] { String.class, String.class }
+            new Functor[] { new Functor("getMessageType"), new Functor("getMessage"), new Functor("getCompression") },
+            new Functor[] { new Functor("setMessageType"), new Functor("setMessage"), new Functor("setCompression") },
+            new Class[] { String.class, String.class, String.class }
         );
     }
     
@@ -290,6 +292,10 @@ public class AzAmqpMessagesPanel extends AbstractSamplerGui implements ActionLis
 
         TableColumn messageTypeColumn = table.getColumnModel().getColumn(0);
         messageTypeColumn.setCellEditor(new MessageTypeCelEditor());
+        int compressionColumn = tableModel.findColumn(COLUMN_NAMES.get("COMPRESSION"));
+        if (compressionColumn >= 0) {
+            table.getColumnModel().getColumn(compressionColumn).setCellEditor(new CompressionCellEditor());
+        }
 
         tableModel.addRow(new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_BASE64));
         resizeColumnWidth(table, 0);
@@ -378,10 +384,22 @@ public class AzAmqpMessagesPanel extends AbstractSamplerGui implements ActionLis
             super (new JComboBox<>(new String[]{
                 AzAmqpMessages.MESSAGE_TYPE_STRING,
                 AzAmqpMessages.MESSAGE_TYPE_BASE64,
-                AzAmqpMessages.MESSAGE_TYPE_FILE
+                AzAmqpMessages.MESSAGE_TYPE_FILE,
+                AzAmqpMessages.MESSAGE_TYPE_GENERATED,
+                AzAmqpMessages.MESSAGE_TYPE_FEEDER
             }));
         }
 
     }
 
+    private static class CompressionCellEditor extends DefaultCellEditor {
+
+        private static final long serialVersionUID = 1L;
+
+        public CompressionCellEditor() {
+            super (new JComboBox<>(AzUtilCompression.COMPRESSION_TYPES));
+        }
+
+    }
+
 }
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.amqp.sampler.gui;
+
+import java.awt.BorderLayout;
+import java.util.Collection;
+
+import javax.swing.BorderFactory;
+
+import org.apache.jmeter.config.gui.AbstractConfigGui;
+import org.apache.jmeter.gui.util.HorizontalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.gui.JLabeledTextField;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpRetryParams;
+
+public class AzAmqpRetryParamsPanel extends AbstractConfigGui {
+
+    private static final long serialVersionUID = 1L;
+
+    private JLabeledTextField maxAttempts;
+    private JLabeledTextField initialBackoff;
+    private JLabeledTextField maxBackoff;
+    private JLabeledTextField jitter;
+
+    public AzAmqpRetryParamsPanel() {
+        init();
+    }
+
+    @Override
+    public Collection<String> getMenuCategories() {
+        return null;
+    }
+
+    @Override
+    public String getLabelResource() {
+        return null; // $NON-NLS-1$
+    }
+
+    /* Implements JMeterGUIComponent.createTestElement() */
+    @Override
+    public TestElement createTestElement() {
+        AzAmqpRetryParams params = new AzAmqpRetryParams();
+        modifyTestElement(params);
+        return (TestElement) params.clone();
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        element.clear();
+        super.configureTestElement(element);
+
+        element.setProperty(AzAmqpRetryParams.MAX_ATTEMPTS, maxAttempts.getText());
+        element.setProperty(AzAmqpRetryParams.INITIAL_BACKOFF, initialBackoff.getText());
+        element.setProperty(AzAmqpRetryParams.MAX_BACKOFF, maxBackoff.getText());
+        element.setProperty(AzAmqpRetryParams.JITTER, jitter.getText());
+    }
+
+    /**
+     * A newly created component can be initialized with the contents of a Test
+     * Element object by calling this method. The component is responsible for
+     * querying the Test Element object for the relevant information to display
+     * in its GUI.
+     *
+     * @param element
+     *            the TestElement to configure
+     */
+    @Override
+    public void configure(TestElement element) {
+        if (element == null) {
+            clearGui();
+            return;
+        }
+        super.configure(element);
+
+        maxAttempts.setText(element.getPropertyAsString(AzAmqpRetryParams.MAX_ATTEMPTS));
+        initialBackoff.setText(element.getPropertyAsString(AzAmqpRetryParams.INITIAL_BACKOFF));
+        maxBackoff.setText(element.getPropertyAsString(AzAmqpRetryParams.MAX_BACKOFF));
+        jitter.setText(element.getPropertyAsString(AzAmqpRetryParams.JITTER));
+    }
+
+    /**
+     * Implements JMeterGUIComponent.clearGui
+     */
+    @Override
+    public void clearGui() {
+        super.clearGui();
+
+        maxAttempts.setText("");
+        initialBackoff.setText("");
+        maxBackoff.setText("");
+        jitter.setText("");
+    }
+
+    /**
+     * Initialize the components and layout of this component.
+     */
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        setLayout(new BorderLayout(0, 5));
+
+        maxAttempts = new JLabeledTextField("Max attempts:", 6);
+        maxAttempts.setName(AzAmqpRetryParams.MAX_ATTEMPTS);
+        initialBackoff = new JLabeledTextField("Initial backoff (sec):", 6);
+        initialBackoff.setName(AzAmqpRetryParams.INITIAL_BACKOFF);
+        maxBackoff = new JLabeledTextField("Max backoff (sec):", 6);
+        maxBackoff.setName(AzAmqpRetryParams.MAX_BACKOFF);
+        jitter = new JLabeledTextField("Jitter (0-1):", 6);
+        jitter.setName(AzAmqpRetryParams.JITTER);
+
+        HorizontalPanel panel = new HorizontalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Retry on Transient Errors"));
+        panel.add(maxAttempts);
+        panel.add(initialBackoff);
+        panel.add(maxBackoff);
+        panel.add(jitter);
+
+        add(panel, BorderLayout.CENTER);
+    }
+}
@@ -0,0 +1,76 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import com.azure.core.amqp.exception.AmqpErrorCondition;
+import com.azure.core.amqp.exception.AmqpException;
+
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+
+/**
+ * Classifies the errors of the AMQP samplers by the error condition of the {@link AmqpException}
+ * on the cause chain, into the error classes of {@link AzUtilErrorCounters}.
+ * Errors without an error condition are classified by {@link AzUtilErrorCounters#classifyCause(Throwable)}.
+ */
+public class AzAmqpErrorClassifier {
+
+    private AzAmqpErrorClassifier() {
+    }
+
+    /**
+     * @param ex the error of a send
+     * @return the error class, e.g. {@link AzUtilErrorCounters#SERVER_BUSY}
+     */
+    public static String classify(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AmqpException && ((AmqpException) cause).getErrorCondition() != null) {
+                String errorClass = classify(((AmqpException) cause).getErrorCondition());
+                if (errorClass != null) {
+                    return errorClass;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return AzUtilErrorCounters.classifyCause(ex);
+    }
+
+    /**
+     * @return the error class of the condition, or null if the condition does not tell the class
+     */
+    public static String classify(AmqpErrorCondition condition) {
+        switch (condition) {
+            case SERVER_BUSY_ERROR:
+                return AzUtilErrorCounters.SERVER_BUSY;
+            case RESOURCE_LIMIT_EXCEEDED:
+                return AzUtilErrorCounters.QUOTA_EXCEEDED;
+            case TIMEOUT_ERROR:
+                return AzUtilErrorCounters.TIMEOUT;
+            case UNAUTHORIZED_ACCESS:
+            case PUBLISHER_REVOKED_ERROR:
+                return AzUtilErrorCounters.UNAUTHORIZED;
+            case NOT_FOUND:
+            case MESSAGE_NOT_FOUND:
+            case SESSION_NOT_FOUND:
+                return AzUtilErrorCounters.NOT_FOUND;
+            case LINK_PAYLOAD_SIZE_EXCEEDED:
+                return AzUtilErrorCounters.MESSAGE_SIZE_EXCEEDED;
+            case MESSAGE_LOCK_LOST:
+            case SESSION_LOCK_LOST:
+            case STORE_LOCK_LOST_ERROR:
+                return AzUtilErrorCounters.LOCK_LOST;
+            case CONNECTION_FORCED:
+            case CONNECTION_FRAMING_ERROR:
+            case LINK_DETACH_FORCED:
+            case LINK_STOLEN:
+            case PROTON_IO:
+                return AzUtilErrorCounters.CONNECTION;
+            case ARGUMENT_ERROR:
+            case ARGUMENT_OUT_OF_RANGE_ERROR:
+            case NOT_ALLOWED:
+            case ILLEGAL_STATE:
+                return AzUtilErrorCounters.CLIENT;
+            default:
+                return null;
+        }
+    }
+}
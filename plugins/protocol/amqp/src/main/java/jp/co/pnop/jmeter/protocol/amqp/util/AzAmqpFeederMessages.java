@@ -0,0 +1,55 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import java.io.IOException;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.util.feeder.AzMessageFeeder;
+import jp.co.pnop.jmeter.util.feeder.AzMessageFeederRecord;
+
+/**
+ * Resolves the "Message feeder" rows of the messages table.
+ * <p>
+ * The message of the row is the variable name of a Message Feeder, and each row takes one record of the feeder.
+ */
+public class AzAmqpFeederMessages {
+
+    private AzAmqpFeederMessages() {
+    }
+
+    /**
+     * Resolve a message definition.
+     *
+     * @param msg the message definition of the messages table
+     * @return the message definition built from the next record of the feeder
+     *         if the message type is "Message feeder", otherwise the message definition itself
+     * @throws IOException if there is no record to send
+     */
+    public static AzAmqpMessage resolve(AzAmqpMessage msg) throws IOException {
+        if (!msg.getMessageType().equals(AzAmqpMessages.MESSAGE_TYPE_FEEDER)) {
+            return msg;
+        }
+
+        AzMessageFeederRecord record;
+        try {
+            record = AzMessageFeeder.nextRecord(msg.getMessage());
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+
+        AzAmqpMessage resolved = new AzAmqpMessage(record.getMessageType());
+        resolved.setMessage(record.getBody());
+        resolved.setMessageId(record.getMessageId());
+        resolved.setGroupId(record.getSessionId());
+        resolved.setPartitionKey(record.getPartitionKey());
+        resolved.setContentType(record.getContentType());
+        resolved.setLabel(record.getSubject());
+        resolved.setCustomProperties(record.getProperties());
+        resolved.setStandardProperties(record.getHeaders());
+        resolved.setCompression(msg.getCompression());
+        resolved.setBodyCacheable(false);
+        return resolved;
+    }
+}
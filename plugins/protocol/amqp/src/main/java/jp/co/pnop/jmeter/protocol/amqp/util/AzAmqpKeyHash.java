@@ -0,0 +1,33 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+/**
+ * Maps a key (a partition key, a session ID) to one of N buckets, so that the same key
+ * always goes to the same bucket.
+ */
+public class AzAmqpKeyHash {
+
+    private AzAmqpKeyHash() {
+    }
+
+    /**
+     * @param key     the key
+     * @param buckets number of buckets, greater than 0
+     * @return the bucket of the key, from 0 to buckets - 1
+     */
+    public static int bucket(String key, int buckets) {
+        return Math.floorMod(mix(key.hashCode()), buckets);
+    }
+
+    /**
+     * Finalization step of MurmurHash3, so that similar keys ("tenant-1", "tenant-2", ...)
+     * spread over the buckets.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,89 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.apache.commons.io.IOUtils;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompressedBody;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+
+/**
+ * Builds the bodies of the messages of a sample, and counts the bytes before and after compression.
+ * <p>
+ * Create an encoder for each sample.
+ */
+public class AzAmqpMessageEncoder {
+
+    private long rawBytes = 0;
+    private long compressedBytes = 0;
+    private int compressedCount = 0;
+
+    /**
+     * Build the body of a message definition.
+     *
+     * @param msg the message definition
+     * @return the body, compressed if a compression is set
+     * @throws IOException if the message file can not be read
+     */
+    public AzUtilCompressedBody encode(AzAmqpMessage msg) throws IOException {
+        AzUtilCompressedBody body;
+        if (msg.isBodyCacheable() && !msg.getMessageType().equals(AzAmqpMessages.MESSAGE_TYPE_GENERATED)) {
+            body = AzUtilCompression.compressStatic(
+                msg.getCompression(), Arrays.asList(msg.getMessageType(), msg.getMessage()), () -> read(msg)
+            );
+        } else {
+            body = AzUtilCompression.compress(msg.getCompression(), read(msg));
+        }
+
+        rawBytes += body.getRawLength();
+        compressedBytes += body.getBytes().length;
+        if (body.isCompressed()) {
+            compressedCount++;
+        }
+        return body;
+    }
+
+    /**
+     * @return "Body bytes: ..." if any body was compressed, otherwise an empty string
+     */
+    public String describe() {
+        return compressedCount == 0 ? "" : AzUtilCompressedBody.describe(rawBytes, compressedBytes);
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * Read the uncompressed body of a message definition.
+     *
+     * @param msg the message definition
+     * @return the body
+     * @throws IOException if the message file can not be read
+     */
+    public static byte[] read(AzAmqpMessage msg) throws IOException {
+        switch (msg.getMessageType()) {
+            case AzAmqpMessages.MESSAGE_TYPE_BASE64:
+                return Base64.getDecoder().decode(msg.getMessage().getBytes());
+            case AzAmqpMessages.MESSAGE_TYPE_FILE:
+                try (BufferedInputStream bi = new BufferedInputStream(new FileInputStream(msg.getMessage()))) {
+                    return IOUtils.toByteArray(bi);
+                }
+            case AzAmqpMessages.MESSAGE_TYPE_GENERATED:
+                return AzAmqpPayloadGenerator.get(msg.getMessage()).next();
+            default: // AzAmqpMessages.MESSAGE_TYPE_STRING
+                return msg.getMessage().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
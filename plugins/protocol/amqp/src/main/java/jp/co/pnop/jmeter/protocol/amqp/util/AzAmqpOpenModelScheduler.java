@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import jp.co.pnop.jmeter.util.metrics.AzUtilOpenLoop;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Issues asynchronous {@link Mono} sends at a fixed arrival rate, independently
+ * of how fast the previous sends complete (open workload model). See
+ * {@link AzUtilOpenLoop} for what is measured.
+ */
+public class AzAmqpOpenModelScheduler extends AzUtilOpenLoop {
+
+    /**
+     * @param sendsPerSecond     number of sends to issue per second
+     * @param durationMillis     length of the dispatch window
+     * @param drainTimeoutMillis how long to wait for outstanding sends after the window
+     */
+    public AzAmqpOpenModelScheduler(double sendsPerSecond, long durationMillis, long drainTimeoutMillis) {
+        super(sendsPerSecond, durationMillis, drainTimeoutMillis);
+    }
+
+    /**
+     * Run the dispatch window on the calling thread.
+     *
+     * @param sender creates the send operation to subscribe to on every tick
+     * @return the measurements of the window
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Summary run(Supplier<Mono<Void>> sender) throws InterruptedException {
+        return run(sender, error -> { });
+    }
+
+    /**
+     * Run the dispatch window on the calling thread.
+     *
+     * @param sender  creates the send operation to subscribe to on every tick
+     * @param onError called with the error of every failed send, from the thread the send failed on
+     * @return the measurements of the window
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Summary run(Supplier<Mono<Void>> sender, Consumer<Throwable> onError) throws InterruptedException {
+        return run(completion -> sender.get().subscribe(
+            unused -> { },
+            completion::failed,
+            completion::succeeded
+        ), onError);
+    }
+}
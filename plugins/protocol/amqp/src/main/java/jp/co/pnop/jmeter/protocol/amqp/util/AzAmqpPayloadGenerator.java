@@ -0,0 +1,397 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+
+/**
+ * Generates message bodies from a compact spec, for the "Generated payload" message type.
+ * <p>
+ * The spec is a list of settings separated by ';':
+ * <ul>
+ * <li>size: fixed(N) or N, uniform(MIN,MAX) or lognormal(MEDIAN,SIGMA) in bytes</li>
+ * <li>seed: seed of the random values. Each thread mixes the seed with its thread group and thread number,
+ * so runs are repeatable.</li>
+ * <li>fields: name:type pairs separated by ',', to generate a JSON object instead of random text.
+ * The types are seq, uuid, str(N), int(MIN,MAX), double(MIN,MAX), bool, time and choice(A|B|...).
+ * If size is also set, a "pad" field fills the object up to the size.</li>
+ * </ul>
+ * e.g. <code>size=lognormal(2048,0.5);seed=42;fields=id:seq,device:choice(a|b|c),temp:double(-10,40)</code>
+ * <p>
+ * Bodies are written into a buffer kept per thread and copied once into the returned array,
+ * so the only allocation per body is the body itself.
+ */
+public class AzAmqpPayloadGenerator {
+
+    public static final int MAX_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] ALPHABET
+        = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAD_FIELD = ",\"pad\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Map<String, AzAmqpPayloadGenerator> generators = new ConcurrentHashMap<>();
+    // prefix of the "seq" values; thread numbers restart at 0 in every thread group
+    private static final AtomicInteger stateIds = new AtomicInteger(0);
+
+    private enum SizeType { NONE, FIXED, UNIFORM, LOGNORMAL }
+    private enum FieldType { SEQ, UUID, STR, INT, DOUBLE, BOOL, TIME, CHOICE }
+
+    private static class Field {
+        final byte[] prefix; // ,"name": or {"name":
+        final FieldType type;
+        final double min;
+        final double max;
+        final byte[][] choices;
+
+        Field(byte[] prefix, FieldType type, double min, double max, byte[][] choices) {
+            this.prefix = prefix;
+            this.type = type;
+            this.min = min;
+            this.max = max;
+            this.choices = choices;
+        }
+    }
+
+    private static class State {
+        final SplittableRandom random;
+        final int id;
+        long sequence;
+        byte[] buffer = new byte[4096];
+        int length;
+
+        State(long seed, JMeterContext context) {
+            AbstractThreadGroup threadGroup = context.getThreadGroup();
+            long groupHash = threadGroup == null ? 0 : threadGroup.getName().hashCode();
+            this.random = new SplittableRandom((seed ^ (groupHash << 32)) + context.getThreadNum());
+            this.id = stateIds.getAndIncrement();
+        }
+
+        void ensure(int additional) {
+            if (length + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+            }
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void write(byte b) {
+            ensure(1);
+            buffer[length++] = b;
+        }
+
+        void write(String ascii) {
+            ensure(ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                buffer[length++] = (byte) ascii.charAt(i);
+            }
+        }
+
+        void writeRandom(int count) {
+            ensure(count);
+            int remaining = count;
+            while (remaining > 0) {
+                long bits = random.nextLong();
+                for (int i = 0; i < 10 && remaining > 0; i++, remaining--) {
+                    buffer[length++] = ALPHABET[(int) (bits & 0x3f)];
+                    bits >>>= 6;
+                }
+            }
+        }
+
+        void writeHex(long bits, int digits) {
+            ensure(digits);
+            for (int i = digits - 1; i >= 0; i--) {
+                buffer[length++] = HEX[(int) ((bits >>> (i * 4)) & 0xf)];
+            }
+        }
+    }
+
+    private final SizeType sizeType;
+    private final double sizeA;
+    private final double sizeB;
+    private final List<Field> fields;
+    private final ThreadLocal<State> state;
+
+    private AzAmqpPayloadGenerator(String spec) {
+        SizeType parsedSizeType = SizeType.NONE;
+        double a = 0;
+        double b = 0;
+        long seed = 0;
+        List<Field> parsedFields = new ArrayList<>();
+
+        for (String setting : spec.split(";")) {
+            if (setting.trim().isEmpty()) {
+                continue;
+            }
+            int eq = setting.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Invalid payload spec, '=' is missing: ".concat(setting));
+            }
+            String key = setting.substring(0, eq).trim().toLowerCase();
+            String value = setting.substring(eq + 1).trim();
+            switch (key) {
+                case "size":
+                    String sizeName = functionName(value);
+                    String[] args = functionArgs(value, ",");
+                    switch (sizeName) {
+                        case "":
+                        case "fixed":
+                            parsedSizeType = SizeType.FIXED;
+                            a = Double.parseDouble(sizeName.isEmpty() ? value : args[0]);
+                            break;
+                        case "uniform":
+                            parsedSizeType = SizeType.UNIFORM;
+                            a = Double.parseDouble(args[0]);
+                            b = Double.parseDouble(args[1]);
+                            if (b < a) {
+                                throw new IllegalArgumentException("Invalid payload spec, max is smaller than min: ".concat(value));
+                            }
+                            break;
+                        case "lognormal":
+                            parsedSizeType = SizeType.LOGNORMAL;
+                            a = Math.log(Double.parseDouble(args[0]));
+                            b = Double.parseDouble(args[1]);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Invalid payload spec, unknown size distribution: ".concat(value));
+                    }
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "fields":
+                    for (String field : splitTopLevel(value)) {
+                        parsedFields.add(parseField(field, parsedFields.isEmpty()));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid payload spec, unknown setting: ".concat(key));
+            }
+        }
+        if (parsedSizeType == SizeType.NONE && parsedFields.isEmpty()) {
+            throw new IllegalArgumentException("Invalid payload spec, set size or fields: ".concat(spec));
+        }
+
+        this.sizeType = parsedSizeType;
+        this.sizeA = a;
+        this.sizeB = b;
+        this.fields = parsedFields;
+        final long stateSeed = seed;
+        this.state = ThreadLocal.withInitial(() -> new State(stateSeed, JMeterContextService.getContext()));
+    }
+
+    /**
+     * Get the generator of the spec. Generators are parsed once and shared by all threads.
+     *
+     * @param spec the payload spec
+     * @return the generator
+     * @throws IllegalArgumentException if the spec is invalid
+     */
+    public static AzAmqpPayloadGenerator get(String spec) {
+        AzAmqpPayloadGenerator generator = generators.get(spec);
+        if (generator == null) {
+            generator = new AzAmqpPayloadGenerator(spec);
+            generators.putIfAbsent(spec, generator);
+        }
+        return generator;
+    }
+
+    /**
+     * Generate the next body of the calling thread.
+     *
+     * @return the body
+     */
+    public byte[] next() {
+        State s = state.get();
+        s.length = 0;
+        int size = nextSize(s.random);
+
+        if (fields.isEmpty()) {
+            s.writeRandom(size);
+        } else {
+            for (Field field : fields) {
+                s.write(field.prefix);
+                writeValue(s, field);
+            }
+            // ,"pad":" is 8 bytes, and the closing quote and brace 2 bytes
+            int pad = size - s.length - PAD_FIELD.length - 2;
+            if (sizeType != SizeType.NONE && pad > 0) {
+                s.write(PAD_FIELD);
+                s.writeRandom(pad);
+                s.write((byte) '"');
+            }
+            s.write((byte) '}');
+        }
+        s.sequence++;
+        return Arrays.copyOf(s.buffer, s.length);
+    }
+
+    private int nextSize(SplittableRandom random) {
+        double size;
+        switch (sizeType) {
+            case FIXED:
+                size = sizeA;
+                break;
+            case UNIFORM:
+                size = sizeA + random.nextDouble() * (sizeB - sizeA + 1);
+                break;
+            case LOGNORMAL:
+                size = Math.exp(sizeA + sizeB * nextGaussian(random));
+                break;
+            default: // NONE
+                return 0;
+        }
+        return (int) Math.max(1, Math.min(MAX_SIZE, size));
+    }
+
+    private static double nextGaussian(SplittableRandom random) {
+        // Box-Muller, one value is dropped to keep no state
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+
+    private static void writeValue(State s, Field field) {
+        SplittableRandom random = s.random;
+        switch (field.type) {
+            case SEQ:
+                s.write((byte) '"');
+                s.write(String.valueOf(s.id));
+                s.write((byte) '-');
+                s.write(String.valueOf(s.sequence));
+                s.write((byte) '"');
+                break;
+            case UUID:
+                long high = random.nextLong();
+                long low = random.nextLong();
+                s.write((byte) '"');
+                s.writeHex(high >>> 32, 8);
+                s.write((byte) '-');
+                s.writeHex(high >>> 16, 4);
+                s.write((byte) '-');
+                s.writeHex((high & 0x0fffL) | 0x4000L, 4);
+                s.write((byte) '-');
+                s.writeHex(((low >>> 48) & 0x3fffL) | 0x8000L, 4);
+                s.write((byte) '-');
+                s.writeHex(low, 12);
+                s.write((byte) '"');
+                break;
+            case STR:
+                s.write((byte) '"');
+                s.writeRandom((int) field.min);
+                s.write((byte) '"');
+                break;
+            case INT:
+                s.write(String.valueOf((long) field.min + (long) (random.nextDouble() * (field.max - field.min + 1))));
+                break;
+            case DOUBLE:
+                s.write(String.valueOf(field.min + random.nextDouble() * (field.max - field.min)));
+                break;
+            case BOOL:
+                s.write(random.nextBoolean() ? "true" : "false");
+                break;
+            case TIME:
+                s.write(String.valueOf(System.currentTimeMillis()));
+                break;
+            default: // CHOICE
+                s.write(field.choices[random.nextInt(field.choices.length)]);
+        }
+    }
+
+    private static Field parseField(String field, boolean first) {
+        int colon = field.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Invalid payload spec, field type is missing: ".concat(field));
+        }
+        String name = field.substring(0, colon).trim();
+        String type = field.substring(colon + 1).trim();
+        byte[] prefix = (first ? "{\"" : ",\"").concat(escape(name)).concat("\":").getBytes(StandardCharsets.UTF_8);
+
+        String typeName = functionName(type);
+        switch (typeName.isEmpty() ? type.toLowerCase() : typeName) {
+            case "seq":
+                return new Field(prefix, FieldType.SEQ, 0, 0, null);
+            case "uuid":
+                return new Field(prefix, FieldType.UUID, 0, 0, null);
+            case "str":
+                return new Field(prefix, FieldType.STR, Integer.parseInt(functionArgs(type, ",")[0]), 0, null);
+            case "int":
+                String[] intArgs = functionArgs(type, ",");
+                return new Field(prefix, FieldType.INT, Long.parseLong(intArgs[0]), Long.parseLong(intArgs[1]), null);
+            case "double":
+                String[] doubleArgs = functionArgs(type, ",");
+                return new Field(prefix, FieldType.DOUBLE, Double.parseDouble(doubleArgs[0]), Double.parseDouble(doubleArgs[1]), null);
+            case "bool":
+                return new Field(prefix, FieldType.BOOL, 0, 0, null);
+            case "time":
+                return new Field(prefix, FieldType.TIME, 0, 0, null);
+            case "choice":
+                String[] choiceArgs = functionArgs(type, "\\|");
+                byte[][] choices = new byte[choiceArgs.length][];
+                for (int i = 0; i < choiceArgs.length; i++) {
+                    choices[i] = "\"".concat(escape(choiceArgs[i])).concat("\"").getBytes(StandardCharsets.UTF_8);
+                }
+                return new Field(prefix, FieldType.CHOICE, 0, 0, choices);
+            default:
+                throw new IllegalArgumentException("Invalid payload spec, unknown field type: ".concat(field));
+        }
+    }
+
+    private static String functionName(String value) {
+        int open = value.indexOf('(');
+        return open < 0 ? "" : value.substring(0, open).trim().toLowerCase();
+    }
+
+    private static String[] functionArgs(String value, String separator) {
+        int open = value.indexOf('(');
+        int close = value.lastIndexOf(')');
+        if (open < 0) {
+            return new String[] { value };
+        }
+        if (close < open) {
+            throw new IllegalArgumentException("Invalid payload spec, ')' is missing: ".concat(value));
+        }
+        String[] args = value.substring(open + 1, close).split(separator);
+        for (int i = 0; i < args.length; i++) {
+            args[i] = args[i].trim();
+        }
+        return args;
+    }
+
+    private static List<String> splitTopLevel(String value) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(value.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(value.substring(start));
+        return parts;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -2,39 +2,60 @@ package jp.co.pnop.jmeter.protocol.amqp.util;
 
 import com.azure.core.amqp.ProxyAuthenticationType;
 import com.azure.core.amqp.ProxyOptions;
-import org.apache.jmeter.util.JMeterUtils;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
-import java.util.Objects;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import jp.co.pnop.jmeter.util.proxy.AzUtilProxyConfig;
 
+/**
+ * AMQP proxy options (used by AMQP over WebSockets) of the shared proxy settings.
+ * The options are immutable and created once per process.
+ */
 public class AzAmqpProxyOptions {
+    private static volatile ProxyOptions sharedOptions = null;
+
     ProxyOptions options;
-    private static final Logger log = LoggerFactory.getLogger(AzAmqpProxyOptions.class);
 
     public AzAmqpProxyOptions() {
-        final String proxyHost = JMeterUtils.getPropDefault("https.proxyHost", "").trim();
-        final int proxyPort = Integer.parseInt(JMeterUtils.getPropDefault("https.proxyPort", "3128").trim());
-        final String proxyUser = JMeterUtils.getPropDefault("http.proxyUser", null);
-        final String proxyPass = JMeterUtils.getPropDefault("http.proxyPass", null);
+        options = proxyOptions();
+    }
+
+    public ProxyOptions ProxyOptions() {
+        return options;
+    }
+
+    /**
+     * @return the proxy options of the shared proxy settings, created on first use
+     */
+    public static ProxyOptions proxyOptions() {
+        ProxyOptions current = sharedOptions;
+        if (current == null) {
+            synchronized (AzAmqpProxyOptions.class) {
+                current = sharedOptions;
+                if (current == null) {
+                    current = createProxyOptions(AzUtilProxyConfig.get());
+                    sharedOptions = current;
+                }
+            }
+        }
+        return current;
+    }
 
+    private static ProxyOptions createProxyOptions(AzUtilProxyConfig config) {
         ProxyAuthenticationType proxyAuthenticationType = ProxyAuthenticationType.NONE;
         Proxy proxy = Proxy.NO_PROXY;
-        if (proxyHost.length() > 0) {
-
-            InetSocketAddress address = new InetSocketAddress(proxyHost, proxyPort);
+        String proxyUser = null;
+        String proxyPass = null;
+        if (config.isEnabled()) {
+            InetSocketAddress address = new InetSocketAddress(config.getHost(), config.getPort());
             proxy = new Proxy(Proxy.Type.HTTP, address);
-            
-            if (Objects.toString(proxyUser, "").length() > 0) {
+
+            if (config.hasCredentials()) {
                 proxyAuthenticationType = ProxyAuthenticationType.BASIC;
+                proxyUser = config.getUser();
+                proxyPass = config.getPassword();
             }
         }
-        options = new ProxyOptions(proxyAuthenticationType, proxy, proxyUser, proxyPass);
-    }
-
-    public ProxyOptions ProxyOptions() {
-        return options;
+        return new ProxyOptions(proxyAuthenticationType, proxy, proxyUser, proxyPass);
     }
 }
@@ -0,0 +1,158 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * Retries a send that failed with a transient error (e.g. server busy), with exponential backoff and jitter.
+ * <p>
+ * If retries are enabled, each attempt is added to the sample as a sub-result, labelled "[attempt N]".
+ * The time of the failed attempts and of the backoffs is counted as retry time, apart from the time of
+ * the attempt that succeeded, so that throttling can be reported separately from the send latency.
+ * A policy counts the attempts of one sample; create one per sample.
+ */
+public class AzAmqpRetryPolicy {
+
+    /**
+     * A send to be attempted.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        void run() throws Exception;
+    }
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double jitter;
+
+    private int retries;
+    private long retryNanos;
+    private long lastAttemptNanos;
+
+    /**
+     * @param maxAttempts          number of attempts including the first one; 1 disables retries
+     * @param initialBackoffMillis backoff before the first retry
+     * @param maxBackoffMillis     upper bound of the backoff
+     * @param jitter               fraction of the backoff that is randomized, from 0 (none) to 1 (full jitter)
+     */
+    public AzAmqpRetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, double jitter) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = Math.max(0, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.jitter = jitter;
+    }
+
+    public boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return number of retries made by this policy so far
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return time of the failed attempts and the backoffs, in microseconds
+     */
+    public long getRetryMicros() {
+        return retryNanos / 1000;
+    }
+
+    /**
+     * @return time of the last attempt, in microseconds
+     */
+    public long getLastAttemptMicros() {
+        return lastAttemptNanos / 1000;
+    }
+
+    /**
+     * Get the backoff before a retry.
+     *
+     * @param retry  the retry, from 1
+     * @param random a random number from 0 to 1
+     * @return initial backoff * 2^(retry - 1), capped at the max backoff, reduced by up to the jitter fraction
+     */
+    public long backoffMillis(int retry, double random) {
+        long backoff = maxBackoffMillis;
+        if (retry - 1 < 62 && initialBackoffMillis <= maxBackoffMillis >> (retry - 1)) {
+            backoff = initialBackoffMillis << (retry - 1);
+        }
+        return backoff - (long) (backoff * jitter * random);
+    }
+
+    /**
+     * Run a send, retrying it while it fails with a transient error.
+     *
+     * @param parent      sample result to add the attempts to
+     * @param label       label of the sub-results, to which " [attempt N]" is appended
+     * @param isTransient tells whether an error can be retried
+     * @param attempt     the send
+     * @throws Exception the error of the last attempt
+     */
+    public void run(SampleResult parent, String label, Predicate<Exception> isTransient, Attempt attempt) throws Exception {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            SampleResult subResult = null;
+            if (isEnabled()) {
+                subResult = new SampleResult();
+                subResult.setSampleLabel(label.concat(" [attempt ").concat(String.valueOf(attemptNumber)).concat("]"));
+                subResult.setDataType(SampleResult.TEXT);
+                subResult.sampleStart();
+            }
+            long start = System.nanoTime();
+            try {
+                attempt.run();
+                lastAttemptNanos = System.nanoTime() - start;
+                if (subResult != null) {
+                    subResult.sampleEnd();
+                    subResult.setResponseMessage("OK");
+                    subResult.setSuccessful(true);
+                    parent.addRawSubResult(subResult);
+                }
+                return;
+            } catch (Exception ex) {
+                lastAttemptNanos = System.nanoTime() - start;
+                boolean retry = attemptNumber < maxAttempts && isTransient.test(ex);
+                if (subResult != null) {
+                    subResult.sampleEnd();
+                    subResult.setResponseMessage(String.valueOf(ex.getMessage()));
+                    subResult.setResponseData(ex.toString(), "UTF-8");
+                    subResult.setSuccessful(false);
+                    parent.addRawSubResult(subResult);
+                }
+                if (!retry) {
+                    throw ex;
+                }
+                retries++;
+                long backoffStart = System.nanoTime();
+                try {
+                    Thread.sleep(backoffMillis(attemptNumber, ThreadLocalRandom.current().nextDouble()));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+                retryNanos += lastAttemptNanos + System.nanoTime() - backoffStart;
+            }
+        }
+    }
+
+    /**
+     * @return e.g. "Retries: 2 (max attempts: 5), retry time: 350 ms", or an empty string if no retry was made
+     */
+    public String describe() {
+        if (retries == 0) {
+            return "";
+        }
+        return "Retries: ".concat(String.valueOf(retries))
+            .concat(" (max attempts: ").concat(String.valueOf(maxAttempts)).concat("), retry time: ")
+            .concat(String.valueOf(retryNanos / 1000000)).concat(" ms");
+    }
+}
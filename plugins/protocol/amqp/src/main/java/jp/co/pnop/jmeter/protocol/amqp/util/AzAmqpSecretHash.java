@@ -0,0 +1,34 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes a secret (a shared access key or a connection string) for the keys of the cached
+ * clients, so that a changed secret creates a new client without keeping the secret in the key.
+ */
+public class AzAmqpSecretHash {
+
+    private AzAmqpSecretHash() {
+    }
+
+    /**
+     * @param secret the secret, may be null
+     * @return the SHA-256 of the secret in hex
+     */
+    public static String of(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest((secret == null ? "" : secret).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package jp.co.pnop.jmeter.protocol.amqp.harness;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.Sampler;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Drives samplers from a fixed number of threads, the way a JMeter thread group does,
+ * and reports messages per second and allocated bytes per message.
+ * <p>
+ * Every thread gets its own sampler, runs the warm-up samples and then waits for the
+ * others so that only the measured samples are timed. Like a JMeter thread, it calls
+ * threadStarted and threadFinished of samplers that are thread listeners. Allocation is read from the
+ * HotSpot per-thread counter, so it covers what the sampler thread allocates itself;
+ * work done on SDK threads is not included.
+ */
+public class AzAmqpLoadRunner {
+
+    public static final String PROP_MIN_MESSAGES_PER_SECOND = "amqp.harness.minMessagesPerSecond";
+    public static final String PROP_MAX_BYTES_PER_MESSAGE = "amqp.harness.maxAllocatedBytesPerMessage";
+    public static final String PROP_SAMPLES_PER_THREAD = "amqp.harness.samplesPerThread";
+    public static final String PROP_WARMUP_SAMPLES_PER_THREAD = "amqp.harness.warmupSamplesPerThread";
+
+    private final int concurrency;
+    private final int messagesPerSample;
+    private final int samplesPerThread;
+    private final int warmupSamplesPerThread;
+
+    public AzAmqpLoadRunner(int concurrency, int messagesPerSample) {
+        this(concurrency, messagesPerSample,
+            Integer.getInteger(PROP_SAMPLES_PER_THREAD, 20),
+            Integer.getInteger(PROP_WARMUP_SAMPLES_PER_THREAD, 3));
+    }
+
+    public AzAmqpLoadRunner(int concurrency, int messagesPerSample, int samplesPerThread, int warmupSamplesPerThread) {
+        this.concurrency = concurrency;
+        this.messagesPerSample = messagesPerSample;
+        this.samplesPerThread = samplesPerThread;
+        this.warmupSamplesPerThread = warmupSamplesPerThread;
+    }
+
+    /**
+     * JMeter reads jmeter.properties in SampleResult and elsewhere; an empty file is enough.
+     */
+    public static synchronized void initJMeter() throws IOException {
+        if (JMeterUtils.getJMeterProperties() != null) {
+            return;
+        }
+        File properties = File.createTempFile("jmeter", ".properties");
+        properties.deleteOnExit();
+        JMeterUtils.loadJMeterProperties(properties.getAbsolutePath());
+        JMeterUtils.initLocale();
+    }
+
+    public static double minMessagesPerSecond(double defaultValue) {
+        return Double.parseDouble(System.getProperty(PROP_MIN_MESSAGES_PER_SECOND, String.valueOf(defaultValue)));
+    }
+
+    public static long maxAllocatedBytesPerMessage(long defaultValue) {
+        return Long.getLong(PROP_MAX_BYTES_PER_MESSAGE, defaultValue);
+    }
+
+    public Result run(Supplier<Sampler> samplerFactory) throws InterruptedException {
+        final com.sun.management.ThreadMXBean threadBean
+            = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final CountDownLatch warmedUp = new CountDownLatch(concurrency);
+        final CountDownLatch go = new CountDownLatch(1);
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong allocatedBytes = new AtomicLong();
+        final AtomicReference<String> firstFailure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            final Sampler sampler = samplerFactory.get();
+            Thread thread = new Thread(() -> {
+                try {
+                    if (sampler instanceof ThreadListener) {
+                        ((ThreadListener) sampler).threadStarted();
+                    }
+                    for (int n = 0; n < warmupSamplesPerThread; n++) {
+                        sampler.sample(null);
+                    }
+                    warmedUp.countDown();
+                    go.await();
+
+                    long threadId = Thread.currentThread().getId();
+                    long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+                    for (int n = 0; n < samplesPerThread; n++) {
+                        SampleResult res = sampler.sample(null);
+                        if (res.isSuccessful()) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                            firstFailure.compareAndSet(null, res.getResponseMessage());
+                        }
+                    }
+                    allocatedBytes.addAndGet(threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (sampler instanceof ThreadListener) {
+                        ((ThreadListener) sampler).threadFinished();
+                    }
+                }
+            }, "load-runner-".concat(String.valueOf(i + 1)));
+            threads.add(thread);
+            thread.start();
+        }
+
+        warmedUp.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        return new Result(succeeded.get() * messagesPerSample, failed.get(), elapsedNanos, allocatedBytes.get(), firstFailure.get());
+    }
+
+    public static class Result {
+        private final long messages;
+        private final long failedSamples;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+        private final String firstFailure;
+
+        Result(long messages, long failedSamples, long elapsedNanos, long allocatedBytes, String firstFailure) {
+            this.messages = messages;
+            this.failedSamples = failedSamples;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.firstFailure = firstFailure;
+        }
+
+        public long getMessages() {
+            return messages;
+        }
+
+        public long getFailedSamples() {
+            return failedSamples;
+        }
+
+        public String getFirstFailure() {
+            return firstFailure;
+        }
+
+        public double getMessagesPerSecond() {
+            return messages * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        public long getAllocatedBytesPerMessage() {
+            return allocatedBytes / Math.max(1, messages);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d messages, %d failed samples, %.1f msgs/s, %d bytes allocated/msg",
+                messages, failedSamples, getMessagesPerSecond(), getAllocatedBytesPerMessage());
+        }
+    }
+}
@@ -0,0 +1,655 @@
+package jp.co.pnop.jmeter.protocol.amqp.harness;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedLong;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Outcome;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transaction.Coordinator;
+import org.apache.qpid.proton.amqp.transaction.Declare;
+import org.apache.qpid.proton.amqp.transaction.Declared;
+import org.apache.qpid.proton.amqp.transaction.Discharge;
+import org.apache.qpid.proton.amqp.transaction.TransactionalState;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.amqp.transport.ReceiverSettleMode;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Collector;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sasl;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local AMQP 1.0 stand-in for Service Bus and Event Hubs, used by the throughput tests.
+ * <p>
+ * It accepts every SASL mechanism and every CBS put-token request, accepts and counts
+ * every message sent to any other address, and answers Event Hubs management READ
+ * requests so that partition ids can be listed. Nothing is stored or delivered.
+ * <p>
+ * For the Service Bus samplers it also declares and discharges transactions on the
+ * coordinator link, answers the schedule-message and cancel-scheduled-message requests
+ * on "{entity}/$management" with made-up sequence numbers.
+ * <p>
+ * The broker listens with TLS on a free port of "localhost", with a self-signed certificate
+ * for "localhost". Every connection is served by its own thread. Use "localhost" as the
+ * namespace name and {@link #getEndpoint()} as the custom endpoint of the clients.
+ * <p>
+ * The Azure SDKs only take the trust store of the JVM, so {@link #start()} points it at the
+ * matching trust store and {@link #stop()} restores the previous one. Start the broker before
+ * anything in the JVM initialises the default SSLContext.
+ */
+public class AzAmqpTestBroker implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AzAmqpTestBroker.class);
+
+    public static final String HOST = "localhost";
+
+    public static final String CBS_ADDRESS = "$cbs";
+    public static final String MANAGEMENT_ADDRESS = "$management";
+    public static final String SCHEDULE_MESSAGE_OPERATION = "com.microsoft:schedule-message";
+    public static final String CANCEL_SCHEDULED_MESSAGE_OPERATION = "com.microsoft:cancel-scheduled-message";
+
+    private static final String ENTITY_MANAGEMENT_SUFFIX = "/".concat(MANAGEMENT_ADDRESS);
+    private static final String SEQUENCE_NUMBERS = "sequence-numbers";
+
+    private static final String KEY_STORE = "/harness/broker.jks";
+    private static final String TRUST_STORE = "/harness/truststore.jks";
+    private static final String STORE_PASSWORD = "changeit";
+    private static final String TRUST_STORE_PROPERTY = "javax.net.ssl.trustStore";
+    private static final String TRUST_STORE_PASSWORD_PROPERTY = "javax.net.ssl.trustStorePassword";
+
+    private static final int LINK_CREDIT = 1000;
+    private static final long MAX_MESSAGE_SIZE = 1024 * 1024;
+    private static final int MAX_FRAME_SIZE = 256 * 1024;
+    private static final int IDLE_TICK_MILLIS = 1000;
+    private static final byte[] NO_TAG = new byte[0];
+    // message format of the batches of the Azure SDKs: one Data section per message
+    private static final int BATCH_MESSAGE_FORMAT = 0x80013700;
+
+    private final String[] partitionIds;
+    private final Map<String, AtomicLong> messageCounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> byteCounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> managementRequestCounts = new ConcurrentHashMap<>();
+    private final List<Long> scheduledSequenceNumbers = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> cancelledSequenceNumbers = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong nextSequenceNumber = new AtomicLong();
+    private final AtomicLong nextTransactionId = new AtomicLong();
+    private final AtomicLong committedTransactions = new AtomicLong();
+    private final AtomicLong rolledBackTransactions = new AtomicLong();
+
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private BrokerHandler handler;
+    private String previousTrustStore;
+    private String previousTrustStorePassword;
+
+    public AzAmqpTestBroker() {
+        this(4);
+    }
+
+    public AzAmqpTestBroker(int partitionCount) {
+        partitionIds = new String[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitionIds[i] = String.valueOf(i);
+        }
+    }
+
+    public static String getNamespaceName() {
+        return HOST;
+    }
+
+    public synchronized int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the address to set as the custom endpoint of the clients, e.g. "https://localhost:40123"
+     */
+    public String getEndpoint() {
+        return "https://".concat(HOST).concat(":").concat(String.valueOf(getPort()));
+    }
+
+    public String[] getPartitionIds() {
+        return partitionIds.clone();
+    }
+
+    /**
+     * Messages accepted on the given address, counting each message of a batch. Event Hubs partition senders use
+     * "{event hub}/Partitions/{id}"; see {@link #getMessageCountWithPrefix(String)}.
+     */
+    public long getMessageCount(String address) {
+        AtomicLong count = messageCounts.get(address);
+        return count == null ? 0 : count.get();
+    }
+
+    public long getMessageCountWithPrefix(String prefix) {
+        long total = 0;
+        for (Map.Entry<String, AtomicLong> entry : messageCounts.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                total += entry.getValue().get();
+            }
+        }
+        return total;
+    }
+
+    public long getByteCount(String address) {
+        AtomicLong count = byteCounts.get(address);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @param operation e.g. {@link #SCHEDULE_MESSAGE_OPERATION}
+     * @return the Service Bus management requests of the operation, on any entity
+     */
+    public long getManagementRequestCount(String operation) {
+        AtomicLong count = managementRequestCounts.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return the sequence numbers returned for the scheduled messages, in the order they were returned
+     */
+    public List<Long> getScheduledSequenceNumbers() {
+        synchronized (scheduledSequenceNumbers) {
+            return new ArrayList<>(scheduledSequenceNumbers);
+        }
+    }
+
+    /**
+     * @return the sequence numbers of the cancel requests, in the order they were received
+     */
+    public List<Long> getCancelledSequenceNumbers() {
+        synchronized (cancelledSequenceNumbers) {
+            return new ArrayList<>(cancelledSequenceNumbers);
+        }
+    }
+
+    public long getCommittedTransactions() {
+        return committedTransactions.get();
+    }
+
+    public long getRolledBackTransactions() {
+        return rolledBackTransactions.get();
+    }
+
+    public void reset() {
+        messageCounts.clear();
+        byteCounts.clear();
+        managementRequestCounts.clear();
+        scheduledSequenceNumbers.clear();
+        cancelledSequenceNumbers.clear();
+        committedTransactions.set(0);
+        rolledBackTransactions.set(0);
+    }
+
+    public synchronized void start() throws Exception {
+        if (serverSocket != null) {
+            return;
+        }
+        useTrustStore();
+        serverSocket = createSslContext().getServerSocketFactory()
+            .createServerSocket(0, 50, InetAddress.getByName(HOST));
+        handler = new BrokerHandler();
+
+        acceptThread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    sockets.add(socket);
+                    Thread worker = new Thread(() -> serve(socket), "amqp-test-broker-".concat(String.valueOf(socket.getPort())));
+                    worker.setDaemon(true);
+                    worker.start();
+                } catch (IOException ex) {
+                    if (!serverSocket.isClosed()) {
+                        log.warn("Failed to accept connection", ex);
+                    }
+                }
+            }
+        }, "amqp-test-broker");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log.info("AMQP test broker listening on {}:{}", HOST, serverSocket.getLocalPort());
+    }
+
+    public synchronized void stop() throws InterruptedException {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            log.debug("Failed to close server socket", ex);
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                log.debug("Failed to close socket", ex);
+            }
+        }
+        sockets.clear();
+        acceptThread.join(TimeUnit.SECONDS.toMillis(10));
+        serverSocket = null;
+        acceptThread = null;
+        restoreProperty(TRUST_STORE_PROPERTY, previousTrustStore);
+        restoreProperty(TRUST_STORE_PASSWORD_PROPERTY, previousTrustStorePassword);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        stop();
+    }
+
+    /**
+     * Drive one connection: TLS is done by the socket, SASL and AMQP by a Proton transport.
+     * The broker only ever reacts to frames, so a blocking read with a short timeout for
+     * idle ticks is all the I/O it needs.
+     */
+    private void serve(Socket socket) {
+        Transport transport = Proton.transport();
+        transport.setMaxFrameSize(MAX_FRAME_SIZE);
+        Sasl sasl = transport.sasl();
+        sasl.server();
+        sasl.setMechanisms("ANONYMOUS", "MSSBCBS", "PLAIN");
+        sasl.done(Sasl.SaslOutcome.PN_SASL_OK);
+
+        Connection connection = Proton.connection();
+        Collector collector = Proton.collector();
+        connection.collect(collector);
+        transport.bind(connection);
+
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(IDLE_TICK_MILLIS);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            while (!socket.isClosed()) {
+                int read;
+                try {
+                    read = in.read(buffer);
+                } catch (SocketTimeoutException ex) {
+                    transport.tick(System.currentTimeMillis());
+                    flush(transport, out, buffer);
+                    continue;
+                }
+                if (read < 0) {
+                    transport.close_tail();
+                    break;
+                }
+                int offset = 0;
+                while (offset < read) {
+                    int capacity = transport.capacity();
+                    if (capacity <= 0) {
+                        break;
+                    }
+                    int length = Math.min(capacity, read - offset);
+                    transport.tail().put(buffer, offset, length);
+                    transport.process();
+                    offset += length;
+                    dispatch(collector);
+                }
+                flush(transport, out, buffer);
+            }
+        } catch (IOException ex) {
+            if (!socket.isClosed()) {
+                log.debug("Connection closed", ex);
+            }
+        } finally {
+            sockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                log.debug("Failed to close socket", ex);
+            }
+        }
+    }
+
+    private void dispatch(Collector collector) {
+        Event event;
+        while ((event = collector.peek()) != null) {
+            event.dispatch(handler);
+            collector.pop();
+        }
+    }
+
+    private static void flush(Transport transport, OutputStream out, byte[] buffer) throws IOException {
+        int pending;
+        while ((pending = transport.pending()) > 0) {
+            int length = Math.min(pending, buffer.length);
+            transport.head().get(buffer, 0, length);
+            transport.pop(length);
+            out.write(buffer, 0, length);
+        }
+        out.flush();
+    }
+
+    private void useTrustStore() throws IOException {
+        previousTrustStore = System.getProperty(TRUST_STORE_PROPERTY);
+        previousTrustStorePassword = System.getProperty(TRUST_STORE_PASSWORD_PROPERTY);
+        File trustStore = File.createTempFile("amqp-test-broker", ".jks");
+        trustStore.deleteOnExit();
+        try (InputStream in = AzAmqpTestBroker.class.getResourceAsStream(TRUST_STORE)) {
+            Files.copy(in, trustStore.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.setProperty(TRUST_STORE_PROPERTY, trustStore.getAbsolutePath());
+        System.setProperty(TRUST_STORE_PASSWORD_PROPERTY, STORE_PASSWORD);
+    }
+
+    private static void restoreProperty(String name, String value) {
+        if (value == null) {
+            System.clearProperty(name);
+        } else {
+            System.setProperty(name, value);
+        }
+    }
+
+    private static int countMessages(Delivery delivery, byte[] buffer, int length) {
+        if (delivery.getMessageFormat() != BATCH_MESSAGE_FORMAT) {
+            return 1;
+        }
+        DecoderImpl decoder = new DecoderImpl();
+        AMQPDefinedTypes.registerAllTypes(decoder, new EncoderImpl(decoder));
+        ByteBuffer sections = ByteBuffer.wrap(buffer, 0, length);
+        decoder.setByteBuffer(sections);
+        int count = 0;
+        while (sections.hasRemaining()) {
+            if (decoder.readObject() instanceof Data) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static SSLContext createSslContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = AzAmqpTestBroker.class.getResourceAsStream(KEY_STORE)) {
+            keyStore.load(in, STORE_PASSWORD.toCharArray());
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, STORE_PASSWORD.toCharArray());
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(kmf.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private class BrokerHandler extends BaseHandler {
+
+        @Override
+        public void onConnectionRemoteOpen(Event event) {
+            Connection connection = event.getConnection();
+            connection.setContainer("amqp-test-broker");
+            connection.open();
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            event.getConnection().close();
+        }
+
+        @Override
+        public void onSessionRemoteOpen(Event event) {
+            Session session = event.getSession();
+            if (session.getLocalState() == EndpointState.UNINITIALIZED) {
+                session.open();
+            }
+        }
+
+        @Override
+        public void onSessionRemoteClose(Event event) {
+            event.getSession().close();
+        }
+
+        @Override
+        public void onLinkRemoteOpen(Event event) {
+            Link link = event.getLink();
+            if (link.getLocalState() != EndpointState.UNINITIALIZED) {
+                return;
+            }
+            link.setSource(link.getRemoteSource());
+            link.setTarget(link.getRemoteTarget());
+            link.setSenderSettleMode(link.getRemoteSenderSettleMode() == null
+                ? SenderSettleMode.UNSETTLED : link.getRemoteSenderSettleMode());
+            link.setReceiverSettleMode(ReceiverSettleMode.FIRST);
+            link.setMaxMessageSize(UnsignedLong.valueOf(MAX_MESSAGE_SIZE));
+            link.open();
+            if (link instanceof Receiver) {
+                ((Receiver) link).flow(LINK_CREDIT);
+            }
+        }
+
+        @Override
+        public void onLinkRemoteClose(Event event) {
+            event.getLink().close();
+        }
+
+        @Override
+        public void onLinkRemoteDetach(Event event) {
+            event.getLink().detach();
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            if (!(delivery.getLink() instanceof Receiver)) {
+                // Our own replies being settled by the client.
+                if (delivery.remotelySettled()) {
+                    delivery.settle();
+                }
+                return;
+            }
+            if (!delivery.isReadable() || delivery.isPartial()) {
+                return;
+            }
+
+            Receiver receiver = (Receiver) delivery.getLink();
+            byte[] buffer = new byte[delivery.available()];
+            int length = receiver.recv(buffer, 0, buffer.length);
+            receiver.advance();
+
+            DeliveryState outcome = Accepted.getInstance();
+            if (receiver.getTarget() instanceof Coordinator) {
+                Message request = Proton.message();
+                request.decode(buffer, 0, length);
+                outcome = coordinate(((AmqpValue) request.getBody()).getValue());
+            } else {
+                String address = ((Target) receiver.getTarget()).getAddress();
+                if (CBS_ADDRESS.equals(address) || MANAGEMENT_ADDRESS.equals(address) || address.endsWith(ENTITY_MANAGEMENT_SUFFIX)) {
+                    Message request = Proton.message();
+                    request.decode(buffer, 0, length);
+                    reply(receiver.getSession().getConnection(), request, address);
+                } else {
+                    messageCounts.computeIfAbsent(address, k -> new AtomicLong()).addAndGet(countMessages(delivery, buffer, length));
+                    byteCounts.computeIfAbsent(address, k -> new AtomicLong()).addAndGet(length);
+                }
+            }
+
+            if (delivery.getRemoteState() instanceof TransactionalState) {
+                // a send within a transaction is answered within the same transaction
+                TransactionalState state = new TransactionalState();
+                state.setTxnId(((TransactionalState) delivery.getRemoteState()).getTxnId());
+                state.setOutcome((Outcome) outcome);
+                outcome = state;
+            }
+            delivery.disposition(outcome);
+            delivery.settle();
+            if (receiver.getCredit() < LINK_CREDIT / 2) {
+                receiver.flow(LINK_CREDIT - receiver.getCredit());
+            }
+        }
+
+        /**
+         * Declare or discharge a transaction. Sends within a transaction are counted when they
+         * arrive, whether the transaction is committed or rolled back.
+         */
+        private DeliveryState coordinate(Object request) {
+            if (request instanceof Declare) {
+                Declared declared = new Declared();
+                declared.setTxnId(new Binary(ByteBuffer.allocate(Long.BYTES).putLong(nextTransactionId.incrementAndGet()).array()));
+                return declared;
+            }
+            if (Boolean.TRUE.equals(((Discharge) request).getFail())) {
+                rolledBackTransactions.incrementAndGet();
+            } else {
+                committedTransactions.incrementAndGet();
+            }
+            return Accepted.getInstance();
+        }
+
+        /**
+         * Answer a request-response call on the link the client opened for its reply-to address.
+         */
+        private void reply(Connection connection, Message request, String address) {
+            Sender replyLink = findReplyLink(connection, request.getReplyTo());
+            if (replyLink == null) {
+                log.warn("No reply link for {} request to {}", request.getReplyTo(), address);
+                return;
+            }
+
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("status-code", 200);
+            properties.put("status-description", "OK");
+
+            Message response = Proton.message();
+            response.setCorrelationId(request.getMessageId());
+            response.setApplicationProperties(new ApplicationProperties(properties));
+            if (MANAGEMENT_ADDRESS.equals(address)) {
+                response.setBody(managementBody(request));
+            } else if (address.endsWith(ENTITY_MANAGEMENT_SUFFIX)) {
+                response.setBody(entityManagementBody(request));
+            }
+
+            byte[] encoded = new byte[MAX_FRAME_SIZE];
+            int length = response.encode(encoded, 0, encoded.length);
+            Delivery delivery = replyLink.delivery(NO_TAG);
+            replyLink.send(encoded, 0, length);
+            replyLink.advance();
+            if (replyLink.getSenderSettleMode() == SenderSettleMode.SETTLED) {
+                delivery.settle();
+            }
+        }
+
+        private Sender findReplyLink(Connection connection, String replyTo) {
+            Link link = connection.linkHead(null, null);
+            while (link != null) {
+                if (link instanceof Sender && link.getRemoteTarget() instanceof Target
+                    && replyTo != null && replyTo.equals(((Target) link.getRemoteTarget()).getAddress())) {
+                    return (Sender) link;
+                }
+                link = link.next(null, null);
+            }
+            return null;
+        }
+
+        /**
+         * Body of a Service Bus management request. Scheduled messages get the next sequence numbers;
+         * cancelled sequence numbers are recorded. Other operations get an empty body.
+         */
+        private Section entityManagementBody(Message request) {
+            Map<?, ?> requestProperties = request.getApplicationProperties() == null
+                ? new HashMap<>() : request.getApplicationProperties().getValue();
+            String operation = String.valueOf(requestProperties.get("operation"));
+            managementRequestCounts.computeIfAbsent(operation, k -> new AtomicLong()).incrementAndGet();
+            Map<?, ?> requestBody = request.getBody() instanceof AmqpValue && ((AmqpValue) request.getBody()).getValue() instanceof Map
+                ? (Map<?, ?>) ((AmqpValue) request.getBody()).getValue() : new HashMap<>();
+
+            Map<String, Object> body = new HashMap<>();
+            if (SCHEDULE_MESSAGE_OPERATION.equals(operation)) {
+                List<?> messages = (List<?>) requestBody.get("messages");
+                // boxed, as the encoder only writes arrays of objects; they are decoded as long[]
+                Long[] sequenceNumbers = new Long[messages == null ? 0 : messages.size()];
+                for (int i = 0; i < sequenceNumbers.length; i++) {
+                    sequenceNumbers[i] = nextSequenceNumber.incrementAndGet();
+                    scheduledSequenceNumbers.add(sequenceNumbers[i]);
+                }
+                body.put(SEQUENCE_NUMBERS, sequenceNumbers);
+            } else if (CANCEL_SCHEDULED_MESSAGE_OPERATION.equals(operation)) {
+                Object sequenceNumbers = requestBody.get(SEQUENCE_NUMBERS);
+                if (sequenceNumbers instanceof long[]) {
+                    for (long sequenceNumber : (long[]) sequenceNumbers) {
+                        cancelledSequenceNumbers.add(sequenceNumber);
+                    }
+                } else if (sequenceNumbers instanceof Object[]) {
+                    for (Object sequenceNumber : Arrays.asList((Object[]) sequenceNumbers)) {
+                        cancelledSequenceNumbers.add(((Number) sequenceNumber).longValue());
+                    }
+                }
+            }
+            return new AmqpValue(body);
+        }
+
+        /**
+         * Body of a management READ for an Event Hub or one of its partitions.
+         */
+        private Section managementBody(Message request) {
+            Map<?, ?> requestProperties = request.getApplicationProperties() == null
+                ? new HashMap<>() : request.getApplicationProperties().getValue();
+            String name = String.valueOf(requestProperties.get("name"));
+            Object partition = requestProperties.get("partition");
+
+            Map<Symbol, Object> body = new HashMap<>();
+            body.put(Symbol.valueOf("name"), name);
+            if (partition == null) {
+                body.put(Symbol.valueOf("created_at"), new Date(0));
+                body.put(Symbol.valueOf("partition_count"), partitionIds.length);
+                body.put(Symbol.valueOf("partition_ids"), partitionIds.clone());
+            } else {
+                body.put(Symbol.valueOf("partition"), String.valueOf(partition));
+                body.put(Symbol.valueOf("begin_sequence_number"), 0L);
+                body.put(Symbol.valueOf("last_enqueued_sequence_number"), -1L);
+                body.put(Symbol.valueOf("last_enqueued_offset"), "-1");
+                body.put(Symbol.valueOf("last_enqueued_time_utc"), new Date(0));
+                body.put(Symbol.valueOf("is_partition_empty"), true);
+            }
+            return new AmqpValue(body);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeoutException;
+
+import com.azure.core.amqp.exception.AmqpErrorCondition;
+import com.azure.core.amqp.exception.AmqpException;
+
+import org.junit.jupiter.api.Test;
+
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+
+public class AzAmqpErrorClassifierTest {
+
+    private static AmqpException amqpException(AmqpErrorCondition condition) {
+        return new AmqpException(true, condition, condition.getErrorCondition(), null);
+    }
+
+    @Test
+    public void classifiesByErrorCondition() {
+        assertEquals(AzUtilErrorCounters.SERVER_BUSY, AzAmqpErrorClassifier.classify(amqpException(AmqpErrorCondition.SERVER_BUSY_ERROR)));
+        assertEquals(AzUtilErrorCounters.QUOTA_EXCEEDED, AzAmqpErrorClassifier.classify(amqpException(AmqpErrorCondition.RESOURCE_LIMIT_EXCEEDED)));
+        assertEquals(AzUtilErrorCounters.TIMEOUT, AzAmqpErrorClassifier.classify(amqpException(AmqpErrorCondition.TIMEOUT_ERROR)));
+        assertEquals(AzUtilErrorCounters.UNAUTHORIZED, AzAmqpErrorClassifier.classify(amqpException(AmqpErrorCondition.UNAUTHORIZED_ACCESS)));
+        assertEquals(AzUtilErrorCounters.MESSAGE_SIZE_EXCEEDED, AzAmqpErrorClassifier.classify(amqpException(AmqpErrorCondition.LINK_PAYLOAD_SIZE_EXCEEDED)));
+    }
+
+    @Test
+    public void findsTheConditionOnTheCauseChain() {
+        RuntimeException wrapped = new RuntimeException("send failed", amqpException(AmqpErrorCondition.SERVER_BUSY_ERROR));
+        assertEquals(AzUtilErrorCounters.SERVER_BUSY, AzAmqpErrorClassifier.classify(wrapped));
+    }
+
+    @Test
+    public void fallsBackToTheCause() {
+        assertEquals(AzUtilErrorCounters.TIMEOUT, AzAmqpErrorClassifier.classify(new IllegalStateException(new TimeoutException())));
+        assertEquals(AzUtilErrorCounters.CONNECTION, AzAmqpErrorClassifier.classify(new RuntimeException(new UnknownHostException("example"))));
+        assertEquals(AzUtilErrorCounters.CLIENT, AzAmqpErrorClassifier.classify(new IllegalArgumentException("bad value")));
+        assertEquals(AzUtilErrorCounters.OTHER, AzAmqpErrorClassifier.classify(new RuntimeException("unknown")));
+        assertEquals(AzUtilErrorCounters.OTHER, AzAmqpErrorClassifier.classify(amqpException(AmqpErrorCondition.INTERNAL_ERROR)));
+    }
+}
@@ -0,0 +1,88 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+
+public class AzAmqpOpenModelSchedulerTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void serviceTimeIsTheDelayOfTheSend() throws Exception {
+        AzAmqpOpenModelScheduler scheduler = new AzAmqpOpenModelScheduler(50, 400, 5000);
+        AzAmqpOpenModelScheduler.Summary summary = scheduler.run(() -> Mono.delay(Duration.ofMillis(30)).then());
+
+        assertEquals(20, summary.getTotal());
+        assertEquals(20, summary.getSucceeded());
+        assertEquals(0, summary.getFailed());
+        assertEquals(0, summary.getTimedOut());
+        assertNull(summary.getFirstError());
+        assertTrue(summary.getServicePercentile(50) >= 30 * MILLIS, summary.toString());
+        assertTrue(summary.getServicePercentile(50) < 200 * MILLIS, summary.toString());
+        assertTrue(summary.getCorrectedPercentile(50) >= summary.getServicePercentile(50) * 999 / 1000, summary.toString());
+        assertTrue(summary.getQueueingPercentile(50) < 30 * MILLIS, summary.toString());
+
+        AtomicInteger latencies = new AtomicInteger();
+        summary.forEachCorrectedLatency(latency -> {
+            assertTrue(latency >= 30 * MILLIS, String.valueOf(latency));
+            latencies.incrementAndGet();
+        });
+        assertEquals(20, latencies.get());
+    }
+
+    @Test
+    public void aSlowDispatchIsQueueingAndCorrectedLatency() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AzAmqpOpenModelScheduler scheduler = new AzAmqpOpenModelScheduler(100, 100, 5000);
+        AzAmqpOpenModelScheduler.Summary summary = scheduler.run(() -> {
+            if (calls.incrementAndGet() == 1) {
+                // holds up the sends scheduled in the next 80 ms
+                try {
+                    Thread.sleep(80);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Mono.empty();
+        });
+
+        assertEquals(10, summary.getTotal());
+        assertEquals(10, summary.getSucceeded());
+        assertTrue(summary.getQueueingPercentile(100) >= 65 * MILLIS, summary.toString());
+        assertTrue(summary.getServicePercentile(50) < 65 * MILLIS, summary.toString());
+        assertTrue(summary.getCorrectedPercentile(100) >= 80 * MILLIS, summary.toString());
+    }
+
+    @Test
+    public void countsFailuresAndTimeoutsOnce() throws Exception {
+        IllegalStateException busy = new IllegalStateException("server busy");
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AzAmqpOpenModelScheduler scheduler = new AzAmqpOpenModelScheduler(100, 100, 100);
+        AzAmqpOpenModelScheduler.Summary summary = scheduler.run(
+            () -> calls.incrementAndGet() % 2 == 0 ? Mono.error(busy) : Mono.never(),
+            error -> errors.incrementAndGet());
+
+        assertEquals(10, summary.getTotal());
+        assertEquals(0, summary.getSucceeded());
+        assertEquals(5, summary.getFailed());
+        assertEquals(5, summary.getTimedOut());
+        assertEquals(5, errors.get());
+        assertSame(busy, summary.getFirstError());
+        // timed out sends are counted up to the end of the drain
+        assertTrue(summary.getCorrectedPercentile(100) >= 100 * MILLIS, summary.toString());
+
+        AtomicInteger latencies = new AtomicInteger();
+        summary.forEachCorrectedLatency(latency -> latencies.incrementAndGet());
+        assertEquals(10, latencies.get());
+    }
+}
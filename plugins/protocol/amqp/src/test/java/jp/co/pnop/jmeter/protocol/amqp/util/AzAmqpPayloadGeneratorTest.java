@@ -0,0 +1,105 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AzAmqpPayloadGeneratorTest {
+
+    @Test
+    public void fixedAndUniformSizes() {
+        AzAmqpPayloadGenerator fixed = AzAmqpPayloadGenerator.get("size=fixed(512)");
+        assertEquals(512, fixed.next().length);
+        assertEquals(512, AzAmqpPayloadGenerator.get("size=512").next().length);
+
+        AzAmqpPayloadGenerator uniform = AzAmqpPayloadGenerator.get("size=uniform(100,200)");
+        for (int i = 0; i < 1000; i++) {
+            int length = uniform.next().length;
+            assertTrue(length >= 100 && length <= 200, String.valueOf(length));
+        }
+    }
+
+    @Test
+    public void lognormalMedian() {
+        AzAmqpPayloadGenerator generator = AzAmqpPayloadGenerator.get("size=lognormal(1000,0.5)");
+        int below = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (generator.next().length < 1000) {
+                below++;
+            }
+        }
+        assertTrue(below > 4500 && below < 5500, String.valueOf(below));
+    }
+
+    @Test
+    public void sameSeedSameBodies() {
+        // generators keep their state per spec, so the two specs below start from the same seed
+        byte[] first = AzAmqpPayloadGenerator.get("size=64;seed=7").next();
+        byte[] second = AzAmqpPayloadGenerator.get("size=64;seed=7;").next();
+        assertArrayEquals(first, second);
+
+        AzAmqpPayloadGenerator generator = AzAmqpPayloadGenerator.get("size=64;seed=8");
+        assertNotEquals(new String(generator.next(), StandardCharsets.US_ASCII), new String(generator.next(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void jsonFields() throws Exception {
+        AzAmqpPayloadGenerator generator = AzAmqpPayloadGenerator.get(
+            "size=400;fields=id:seq,uuid:uuid,name:str(6),count:int(1,3),ratio:double(0,1),ok:bool,at:time,kind:choice(a|b \"c\")"
+        );
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] body = generator.next();
+        assertEquals(400, body.length);
+        JsonNode json = mapper.readTree(body);
+        assertTrue(json.get("id").asText().endsWith("-0"));
+        assertEquals(36, json.get("uuid").asText().length());
+        assertEquals(6, json.get("name").asText().length());
+        assertTrue(json.get("count").asInt() >= 1 && json.get("count").asInt() <= 3);
+        assertTrue(json.get("ok").isBoolean());
+        assertTrue(json.get("kind").asText().equals("a") || json.get("kind").asText().equals("b \"c\""));
+        assertTrue(mapper.readTree(generator.next()).get("id").asText().endsWith("-1"));
+
+        JsonNode unpadded = mapper.readTree(AzAmqpPayloadGenerator.get("fields=id:seq").next());
+        assertEquals(1, unpadded.size());
+    }
+
+    @Test
+    public void seqIsUniqueAcrossThreads() throws Exception {
+        // threads outside JMeter all have thread number 0, like the first thread of every thread group
+        AzAmqpPayloadGenerator generator = AzAmqpPayloadGenerator.get("fields=id:seq;seed=3");
+        ObjectMapper mapper = new ObjectMapper();
+        String[] ids = new String[2];
+        for (int i = 0; i < ids.length; i++) {
+            final int index = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    ids[index] = mapper.readTree(generator.next()).get("id").asText();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        assertTrue(ids[0].endsWith("-0") && ids[1].endsWith("-0"), String.join(",", ids));
+        assertNotEquals(ids[0], ids[1]);
+    }
+
+    @Test
+    public void invalidSpec() {
+        assertThrows(IllegalArgumentException.class, () -> AzAmqpPayloadGenerator.get("seed=1"));
+        assertThrows(IllegalArgumentException.class, () -> AzAmqpPayloadGenerator.get("size=normal(1,2)"));
+        assertThrows(IllegalArgumentException.class, () -> AzAmqpPayloadGenerator.get("fields=id:date"));
+    }
+}
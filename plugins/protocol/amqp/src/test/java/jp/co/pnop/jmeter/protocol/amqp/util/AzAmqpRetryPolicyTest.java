@@ -0,0 +1,60 @@
+package jp.co.pnop.jmeter.protocol.amqp.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.jupiter.api.Test;
+
+public class AzAmqpRetryPolicyTest {
+
+    @Test
+    public void exponentialBackoffWithCapAndJitter() {
+        AzAmqpRetryPolicy policy = new AzAmqpRetryPolicy(10, 100, 1000, 0.5);
+        assertEquals(100, policy.backoffMillis(1, 0));
+        assertEquals(200, policy.backoffMillis(2, 0));
+        assertEquals(400, policy.backoffMillis(3, 0));
+        assertEquals(1000, policy.backoffMillis(5, 0));
+        assertEquals(1000, policy.backoffMillis(100, 0));
+        assertEquals(500, policy.backoffMillis(100, 1));
+        assertEquals(50, policy.backoffMillis(1, 1));
+    }
+
+    @Test
+    public void retriesTransientErrorsAsSubResults() throws Exception {
+        AzAmqpRetryPolicy policy = new AzAmqpRetryPolicy(5, 1, 1, 0);
+        SampleResult res = new SampleResult();
+        AtomicInteger calls = new AtomicInteger();
+        policy.run(res, "send", ex -> ex instanceof IllegalStateException, () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new IllegalStateException("server busy");
+            }
+        });
+
+        assertEquals(3, calls.get());
+        assertEquals(2, policy.getRetries());
+        assertEquals(3, res.getSubResults().length);
+        assertTrue(!res.getSubResults()[1].isSuccessful());
+        assertTrue(res.getSubResults()[2].isSuccessful());
+        assertTrue(policy.getRetryMicros() >= 2000, String.valueOf(policy.getRetryMicros()));
+    }
+
+    @Test
+    public void stopsAtMaxAttemptsAndOnPermanentErrors() {
+        AzAmqpRetryPolicy policy = new AzAmqpRetryPolicy(2, 0, 0, 0);
+        SampleResult res = new SampleResult();
+        IllegalStateException busy = new IllegalStateException("server busy");
+        assertSame(busy, assertThrows(IllegalStateException.class,
+            () -> policy.run(res, "send", ex -> true, () -> { throw busy; })));
+        assertEquals(2, res.getSubResults().length);
+
+        AzAmqpRetryPolicy permanent = new AzAmqpRetryPolicy(5, 0, 0, 0);
+        assertThrows(IllegalArgumentException.class,
+            () -> permanent.run(new SampleResult(), "send", ex -> ex instanceof IllegalStateException, () -> { throw new IllegalArgumentException(); }));
+        assertEquals(0, permanent.getRetries());
+    }
+}
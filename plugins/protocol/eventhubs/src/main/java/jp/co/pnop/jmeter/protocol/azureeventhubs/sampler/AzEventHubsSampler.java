@@ -17,17 +17,24 @@
 
 package jp.co.pnop.jmeter.protocol.azureeventhubs.sampler;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 //import java.util.HashMap;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
@@ -37,18 +44,45 @@ import org.apache.jmeter.testelement.property.StringProperty;
 import org.apache.jmeter.testelement.property.TestElementProperty;
 import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.JMeterUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.azure.messaging.eventhubs.*;
 import com.azure.messaging.eventhubs.models.CreateBatchOptions;
+import com.azure.messaging.eventhubs.models.SendOptions;
 import com.azure.core.amqp.exception.*;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import jp.co.pnop.jmeter.protocol.aad.config.AzAdCredential;
 import jp.co.pnop.jmeter.protocol.aad.config.AzAdCredential.AzAdCredentialComponentImpl;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpDispatchParams;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpRetryParams;
 import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
 import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpErrorClassifier;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpFeederMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpOpenModelScheduler;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpMessageEncoder;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpRetryPolicy;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpSecretHash;
+import jp.co.pnop.jmeter.protocol.azureeventhubs.util.AzEventHubsBufferedProducer;
+import jp.co.pnop.jmeter.protocol.azureeventhubs.util.AzEventHubsPartitionSelector;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompressedBody;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+import jp.co.pnop.jmeter.util.metrics.AzUtilMetrics;
+import jp.co.pnop.jmeter.util.metrics.AzUtilWarmup;
+import jp.co.pnop.jmeter.util.throughput.AzUtilBlockingExecutor;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinder;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinderParams;
 
 /**
  * Azure Event Hubs Sampler (non-Bean version)
@@ -63,7 +97,7 @@ import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
  * However, access to class fields must be synchronized.
  *
  */
-public class AzEventHubsSampler extends AbstractSampler implements TestStateListener {
+public class AzEventHubsSampler extends AbstractSampler implements TestStateListener, ThreadListener {
 
     private static final long serialVersionUID = 1L;
     private static final Logger log = LoggerFactory.getLogger(AzEventHubsSampler.class);
@@ -83,6 +117,11 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
     public static final String PARTITION_TYPE = "partitionType";
     public static final String PARTITION_VALUE = "partitionValue";
     public static final String MESSAGES = "messages";
+    public static final String PRODUCER_TYPE = "producerType";
+    public static final String MAX_WAIT_TIME = "maxWaitTime";
+    public static final String MAX_EVENT_BUFFER_LENGTH_PER_PARTITION = "maxEventBufferLengthPerPartition";
+    public static final String MAX_CONCURRENT_SENDS = "maxConcurrentSends";
+    public static final String CONCURRENT_SENDS = "concurrentSends";
 
     public static final String AUTHTYPE_SAS = "Shared access signature";
     public static final String AUTHTYPE_AAD = "Azure AD credential";
@@ -90,9 +129,30 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
     public static final String PARTITION_TYPE_NOT_SPECIFIED = "Not specified";
     public static final String PARTITION_TYPE_ID = "ID";
     public static final String PARTITION_TYPE_KEY = "Key";
+    public static final String PARTITION_TYPE_ROUND_ROBIN = "Round-robin";
+    public static final String PARTITION_TYPE_KEY_HASH = "Hash of message key";
+    public static final String PARTITION_TYPE_ZIPF = "Weighted (Zipf)";
+    public static final String PARTITION_TYPE_ENGINE = "Engine-assigned";
+
+    public static final String PRODUCER_TYPE_BATCH = "Batch (createBatch and send)";
+    public static final String PRODUCER_TYPE_BUFFERED = "Buffered (auto-batching)";
+
+    // how long a sample of the buffered producer waits for the send results after max wait time
+    private static final long BUFFERED_SEND_TIMEOUT_MILLIS = 60000;
+    private static final String AAD_SCOPE = "https://eventhubs.azure.net/.default";
+    private static final String JMPROPS_CUSTOM_ENDPOINT = "azure_eventhubs.custom_endpoint";
 
     private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
 
+    // Every thread has its own clone of the sampler, so the producer is reused across
+    // the samples of a thread and rebuilt only when a parameter value changes.
+    private transient EventHubProducerClient producerClient;
+    private transient String producerClientKey;
+
+    // partition ids of the Event Hub and the position of round-robin, kept across samples of this thread
+    private transient AzEventHubsPartitionSelector partitionSelector;
+    private transient String partitionSelectorKey;
+
     public AzEventHubsSampler() {
         super();
         classCount.incrementAndGet();
@@ -171,6 +231,237 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
         return (AzAmqpMessages) getProperty(MESSAGES).getObjectValue();
     }
 
+    public void setProducerType(String producerType) {
+        setProperty(new StringProperty(PRODUCER_TYPE, producerType));
+    }
+
+    public String getProducerType() {
+        return getPropertyAsString(PRODUCER_TYPE, PRODUCER_TYPE_BATCH);
+    }
+
+    public void setMaxWaitTime(String maxWaitTime) {
+        setProperty(new StringProperty(MAX_WAIT_TIME, maxWaitTime));
+    }
+
+    public String getMaxWaitTime() {
+        return getPropertyAsString(MAX_WAIT_TIME).trim();
+    }
+
+    public void setMaxEventBufferLengthPerPartition(String maxEventBufferLengthPerPartition) {
+        setProperty(new StringProperty(MAX_EVENT_BUFFER_LENGTH_PER_PARTITION, maxEventBufferLengthPerPartition));
+    }
+
+    public String getMaxEventBufferLengthPerPartition() {
+        return getPropertyAsString(MAX_EVENT_BUFFER_LENGTH_PER_PARTITION).trim();
+    }
+
+    public void setMaxConcurrentSends(String maxConcurrentSends) {
+        setProperty(new StringProperty(MAX_CONCURRENT_SENDS, maxConcurrentSends));
+    }
+
+    public String getMaxConcurrentSends() {
+        return getPropertyAsString(MAX_CONCURRENT_SENDS).trim();
+    }
+
+    public void setConcurrentSends(String concurrentSends) {
+        setProperty(new StringProperty(CONCURRENT_SENDS, concurrentSends));
+    }
+
+    public String getConcurrentSends() {
+        return getPropertyAsString(CONCURRENT_SENDS).trim();
+    }
+
+    public void setDispatchParams(AzAmqpDispatchParams dispatchParams) {
+        setProperty(new TestElementProperty(AzAmqpDispatchParams.DISPATCH_PARAMS, dispatchParams));
+    }
+
+    public AzAmqpDispatchParams getDispatchParams() {
+        return (AzAmqpDispatchParams) getProperty(AzAmqpDispatchParams.DISPATCH_PARAMS).getObjectValue();
+    }
+
+    public void setRetryParams(AzAmqpRetryParams retryParams) {
+        setProperty(new TestElementProperty(AzAmqpRetryParams.RETRY_PARAMS, retryParams));
+    }
+
+    public AzAmqpRetryParams getRetryParams() {
+        return (AzAmqpRetryParams) getProperty(AzAmqpRetryParams.RETRY_PARAMS).getObjectValue();
+    }
+
+    public void setFinderParams(AzUtilThroughputFinderParams finderParams) {
+        setProperty(new TestElementProperty(AzUtilThroughputFinderParams.FINDER_PARAMS, finderParams));
+    }
+
+    public AzUtilThroughputFinderParams getFinderParams() {
+        return (AzUtilThroughputFinderParams) getProperty(AzUtilThroughputFinderParams.FINDER_PARAMS).getObjectValue();
+    }
+
+    /**
+     * @return the retry policy of a sample; a single attempt if the retry is not configured
+     */
+    private AzAmqpRetryPolicy createRetryPolicy() {
+        AzAmqpRetryParams retryParams = getRetryParams();
+        return retryParams == null ? new AzAmqpRetryPolicy(1, 0, 0, 0) : retryParams.createPolicy();
+    }
+
+    private static boolean isTransient(Exception ex) {
+        return ex instanceof AmqpException && ((AmqpException) ex).isTransient();
+    }
+
+    /**
+     * Create an event data from a message definition.
+     *
+     * @param msg the message definition
+     * @return the event data
+     * @throws IOException if the message file can not be read
+     */
+    public static EventData createEventData(AzAmqpMessage msg) throws IOException {
+        return createEventData(new AzAmqpMessageEncoder().encode(msg));
+    }
+
+    /**
+     * Create an event data from a message body.
+     * The content-encoding of a compressed body is set to the AMQP properties of the event data.
+     *
+     * @param body the message body
+     * @return the event data
+     */
+    public static EventData createEventData(AzUtilCompressedBody body) {
+        EventData eventData = new EventData(body.getBytes());
+        if (body.isCompressed()) {
+            eventData.getRawAmqpMessage().getProperties().setContentEncoding(body.getContentEncoding());
+        }
+        return eventData;
+    }
+
+    private AzEventHubsPartitionSelector getPartitionSelector(Supplier<List<String>> partitionIds) {
+        String key = getNamespaceName().concat("/").concat(getEventHubName()).concat("\n")
+            .concat(getPartitionType()).concat("\n").concat(getPartitionValue());
+        if (partitionSelector == null || !key.equals(partitionSelectorKey)) {
+            partitionSelector = new AzEventHubsPartitionSelector(
+                getPartitionType(), getPartitionValue(), partitionIds.get(),
+                JMeterContextService.getContext().getThreadNum()
+            );
+            partitionSelectorKey = key;
+        }
+        return partitionSelector;
+    }
+
+    /**
+     * @return the address to connect to instead of the namespace, e.g. an application gateway; empty if not set
+     */
+    private static String getCustomEndpoint() {
+        return JMeterUtils.getPropDefault(JMPROPS_CUSTOM_ENDPOINT, "").trim();
+    }
+
+    private String createConnectionString() {
+        return "Endpoint=sb://".concat(getNamespaceName()).concat("/;")
+            .concat("SharedAccessKeyName=").concat(getSharedAccessKeyName()).concat(";")
+            .concat("SharedAccessKey=").concat(getSharedAccessKey());
+    }
+
+    /**
+     * Get the producer of the current parameter values. It is created by the warm-up or the first sample
+     * of the thread, and reused while the values stay the same. {@link #threadFinished()} closes it.
+     */
+    private synchronized EventHubProducerClient getProducer(EventHubClientBuilder producerBuilder) {
+        String key = getProducerKey();
+        if (producerClient != null && key.equals(producerClientKey)) {
+            return producerClient;
+        }
+
+        closeProducer();
+        producerClient = producerBuilder.buildProducerClient();
+        producerClientKey = key;
+        log.debug("Created producer: {}", producerClient.toString());
+        return producerClient;
+    }
+
+    private synchronized void closeProducer() {
+        if (producerClient != null) {
+            producerClient.close();
+            producerClient = null;
+            producerClientKey = null;
+        }
+    }
+
+    /**
+     * @return the namespace, Event Hub and credential of the current parameter values; the shared access key
+     *         is only included as a hash, so that a changed key creates a new producer
+     */
+    private String getProducerKey() {
+        return getNamespaceName().concat("/").concat(getEventHubName()).concat("\n")
+            .concat(getAuthType()).concat("\n")
+            .concat(getAuthType().equals(AUTHTYPE_SAS)
+                ? getSharedAccessKeyName().concat("\n").concat(AzAmqpSecretHash.of(getSharedAccessKey()))
+                : getAadCredential()).concat("\n")
+            .concat(getCustomEndpoint());
+    }
+
+    /**
+     * @return the buffered producer of the current parameter values, shared by all threads
+     */
+    private AzEventHubsBufferedProducer getBufferedProducer(String connectionString, TokenCredential credential) {
+        return AzEventHubsBufferedProducer.getProducer(
+            getBufferedProducerKey(), () -> createBufferedProducerBuilder(connectionString, credential)
+        );
+    }
+
+    private String getBufferedProducerKey() {
+        return getProducerKey().concat("\n")
+            .concat(getMaxWaitTime()).concat("\n")
+            .concat(getMaxEventBufferLengthPerPartition()).concat("\n")
+            .concat(getMaxConcurrentSends());
+    }
+
+    private EventHubBufferedProducerClientBuilder createBufferedProducerBuilder(String connectionString, TokenCredential credential) {
+        EventHubBufferedProducerClientBuilder builder = new EventHubBufferedProducerClientBuilder();
+        if (connectionString != null) {
+            builder.connectionString(connectionString, getEventHubName());
+        } else {
+            builder.credential(getNamespaceName(), getEventHubName(), credential);
+        }
+        if (!getCustomEndpoint().isEmpty()) {
+            builder.customEndpointAddress(getCustomEndpoint());
+        }
+        if (getMaxWaitTime().length() > 0) {
+            builder.maxWaitTime(Duration.ofMillis(Long.parseLong(getMaxWaitTime())));
+        }
+        if (getMaxEventBufferLengthPerPartition().length() > 0) {
+            builder.maxEventBufferLengthPerPartition(Integer.parseInt(getMaxEventBufferLengthPerPartition()));
+        }
+        if (getMaxConcurrentSends().length() > 0) {
+            AzEventHubsBufferedProducer.maxConcurrentSends(builder, Integer.parseInt(getMaxConcurrentSends()));
+        }
+        return builder;
+    }
+
+    private static List<EventData> createEvents(List<AzUtilCompressedBody> bodies) {
+        List<EventData> events = new ArrayList<>(bodies.size());
+        for (AzUtilCompressedBody body : bodies) {
+            events.add(createEventData(body));
+        }
+        return events;
+    }
+
+    private static EventDataBatch createBatch(EventHubProducerClient producer, CreateBatchOptions batchOptions,
+            List<AzUtilCompressedBody> bodies) {
+        EventDataBatch batch = producer.createBatch(batchOptions);
+        for (AzUtilCompressedBody body : bodies) {
+            batch.tryAdd(createEventData(body));
+        }
+        return batch;
+    }
+
+    private static Map<String, List<EventData>> groupByPartition(
+        AzEventHubsPartitionSelector selector, List<AzAmqpMessage> msgs, List<EventData> events
+    ) {
+        Map<String, List<EventData>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            groups.computeIfAbsent(selector.select(msgs.get(i)), id -> new ArrayList<>()).add(events.get(i));
+        }
+        return groups;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -189,19 +480,38 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
         long sentBytes = 0;
 
         EventHubProducerClient producer = null;
+        EventHubProducerAsyncClient asyncProducer = null;
         EventHubClientBuilder producerBuilder = new EventHubClientBuilder();
+        AzAmqpDispatchParams dispatchParams = getDispatchParams();
+        AzUtilThroughputFinderParams finderParams = getFinderParams();
+        boolean findMaxRate = finderParams != null && finderParams.isEnabled();
+        boolean openModel = findMaxRate || (dispatchParams != null && dispatchParams.isOpenModel());
+        boolean distributed = AzEventHubsPartitionSelector.isDistributed(getPartitionType());
+        // the maximum sustainable throughput is measured with the async producer
+        boolean buffered = !findMaxRate && getProducerType().equals(PRODUCER_TYPE_BUFFERED);
+        String connectionString = null;
+        TokenCredential tokenCredential = null;
+        AzAmqpMessageEncoder encoder = new AzAmqpMessageEncoder();
+        AzAmqpRetryPolicy retry = null;
+        String errorClass = null;
 
         try {
             res.sampleStart(); // Start timing
+            retry = createRetryPolicy();
+            int concurrentSends = 1;
+            if (getConcurrentSends().length() > 0) {
+                try {
+                    concurrentSends = Integer.parseInt(getConcurrentSends());
+                } catch (NumberFormatException exc) {
+                    throw new NumberFormatException(exc.getMessage().concat(" [Concurrent sends]"));
+                }
+            }
             requestBody
                 = "Endpoint: sb://".concat(getNamespaceName()).concat("\n")
                 .concat("Event Hub: ").concat(getEventHubName());
 
             if (getAuthType().equals(AUTHTYPE_SAS)) {
-                final String connectionString
-                    = "Endpoint=sb://".concat(getNamespaceName()).concat("/;")
-                    .concat("SharedAccessKeyName=").concat(getSharedAccessKeyName()).concat(";")
-                    .concat("SharedAccessKey=").concat(getSharedAccessKey());
+                connectionString = createConnectionString();
                 requestBody = requestBody.concat("\n")
                     .concat("Shared Access Policy: ").concat(getSharedAccessKeyName()).concat("\n")
                     .concat("Shared Access Key: **********");
@@ -209,9 +519,13 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
             } else { // AUTHTYPE_AAD
                 AzAdCredentialComponentImpl credential = AzAdCredential.getCredential(getAadCredential());
                 requestBody = requestBody.concat(credential.getRequestBody());
-                producerBuilder = producerBuilder.credential(getNamespaceName(), getEventHubName(), credential.getCredential());
+                tokenCredential = credential.getCredential();
+                producerBuilder = producerBuilder.credential(getNamespaceName(), getEventHubName(), tokenCredential);
+            }
+            if (!getCustomEndpoint().isEmpty()) {
+                requestBody = requestBody.concat("\n").concat("Custom endpoint: ").concat(getCustomEndpoint());
+                producerBuilder = producerBuilder.customEndpointAddress(getCustomEndpoint());
             }
-            producer = producerBuilder.buildProducerClient();
 
             // prepare a batch of events to send to the event hub
             CreateBatchOptions batchOptions = new CreateBatchOptions();
@@ -227,52 +541,357 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
                         break;
                 }
             }
-            EventDataBatch batch = producer.createBatch(batchOptions);
-    
-            PropertyIterator iter = getMessages().iterator();
-            int msgCount = 0;
-            while (iter.hasNext()) {
-                msgCount ++;
-                AzAmqpMessage msg = (AzAmqpMessage) iter.next().getObjectValue();
+            if (distributed) {
+                requestBody = requestBody.concat("\n").concat("Partition distribution: ").concat(getPartitionType());
+                if (getPartitionType().equals(PARTITION_TYPE_ZIPF)) {
+                    requestBody = requestBody.concat(" (exponent: ")
+                        .concat(getPartitionValue().length() > 0 ? getPartitionValue() : "1.0").concat(")");
+                } else if (getPartitionType().equals(PARTITION_TYPE_ENGINE)) {
+                    int[] engine = AzEventHubsPartitionSelector.engine(getPartitionValue());
+                    requestBody = requestBody.concat(" (engine ").concat(String.valueOf(engine[0]))
+                        .concat(" of ").concat(String.valueOf(engine[1])).concat(")");
+                }
+            }
+
+            if (buffered) {
+                AzEventHubsBufferedProducer bufferedProducer = getBufferedProducer(connectionString, tokenCredential);
+                requestBody = requestBody.concat("\n")
+                    .concat("Producer: ").concat(PRODUCER_TYPE_BUFFERED).concat("\n")
+                    .concat("Max wait time: ").concat(getMaxWaitTime().length() > 0 ? getMaxWaitTime().concat(" ms") : "default").concat("\n")
+                    .concat("Max event buffer length per partition: ").concat(getMaxEventBufferLengthPerPartition().length() > 0 ? getMaxEventBufferLengthPerPartition() : "default").concat("\n")
+                    .concat("Max concurrent sends: ").concat(getMaxConcurrentSends().length() > 0 ? getMaxConcurrentSends() : "default");
+
+                AzEventHubsPartitionSelector selector = distributed
+                    ? getPartitionSelector(() -> bufferedProducer.getClient().getPartitionIds().collectList().block())
+                    : null;
+                List<EventData> events = new ArrayList<>();
+                List<SendOptions> eventSendOptions = new ArrayList<>();
+                long eventBytes = 0;
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+
+                    requestBody = requestBody.concat("\n\n")
+                                .concat("[Event data #").concat(String.valueOf(events.size() + 1)).concat("]\n")
+                                .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
+                                .concat("Body: ").concat(msg.getMessage());
+                    EventData eventData = createEventData(encoder.encode(msg));
+                    eventBytes += eventData.getBody().length;
+                    events.add(eventData);
+                    eventSendOptions.add(selector != null
+                        ? new SendOptions().setPartitionId(selector.select(msg))
+                        : new SendOptions().setPartitionId(batchOptions.getPartitionId()).setPartitionKey(batchOptions.getPartitionKey()));
+                }
+
+                long enqueueStart = System.nanoTime();
+                AzEventHubsBufferedProducer.Pending pending = bufferedProducer.enqueue(events, eventSendOptions);
+                res.latencyEnd();
+                long maxWaitMillis = getMaxWaitTime().length() > 0 ? Long.parseLong(getMaxWaitTime()) : 0;
+                boolean completed = pending.await(maxWaitMillis + BUFFERED_SEND_TIMEOUT_MILLIS);
+                res.sampleEnd(); // End timing
+                long timedOut = completed ? 0 : pending.abandon(events);
+
+                long succeeded = 0;
+                String responseBody = "";
+                for (Map.Entry<String, LongAdder> partition : pending.getSucceededPerPartition().entrySet()) {
+                    succeeded += partition.getValue().sum();
+                    responseBody = responseBody.concat("Partition ").concat(partition.getKey()).concat(": ")
+                        .concat(String.valueOf(partition.getValue().sum())).concat(" events sent\n");
+                }
+                responseBody = responseBody
+                    .concat("Failed: ").concat(String.valueOf(pending.getFailed())).concat("\n")
+                    .concat("Timed out: ").concat(String.valueOf(timedOut)).concat("\n")
+                    .concat("Enqueue time: ").concat(String.valueOf((pending.getEnqueuedNanos() - enqueueStart) / 1000000)).concat(" ms");
+                res.setDataType(SampleResult.TEXT);
+                res.setResponseData(responseBody, "UTF-8");
+
+                bytes = eventBytes;
+                sentBytes = events.isEmpty() ? 0 : eventBytes * succeeded / events.size();
+                AzUtilMetrics.recordSend(getName(), getEventHubName(), (System.nanoTime() - enqueueStart) / 1000, succeeded, sentBytes);
+
+                if (pending.getFailed() == 0 && timedOut == 0) {
+                    responseMessage = "OK";
+                    isSuccessful = true;
+                } else {
+                    responseMessage = String.valueOf(pending.getFailed() + timedOut)
+                        .concat(" of ").concat(String.valueOf(events.size())).concat(" events were not sent.");
+                    if (pending.getFirstError() != null) {
+                        responseMessage = responseMessage.concat("\n").concat(String.valueOf(pending.getFirstError().getMessage()));
+                    }
+                    // the failed events are counted as the class of the first error
+                    String failedClass = pending.getFirstError() != null
+                        ? AzAmqpErrorClassifier.classify(pending.getFirstError()) : AzUtilErrorCounters.OTHER;
+                    AzUtilErrorCounters.count(getName(), failedClass, pending.getFailed());
+                    AzUtilErrorCounters.count(getName(), AzUtilErrorCounters.TIMEOUT, timedOut);
+                    res.setResponseCode(pending.getFailed() > 0 ? failedClass : AzUtilErrorCounters.TIMEOUT);
+                }
+            } else if (openModel) {
+                asyncProducer = producerBuilder.buildAsyncProducerClient();
+                SendOptions sendOptions = new SendOptions()
+                    .setPartitionId(batchOptions.getPartitionId())
+                    .setPartitionKey(batchOptions.getPartitionKey());
+
+                // the sends are in flight at the same time, so every send gets its own event data
+                List<AzAmqpMessage> msgs = new ArrayList<>();
+                List<AzUtilCompressedBody> bodies = new ArrayList<>();
+                long eventBytes = 0;
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+
+                    requestBody = requestBody.concat("\n\n")
+                                .concat("[Event data #").concat(String.valueOf(bodies.size() + 1)).concat("]\n")
+                                .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
+                                .concat("Body: ").concat(msg.getMessage());
+                    AzUtilCompressedBody body = encoder.encode(msg);
+                    eventBytes += body.getBytes().length;
+                    msgs.add(msg);
+                    bodies.add(body);
+                }
+
+                final EventHubProducerAsyncClient client = asyncProducer;
+                Map<String, LongAdder> partitionEvents = new ConcurrentHashMap<>();
+                Supplier<Mono<Void>> sender;
+                if (distributed) {
+                    // the partitions are chosen again for every dispatch
+                    final AzEventHubsPartitionSelector selector
+                        = getPartitionSelector(() -> client.getPartitionIds().collectList().block());
+                    sender = () -> Flux.fromIterable(groupByPartition(selector, msgs, createEvents(bodies)).entrySet())
+                        .flatMap(group -> client.send(group.getValue(), new SendOptions().setPartitionId(group.getKey()))
+                            .doOnSuccess(v -> partitionEvents.computeIfAbsent(group.getKey(), id -> new LongAdder())
+                                .add(group.getValue().size())))
+                        .then();
+                } else {
+                    sender = () -> client.send(createEvents(bodies), sendOptions);
+                }
+
+                if (findMaxRate) {
+                    requestBody = requestBody.concat("\n\n").concat(finderParams.describe());
+                    AzUtilThroughputFinder.Report report = finderParams.createFinder().run(AzUtilThroughputFinder.openLoop(
+                        () -> sender.get().toFuture(), bodies.size(), finderParams.getDrainTimeoutMillis()));
+                    res.latencyEnd();
+                    res.sampleEnd(); // End timing
+                    report.addSubResults(res, getName());
+                    res.setDataType(SampleResult.TEXT);
+                    res.setResponseData(report.toString(), "UTF-8");
+                    responseMessage = report.getResponseMessage();
+                    isSuccessful = report.getKnee() != null;
+                } else {
+                    double targetRate = dispatchParams.getTargetRateValue();
+                    requestBody = requestBody.concat("\n\n")
+                        .concat("Dispatch mode: ").concat(dispatchParams.getDispatchMode()).concat("\n")
+                        .concat("Target rate: ").concat(String.valueOf(targetRate)).concat(" messages/sec");
+
+                    AzAmqpOpenModelScheduler scheduler = new AzAmqpOpenModelScheduler(
+                        targetRate / Math.max(1, bodies.size()),
+                        dispatchParams.getDurationMillis(),
+                        dispatchParams.getDrainTimeoutMillis()
+                    );
+                    AzAmqpOpenModelScheduler.Summary summary = scheduler.run(sender,
+                        error -> AzUtilErrorCounters.count(getName(), AzAmqpErrorClassifier.classify(error)));
+                    AzUtilErrorCounters.count(getName(), AzUtilErrorCounters.TIMEOUT, summary.getTimedOut());
+
+                    res.latencyEnd();
+                    res.sampleEnd(); // End timing
+                    res.setDataType(SampleResult.TEXT);
+                    String responseBody = summary.toString();
+                    if (distributed) {
+                        double elapsedSeconds = Math.max(1, summary.getElapsedNanos()) / 1e9;
+                        for (String partitionId : partitionSelector.getPartitionIds()) {
+                            LongAdder count = partitionEvents.get(partitionId);
+                            long sent = count == null ? 0 : count.sum();
+                            responseBody = responseBody.concat("\n")
+                                .concat("Partition ").concat(partitionId).concat(": ")
+                                .concat(String.valueOf(sent)).concat(" events, ")
+                                .concat(String.format("%.1f", sent / elapsedSeconds)).concat(" events/sec");
+                        }
+                    }
+                    res.setResponseData(responseBody, "UTF-8");
+                    sentBytes = eventBytes * summary.getSucceeded();
+                    final int eventCount = bodies.size();
+                    final long batchBytes = eventBytes;
+                    summary.forEachCorrectedLatency(latency -> AzUtilMetrics.recordSend(getName(), getEventHubName(), latency / 1000, eventCount, batchBytes));
+
+                    if (summary.getFailed() == 0 && summary.getTimedOut() == 0) {
+                        responseMessage = "OK";
+                        isSuccessful = true;
+                    } else {
+                        responseMessage = String.valueOf(summary.getFailed() + summary.getTimedOut())
+                            .concat(" of ").concat(String.valueOf(summary.getTotal())).concat(" sends did not succeed.");
+                        if (summary.getFirstError() != null) {
+                            responseMessage = responseMessage.concat("\n").concat(String.valueOf(summary.getFirstError().getMessage()));
+                        }
+                        res.setResponseCode(summary.getFirstError() != null
+                            ? AzAmqpErrorClassifier.classify(summary.getFirstError()) : AzUtilErrorCounters.TIMEOUT);
+                    }
+                }
+            } else if (distributed) {
+                producer = getProducer(producerBuilder);
+                final EventHubProducerClient client = producer;
+                AzEventHubsPartitionSelector selector = getPartitionSelector(() -> {
+                    List<String> ids = new ArrayList<>();
+                    client.getPartitionIds().forEach(ids::add);
+                    return ids;
+                });
+
+                List<AzAmqpMessage> msgs = new ArrayList<>();
+                List<EventData> events = new ArrayList<>();
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+
+                    requestBody = requestBody.concat("\n\n")
+                                .concat("[Event data #").concat(String.valueOf(events.size() + 1)).concat("]\n")
+                                .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
+                                .concat("Body: ").concat(msg.getMessage());
+                    msgs.add(msg);
+                    events.add(createEventData(encoder.encode(msg)));
+                }
 
+                // one batch per partition, each send is reported as a sub result
+                String responseBody = "";
+                for (Map.Entry<String, List<EventData>> group : groupByPartition(selector, msgs, events).entrySet()) {
+                    String partitionId = group.getKey();
+                    SampleResult subResult = new SampleResult();
+                    subResult.setSampleLabel(getName().concat(" [partition ").concat(partitionId).concat("]"));
+                    subResult.setDataType(SampleResult.TEXT);
+                    subResult.sampleStart();
+
+                    CreateBatchOptions partitionOptions = new CreateBatchOptions().setPartitionId(partitionId);
+                    EventDataBatch batch = producer.createBatch(partitionOptions);
+                    long partitionBytes = 0;
+                    for (EventData eventData : group.getValue()) {
+                        if (!batch.tryAdd(eventData)) {
+                            partitionBytes += sendPartitionBatch(producer, batch, partitionId, retry, subResult);
+                            batch = producer.createBatch(partitionOptions);
+                            if (!batch.tryAdd(eventData)) {
+                                throw new IllegalArgumentException("Event data is too large to fit in a batch.");
+                            }
+                        }
+                    }
+                    partitionBytes += sendPartitionBatch(producer, batch, partitionId, retry, subResult);
+
+                    subResult.sampleEnd();
+                    int eventCount = group.getValue().size();
+                    long elapsed = subResult.getTime();
+                    String partitionSummary
+                        = "Partition ".concat(partitionId).concat(": ")
+                        .concat(String.valueOf(eventCount)).concat(" events, ")
+                        .concat(String.valueOf(partitionBytes)).concat(" bytes, ")
+                        .concat(String.valueOf(elapsed)).concat(" ms, ")
+                        .concat(String.format("%.1f", eventCount * 1000.0 / Math.max(1, elapsed))).concat(" events/sec");
+                    subResult.setResponseData(partitionSummary, "UTF-8");
+                    subResult.setSentBytes(partitionBytes);
+                    subResult.setResponseMessage("OK");
+                    subResult.setSuccessful(true);
+                    res.addRawSubResult(subResult);
+
+                    responseBody = responseBody.concat(responseBody.isEmpty() ? "" : "\n").concat(partitionSummary);
+                    bytes += partitionBytes;
+                }
+
+                sentBytes = bytes;
+                res.latencyEnd();
+                res.setDataType(SampleResult.TEXT);
+                res.setResponseData(responseBody, "UTF-8");
+                responseMessage = "OK";
+                isSuccessful = true;
+                res.sampleEnd(); // End timing
+            } else if (concurrentSends > 1) {
+                producer = getProducer(producerBuilder);
+
+                // the sends are in flight at the same time, so every send gets its own batch
+                List<AzUtilCompressedBody> bodies = new ArrayList<>();
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+
+                    requestBody = requestBody.concat("\n\n")
+                                .concat("[Event data #").concat(String.valueOf(bodies.size() + 1)).concat("]\n")
+                                .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
+                                .concat("Body: ").concat(msg.getMessage());
+                    bodies.add(encoder.encode(msg));
+                }
                 requestBody = requestBody.concat("\n\n")
-                            .concat("[Event data #").concat(String.valueOf(msgCount)).concat("]\n")
-                            .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
-                            .concat("Body: ").concat(msg.getMessage());
-                EventData eventData;
-                switch (msg.getMessageType()) {
-                    case AzAmqpMessages.MESSAGE_TYPE_BASE64:
-                        byte[] binMsg = Base64.getDecoder().decode(msg.getMessage().getBytes());
-                        eventData = new EventData(binMsg);
-                        break;
-                    case AzAmqpMessages.MESSAGE_TYPE_FILE:
-                        BufferedInputStream bi = null;
-                        bi = new BufferedInputStream(new FileInputStream(msg.getMessage()));
-                        eventData = new EventData(IOUtils.toByteArray(bi));
-                        break;
-                    default: // AzAmqpMessages.MESSAGE_TYPE_STRING
-                        eventData = new EventData(msg.getMessage());
+                    .concat("Concurrent sends: ").concat(String.valueOf(concurrentSends))
+                    .concat(" (").concat(AzUtilBlockingExecutor.describe()).concat(")");
+
+                // the blocking sends run on the shared executor, this thread only waits for them
+                final EventHubProducerClient client = producer;
+                List<CompletableFuture<Integer>> sends = new ArrayList<>();
+                for (int i = 0; i < concurrentSends; i++) {
+                    final EventDataBatch batch = createBatch(client, batchOptions, bodies);
+                    bytes += batch.getSizeInBytes();
+                    sends.add(AzUtilBlockingExecutor.supplyAsync(() -> {
+                        long sendStart = System.nanoTime();
+                        client.send(batch);
+                        AzUtilMetrics.recordSend(getName(), getEventHubName(), (System.nanoTime() - sendStart) / 1000, batch.getCount(), batch.getSizeInBytes());
+                        return batch.getSizeInBytes();
+                    }));
                 }
+                int failed = 0;
+                Throwable firstError = null;
+                for (CompletableFuture<Integer> send : sends) {
+                    try {
+                        sentBytes += send.join();
+                    } catch (CompletionException ex) {
+                        failed++;
+                        if (firstError == null) {
+                            firstError = ex.getCause();
+                        }
+                        AzUtilErrorCounters.count(getName(), AzAmqpErrorClassifier.classify(ex.getCause()));
+                    }
+                }
+                res.latencyEnd();
+                res.sampleEnd(); // End timing
+                res.setDataType(SampleResult.TEXT);
+                res.setResponseData(String.valueOf(concurrentSends - failed).concat(" of ")
+                    .concat(String.valueOf(concurrentSends)).concat(" sends succeeded."), "UTF-8");
+                if (failed == 0) {
+                    responseMessage = "OK";
+                    isSuccessful = true;
+                } else {
+                    responseMessage = String.valueOf(failed).concat(" of ").concat(String.valueOf(concurrentSends))
+                        .concat(" sends did not succeed.\n").concat(String.valueOf(firstError.getMessage()));
+                    res.setResponseCode(AzAmqpErrorClassifier.classify(firstError));
+                }
+            } else {
+                producer = getProducer(producerBuilder);
+                EventDataBatch batch = producer.createBatch(batchOptions);
 
-                batch.tryAdd(eventData);
-            }
+                PropertyIterator iter = getMessages().iterator();
+                int msgCount = 0;
+                while (iter.hasNext()) {
+                    msgCount ++;
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+
+                    requestBody = requestBody.concat("\n\n")
+                                .concat("[Event data #").concat(String.valueOf(msgCount)).concat("]\n")
+                                .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
+                                .concat("Body: ").concat(msg.getMessage());
+
+                    batch.tryAdd(createEventData(encoder.encode(msg)));
+                }
 
-            bytes = batch.getSizeInBytes();
+                bytes = batch.getSizeInBytes();
 
-            // send the batch of events to the event hub
-            producer.send(batch);
+                // send the batch of events to the event hub
+                final EventHubProducerClient client = producer;
+                retry.run(res, getName(), AzEventHubsSampler::isTransient, () -> client.send(batch));
+                AzUtilMetrics.recordSend(getName(), getEventHubName(), retry.getLastAttemptMicros(), batch.getCount(), batch.getSizeInBytes());
 
-            sentBytes = batch.getSizeInBytes();
-            res.latencyEnd();
+                sentBytes = batch.getSizeInBytes();
+                res.latencyEnd();
 
-            res.setDataType(SampleResult.TEXT);
+                res.setDataType(SampleResult.TEXT);
 
-            //res.setResponseHeaders();
-            //res.setResponseMessage();
-            //res.setResponseCodeOK();
-            responseMessage = "OK";
-            isSuccessful = true;
-            res.sampleEnd(); // End timing
+                //res.setResponseHeaders();
+                //res.setResponseMessage();
+                //res.setResponseCodeOK();
+                responseMessage = "OK";
+                isSuccessful = true;
+                res.sampleEnd(); // End timing
+            }
         } catch (AmqpException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             if (ex.isTransient()) {
@@ -280,17 +899,32 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
             }
             responseMessage = responseMessage.concat(ex.getMessage());
             res.setResponseData(ex.getMessage(), "UTF-8");
+            errorClass = AzAmqpErrorClassifier.classify(ex);
         } catch (FileNotFoundException ex) {
             res.setResponseData(ex.toString(), "UTF-8");
             responseMessage = ex.getMessage();
             log.info("Error calling {} sampler. ", threadName, ex);
+            errorClass = AzUtilErrorCounters.CLIENT;
         } catch (Exception ex) {
             res.setResponseData(ex.toString(), "UTF-8");
             responseMessage = ex.getMessage();
             log.info("Error calling {} sampler. ", threadName, ex);
+            errorClass = AzAmqpErrorClassifier.classify(ex);
         } finally {
-            if (producer != null) {
-                producer.close();
+            if (asyncProducer != null) {
+                asyncProducer.close();
+            }
+            if (!encoder.describe().isEmpty()) {
+                requestBody = requestBody.concat("\n\n").concat(encoder.describe());
+            }
+            if (retry != null && retry.getRetries() > 0) {
+                AzUtilMetrics.recordValue(AzUtilMetrics.METRIC_RETRY_TIME, getName(), getEventHubName(), retry.getRetryMicros());
+                AzUtilMetrics.recordValue(AzUtilMetrics.METRIC_RETRIES, getName(), getEventHubName(), retry.getRetries());
+                responseMessage = String.valueOf(responseMessage).concat("\n").concat(retry.describe());
+            }
+            if (errorClass != null) {
+                res.setResponseCode(errorClass);
+                AzUtilErrorCounters.count(getName(), errorClass);
             }
             res.setSamplerData(requestBody); // Request Body
             res.setBytes(bytes);
@@ -299,9 +933,18 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
         }
 
         res.setSuccessful(isSuccessful);
+        AzUtilMetrics.recordSample(getName(), res);
         return res;
     }
 
+    private long sendPartitionBatch(EventHubProducerClient producer, EventDataBatch batch, String partitionId,
+            AzAmqpRetryPolicy retry, SampleResult subResult) throws Exception {
+        retry.run(subResult, subResult.getSampleLabel(), AzEventHubsSampler::isTransient, () -> producer.send(batch));
+        AzUtilMetrics.recordSend(getName(), getEventHubName().concat("/").concat(partitionId),
+            retry.getLastAttemptMicros(), batch.getCount(), batch.getSizeInBytes());
+        return batch.getSizeInBytes();
+    }
+
     @Override
     public void testStarted() {
         testStarted(""); // $NON-NLS-1$
@@ -320,7 +963,65 @@ public class AzEventHubsSampler extends AbstractSampler implements TestStateList
     // Ensure any remaining contexts are closed
     @Override
     public void testEnded(String host) {
+        AzEventHubsBufferedProducer.closeAll();
+        AzUtilCompression.clearCache();
+        AzUtilWarmup.stop();
+        AzUtilMetrics.stop();
+        AzUtilErrorCounters.stop();
+    }
+
+    /**
+     * Warm up before the first sample of the thread: acquire the Azure AD token, and open the connection
+     * and the send link of the Event Hub. The buffered producer is shared and stays open; it opens its
+     * connection here and its send links with the first events. The producer of the other modes belongs
+     * to the thread, so every thread warms up its own.
+     */
+    @Override
+    public void threadStarted() {
+        AzUtilWarmup warmup = AzUtilWarmup.get();
+        if (!warmup.isEnabled()) {
+            return;
+        }
+        String entity = getNamespaceName().concat("/").concat(getEventHubName());
+        try {
+            AzUtilThroughputFinderParams finderParams = getFinderParams();
+            boolean buffered = !(finderParams != null && finderParams.isEnabled())
+                && getProducerType().equals(PRODUCER_TYPE_BUFFERED);
+            EventHubClientBuilder producerBuilder = new EventHubClientBuilder();
+            String connectionString = null;
+            TokenCredential tokenCredential = null;
+            if (getAuthType().equals(AUTHTYPE_SAS)) {
+                connectionString = createConnectionString();
+                producerBuilder = producerBuilder.connectionString(connectionString, getEventHubName());
+            } else { // AUTHTYPE_AAD
+                final TokenCredential credential = AzAdCredential.getCredential(getAadCredential()).getCredential();
+                warmup.warmUp(getName(), getAadCredential(), "aad\n".concat(getAadCredential()).concat("\n").concat(AAD_SCOPE),
+                    () -> credential.getToken(new TokenRequestContext().addScopes(AAD_SCOPE)).block());
+                tokenCredential = credential;
+                producerBuilder = producerBuilder.credential(getNamespaceName(), getEventHubName(), tokenCredential);
+            }
+            if (!getCustomEndpoint().isEmpty()) {
+                producerBuilder = producerBuilder.customEndpointAddress(getCustomEndpoint());
+            }
+
+            if (buffered) {
+                AzEventHubsBufferedProducer bufferedProducer = getBufferedProducer(connectionString, tokenCredential);
+                warmup.warmUp(getName(), getEventHubName(), "eventhubs\n".concat(getBufferedProducerKey()),
+                    () -> bufferedProducer.getClient().getPartitionIds().collectList().block());
+            } else {
+                // every thread has its own producer, so every thread warms up
+                final EventHubProducerClient producer = getProducer(producerBuilder);
+                String key = "eventhubs\n".concat(Thread.currentThread().getName()).concat("\n").concat(getName());
+                warmup.warmUp(getName(), getEventHubName(), key, () -> producer.createBatch());
+            }
+        } catch (Exception ex) {
+            log.info("Warm-up of {} ({}) failed: {}", entity, getName(), ex.toString());
+        }
+    }
 
+    @Override
+    public void threadFinished() {
+        closeProducer();
     }
 
     /**
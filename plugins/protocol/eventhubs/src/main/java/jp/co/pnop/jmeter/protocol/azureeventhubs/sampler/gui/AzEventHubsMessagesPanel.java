@@ -0,0 +1,30 @@
+package jp.co.pnop.jmeter.protocol.azureeventhubs.sampler.gui;
+
+import org.apache.jorphan.gui.ObjectTableModel;
+import org.apache.jorphan.reflect.Functor;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.gui.AzAmqpMessagesPanel;
+
+public class AzEventHubsMessagesPanel extends AzAmqpMessagesPanel {
+
+    public AzEventHubsMessagesPanel() {
+        super("Event data");
+    }
+
+    /**
+     * Initialize the table model used for the messages table.
+     * The partition key is used by the "Hash of message key" partition type.
+     */
+    @Override
+    protected void initializeTableModel() {
+        tableModel = new ObjectTableModel(
+            new String[] { COLUMN_NAMES.get("MESSAGE_TYPE"), COLUMN_NAMES.get("MESSAGE"), "partition key", COLUMN_NAMES.get("COMPRESSION") },
+            AzAmqpMessage.class,
+            new Functor[] { new Functor("getMessageType"), new Functor("getMessage"), new Functor("getPartitionKey"), new Functor("getCompression") },
+            new Functor[] { new Functor("setMessageType"), new Functor("setMessage"), new Functor("setPartitionKey"), new Functor("setCompression") },
+            new Class[] { String.class, String.class, String.class, String.class }
+        );
+    }
+
+}
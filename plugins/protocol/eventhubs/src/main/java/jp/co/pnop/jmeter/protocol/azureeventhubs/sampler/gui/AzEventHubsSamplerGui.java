@@ -37,8 +37,14 @@ import org.apache.jorphan.gui.JLabeledTextField;
 //import org.slf4j.Logger;
 //import org.slf4j.LoggerFactory;
 
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpDispatchParams;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpRetryParams;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.gui.AzAmqpDispatchParamsPanel;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.gui.AzAmqpRetryParamsPanel;
 import jp.co.pnop.jmeter.protocol.amqp.sampler.gui.AzAmqpMessagesPanel;
 import jp.co.pnop.jmeter.protocol.azureeventhubs.sampler.AzEventHubsSampler;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinderParams;
+import jp.co.pnop.jmeter.util.throughput.gui.AzUtilThroughputFinderParamsPanel;
 
 public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeListener {
     private static final long serialVersionUID = 1L;
@@ -60,11 +66,27 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
     private String[] PARTITION_TYPE_LABELS = {
         AzEventHubsSampler.PARTITION_TYPE_NOT_SPECIFIED,
         AzEventHubsSampler.PARTITION_TYPE_ID,
-        AzEventHubsSampler.PARTITION_TYPE_KEY
+        AzEventHubsSampler.PARTITION_TYPE_KEY,
+        AzEventHubsSampler.PARTITION_TYPE_ROUND_ROBIN,
+        AzEventHubsSampler.PARTITION_TYPE_KEY_HASH,
+        AzEventHubsSampler.PARTITION_TYPE_ZIPF,
+        AzEventHubsSampler.PARTITION_TYPE_ENGINE
     };
     private JLabeledChoice partitionType;
     private JTextField partitionValue;
-    private AzAmqpMessagesPanel messagesPanel = new AzAmqpMessagesPanel("Event data"); // $NON-NLS-1$
+    private String[] PRODUCER_TYPE_LABELS = {
+        AzEventHubsSampler.PRODUCER_TYPE_BATCH,
+        AzEventHubsSampler.PRODUCER_TYPE_BUFFERED
+    };
+    private JLabeledChoice producerType;
+    private JLabeledTextField maxWaitTime;
+    private JLabeledTextField maxEventBufferLengthPerPartition;
+    private JLabeledTextField maxConcurrentSends;
+    private JLabeledTextField concurrentSends;
+    private AzAmqpMessagesPanel messagesPanel = new AzEventHubsMessagesPanel(); // $NON-NLS-1$
+    private AzAmqpDispatchParamsPanel dispatchPanel = new AzAmqpDispatchParamsPanel();
+    private AzAmqpRetryParamsPanel retryPanel = new AzAmqpRetryParamsPanel();
+    private AzUtilThroughputFinderParamsPanel finderPanel = new AzUtilThroughputFinderParamsPanel();
 
     public AzEventHubsSamplerGui() {
         init();
@@ -92,7 +114,16 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
         partitionType.setText(element.getPropertyAsString(AzEventHubsSampler.PARTITION_TYPE));
         togglePartitionValue();
         partitionValue.setText(element.getPropertyAsString(AzEventHubsSampler.PARTITION_VALUE));
+        producerType.setText(element.getPropertyAsString(AzEventHubsSampler.PRODUCER_TYPE, AzEventHubsSampler.PRODUCER_TYPE_BATCH));
+        toggleProducerType();
+        maxWaitTime.setText(element.getPropertyAsString(AzEventHubsSampler.MAX_WAIT_TIME));
+        maxEventBufferLengthPerPartition.setText(element.getPropertyAsString(AzEventHubsSampler.MAX_EVENT_BUFFER_LENGTH_PER_PARTITION));
+        maxConcurrentSends.setText(element.getPropertyAsString(AzEventHubsSampler.MAX_CONCURRENT_SENDS));
+        concurrentSends.setText(element.getPropertyAsString(AzEventHubsSampler.CONCURRENT_SENDS));
         messagesPanel.configure((TestElement) element.getProperty(AzEventHubsSampler.MESSAGES).getObjectValue());
+        dispatchPanel.configure((TestElement) element.getProperty(AzAmqpDispatchParams.DISPATCH_PARAMS).getObjectValue());
+        retryPanel.configure((TestElement) element.getProperty(AzAmqpRetryParams.RETRY_PARAMS).getObjectValue());
+        finderPanel.configure((TestElement) element.getProperty(AzUtilThroughputFinderParams.FINDER_PARAMS).getObjectValue());
     }
 
     @Override
@@ -122,7 +153,18 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
         sampler.setProperty(AzEventHubsSampler.EVENT_HUB_NAME, eventHubName.getText());
         sampler.setProperty(AzEventHubsSampler.PARTITION_TYPE, partitionType.getText());
         sampler.setProperty(AzEventHubsSampler.PARTITION_VALUE, partitionValue.getText());
+        sampler.setProperty(AzEventHubsSampler.PRODUCER_TYPE, producerType.getText());
+        if (producerType.getText() == AzEventHubsSampler.PRODUCER_TYPE_BUFFERED) {
+            sampler.setProperty(AzEventHubsSampler.MAX_WAIT_TIME, maxWaitTime.getText());
+            sampler.setProperty(AzEventHubsSampler.MAX_EVENT_BUFFER_LENGTH_PER_PARTITION, maxEventBufferLengthPerPartition.getText());
+            sampler.setProperty(AzEventHubsSampler.MAX_CONCURRENT_SENDS, maxConcurrentSends.getText());
+        } else {
+            sampler.setProperty(AzEventHubsSampler.CONCURRENT_SENDS, concurrentSends.getText());
+        }
         sampler.setProperty(new TestElementProperty(AzEventHubsSampler.MESSAGES, messagesPanel.createTestElement()));
+        sampler.setProperty(new TestElementProperty(AzAmqpDispatchParams.DISPATCH_PARAMS, dispatchPanel.createTestElement()));
+        sampler.setProperty(new TestElementProperty(AzAmqpRetryParams.RETRY_PARAMS, retryPanel.createTestElement()));
+        sampler.setProperty(new TestElementProperty(AzUtilThroughputFinderParams.FINDER_PARAMS, finderPanel.createTestElement()));
     }
 
     /**
@@ -140,7 +182,16 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
         eventHubName.setText("");
         partitionType.setText(AzEventHubsSampler.PARTITION_TYPE_NOT_SPECIFIED);
         partitionValue.setText("");
+        producerType.setText(AzEventHubsSampler.PRODUCER_TYPE_BATCH);
+        maxWaitTime.setText("");
+        maxEventBufferLengthPerPartition.setText("");
+        maxConcurrentSends.setText("");
+        concurrentSends.setText("");
+        toggleProducerType();
         messagesPanel.clear();
+        dispatchPanel.clearGui();
+        retryPanel.clearGui();
+        finderPanel.clearGui();
     }
 
     @Override
@@ -233,6 +284,35 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
         return panel;
     }
 
+    private JPanel createProducerPanel() {
+        producerType = new JLabeledChoice("Producer:", PRODUCER_TYPE_LABELS);
+        producerType.setName(AzEventHubsSampler.PRODUCER_TYPE);
+        producerType.addChangeListener(this);
+
+        maxWaitTime = new JLabeledTextField("Max wait time (ms):");
+        maxWaitTime.setName(AzEventHubsSampler.MAX_WAIT_TIME);
+        maxEventBufferLengthPerPartition = new JLabeledTextField("Max event buffer length per partition:");
+        maxEventBufferLengthPerPartition.setName(AzEventHubsSampler.MAX_EVENT_BUFFER_LENGTH_PER_PARTITION);
+        maxConcurrentSends = new JLabeledTextField("Max concurrent sends:");
+        maxConcurrentSends.setName(AzEventHubsSampler.MAX_CONCURRENT_SENDS);
+
+        concurrentSends = new JLabeledTextField("Concurrent sends:");
+        concurrentSends.setName(AzEventHubsSampler.CONCURRENT_SENDS);
+
+        JPanel bufferedPanel = new HorizontalPanel();
+        bufferedPanel.add(maxWaitTime);
+        bufferedPanel.add(maxEventBufferLengthPerPartition);
+        bufferedPanel.add(maxConcurrentSends);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Producer"));
+        panel.add(producerType);
+        panel.add(bufferedPanel);
+        panel.add(concurrentSends);
+
+        return panel;
+    }
+
     private JPanel createMessagesPanel() {
         JPanel panel = new JPanel(new BorderLayout(5, 0));
         panel.add(messagesPanel, BorderLayout.CENTER);
@@ -276,6 +356,10 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
         eventHubsConfigPanel.add(createAuthTypePanel());
         eventHubsConfigPanel.add(createAuthPanel());
         mainPanel.add(eventHubsConfigPanel, BorderLayout.NORTH);
+        mainPanel.add(createProducerPanel());
+        mainPanel.add(dispatchPanel);
+        mainPanel.add(retryPanel);
+        mainPanel.add(finderPanel);
         mainPanel.add(createMessagesPanel(), BorderLayout.CENTER);
 
         add(mainPanel, BorderLayout.CENTER);
@@ -287,6 +371,8 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
             togglePartitionValue();
         } else if (event.getSource().equals(authType)) {
             toggleAuthTypeValue();
+        } else if (event.getSource().equals(producerType)) {
+            toggleProducerType();
         }
     }
 
@@ -302,11 +388,26 @@ public class AzEventHubsSamplerGui extends AbstractSamplerGui implements ChangeL
         }
     }
 
+    /**
+     * enable/disable fields related to producerType
+     */
+    private void toggleProducerType() {
+        boolean buffered = producerType.getText() == AzEventHubsSampler.PRODUCER_TYPE_BUFFERED;
+        maxWaitTime.setEnabled(buffered);
+        maxEventBufferLengthPerPartition.setEnabled(buffered);
+        maxConcurrentSends.setEnabled(buffered);
+        concurrentSends.setEnabled(!buffered);
+    }
+
     /**
      * enable/disable fields related to partitionType
      */
     private void togglePartitionValue() {
-        partitionValue.setEnabled(partitionType.getText() != AzEventHubsSampler.PARTITION_TYPE_NOT_SPECIFIED);
+        partitionValue.setEnabled(
+            partitionType.getText() != AzEventHubsSampler.PARTITION_TYPE_NOT_SPECIFIED
+            && partitionType.getText() != AzEventHubsSampler.PARTITION_TYPE_ROUND_ROBIN
+            && partitionType.getText() != AzEventHubsSampler.PARTITION_TYPE_KEY_HASH
+        );
     }
 
 }
@@ -0,0 +1,223 @@
+package jp.co.pnop.jmeter.protocol.azureeventhubs.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.azure.messaging.eventhubs.EventData;
+import com.azure.messaging.eventhubs.EventHubBufferedProducerAsyncClient;
+import com.azure.messaging.eventhubs.EventHubBufferedProducerClientBuilder;
+import com.azure.messaging.eventhubs.models.SendOptions;
+
+/**
+ * Buffered producer shared by all threads of the Event Hubs samplers with the same connection and options.
+ * <p>
+ * The events of a sample are enqueued into the producer, which batches and sends them in the background.
+ * The success and failure callbacks of the producer are matched to the events of the sample, so that the
+ * sample can wait until all its events are sent.
+ */
+public class AzEventHubsBufferedProducer {
+
+    private static final Logger log = LoggerFactory.getLogger(AzEventHubsBufferedProducer.class);
+
+    private static final Map<String, AzEventHubsBufferedProducer> producers = new ConcurrentHashMap<>();
+
+    // events enqueued and not reported by the callbacks yet. EventData is matched by identity.
+    private static final Map<EventData, Pending> pendingEvents = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final EventHubBufferedProducerAsyncClient client;
+
+    private AzEventHubsBufferedProducer(EventHubBufferedProducerClientBuilder builder) {
+        client = builder
+            .onSendBatchSucceeded(context -> complete(context.getEvents(), context.getPartitionId(), null))
+            .onSendBatchFailed(context -> complete(context.getEvents(), context.getPartitionId(), context.getThrowable()))
+            .buildAsyncClient();
+    }
+
+    /**
+     * Get the producer for the key, or create it with the builder if there is none yet.
+     *
+     * @param key     connection and options of the producer
+     * @param builder builder of the producer, without the callbacks
+     * @return the shared producer
+     */
+    public static AzEventHubsBufferedProducer getProducer(String key, Supplier<EventHubBufferedProducerClientBuilder> builder) {
+        return producers.computeIfAbsent(key, k -> new AzEventHubsBufferedProducer(builder.get()));
+    }
+
+    /**
+     * Close all the producers. Buffered events are sent before closing.
+     */
+    public static void closeAll() {
+        for (String key : producers.keySet()) {
+            AzEventHubsBufferedProducer producer = producers.remove(key);
+            if (producer != null) {
+                try {
+                    producer.client.close();
+                } catch (RuntimeException ex) {
+                    log.warn("Failed to close the buffered producer.", ex);
+                }
+            }
+        }
+        pendingEvents.clear();
+    }
+
+    /**
+     * Set the maximum number of batches sent concurrently. The builder method is not public in
+     * azure-messaging-eventhubs 5.21.0, so it is called by reflection. That SDK version checks the
+     * value when the producer is built, but does not limit the sends with it yet.
+     *
+     * @throws IllegalStateException if the SDK has no such builder method
+     */
+    public static EventHubBufferedProducerClientBuilder maxConcurrentSends(EventHubBufferedProducerClientBuilder builder,
+            int maxConcurrentSends) {
+        try {
+            Method method = EventHubBufferedProducerClientBuilder.class.getDeclaredMethod("maxConcurrentSends", int.class);
+            method.setAccessible(true);
+            method.invoke(builder, maxConcurrentSends);
+            return builder;
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            throw new IllegalStateException("Max concurrent sends is not supported by this version of the Azure SDK.", ex);
+        }
+    }
+
+    public EventHubBufferedProducerAsyncClient getClient() {
+        return client;
+    }
+
+    /**
+     * Enqueue the events.
+     *
+     * @param events      events of the sample
+     * @param sendOptions options of each event, in the same order as events
+     * @return the result of the events
+     */
+    public Pending enqueue(List<EventData> events, List<SendOptions> sendOptions) {
+        Pending pending = register(events);
+        for (int i = 0; i < events.size(); i++) {
+            EventData event = events.get(i);
+            try {
+                client.enqueueEvent(event, sendOptions.get(i)).block();
+            } catch (RuntimeException ex) {
+                if (pendingEvents.remove(event) != null) {
+                    pending.fail(ex);
+                }
+            }
+        }
+        pending.enqueued();
+        return pending;
+    }
+
+    /**
+     * Register the events of a sample, so that the callbacks of the producer report to its result.
+     */
+    static Pending register(List<EventData> events) {
+        Pending pending = new Pending(events.size());
+        for (EventData event : events) {
+            pendingEvents.put(event, pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Report the events of a batch to the results of their samples; called by the callbacks of the producer.
+     */
+    static void complete(Iterable<EventData> events, String partitionId, Throwable error) {
+        for (EventData event : events) {
+            Pending pending = pendingEvents.remove(event);
+            if (pending == null) {
+                continue; // timed out, or enqueued before a restart of the test
+            }
+            if (error == null) {
+                pending.succeed(partitionId);
+            } else {
+                pending.fail(error);
+            }
+        }
+    }
+
+    /**
+     * Result of the events of a sample.
+     */
+    public static class Pending {
+        private final CountDownLatch remaining;
+        private final Map<String, LongAdder> succeededPerPartition = new ConcurrentHashMap<>();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+        private volatile long enqueuedNanos;
+
+        Pending(int count) {
+            remaining = new CountDownLatch(count);
+        }
+
+        void enqueued() {
+            enqueuedNanos = System.nanoTime();
+        }
+
+        void succeed(String partitionId) {
+            succeededPerPartition.computeIfAbsent(partitionId, id -> new LongAdder()).increment();
+            remaining.countDown();
+        }
+
+        void fail(Throwable error) {
+            failed.incrementAndGet();
+            firstError.compareAndSet(null, error);
+            remaining.countDown();
+        }
+
+        /**
+         * Wait for the callbacks of all the events.
+         *
+         * @return false if some events were not reported within the timeout
+         */
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            return remaining.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Forget the events not reported yet, after the timeout.
+         *
+         * @return number of the events that were not reported
+         */
+        public long abandon(List<EventData> events) {
+            for (EventData event : events) {
+                pendingEvents.remove(event, this);
+            }
+            return remaining.getCount();
+        }
+
+        public long getEnqueuedNanos() {
+            return enqueuedNanos;
+        }
+
+        public Map<String, LongAdder> getSucceededPerPartition() {
+            return succeededPerPartition;
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public Throwable getFirstError() {
+            return firstError.get();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package jp.co.pnop.jmeter.protocol.azureeventhubs.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpKeyHash;
+import jp.co.pnop.jmeter.protocol.azureeventhubs.sampler.AzEventHubsSampler;
+
+/**
+ * Chooses the partition of each event for the distribution modes of the Event Hubs sampler.
+ * <ul>
+ * <li>Round-robin: cycles through the partition ids, continuing across samples.</li>
+ * <li>Hash of message key: hashes the partition key of the event data. The partition is
+ * chosen by the sampler, so it is stable for a key but not the one the service would pick
+ * for the same key.</li>
+ * <li>Weighted (Zipf): partition n of the list is chosen with a probability proportional
+ * to 1 / n^s, which makes the first partitions hot. s is the partition value (default 1).</li>
+ * <li>Engine-assigned: each load engine of a distributed test claims a disjoint subset of the
+ * partitions (see {@link #assignedPartitions(List, int, int)}) and cycles through its subset.
+ * The engine index and count are the partition value ("index/count"), or else the properties
+ * azure_eventhubs.engine_index and azure_eventhubs.engine_count, or else the environment
+ * variables AZURE_EVENTHUBS_ENGINE_INDEX and AZURE_EVENTHUBS_ENGINE_COUNT.</li>
+ * </ul>
+ */
+public class AzEventHubsPartitionSelector {
+
+    public static final String JMPROPS_ENGINE_INDEX = "azure_eventhubs.engine_index";
+    public static final String JMPROPS_ENGINE_COUNT = "azure_eventhubs.engine_count";
+    public static final String ENV_ENGINE_INDEX = "AZURE_EVENTHUBS_ENGINE_INDEX";
+    public static final String ENV_ENGINE_COUNT = "AZURE_EVENTHUBS_ENGINE_COUNT";
+
+    private final String partitionType;
+    private final List<String> partitionIds;
+    private final AtomicInteger next;
+    private final double[] cumulativeWeights;
+
+    public AzEventHubsPartitionSelector(String partitionType, String partitionValue, List<String> partitionIds, int startIndex) {
+        if (partitionIds.isEmpty()) {
+            throw new IllegalArgumentException("The Event Hub has no partitions.");
+        }
+        this.partitionType = partitionType;
+        if (partitionType.equals(AzEventHubsSampler.PARTITION_TYPE_ENGINE)) {
+            int[] engine = engine(partitionValue);
+            partitionIds = assignedPartitions(partitionIds, engine[0], engine[1]);
+        }
+        this.partitionIds = Collections.unmodifiableList(new ArrayList<>(partitionIds));
+        this.next = new AtomicInteger(Math.floorMod(startIndex, partitionIds.size()));
+
+        if (partitionType.equals(AzEventHubsSampler.PARTITION_TYPE_ZIPF)) {
+            double exponent = 1.0;
+            if (!JOrphanUtils.isBlank(partitionValue)) {
+                try {
+                    exponent = Double.parseDouble(partitionValue.trim());
+                } catch (NumberFormatException ex) {
+                    throw new NumberFormatException("Zipf exponent must be a number: ".concat(partitionValue));
+                }
+            }
+            cumulativeWeights = zipfCumulativeWeights(partitionIds.size(), exponent);
+        } else {
+            cumulativeWeights = null;
+        }
+    }
+
+    /**
+     * @return true if the partition type is one of the distribution modes
+     */
+    public static boolean isDistributed(String partitionType) {
+        return AzEventHubsSampler.PARTITION_TYPE_ROUND_ROBIN.equals(partitionType)
+            || AzEventHubsSampler.PARTITION_TYPE_KEY_HASH.equals(partitionType)
+            || AzEventHubsSampler.PARTITION_TYPE_ZIPF.equals(partitionType)
+            || AzEventHubsSampler.PARTITION_TYPE_ENGINE.equals(partitionType);
+    }
+
+    /**
+     * Assign the partitions to the load engines, so that the engines of a distributed test
+     * send to (or receive from) disjoint subsets of the partitions.
+     * <p>
+     * Partition i of the list belongs to engine i mod count, so the subsets differ in size by
+     * one at most, and the assignment only depends on the index and count. With more engines
+     * than partitions, engine i takes partition i mod n and shares it with other engines.
+     *
+     * @param partitionIds partition ids of the Event Hub, in the order returned by the service
+     * @param engineIndex  index of this engine, from 0
+     * @param engineCount  number of engines
+     * @return the partition ids of this engine
+     */
+    public static List<String> assignedPartitions(List<String> partitionIds, int engineIndex, int engineCount) {
+        if (engineCount < 1 || engineIndex < 0 || engineIndex >= engineCount) {
+            throw new IllegalArgumentException("Engine index must be from 0 to engine count - 1: "
+                .concat(String.valueOf(engineIndex)).concat("/").concat(String.valueOf(engineCount)));
+        }
+        if (engineCount > partitionIds.size()) {
+            return Collections.singletonList(partitionIds.get(engineIndex % partitionIds.size()));
+        }
+        List<String> assigned = new ArrayList<>();
+        for (int i = engineIndex; i < partitionIds.size(); i += engineCount) {
+            assigned.add(partitionIds.get(i));
+        }
+        return assigned;
+    }
+
+    /**
+     * @param partitionValue "index/count", or blank to read the properties or environment variables
+     * @return the engine index and count; a single engine if none of them is set
+     */
+    public static int[] engine(String partitionValue) {
+        String index;
+        String count;
+        if (!JOrphanUtils.isBlank(partitionValue)) {
+            String[] values = partitionValue.trim().split("/", 2);
+            index = values[0];
+            count = values.length > 1 ? values[1] : "";
+        } else {
+            index = JMeterUtils.getPropDefault(JMPROPS_ENGINE_INDEX, System.getenv(ENV_ENGINE_INDEX));
+            count = JMeterUtils.getPropDefault(JMPROPS_ENGINE_COUNT, System.getenv(ENV_ENGINE_COUNT));
+        }
+        try {
+            return new int[] {
+                JOrphanUtils.isBlank(index) ? 0 : Integer.parseInt(index.trim()),
+                JOrphanUtils.isBlank(count) ? 1 : Integer.parseInt(count.trim())
+            };
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException("Engine index and count must be numbers (index/count): "
+                .concat(String.valueOf(index)).concat("/").concat(String.valueOf(count)));
+        }
+    }
+
+    public List<String> getPartitionIds() {
+        return partitionIds;
+    }
+
+    public String select(AzAmqpMessage msg) {
+        switch (partitionType) {
+            case AzEventHubsSampler.PARTITION_TYPE_KEY_HASH:
+                String key = msg.getPartitionKey();
+                if (JOrphanUtils.isBlank(key)) {
+                    throw new IllegalArgumentException("Partition key of the event data is empty.");
+                }
+                return partitionIds.get(AzAmqpKeyHash.bucket(key, partitionIds.size()));
+            case AzEventHubsSampler.PARTITION_TYPE_ZIPF:
+                double u = ThreadLocalRandom.current().nextDouble();
+                int index = Arrays.binarySearch(cumulativeWeights, u);
+                return partitionIds.get(index >= 0 ? index : Math.min(-index - 1, partitionIds.size() - 1));
+            default: // PARTITION_TYPE_ROUND_ROBIN, PARTITION_TYPE_ENGINE
+                return partitionIds.get(next.getAndUpdate(i -> (i + 1) % partitionIds.size()));
+        }
+    }
+
+    static double[] zipfCumulativeWeights(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+}
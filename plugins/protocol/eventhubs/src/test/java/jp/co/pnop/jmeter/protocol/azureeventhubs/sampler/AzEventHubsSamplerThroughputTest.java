@@ -0,0 +1,100 @@
+package jp.co.pnop.jmeter.protocol.azureeventhubs.sampler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpLoadRunner;
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpTestBroker;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+
+/**
+ * Throughput of the Event Hubs sampler against the local AMQP broker.
+ * Run with: mvn test -P throughput
+ * <p>
+ * The gates are half the throughput and 1.25 times the allocation of the slowest of three
+ * runs on JDK 17 with one CPU, so that a regression fails while the usual jitter does not.
+ */
+@Tag("throughput")
+public class AzEventHubsSamplerThroughputTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AzEventHubsSamplerThroughputTest.class);
+
+    private static final String EVENT_HUB_NAME = "throughput";
+    private static final String JMPROPS_CUSTOM_ENDPOINT = "azure_eventhubs.custom_endpoint";
+
+    private static AzAmqpTestBroker broker;
+
+    @BeforeAll
+    public static void startBroker() throws Exception {
+        broker = new AzAmqpTestBroker();
+        broker.start();
+        AzAmqpLoadRunner.initJMeter();
+        JMeterUtils.setProperty(JMPROPS_CUSTOM_ENDPOINT, broker.getEndpoint());
+    }
+
+    @AfterAll
+    public static void stopBroker() throws Exception {
+        JMeterUtils.getJMeterProperties().remove(JMPROPS_CUSTOM_ENDPOINT);
+        broker.stop();
+    }
+
+    @ParameterizedTest(name = "{0} threads, {1} events per sample, partition {2}, {3} concurrent sends")
+    @CsvSource({
+        // threads, events, partition, concurrent sends, min msgs/s, max bytes allocated/msg
+        "1, 1, '', 1, 90, 38000",
+        "1, 10, '', 1, 865, 26000",
+        "4, 1, '', 1, 260, 38000",
+        "4, 10, '', 1, 2300, 26000",
+        "4, 10, 0, 1, 2600, 26000",
+        "1, 1, '', 8, 290, 14000",
+        "4, 10, '', 4, 5900, 7800",
+    })
+    public void sendBatch(int concurrency, int eventsPerSample, String partitionId, int concurrentSends,
+            double minMessagesPerSecond, long maxAllocatedBytesPerMessage) throws Exception {
+        broker.reset();
+        AzAmqpLoadRunner runner = new AzAmqpLoadRunner(concurrency, eventsPerSample * concurrentSends);
+        AzAmqpLoadRunner.Result result = runner.run(() -> createSampler(eventsPerSample, partitionId, concurrentSends));
+        log.info("Event Hubs {} threads, {} events/sample, {} concurrent sends: {}", concurrency, eventsPerSample, concurrentSends, result);
+
+        assertEquals(0, result.getFailedSamples(), result.getFirstFailure());
+        assertTrue(broker.getMessageCountWithPrefix(EVENT_HUB_NAME) >= result.getMessages(),
+            "Events missing at the broker: ".concat(result.toString()));
+        assertTrue(result.getMessagesPerSecond() >= AzAmqpLoadRunner.minMessagesPerSecond(minMessagesPerSecond),
+            "Throughput regressed: ".concat(result.toString()));
+        assertTrue(result.getAllocatedBytesPerMessage() <= AzAmqpLoadRunner.maxAllocatedBytesPerMessage(maxAllocatedBytesPerMessage),
+            "Allocation regressed: ".concat(result.toString()));
+    }
+
+    private static AzEventHubsSampler createSampler(int eventsPerSample, String partitionId, int concurrentSends) {
+        AzAmqpMessages messages = new AzAmqpMessages();
+        for (int i = 0; i < eventsPerSample; i++) {
+            AzAmqpMessage msg = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+            msg.setMessage(StringUtils.repeat('x', 256));
+            messages.addMessage(msg);
+        }
+
+        AzEventHubsSampler sampler = new AzEventHubsSampler();
+        sampler.setName("Event Hubs throughput");
+        sampler.setNamespaceName(AzAmqpTestBroker.getNamespaceName());
+        sampler.setAuthType(AzEventHubsSampler.AUTHTYPE_SAS);
+        sampler.setSharedAccessKeyName("RootManageSharedAccessKey");
+        sampler.setSharedAccessKey("dGhyb3VnaHB1dC10ZXN0LWtleQ==");
+        sampler.setEventHubName(EVENT_HUB_NAME);
+        sampler.setPartitionType(partitionId.isEmpty() ? AzEventHubsSampler.PARTITION_TYPE_NOT_SPECIFIED : AzEventHubsSampler.PARTITION_TYPE_ID);
+        sampler.setPartitionValue(partitionId);
+        sampler.setMessages(messages);
+        sampler.setConcurrentSends(String.valueOf(concurrentSends));
+        return sampler;
+    }
+}
@@ -0,0 +1,97 @@
+package jp.co.pnop.jmeter.protocol.azureeventhubs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.azure.messaging.eventhubs.EventData;
+import com.azure.messaging.eventhubs.EventHubBufferedProducerClientBuilder;
+
+import org.junit.jupiter.api.Test;
+
+public class AzEventHubsBufferedProducerTest {
+
+    private static final String CONNECTION_STRING
+        = "Endpoint=sb://localhost/;SharedAccessKeyName=RootManageSharedAccessKey;SharedAccessKey=a2V5";
+
+    @Test
+    public void maxConcurrentSendsReachesTheBuilder() {
+        EventHubBufferedProducerClientBuilder builder = new EventHubBufferedProducerClientBuilder()
+            .connectionString(CONNECTION_STRING, "hub")
+            .onSendBatchSucceeded(context -> { })
+            .onSendBatchFailed(context -> { });
+        // the builder rejects the value when the producer is built, which shows that it was set
+        AzEventHubsBufferedProducer.maxConcurrentSends(builder, 0);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, builder::buildAsyncClient);
+        assertTrue(ex.getMessage().contains("maxConcurrentSends"), ex.getMessage());
+    }
+
+    @Test
+    public void succeededBatchesAreCountedPerPartition() throws Exception {
+        EventData first = new EventData("1");
+        EventData second = new EventData("2");
+        EventData third = new EventData("3");
+        AzEventHubsBufferedProducer.Pending pending = AzEventHubsBufferedProducer.register(Arrays.asList(first, second, third));
+
+        AzEventHubsBufferedProducer.complete(Arrays.asList(first, second), "0", null);
+        assertFalse(pending.await(0));
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(third), "1", null);
+
+        assertTrue(pending.await(0));
+        assertEquals(2, pending.getSucceededPerPartition().get("0").sum());
+        assertEquals(1, pending.getSucceededPerPartition().get("1").sum());
+        assertEquals(0, pending.getFailed());
+        assertNull(pending.getFirstError());
+    }
+
+    @Test
+    public void failedBatchesKeepTheFirstError() throws Exception {
+        EventData first = new EventData("1");
+        EventData second = new EventData("2");
+        EventData third = new EventData("3");
+        AzEventHubsBufferedProducer.Pending pending = AzEventHubsBufferedProducer.register(Arrays.asList(first, second, third));
+        IllegalStateException busy = new IllegalStateException("server busy");
+
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(first), "0", busy);
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(second), "0", new IllegalStateException("quota"));
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(third), "1", null);
+        // a batch reported twice is only counted once
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(third), "1", null);
+
+        assertTrue(pending.await(0));
+        assertEquals(2, pending.getFailed());
+        assertSame(busy, pending.getFirstError());
+        assertNull(pending.getSucceededPerPartition().get("0"));
+        assertEquals(1, pending.getSucceededPerPartition().get("1").sum());
+    }
+
+    @Test
+    public void abandonedEventsAreNotReportedLater() throws Exception {
+        EventData first = new EventData("1");
+        EventData second = new EventData("2");
+        List<EventData> events = Arrays.asList(first, second);
+        AzEventHubsBufferedProducer.Pending pending = AzEventHubsBufferedProducer.register(events);
+
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(first), "0", null);
+        assertFalse(pending.await(10));
+        assertEquals(1, pending.abandon(events));
+
+        // the callback of the abandoned event arrives after the timeout
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(second), "0", null);
+        assertFalse(pending.await(0));
+        assertEquals(1, pending.getSucceededPerPartition().get("0").sum());
+
+        // abandoning does not affect the events of another sample
+        AzEventHubsBufferedProducer.Pending other = AzEventHubsBufferedProducer.register(Collections.singletonList(second));
+        pending.abandon(events);
+        AzEventHubsBufferedProducer.complete(Collections.singletonList(second), "1", null);
+        assertTrue(other.await(0));
+    }
+}
@@ -0,0 +1,106 @@
+package jp.co.pnop.jmeter.protocol.azureeventhubs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.azureeventhubs.sampler.AzEventHubsSampler;
+
+public class AzEventHubsPartitionSelectorTest {
+
+    private static final List<String> PARTITION_IDS = Arrays.asList("0", "1", "2", "3");
+
+    private static AzAmqpMessage message(String partitionKey) {
+        AzAmqpMessage msg = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+        msg.setPartitionKey(partitionKey);
+        return msg;
+    }
+
+    @Test
+    public void roundRobinStartsAtOffsetAndWraps() {
+        AzEventHubsPartitionSelector selector
+            = new AzEventHubsPartitionSelector(AzEventHubsSampler.PARTITION_TYPE_ROUND_ROBIN, "", PARTITION_IDS, 2);
+        AzAmqpMessage msg = message("");
+        assertEquals("2", selector.select(msg));
+        assertEquals("3", selector.select(msg));
+        assertEquals("0", selector.select(msg));
+        assertEquals("1", selector.select(msg));
+    }
+
+    @Test
+    public void keyHashIsStableAndSpreads() {
+        AzEventHubsPartitionSelector selector
+            = new AzEventHubsPartitionSelector(AzEventHubsSampler.PARTITION_TYPE_KEY_HASH, "", PARTITION_IDS, 0);
+        assertEquals(selector.select(message("tenant-1")), selector.select(message("tenant-1")));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 4000; i++) {
+            counts.merge(selector.select(message("tenant-".concat(String.valueOf(i)))), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 800, counts.toString()));
+
+        assertThrows(IllegalArgumentException.class, () -> selector.select(message("")));
+    }
+
+    @Test
+    public void zipfFavoursFirstPartitions() {
+        AzEventHubsPartitionSelector selector
+            = new AzEventHubsPartitionSelector(AzEventHubsSampler.PARTITION_TYPE_ZIPF, "1.5", PARTITION_IDS, 0);
+        int[] counts = new int[PARTITION_IDS.size()];
+        AzAmqpMessage msg = message("");
+        for (int i = 0; i < 20000; i++) {
+            counts[Integer.parseInt(selector.select(msg))]++;
+        }
+        for (int i = 1; i < counts.length; i++) {
+            assertTrue(counts[i - 1] > counts[i], Arrays.toString(counts));
+        }
+
+        double[] weights = AzEventHubsPartitionSelector.zipfCumulativeWeights(4, 0);
+        assertEquals(0.25, weights[0], 1e-9);
+        assertEquals(1.0, weights[3], 1e-9);
+    }
+
+    @Test
+    public void enginesClaimDisjointEvenSubsets() {
+        List<String> partitionIds = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            partitionIds.add(String.valueOf(i));
+        }
+        Set<String> claimed = new HashSet<>();
+        for (int engine = 0; engine < 3; engine++) {
+            List<String> assigned = AzEventHubsPartitionSelector.assignedPartitions(partitionIds, engine, 3);
+            assertTrue(assigned.size() == 10 || assigned.size() == 11, assigned.toString());
+            assigned.forEach(id -> assertTrue(claimed.add(id), id));
+        }
+        assertEquals(32, claimed.size());
+
+        assertEquals(Arrays.asList("1"), AzEventHubsPartitionSelector.assignedPartitions(PARTITION_IDS, 5, 6));
+        assertThrows(IllegalArgumentException.class, () -> AzEventHubsPartitionSelector.assignedPartitions(PARTITION_IDS, 2, 2));
+    }
+
+    @Test
+    public void engineAssignedCyclesThroughItsPartitions() {
+        AzEventHubsPartitionSelector selector
+            = new AzEventHubsPartitionSelector(AzEventHubsSampler.PARTITION_TYPE_ENGINE, "1/2", PARTITION_IDS, 0);
+        assertEquals(Arrays.asList("1", "3"), selector.getPartitionIds());
+        AzAmqpMessage msg = message("");
+        assertEquals("1", selector.select(msg));
+        assertEquals("3", selector.select(msg));
+        assertEquals("1", selector.select(msg));
+
+        assertThrows(NumberFormatException.class, () -> AzEventHubsPartitionSelector.engine("first/2"));
+    }
+}
@@ -1,20 +1,26 @@
 package jp.co.pnop.jmeter.protocol.azureservicebus.common;
 
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.azure.core.amqp.AmqpRetryMode;
+import com.azure.core.amqp.AmqpRetryOptions;
 import com.azure.core.amqp.AmqpTransportType;
-import com.azure.core.amqp.ProxyOptions;
 import com.azure.messaging.servicebus.ServiceBusClientBuilder;
+import com.azure.messaging.servicebus.ServiceBusSenderAsyncClient;
 import com.azure.messaging.servicebus.ServiceBusSenderClient;
 
 import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jp.co.pnop.jmeter.protocol.aad.config.AzAdCredential;
 import jp.co.pnop.jmeter.protocol.aad.config.AzAdCredential.AzAdCredentialComponentImpl;
 import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpProxyOptions;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpSecretHash;
 import jp.co.pnop.jmeter.protocol.azureservicebus.config.AzServiceBusClient.AzServiceBusClientComponentImpl;
 
 public class AzServiceBusClientParams extends AbstractTestElement {
@@ -43,6 +49,13 @@ public class AzServiceBusClientParams extends AbstractTestElement {
     public static final String DEST_TYPE = "destType";
     public static final String QUEUE_NAME = "queueName";
     public static final String PROTOCOL = "protocol";
+    public static final String TRY_TIMEOUT = "tryTimeout";
+    public static final String MAX_RETRIES = "maxRetries";
+    public static final String RETRY_MODE = "retryMode";
+    public static final String RETRY_DELAY = "retryDelay";
+    public static final String MAX_RETRY_DELAY = "maxRetryDelay";
+    public static final String PREFETCH_COUNT = "prefetchCount";
+    public static final String CUSTOM_ENDPOINT = "customEndpoint";
 
     public static final String CONNECTION_TYPE_NEW_CONNECTION = "Create New Connection";
     public static final String CONNECTION_TYPE_DEFINED_CONNECTION = "Use Defined Connection";
@@ -61,8 +74,27 @@ public class AzServiceBusClientParams extends AbstractTestElement {
     public static final String PROTOCOL_AMQP = "AMQP";
     public static final String PROTOCOL_AMQP_OVER_WEBSOCKETS = "AMQP over Web Sockets";
 
+    public static final String RETRY_MODE_DEFAULT = "Default";
+    public static final String RETRY_MODE_EXPONENTIAL = "Exponential";
+    public static final String RETRY_MODE_FIXED = "Fixed";
+
+    // Blank tuning fields fall back to these JMeter properties, then to the defaults of the SDK.
+    private static final String JMPROPS_CATEGORY = "azure_servicebus";
+    private static final String JMPROPS_TRY_TIMEOUT = JMPROPS_CATEGORY.concat(".try_timeout");
+    private static final String JMPROPS_MAX_RETRIES = JMPROPS_CATEGORY.concat(".max_retries");
+    private static final String JMPROPS_RETRY_MODE = JMPROPS_CATEGORY.concat(".retry_mode");
+    private static final String JMPROPS_RETRY_DELAY = JMPROPS_CATEGORY.concat(".retry_delay");
+    private static final String JMPROPS_MAX_RETRY_DELAY = JMPROPS_CATEGORY.concat(".max_retry_delay");
+    private static final String JMPROPS_PREFETCH_COUNT = JMPROPS_CATEGORY.concat(".prefetch_count");
+    private static final String JMPROPS_CUSTOM_ENDPOINT = JMPROPS_CATEGORY.concat(".custom_endpoint");
+
     private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
 
+    // Every thread has its own clone of the parameters, so the sender of "Create New Connection" is
+    // reused across the samples of a thread and rebuilt only when a parameter value changes.
+    private transient ServiceBusSenderClient newConnectionProducer;
+    private transient String newConnectionProducerKey;
+
     /**
      * Create a new Azure Service Bus Client object with no messages.
      */
@@ -86,6 +118,13 @@ public class AzServiceBusClientParams extends AbstractTestElement {
         setProperty(new StringProperty(DEST_TYPE, DEST_TYPE_QUEUE));
         setProperty(new StringProperty(QUEUE_NAME, ""));
         setProperty(new StringProperty(PROTOCOL, PROTOCOL_AMQP));
+        setProperty(new StringProperty(TRY_TIMEOUT, ""));
+        setProperty(new StringProperty(MAX_RETRIES, ""));
+        setProperty(new StringProperty(RETRY_MODE, RETRY_MODE_DEFAULT));
+        setProperty(new StringProperty(RETRY_DELAY, ""));
+        setProperty(new StringProperty(MAX_RETRY_DELAY, ""));
+        setProperty(new StringProperty(PREFETCH_COUNT, ""));
+        setProperty(new StringProperty(CUSTOM_ENDPOINT, ""));
     }
 
     public String getConnectionType() {
@@ -164,42 +203,247 @@ public class AzServiceBusClientParams extends AbstractTestElement {
         return getPropertyAsString(PROTOCOL);
     }
 
-    public ServiceBusSenderClient getProducer() throws Exception {
+    public void setTryTimeout(String tryTimeout) {
+        setProperty(new StringProperty(TRY_TIMEOUT, tryTimeout));
+    }
+
+    public String getTryTimeout() {
+        return getTuning(TRY_TIMEOUT, JMPROPS_TRY_TIMEOUT);
+    }
+
+    public void setMaxRetries(String maxRetries) {
+        setProperty(new StringProperty(MAX_RETRIES, maxRetries));
+    }
+
+    public String getMaxRetries() {
+        return getTuning(MAX_RETRIES, JMPROPS_MAX_RETRIES);
+    }
+
+    public void setRetryMode(String retryMode) {
+        setProperty(new StringProperty(RETRY_MODE, retryMode));
+    }
+
+    public String getRetryMode() {
+        String retryMode = getPropertyAsString(RETRY_MODE);
+        if (JOrphanUtils.isBlank(retryMode) || retryMode.equals(RETRY_MODE_DEFAULT)) {
+            retryMode = JMeterUtils.getPropDefault(JMPROPS_RETRY_MODE, "").trim();
+        }
+        return retryMode;
+    }
+
+    public void setRetryDelay(String retryDelay) {
+        setProperty(new StringProperty(RETRY_DELAY, retryDelay));
+    }
+
+    public String getRetryDelay() {
+        return getTuning(RETRY_DELAY, JMPROPS_RETRY_DELAY);
+    }
+
+    public void setMaxRetryDelay(String maxRetryDelay) {
+        setProperty(new StringProperty(MAX_RETRY_DELAY, maxRetryDelay));
+    }
+
+    public String getMaxRetryDelay() {
+        return getTuning(MAX_RETRY_DELAY, JMPROPS_MAX_RETRY_DELAY);
+    }
+
+    public void setPrefetchCount(String prefetchCount) {
+        setProperty(new StringProperty(PREFETCH_COUNT, prefetchCount));
+    }
+
+    public String getPrefetchCount() {
+        return getTuning(PREFETCH_COUNT, JMPROPS_PREFETCH_COUNT);
+    }
+
+    public void setCustomEndpoint(String customEndpoint) {
+        setProperty(new StringProperty(CUSTOM_ENDPOINT, customEndpoint));
+    }
+
+    public String getCustomEndpoint() {
+        return getTuning(CUSTOM_ENDPOINT, JMPROPS_CUSTOM_ENDPOINT);
+    }
+
+    /**
+     * Get a tuning field, or the JMeter property if the field is blank.
+     *
+     * @return the trimmed value, or an empty string if neither is set
+     */
+    private String getTuning(String key, String jmeterProperty) {
+        String value = getPropertyAsString(key);
+        if (JOrphanUtils.isBlank(value)) {
+            value = JMeterUtils.getPropDefault(jmeterProperty, "");
+        }
+        return value.trim();
+    }
+
+    /**
+     * Get the prefetch count for receivers.
+     *
+     * @return the prefetch count, or null to use the default of the SDK
+     * @throws NumberFormatException if the prefetch count is not a number of 0 or more
+     */
+    public Integer getPrefetchCountValue() {
+        String prefetchCount = getPrefetchCount();
+        if (prefetchCount.isEmpty()) {
+            return null;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(prefetchCount);
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [Prefetch count]"));
+        }
+        if (value < 0) {
+            throw new NumberFormatException("Prefetch count must be 0 or more. [Prefetch count]");
+        }
+        return value;
+    }
+
+    /**
+     * Create the retry options from the tuning fields.
+     *
+     * @return the retry options, or null if no field is set
+     * @throws NumberFormatException if a field is not a number
+     */
+    public AmqpRetryOptions createRetryOptions() {
+        String tryTimeout = getTryTimeout();
+        String maxRetries = getMaxRetries();
+        String retryMode = getRetryMode();
+        String retryDelay = getRetryDelay();
+        String maxRetryDelay = getMaxRetryDelay();
+        if (tryTimeout.isEmpty() && maxRetries.isEmpty() && retryMode.isEmpty() && retryDelay.isEmpty() && maxRetryDelay.isEmpty()) {
+            return null;
+        }
+
+        AmqpRetryOptions retryOptions = new AmqpRetryOptions();
+        if (!tryTimeout.isEmpty()) {
+            retryOptions.setTryTimeout(toDuration(tryTimeout, "Try timeout"));
+        }
+        if (!maxRetries.isEmpty()) {
+            try {
+                retryOptions.setMaxRetries(Integer.parseInt(maxRetries));
+            } catch (NumberFormatException ex) {
+                throw new NumberFormatException(ex.getMessage().concat(" [Max retries]"));
+            }
+        }
+        if (retryMode.equals(RETRY_MODE_FIXED)) {
+            retryOptions.setMode(AmqpRetryMode.FIXED);
+        } else if (retryMode.equals(RETRY_MODE_EXPONENTIAL)) {
+            retryOptions.setMode(AmqpRetryMode.EXPONENTIAL);
+        }
+        if (!retryDelay.isEmpty()) {
+            retryOptions.setDelay(toDuration(retryDelay, "Retry delay"));
+        }
+        if (!maxRetryDelay.isEmpty()) {
+            retryOptions.setMaxDelay(toDuration(maxRetryDelay, "Max retry delay"));
+        }
+        return retryOptions;
+    }
+
+    private static Duration toDuration(String seconds, String label) {
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(seconds) * 1000));
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(label).concat("]"));
+        }
+    }
+
+    /**
+     * Describe the tuning fields that are set, for the request body of a sample result.
+     *
+     * @return e.g. "\nTry timeout: 10 sec\nMax retries: 0", or an empty string if no field is set
+     */
+    public String describeTuning() {
+        String description = "";
+        if (!getTryTimeout().isEmpty()) {
+            description = description.concat("\nTry timeout: ").concat(getTryTimeout()).concat(" sec");
+        }
+        if (!getMaxRetries().isEmpty()) {
+            description = description.concat("\nMax retries: ").concat(getMaxRetries());
+        }
+        if (!getRetryMode().isEmpty()) {
+            description = description.concat("\nRetry mode: ").concat(getRetryMode());
+        }
+        if (!getRetryDelay().isEmpty()) {
+            description = description.concat("\nRetry delay: ").concat(getRetryDelay()).concat(" sec");
+        }
+        if (!getMaxRetryDelay().isEmpty()) {
+            description = description.concat("\nMax retry delay: ").concat(getMaxRetryDelay()).concat(" sec");
+        }
+        if (!getPrefetchCount().isEmpty()) {
+            description = description.concat("\nPrefetch count: ").concat(getPrefetchCount());
+        }
+        if (!getCustomEndpoint().isEmpty()) {
+            description = description.concat("\nCustom endpoint: ").concat(getCustomEndpoint());
+        }
+        return description;
+    }
+
+    /**
+     * Create a client builder from the connection settings of "Create New Connection".
+     * Clients built from the same builder share its connection.
+     */
+    public ServiceBusClientBuilder createClientBuilder() throws Exception {
         ServiceBusClientBuilder producerBuilder = new ServiceBusClientBuilder();
+
+        if (getAuthType().equals(AUTHTYPE_SAS)) {
+            final String connectionString
+                = "Endpoint=sb://".concat(getNamespaceName()).concat("/;")
+                .concat("SharedAccessKeyName=").concat(getSharedAccessKeyName()).concat(";")
+                .concat("SharedAccessKey=").concat(getSharedAccessKey());
+            producerBuilder = producerBuilder.connectionString(connectionString);
+        } else { // AUTHTYPE_AAD
+            AzAdCredentialComponentImpl credential = AzAdCredential.getCredential(getAadCredential());
+            producerBuilder = producerBuilder.credential(getNamespaceName(), credential.getCredential());
+        }
+
+        AmqpTransportType protocol = null;
+        if (getProtocol() == PROTOCOL_AMQP_OVER_WEBSOCKETS) {
+            protocol = AmqpTransportType.AMQP_WEB_SOCKETS;
+            producerBuilder = producerBuilder.proxyOptions(AzAmqpProxyOptions.proxyOptions());
+        } else {
+            protocol = AmqpTransportType.AMQP;
+        }
+
+        AmqpRetryOptions retryOptions = createRetryOptions();
+        if (retryOptions != null) {
+            producerBuilder.retryOptions(retryOptions);
+        }
+        if (!getCustomEndpoint().isEmpty()) {
+            producerBuilder.customEndpointAddress(getCustomEndpoint());
+        }
+        return producerBuilder.transportType(protocol);
+    }
+
+    /**
+     * Get the sender of the queue/topic. The sender of "Create New Connection" is created by the warm-up
+     * or the first sample of the thread, and reused while the parameter values stay the same; it is closed
+     * by {@link #closeProducer()}. The sender of a defined connection belongs to the connection.
+     */
+    public synchronized ServiceBusSenderClient getProducer() throws Exception {
         ServiceBusSenderClient producer = null;
         
         if (getConnectionType().equals(CONNECTION_TYPE_NEW_CONNECTION)) {
-            if (getAuthType().equals(AUTHTYPE_SAS)) {
-                final String connectionString
-                    = "Endpoint=sb://".concat(getNamespaceName()).concat("/;")
-                    .concat("SharedAccessKeyName=").concat(getSharedAccessKeyName()).concat(";")
-                    .concat("SharedAccessKey=").concat(getSharedAccessKey());
-                producerBuilder = producerBuilder.connectionString(connectionString);
-            } else { // AUTHTYPE_AAD
-                AzAdCredentialComponentImpl credential = AzAdCredential.getCredential(getAadCredential());
-                producerBuilder = producerBuilder.credential(getNamespaceName(), credential.getCredential());
+            String key = getProducerKey();
+            if (newConnectionProducer != null && key.equals(newConnectionProducerKey)) {
+                return newConnectionProducer;
             }
 
-            AmqpTransportType protocol = null;
-            if (getProtocol() == PROTOCOL_AMQP_OVER_WEBSOCKETS) {
-                protocol = AmqpTransportType.AMQP_WEB_SOCKETS;
-                producerBuilder = producerBuilder.proxyOptions(new AzAmqpProxyOptions().ProxyOptions());
-                ProxyOptions proxyOptions = new AzAmqpProxyOptions().ProxyOptions();
-                producerBuilder.proxyOptions(proxyOptions);
-            } else {
-                protocol = AmqpTransportType.AMQP;
-            }
-            producerBuilder = producerBuilder.transportType(protocol);
-
+            closeProducer();
+            ServiceBusClientBuilder producerBuilder = createClientBuilder();
             if (getDestType().equals(DEST_TYPE_TOPIC)) {
                 producer = producerBuilder.sender().topicName(getQueueName()).buildClient();
             } else {
                 producer = producerBuilder.sender().queueName(getQueueName()).buildClient();
             }
+            newConnectionProducer = producer;
+            newConnectionProducerKey = key;
             log.debug("Created connection: {}", producer.toString());
         } else { // CONNECTION_TYPE_DEFINED_CONNECTION or CONNECTION_TYPE_DEFINED_TRANSACTION
             Object tempObject = getThreadContext().getVariables().getObject(getDefinedConnectionName());
-            if (!tempObject.getClass().getSimpleName().equals("AzServiceBusClientComponentImpl")) {
+            if (tempObject == null) {
+                throw new NullPointerException("Connection \"".concat(getDefinedConnectionName()).concat("\" is not defined."));
+            } else if (!(tempObject instanceof AzServiceBusClientComponentImpl)) {
                 throw new ClassCastException("The \"".concat(getDefinedConnectionName()).concat("\" you specified is not a connection."));
             }
             AzServiceBusClientComponentImpl serviceBusClient = (AzServiceBusClientComponentImpl) tempObject;
@@ -210,6 +454,65 @@ public class AzServiceBusClientParams extends AbstractTestElement {
         return producer;
     }
 
+    /**
+     * Close the sender of "Create New Connection" that {@link #getProducer()} keeps for the thread.
+     */
+    public synchronized void closeProducer() {
+        if (newConnectionProducer != null) {
+            newConnectionProducer.close();
+            newConnectionProducer = null;
+            newConnectionProducerKey = null;
+        }
+    }
+
+    /**
+     * @return the connection settings of "Create New Connection"; the shared access key is only included
+     *         as a hash, so that a changed key creates a new sender
+     */
+    private String getProducerKey() {
+        return getNamespaceName().concat("/").concat(getQueueName()).concat("\n")
+            .concat(getDestType()).concat("\n")
+            .concat(getAuthType()).concat("\n")
+            .concat(getAuthType().equals(AUTHTYPE_SAS)
+                ? getSharedAccessKeyName().concat("\n").concat(AzAmqpSecretHash.of(getSharedAccessKey()))
+                : getAadCredential()).concat("\n")
+            .concat(getProtocol()).concat("\n")
+            .concat(getCustomEndpoint()).concat("\n")
+            .concat(getTryTimeout()).concat("\n")
+            .concat(getMaxRetries()).concat("\n")
+            .concat(getRetryMode()).concat("\n")
+            .concat(getRetryDelay()).concat("\n")
+            .concat(getMaxRetryDelay());
+    }
+
+    /**
+     * Create an asynchronous sender. Only available for "Create New Connection";
+     * the caller is responsible for closing it.
+     */
+    public ServiceBusSenderAsyncClient getAsyncProducer() throws Exception {
+        if (!getConnectionType().equals(CONNECTION_TYPE_NEW_CONNECTION)) {
+            throw new IllegalArgumentException("Open model dispatch can only be used with \"".concat(CONNECTION_TYPE_NEW_CONNECTION).concat("\"."));
+        }
+
+        return getAsyncProducer(createClientBuilder());
+    }
+
+    /**
+     * Create an asynchronous sender of the queue/topic from a builder of {@link #createClientBuilder()}.
+     * The caller is responsible for closing it.
+     */
+    public ServiceBusSenderAsyncClient getAsyncProducer(ServiceBusClientBuilder producerBuilder) {
+        ServiceBusSenderAsyncClient producer = null;
+        if (getDestType().equals(DEST_TYPE_TOPIC)) {
+            producer = producerBuilder.sender().topicName(getQueueName()).buildAsyncClient();
+        } else {
+            producer = producerBuilder.sender().queueName(getQueueName()).buildAsyncClient();
+        }
+        log.debug("Created connection: {}", producer.toString());
+
+        return producer;
+    }
+
     /*
      * Helper method
      */
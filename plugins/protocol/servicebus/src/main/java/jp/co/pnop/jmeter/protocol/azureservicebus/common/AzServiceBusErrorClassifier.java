@@ -0,0 +1,65 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.common;
+
+import com.azure.messaging.servicebus.ServiceBusException;
+import com.azure.messaging.servicebus.ServiceBusFailureReason;
+
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpErrorClassifier;
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+
+/**
+ * Classifies the errors of the Service Bus samplers by the failure reason of the {@link ServiceBusException},
+ * into the error classes of {@link AzUtilErrorCounters}.
+ * Other errors, and general errors, are classified by the AMQP error condition of their cause.
+ */
+public class AzServiceBusErrorClassifier {
+
+    private AzServiceBusErrorClassifier() {
+    }
+
+    /**
+     * @param ex the error of a Service Bus operation
+     * @return the error class, e.g. {@link AzUtilErrorCounters#QUOTA_EXCEEDED}
+     */
+    public static String classify(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ServiceBusException) {
+                String errorClass = classify(((ServiceBusException) cause).getReason());
+                if (errorClass != null) {
+                    return errorClass;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return AzAmqpErrorClassifier.classify(ex);
+    }
+
+    /**
+     * @return the error class of the failure reason, or null if the reason does not tell the class
+     */
+    public static String classify(ServiceBusFailureReason reason) {
+        if (ServiceBusFailureReason.SERVICE_BUSY.equals(reason)) {
+            return AzUtilErrorCounters.SERVER_BUSY;
+        } else if (ServiceBusFailureReason.QUOTA_EXCEEDED.equals(reason)) {
+            return AzUtilErrorCounters.QUOTA_EXCEEDED;
+        } else if (ServiceBusFailureReason.SERVICE_TIMEOUT.equals(reason)) {
+            return AzUtilErrorCounters.TIMEOUT;
+        } else if (ServiceBusFailureReason.UNAUTHORIZED.equals(reason)) {
+            return AzUtilErrorCounters.UNAUTHORIZED;
+        } else if (ServiceBusFailureReason.MESSAGING_ENTITY_NOT_FOUND.equals(reason)
+            || ServiceBusFailureReason.MESSAGE_NOT_FOUND.equals(reason)) {
+            return AzUtilErrorCounters.NOT_FOUND;
+        } else if (ServiceBusFailureReason.MESSAGE_SIZE_EXCEEDED.equals(reason)) {
+            return AzUtilErrorCounters.MESSAGE_SIZE_EXCEEDED;
+        } else if (ServiceBusFailureReason.MESSAGE_LOCK_LOST.equals(reason)
+            || ServiceBusFailureReason.SESSION_LOCK_LOST.equals(reason)
+            || ServiceBusFailureReason.SESSION_CANNOT_BE_LOCKED.equals(reason)) {
+            return AzUtilErrorCounters.LOCK_LOST;
+        } else if (ServiceBusFailureReason.SERVICE_COMMUNICATION_ERROR.equals(reason)) {
+            return AzUtilErrorCounters.CONNECTION;
+        }
+        // GENERAL_ERROR, MESSAGING_ENTITY_DISABLED, MESSAGING_ENTITY_ALREADY_EXISTS
+        return null;
+    }
+}
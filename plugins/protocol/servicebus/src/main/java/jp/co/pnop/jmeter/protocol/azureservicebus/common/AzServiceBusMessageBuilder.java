@@ -0,0 +1,184 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.common;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.azure.messaging.servicebus.ServiceBusMessage;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpMessageEncoder;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompressedBody;
+
+/**
+ * Builds Service Bus messages from the message definitions of the samplers.
+ */
+public class AzServiceBusMessageBuilder {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> CUSTOM_PROPERTIES_TYPE = new TypeReference<Map<String, Object>>(){};
+    private static final TypeReference<Map<String, String>> STANDARD_PROPERTIES_TYPE = new TypeReference<Map<String, String>>(){};
+    private static final Pattern TTL_PATTERN = Pattern.compile("([0-9]+)(.*)");
+
+    private static final Map<String, ChronoUnit> chronoUnit = new HashMap<String, ChronoUnit>();
+    static {
+        chronoUnit.put ("MILLIS", ChronoUnit.MILLIS);
+        chronoUnit.put ("SECONDS", ChronoUnit.SECONDS);
+        chronoUnit.put ("MINUTES", ChronoUnit.MINUTES);
+        chronoUnit.put ("HOURS", ChronoUnit.HOURS);
+        chronoUnit.put ("DAYS", ChronoUnit.DAYS);
+    };
+
+    private AzServiceBusMessageBuilder() {
+    }
+
+    /**
+     * Build a Service Bus message.
+     *
+     * @param msg    the message definition
+     * @param caller "thread:sampler" used in error messages
+     * @return the Service Bus message
+     * @throws Exception if the message can not be built
+     */
+    public static ServiceBusMessage build(AzAmqpMessage msg, String caller) throws Exception {
+        return build(msg, new AzAmqpMessageEncoder().encode(msg), caller);
+    }
+
+    /**
+     * Build a Service Bus message with a body built by {@link AzAmqpMessageEncoder}.
+     * The content-encoding of a compressed body is set to the AMQP properties of the message.
+     *
+     * @param msg    the message definition
+     * @param body   the body of the message
+     * @param caller "thread:sampler" used in error messages
+     * @return the Service Bus message
+     * @throws Exception if the message can not be built
+     */
+    public static ServiceBusMessage build(AzAmqpMessage msg, AzUtilCompressedBody body, String caller) throws Exception {
+        ServiceBusMessage serviceBusMessage = new ServiceBusMessage(body.getBytes());
+        if (body.isCompressed()) {
+            serviceBusMessage.getRawAmqpMessage().getProperties().setContentEncoding(body.getContentEncoding());
+        }
+
+        String messageId = msg.getMessageId();
+        if (!messageId.isEmpty()) {
+            serviceBusMessage.setMessageId(messageId);
+        }
+
+        String groupId = msg.getGroupId();
+        if (!groupId.isEmpty()) {
+            serviceBusMessage.setSessionId(groupId);
+        }
+
+        String partitionKey = msg.getPartitionKey();
+        if (!partitionKey.isEmpty()) {
+            serviceBusMessage.setPartitionKey(partitionKey);
+        }
+
+        String customProperties = msg.getCustomProperties();
+        if (!customProperties.isEmpty()) {
+            Map<String, Object> properties = mapper.readValue(customProperties, CUSTOM_PROPERTIES_TYPE);
+            serviceBusMessage.getApplicationProperties().putAll(properties);
+        }
+
+        String contentType = msg.getContentType();
+        if (!contentType.isEmpty()) {
+            serviceBusMessage.setContentType(contentType);
+        }
+
+        String label = msg.getLabel();
+        if (!label.isEmpty()) {
+            serviceBusMessage.setSubject(label);
+        }
+
+        String standardProperties = msg.getStandardProperties();
+        if (!standardProperties.isEmpty()) {
+            Map<String, String> properties = mapper.readValue(standardProperties, STANDARD_PROPERTIES_TYPE);
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                switch (property.getKey().toLowerCase()) {
+                    case "correlation-id":
+                    case "correlationid":
+                    serviceBusMessage.setCorrelationId(property.getValue());
+                    break;
+
+                    case "reply-to":
+                    case "replyto":
+                    serviceBusMessage.setReplyTo(property.getValue());
+                    break;
+
+                    case "reply-to-group-id":
+                    case "replytosessionid":
+                    serviceBusMessage.setReplyToSessionId(property.getValue());
+                    break;
+
+                    case "to":
+                    serviceBusMessage.setTo(property.getValue());
+                    break;
+
+                    case "ttl":
+                    case "timetolive":
+                    Matcher matcher = TTL_PATTERN.matcher(property.getValue());
+                    if (matcher.find()) {
+                        String unit;
+                        if (matcher.group(2).trim().length() == 0) {
+                            unit = "SECONDS";
+                        } else {
+                            unit = matcher.group(2).trim().toUpperCase();
+                        }
+                        try {
+                            serviceBusMessage.setTimeToLive(Duration.of(Long.parseLong(matcher.group(1)), chronoUnit.get(unit)));
+                        } catch (NullPointerException exTtl) {
+                            throw new Exception("Error calling ".concat(caller).concat(". The \"").concat(property.getKey()).concat("\": \"").concat(property.getValue()).concat("\" in \"headers/properties/annotations\" was ignored. Only MILLIS, SECONDS, MINUTES, HOURS, and DAYS can be used for units."));
+                        }
+                    }
+                    break;
+
+                    case "x-opt-scheduled-enqueue-time":
+                    case "scheduledenqueuetime":
+                    serviceBusMessage.setScheduledEnqueueTime(OffsetDateTime.parse(property.getValue()));
+                    break;
+
+                    default:
+                    throw new Exception("Error calling ".concat(caller).concat(". The \"").concat(property.getKey()).concat("\": \"").concat(property.getValue()).concat("\" in \"headers/properties/annotations\" was ignored."));
+                }
+            }
+        }
+
+        return serviceBusMessage;
+    }
+
+    /**
+     * Describe a message definition for the request body of a sample result.
+     *
+     * @param msg      the message definition
+     * @param msgCount the position of the message in the batch (starting from 1)
+     * @return the description
+     */
+    public static String describe(AzAmqpMessage msg, int msgCount) {
+        String requestBody = "[Message #".concat(String.valueOf(msgCount)).concat("]");
+        if (!msg.getMessageId().isEmpty()) {
+            requestBody = requestBody.concat("\n").concat("Message ID: ").concat(msg.getMessageId());
+        }
+        if (!msg.getGroupId().isEmpty()) {
+            requestBody = requestBody.concat("\n").concat("Session ID: ").concat(msg.getGroupId());
+        }
+        if (!msg.getPartitionKey().isEmpty()) {
+            requestBody = requestBody.concat("\n").concat("Partition Key: ").concat(msg.getPartitionKey());
+        }
+        if (!msg.getContentType().isEmpty()) {
+            requestBody = requestBody.concat("\n").concat("Content Type: ").concat(msg.getContentType());
+        }
+        if (!msg.getLabel().isEmpty()) {
+            requestBody = requestBody.concat("\n").concat("Label/Subject: ").concat(msg.getLabel());
+        }
+        return requestBody.concat("\n")
+            .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
+            .concat("Body: ").concat(msg.getMessage());
+    }
+}
@@ -0,0 +1,54 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.common;
+
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Parses the numeric fields of the Service Bus samplers. A blank field takes the default value,
+ * and the label of the field is added to the message of a NumberFormatException.
+ */
+public class AzServiceBusParamParser {
+
+    private AzServiceBusParamParser() {
+    }
+
+    /**
+     * @param value        value of the field
+     * @param defaultValue value if the field is blank
+     * @param label        label of the field, for the error message
+     * @return the number
+     * @throws NumberFormatException if the value is not a positive integer
+     */
+    public static int toPositiveInt(String value, int defaultValue, String label) {
+        if (JOrphanUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(label).concat("]"));
+        }
+        if (number <= 0) {
+            throw new NumberFormatException(label.concat(" must be greater than 0. [").concat(label).concat("]"));
+        }
+        return number;
+    }
+
+    /**
+     * @param seconds        value of the field, in seconds
+     * @param defaultSeconds value if the field is blank
+     * @param label          label of the field, for the error message
+     * @return the value in milliseconds
+     * @throws NumberFormatException if the value is not a number
+     */
+    public static long toMillis(String seconds, double defaultSeconds, String label) {
+        if (JOrphanUtils.isBlank(seconds)) {
+            return (long) (defaultSeconds * 1000);
+        }
+        try {
+            return (long) (Double.parseDouble(seconds.trim()) * 1000);
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(label).concat("]"));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.common;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the messages received by the session receiver sampler, per session.
+ * <p>
+ * Messages are counted from the threads of the processor, so the counters are thread-safe.
+ * A message is out of order if its sequence number is lower than one already received from the same session,
+ * which can happen when more than one call per session runs at the same time.
+ */
+public class AzServiceBusReceiveStats {
+
+    private static final int MAX_LISTED_SESSIONS = 20;
+
+    private static class SessionStats {
+        private final LongAdder messages = new LongAdder();
+        private final AtomicLong lastSequenceNumber = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    private final Map<String, SessionStats> sessions = new ConcurrentHashMap<>();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder outOfOrder = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    /**
+     * Count a received message.
+     *
+     * @param sessionId      session of the message
+     * @param sequenceNumber sequence number of the message
+     * @param latencyMillis  time from enqueue to receive
+     * @param bodyBytes      size of the body
+     */
+    public void received(String sessionId, long sequenceNumber, long latencyMillis, long bodyBytes) {
+        SessionStats session = sessions.computeIfAbsent(sessionId == null ? "" : sessionId, id -> new SessionStats());
+        session.messages.increment();
+        long previous = session.lastSequenceNumber.getAndAccumulate(sequenceNumber, Math::max);
+        if (sequenceNumber < previous) {
+            outOfOrder.increment();
+        }
+        messages.increment();
+        bytes.add(bodyBytes);
+        long latency = Math.max(0, latencyMillis);
+        totalLatencyMillis.add(latency);
+        maxLatencyMillis.accumulateAndGet(latency, Math::max);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getOutOfOrder() {
+        return outOfOrder.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Summarize the messages received in a time.
+     *
+     * @param elapsedMillis time the messages were received in
+     * @return e.g. "Received: 1000 messages, 98.5 messages/sec, 10 sessions, ..." followed by the busiest sessions
+     */
+    public String summary(long elapsedMillis) {
+        long count = getMessages();
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        for (Map.Entry<String, SessionStats> session : sessions.entrySet()) {
+            long sessionCount = session.getValue().messages.sum();
+            min = Math.min(min, sessionCount);
+            max = Math.max(max, sessionCount);
+            counts.add(new AbstractMap.SimpleEntry<>(session.getKey(), sessionCount));
+        }
+        counts.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+
+        String summary = "Received: ".concat(String.valueOf(count)).concat(" messages, ")
+            .concat(String.format("%.1f", count * 1000.0 / Math.max(1, elapsedMillis))).concat(" messages/sec, ")
+            .concat(String.valueOf(sessions.size())).concat(" sessions")
+            .concat(sessions.isEmpty() ? "" : " (".concat(String.valueOf(min)).concat(" to ").concat(String.valueOf(max)).concat(" messages/session)"))
+            .concat("\nOut of order: ").concat(String.valueOf(getOutOfOrder()))
+            .concat("\nErrors: ").concat(String.valueOf(getErrors()))
+            .concat("\nEnd-to-end latency: ")
+            .concat(String.format("%.1f", count == 0 ? 0.0 : totalLatencyMillis.sum() / (double) count)).concat(" ms avg, ")
+            .concat(String.valueOf(maxLatencyMillis.get())).concat(" ms max");
+        for (int i = 0; i < Math.min(MAX_LISTED_SESSIONS, counts.size()); i++) {
+            summary = summary.concat("\nSession ").concat(counts.get(i).getKey()).concat(": ")
+                .concat(String.valueOf(counts.get(i).getValue())).concat(" messages");
+        }
+        if (counts.size() > MAX_LISTED_SESSIONS) {
+            summary = summary.concat("\n... ").concat(String.valueOf(counts.size() - MAX_LISTED_SESSIONS)).concat(" more sessions");
+        }
+        return summary;
+    }
+}
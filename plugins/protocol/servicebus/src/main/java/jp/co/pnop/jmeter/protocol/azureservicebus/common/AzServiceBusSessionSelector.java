@@ -0,0 +1,67 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jorphan.util.JOrphanUtils;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpKeyHash;
+import jp.co.pnop.jmeter.protocol.azureservicebus.sampler.AzServiceBusSampler;
+
+/**
+ * Chooses the session ID of each message for the session distribution modes of the Service Bus sampler.
+ * The session IDs are the prefix followed by 0 to N-1.
+ * <ul>
+ * <li>Round-robin: cycles through the sessions, continuing across samples.</li>
+ * <li>Hash of session ID: hashes the "session Id" column of the message, so that the same
+ * value (e.g. an order id) always goes to the same one of the N sessions.</li>
+ * </ul>
+ */
+public class AzServiceBusSessionSelector {
+
+    private final String sessionIdType;
+    private final String[] sessionIds;
+    private final AtomicInteger next;
+
+    public AzServiceBusSessionSelector(String sessionIdType, String sessionCount, String sessionIdPrefix, int startIndex) {
+        int count;
+        try {
+            count = Integer.parseInt(sessionCount.trim());
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException("Number of sessions must be an integer: ".concat(sessionCount));
+        }
+        if (count <= 0) {
+            throw new NumberFormatException("Number of sessions must be greater than 0: ".concat(sessionCount));
+        }
+        this.sessionIdType = sessionIdType;
+        this.sessionIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            sessionIds[i] = sessionIdPrefix.concat(String.valueOf(i));
+        }
+        this.next = new AtomicInteger(Math.floorMod(startIndex, count));
+    }
+
+    /**
+     * @return true if the session ID type is one of the distribution modes
+     */
+    public static boolean isDistributed(String sessionIdType) {
+        return AzServiceBusSampler.SESSION_ID_TYPE_ROUND_ROBIN.equals(sessionIdType)
+            || AzServiceBusSampler.SESSION_ID_TYPE_HASH.equals(sessionIdType);
+    }
+
+    public int getSessionCount() {
+        return sessionIds.length;
+    }
+
+    public String select(AzAmqpMessage msg) {
+        if (sessionIdType.equals(AzServiceBusSampler.SESSION_ID_TYPE_HASH)) {
+            String key = msg.getGroupId();
+            if (JOrphanUtils.isBlank(key)) {
+                throw new IllegalArgumentException("Session ID of the message is empty.");
+            }
+            return sessionIds[AzAmqpKeyHash.bucket(key, sessionIds.length)];
+        }
+        // SESSION_ID_TYPE_ROUND_ROBIN
+        return sessionIds[next.getAndUpdate(i -> (i + 1) % sessionIds.length)];
+    }
+}
@@ -69,6 +69,18 @@ public class AzServiceBusClientParamsPanel extends AbstractConfigGui implements
     private JLabeledTextField sharedAccessKeyName;
     private JPasswordField sharedAccessKey;
     private JLabeledTextField aadCredential;
+    private JLabeledTextField tryTimeout;
+    private JLabeledTextField maxRetries;
+    private JLabeledChoice retryMode;
+    private String[] RETRY_MODE_LABELS = {
+        AzServiceBusClientParams.RETRY_MODE_DEFAULT,
+        AzServiceBusClientParams.RETRY_MODE_EXPONENTIAL,
+        AzServiceBusClientParams.RETRY_MODE_FIXED
+    };
+    private JLabeledTextField retryDelay;
+    private JLabeledTextField maxRetryDelay;
+    private JLabeledTextField prefetchCount;
+    private JLabeledTextField customEndpoint;
     
     private VerticalPanel serviceBusConfigPanel = new VerticalPanel();
     private JPanel connectionTypePanel;
@@ -134,6 +146,13 @@ public class AzServiceBusClientParamsPanel extends AbstractConfigGui implements
             element.setProperty(AzServiceBusClientParams.DEST_TYPE, destType);
             element.setProperty(AzServiceBusClientParams.QUEUE_NAME, queueName.getText());
             element.setProperty(AzServiceBusClientParams.PROTOCOL, protocol.getText());
+            element.setProperty(AzServiceBusClientParams.TRY_TIMEOUT, tryTimeout.getText());
+            element.setProperty(AzServiceBusClientParams.MAX_RETRIES, maxRetries.getText());
+            element.setProperty(AzServiceBusClientParams.RETRY_MODE, retryMode.getText());
+            element.setProperty(AzServiceBusClientParams.RETRY_DELAY, retryDelay.getText());
+            element.setProperty(AzServiceBusClientParams.MAX_RETRY_DELAY, maxRetryDelay.getText());
+            element.setProperty(AzServiceBusClientParams.PREFETCH_COUNT, prefetchCount.getText());
+            element.setProperty(AzServiceBusClientParams.CUSTOM_ENDPOINT, customEndpoint.getText());
         }
         element.setProperty(AzServiceBusClientParams.CONNECTION_TYPE, connectionType);
     }
@@ -158,6 +177,13 @@ public class AzServiceBusClientParamsPanel extends AbstractConfigGui implements
         sharedAccessKeyName.setText("");
         sharedAccessKey.setText("");
         aadCredential.setText("");
+        tryTimeout.setText("");
+        maxRetries.setText("");
+        retryMode.setText(AzServiceBusClientParams.RETRY_MODE_DEFAULT);
+        retryDelay.setText("");
+        maxRetryDelay.setText("");
+        prefetchCount.setText("");
+        customEndpoint.setText("");
     }
 
     @Override
@@ -202,6 +228,13 @@ public class AzServiceBusClientParamsPanel extends AbstractConfigGui implements
         sharedAccessKeyName.setText(element.getPropertyAsString(AzServiceBusClientParams.SHARED_ACCESS_KEY_NAME));
         sharedAccessKey.setText(element.getPropertyAsString(AzServiceBusClientParams.SHARED_ACCESS_KEY));
         aadCredential.setText(element.getPropertyAsString(AzServiceBusClientParams.AAD_CREDENTIAL));
+        tryTimeout.setText(element.getPropertyAsString(AzServiceBusClientParams.TRY_TIMEOUT));
+        maxRetries.setText(element.getPropertyAsString(AzServiceBusClientParams.MAX_RETRIES));
+        retryMode.setText(element.getPropertyAsString(AzServiceBusClientParams.RETRY_MODE, AzServiceBusClientParams.RETRY_MODE_DEFAULT));
+        retryDelay.setText(element.getPropertyAsString(AzServiceBusClientParams.RETRY_DELAY));
+        maxRetryDelay.setText(element.getPropertyAsString(AzServiceBusClientParams.MAX_RETRY_DELAY));
+        prefetchCount.setText(element.getPropertyAsString(AzServiceBusClientParams.PREFETCH_COUNT));
+        customEndpoint.setText(element.getPropertyAsString(AzServiceBusClientParams.CUSTOM_ENDPOINT));
     }
 
     /**
@@ -223,6 +256,7 @@ public class AzServiceBusClientParamsPanel extends AbstractConfigGui implements
         serviceBusConfigPanel.add(createProtocolPanel());
         serviceBusConfigPanel.add(createAuthTypePanel());
         serviceBusConfigPanel.add(createAuthPanel());
+        serviceBusConfigPanel.add(createTuningPanel());
         panel.add(serviceBusConfigPanel);
 
         add(panel, BorderLayout.CENTER);
@@ -375,6 +409,45 @@ public class AzServiceBusClientParamsPanel extends AbstractConfigGui implements
         return authPanel;
     }
 
+    private JPanel createTuningPanel() {
+        tryTimeout = new JLabeledTextField("Try timeout (sec):", 6);
+        tryTimeout.setName(AzServiceBusClientParams.TRY_TIMEOUT);
+        maxRetries = new JLabeledTextField("Max retries:", 6);
+        maxRetries.setName(AzServiceBusClientParams.MAX_RETRIES);
+        JLabel retryModeLabel = new JLabel("Retry mode:");
+        retryMode = new JLabeledChoice("", RETRY_MODE_LABELS);
+        retryMode.setName(AzServiceBusClientParams.RETRY_MODE);
+
+        HorizontalPanel retryPanel = new HorizontalPanel();
+        retryPanel.add(tryTimeout);
+        retryPanel.add(maxRetries);
+        retryPanel.add(retryModeLabel);
+        retryPanel.add(retryMode);
+
+        retryDelay = new JLabeledTextField("Retry delay (sec):", 6);
+        retryDelay.setName(AzServiceBusClientParams.RETRY_DELAY);
+        maxRetryDelay = new JLabeledTextField("Max retry delay (sec):", 6);
+        maxRetryDelay.setName(AzServiceBusClientParams.MAX_RETRY_DELAY);
+        prefetchCount = new JLabeledTextField("Prefetch count (receivers):", 6);
+        prefetchCount.setName(AzServiceBusClientParams.PREFETCH_COUNT);
+
+        HorizontalPanel delayPanel = new HorizontalPanel();
+        delayPanel.add(retryDelay);
+        delayPanel.add(maxRetryDelay);
+        delayPanel.add(prefetchCount);
+
+        customEndpoint = new JLabeledTextField("Custom endpoint:");
+        customEndpoint.setName(AzServiceBusClientParams.CUSTOM_ENDPOINT);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Tuning (blank: azure_servicebus.* property or SDK default)"));
+        panel.add(retryPanel);
+        panel.add(delayPanel);
+        panel.add(customEndpoint);
+
+        return panel;
+    }
+
     @Override
     public void stateChanged(ChangeEvent event) {
         if (event.getSource().equals(destTypeQueue) || event.getSource().equals(destTypeTopic)) {
@@ -18,23 +18,17 @@
 package jp.co.pnop.jmeter.protocol.azureservicebus.sampler;
 
 import java.lang.ClassCastException;
-import java.time.Duration;
-import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
-import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
+import java.util.function.Supplier;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
@@ -44,22 +38,43 @@ import org.apache.jmeter.testelement.property.StringProperty;
 import org.apache.jmeter.testelement.property.TestElementProperty;
 import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.apache.jmeter.threads.JMeterContextService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.azure.messaging.servicebus.*;
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.thoughtworks.xstream.converters.time.OffsetDateTimeConverter;
 import com.azure.core.amqp.exception.*;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
 
+import reactor.core.publisher.Mono;
+
+import jp.co.pnop.jmeter.protocol.aad.config.AzAdCredential;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpDispatchParams;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpRetryParams;
 import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
 import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpFeederMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpMessageEncoder;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpOpenModelScheduler;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpRetryPolicy;
 import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusErrorClassifier;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusMessageBuilder;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusSessionSelector;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompressedBody;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+import jp.co.pnop.jmeter.util.metrics.AzUtilMetrics;
+import jp.co.pnop.jmeter.util.metrics.AzUtilWarmup;
+import jp.co.pnop.jmeter.util.throughput.AzUtilBlockingExecutor;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinder;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinderParams;
 
 /**
  * Azure Service Bus Sampler (non-Bean version)
@@ -73,20 +88,11 @@ import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParam
  * <p>
  * However, access to class fields must be synchronized.
  */
-public class AzServiceBusSampler extends AbstractSampler implements TestStateListener {
+public class AzServiceBusSampler extends AbstractSampler implements TestStateListener, ThreadListener {
 
     private static final long serialVersionUID = 1L;
     private static final Logger log = LoggerFactory.getLogger(AzServiceBusSampler.class);
 
-    private static final Map<String, ChronoUnit> chronoUnit = new HashMap<String, ChronoUnit>();
-    static {
-        chronoUnit.put ("MILLIS", ChronoUnit.MILLIS);
-        chronoUnit.put ("SECONDS", ChronoUnit.SECONDS);
-        chronoUnit.put ("MINUTES", ChronoUnit.MINUTES);
-        chronoUnit.put ("HOURS", ChronoUnit.HOURS);
-        chronoUnit.put ("DAYS", ChronoUnit.DAYS);
-    };
-
     private static final Set<String> APPLIABLE_CONFIG_CLASSES = new HashSet<>(
         Arrays.asList(
             "org.apache.jmeter.config.gui.SimpleConfigGui"
@@ -99,8 +105,19 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
     public static final String COMMIT_TRANSACTION = "commitTransaction";
     public static final String ROLLBACK_TRANSACTION = "rollbackTransaction";
     public static final String MESSAGES = "messages";
+    public static final String SESSION_ID_TYPE = "sessionIdType";
+    public static final String SESSION_COUNT = "sessionCount";
+    public static final String SESSION_ID_PREFIX = "sessionIdPrefix";
+    public static final String CONCURRENT_SENDS = "concurrentSends";
+
+    public static final String SESSION_ID_TYPE_MESSAGE = "Session ID of message";
+    public static final String SESSION_ID_TYPE_ROUND_ROBIN = "Round-robin";
+    public static final String SESSION_ID_TYPE_HASH = "Hash of session ID";
+
+    private static final String DEFAULT_SESSION_ID_PREFIX = "session-";
+    private static final String AAD_SCOPE = "https://servicebus.azure.net/.default";
 
-    class TransactionClass {
+    static class TransactionClass {
         private ServiceBusSenderClient producer;
         private ServiceBusTransactionContext transaction;
 
@@ -121,6 +138,10 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
 
     private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
 
+    // sessions and the position of round-robin, kept across samples of this thread
+    private transient AzServiceBusSessionSelector sessionSelector;
+    private transient String sessionSelectorKey;
+
     public AzServiceBusSampler() {
         super();
         classCount.incrementAndGet();
@@ -140,6 +161,10 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
         setProperty(new BooleanProperty(COMMIT_TRANSACTION, false));
         setProperty(new BooleanProperty(ROLLBACK_TRANSACTION, false));
         setProperty(new TestElementProperty(MESSAGES, null));
+        setProperty(new StringProperty(SESSION_ID_TYPE, SESSION_ID_TYPE_MESSAGE));
+        setProperty(new StringProperty(SESSION_COUNT, ""));
+        setProperty(new StringProperty(SESSION_ID_PREFIX, ""));
+        setProperty(new StringProperty(CONCURRENT_SENDS, ""));
         setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, null));
     }
 
@@ -199,6 +224,115 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
         return (AzAmqpMessages) getProperty(MESSAGES).getObjectValue();
     }
 
+    public void setSessionIdType(String sessionIdType) {
+        setProperty(new StringProperty(SESSION_ID_TYPE, sessionIdType));
+    }
+
+    public String getSessionIdType() {
+        return getPropertyAsString(SESSION_ID_TYPE, SESSION_ID_TYPE_MESSAGE);
+    }
+
+    public void setSessionCount(String sessionCount) {
+        setProperty(new StringProperty(SESSION_COUNT, sessionCount));
+    }
+
+    public String getSessionCount() {
+        return getPropertyAsString(SESSION_COUNT);
+    }
+
+    public void setSessionIdPrefix(String sessionIdPrefix) {
+        setProperty(new StringProperty(SESSION_ID_PREFIX, sessionIdPrefix));
+    }
+
+    public String getSessionIdPrefix() {
+        String prefix = getPropertyAsString(SESSION_ID_PREFIX);
+        return prefix.isEmpty() ? DEFAULT_SESSION_ID_PREFIX : prefix;
+    }
+
+    public void setConcurrentSends(String concurrentSends) {
+        setProperty(new StringProperty(CONCURRENT_SENDS, concurrentSends));
+    }
+
+    public String getConcurrentSends() {
+        return getPropertyAsString(CONCURRENT_SENDS);
+    }
+
+    public void setDispatchParams(AzAmqpDispatchParams dispatchParams) {
+        setProperty(new TestElementProperty(AzAmqpDispatchParams.DISPATCH_PARAMS, dispatchParams));
+    }
+
+    public AzAmqpDispatchParams getDispatchParams() {
+        return (AzAmqpDispatchParams) getProperty(AzAmqpDispatchParams.DISPATCH_PARAMS).getObjectValue();
+    }
+
+    public void setFinderParams(AzUtilThroughputFinderParams finderParams) {
+        setProperty(new TestElementProperty(AzUtilThroughputFinderParams.FINDER_PARAMS, finderParams));
+    }
+
+    public AzUtilThroughputFinderParams getFinderParams() {
+        return (AzUtilThroughputFinderParams) getProperty(AzUtilThroughputFinderParams.FINDER_PARAMS).getObjectValue();
+    }
+
+    public void setRetryParams(AzAmqpRetryParams retryParams) {
+        setProperty(new TestElementProperty(AzAmqpRetryParams.RETRY_PARAMS, retryParams));
+    }
+
+    public AzAmqpRetryParams getRetryParams() {
+        return (AzAmqpRetryParams) getProperty(AzAmqpRetryParams.RETRY_PARAMS).getObjectValue();
+    }
+
+    /**
+     * @return the retry policy of a sample; a single attempt if the retry is not configured
+     */
+    private AzAmqpRetryPolicy createRetryPolicy() {
+        AzAmqpRetryParams retryParams = getRetryParams();
+        return retryParams == null ? new AzAmqpRetryPolicy(1, 0, 0, 0) : retryParams.createPolicy();
+    }
+
+    private static boolean isTransient(Exception ex) {
+        return (ex instanceof AmqpException && ((AmqpException) ex).isTransient())
+            || (ex instanceof ServiceBusException && ((ServiceBusException) ex).isTransient());
+    }
+
+    /**
+     * @return the session selector of this thread, or null if the session ID of the message is used
+     */
+    private AzServiceBusSessionSelector getSessionSelector() {
+        if (!AzServiceBusSessionSelector.isDistributed(getSessionIdType())) {
+            return null;
+        }
+        String key = getSessionIdType().concat("\n").concat(getSessionCount()).concat("\n").concat(getSessionIdPrefix());
+        if (sessionSelector == null || !key.equals(sessionSelectorKey)) {
+            sessionSelector = new AzServiceBusSessionSelector(
+                getSessionIdType(), getSessionCount(), getSessionIdPrefix(),
+                JMeterContextService.getContext().getThreadNum()
+            );
+            sessionSelectorKey = key;
+        }
+        return sessionSelector;
+    }
+
+    private String describeSessions(AzServiceBusSessionSelector selector) {
+        if (selector == null) {
+            return "";
+        }
+        return "\nSession distribution: ".concat(getSessionIdType()).concat(" (")
+            .concat(String.valueOf(selector.getSessionCount())).concat(" sessions, prefix: ").concat(getSessionIdPrefix()).concat(")");
+    }
+
+    private static List<ServiceBusMessage> createMessages(List<AzAmqpMessage> msgs, List<AzUtilCompressedBody> bodies,
+            List<String> sessionIds, String caller) throws Exception {
+        List<ServiceBusMessage> messages = new ArrayList<>(msgs.size());
+        for (int i = 0; i < msgs.size(); i++) {
+            ServiceBusMessage serviceBusMessage = AzServiceBusMessageBuilder.build(msgs.get(i), bodies.get(i), caller);
+            if (sessionIds.get(i) != null) {
+                serviceBusMessage.setSessionId(sessionIds.get(i));
+            }
+            messages.add(serviceBusMessage);
+        }
+        return messages;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -218,210 +352,271 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
         long sentBytes = 0;
 
         ServiceBusSenderClient producer = null;
+        ServiceBusSenderAsyncClient asyncProducer = null;
         ServiceBusTransactionContext transaction = null;
         AzServiceBusClientParams serviceBusClientParams = getServiceBusClientParams();
         String connectionType = serviceBusClientParams.getConnectionType().toString();
+        AzAmqpDispatchParams dispatchParams = getDispatchParams();
+        AzUtilThroughputFinderParams finderParams = getFinderParams();
+        boolean findMaxRate = finderParams != null && finderParams.isEnabled();
+        boolean openModel = findMaxRate || (dispatchParams != null && dispatchParams.isOpenModel());
+        String caller = threadName.concat(":").concat(this.getName());
+        AzAmqpMessageEncoder encoder = new AzAmqpMessageEncoder();
+        AzAmqpRetryPolicy retry = null;
+        String errorClass = null;
 
         try {
             res.sampleStart(); // Start timing
 
-            if (connectionType.equals(AzServiceBusClientParams.CONNECTION_TYPE_DEFINED_TRANSACTION)) {
-                String definedConnectionName = serviceBusClientParams.getDefinedConnectionName();
-                Object tempObject;
+            retry = createRetryPolicy();
+            int concurrentSends = 1;
+            if (!JOrphanUtils.isBlank(getConcurrentSends())) {
                 try {
-                    tempObject = getThreadContext().getVariables().getObject(definedConnectionName);
-                    if (!tempObject.getClass().getSimpleName().equals("TransactionClass")) {
-                        throw new ClassCastException("The \"".concat(definedConnectionName).concat("\" you specified is not a transaction."));
-                    }
-                } catch (NullPointerException ex) {
-                    throw new NullPointerException("Transaction \"".concat(definedConnectionName).concat("\" is not defined."));
+                    concurrentSends = Integer.parseInt(getConcurrentSends().trim());
+                } catch (NumberFormatException exc) {
+                    throw new NumberFormatException(exc.getMessage().concat(" [Concurrent sends]"));
                 }
-                TransactionClass tran = (TransactionClass) tempObject;
-
-                transaction = tran.getTransaction();
-                producer = tran.getProducer();
-                log.debug("Get defined connection: {}", transaction.toString());
-            } else { // CONNECTION_TYPE_NEW_CONNECTION or CONNECTION_TYPE_DEFINED_CONNECTION
-                producer = serviceBusClientParams.getProducer();
             }
-            requestBody
-                = "Endpoint: sb://".concat(producer.getFullyQualifiedNamespace()).concat("\n")
-                .concat("Queue/Topic name: ").concat(producer.getEntityPath());
-
-            log.info("AzServiceBusSampler.sampler() createMessageBatch: {}", producer);
-            ServiceBusMessageBatch batch = producer.createMessageBatch();
-
-            PropertyIterator iter = getMessages().iterator();
-            int msgCount = 0;
-            while (iter.hasNext()) {
-                msgCount ++;
-                AzAmqpMessage msg = (AzAmqpMessage) iter.next().getObjectValue();
-
-                requestBody = requestBody.concat("\n\n")
-                            .concat("[Message #").concat(String.valueOf(msgCount)).concat("]");
-                
-                ServiceBusMessage serviceBusMessage = null;
-                switch (msg.getMessageType()) {
-                    case AzAmqpMessages.MESSAGE_TYPE_BASE64:
-                        byte[] binMsg = Base64.getDecoder().decode(msg.getMessage().getBytes());
-                        serviceBusMessage = new ServiceBusMessage(binMsg);
-                        break;
-                    case AzAmqpMessages.MESSAGE_TYPE_FILE:
-                        BufferedInputStream bi = null;
-                        bi = new BufferedInputStream(new FileInputStream(msg.getMessage()));
-                        serviceBusMessage = new ServiceBusMessage(IOUtils.toByteArray(bi));
-                        break;
-                    default: // AzAmqpMessages.MESSAGE_TYPE_STRING
-                        serviceBusMessage = new ServiceBusMessage(msg.getMessage());
+            AzServiceBusSessionSelector selector = getSessionSelector();
+            if (openModel) {
+                asyncProducer = serviceBusClientParams.getAsyncProducer();
+                requestBody
+                    = "Endpoint: sb://".concat(asyncProducer.getFullyQualifiedNamespace()).concat("\n")
+                    .concat("Queue/Topic name: ").concat(asyncProducer.getEntityPath())
+                    .concat(describeSessions(selector));
+
+                // the sends are in flight at the same time, so every send gets its own messages
+                List<AzAmqpMessage> msgs = new ArrayList<>();
+                List<AzUtilCompressedBody> bodies = new ArrayList<>();
+                List<String> sessionIds = new ArrayList<>();
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+                    AzUtilCompressedBody body = encoder.encode(msg);
+                    // built once here, so that an invalid message fails the sample before any send
+                    AzServiceBusMessageBuilder.build(msg, body, caller);
+                    msgs.add(msg);
+                    bodies.add(body);
+                    sessionIds.add(selector != null ? selector.select(msg) : null);
+                    bodyBytes += body.getBytes().length;
+                    requestBody = requestBody.concat("\n\n").concat(AzServiceBusMessageBuilder.describe(msg, msgs.size()));
                 }
 
-                String messageId = msg.getMessageId();
-                if (!messageId.isEmpty()) {
-                    serviceBusMessage.setMessageId(messageId);
-                    requestBody = requestBody.concat("\n").concat("Message ID: ").concat(messageId);
+                final ServiceBusSenderAsyncClient client = asyncProducer;
+                final Supplier<Mono<Void>> sender = () -> Mono.fromCallable(() -> createMessages(msgs, bodies, sessionIds, caller))
+                    .flatMap(client::sendMessages);
+                if (findMaxRate) {
+                    requestBody = requestBody.concat("\n\n").concat(finderParams.describe());
+                    AzUtilThroughputFinder.Report report = finderParams.createFinder().run(AzUtilThroughputFinder.openLoop(
+                        () -> sender.get().toFuture(), msgs.size(), finderParams.getDrainTimeoutMillis()));
+                    res.latencyEnd();
+                    res.sampleEnd(); // End timing
+                    report.addSubResults(res, getName());
+                    res.setDataType(SampleResult.TEXT);
+                    res.setResponseData(report.toString(), "UTF-8");
+                    responseMessage = report.getResponseMessage();
+                    isSuccessful = report.getKnee() != null;
+                } else {
+                    double targetRate = dispatchParams.getTargetRateValue();
+                    requestBody = requestBody.concat("\n\n")
+                        .concat("Dispatch mode: ").concat(dispatchParams.getDispatchMode()).concat("\n")
+                        .concat("Target rate: ").concat(String.valueOf(targetRate)).concat(" messages/sec");
+
+                    AzAmqpOpenModelScheduler scheduler = new AzAmqpOpenModelScheduler(
+                        targetRate / Math.max(1, msgs.size()),
+                        dispatchParams.getDurationMillis(),
+                        dispatchParams.getDrainTimeoutMillis()
+                    );
+                    AzAmqpOpenModelScheduler.Summary summary = scheduler.run(sender,
+                        error -> AzUtilErrorCounters.count(getName(), AzServiceBusErrorClassifier.classify(error)));
+                    AzUtilErrorCounters.count(getName(), AzUtilErrorCounters.TIMEOUT, summary.getTimedOut());
+
+                    res.latencyEnd();
+                    res.sampleEnd(); // End timing
+                    res.setDataType(SampleResult.TEXT);
+                    res.setResponseData(summary.toString(), "UTF-8");
+                    sentBytes = bodyBytes * summary.getSucceeded();
+                    final String entityPath = asyncProducer.getEntityPath();
+                    final long batchBytes = bodyBytes;
+                    summary.forEachCorrectedLatency(latency -> AzUtilMetrics.recordSend(getName(), entityPath, latency / 1000, msgs.size(), batchBytes));
+
+                    if (summary.getFailed() == 0 && summary.getTimedOut() == 0) {
+                        responseMessage = "OK";
+                        isSuccessful = true;
+                    } else {
+                        responseMessage = String.valueOf(summary.getFailed() + summary.getTimedOut())
+                            .concat(" of ").concat(String.valueOf(summary.getTotal())).concat(" sends did not succeed.");
+                        if (summary.getFirstError() != null) {
+                            responseMessage = responseMessage.concat("\n").concat(String.valueOf(summary.getFirstError().getMessage()));
+                        }
+                        res.setResponseCode(summary.getFirstError() != null
+                            ? AzServiceBusErrorClassifier.classify(summary.getFirstError()) : AzUtilErrorCounters.TIMEOUT);
+                    }
                 }
-
-                String groupId = msg.getGroupId();
-                if (!groupId.isEmpty()) {
-                    serviceBusMessage.setSessionId(groupId);
-                    requestBody = requestBody.concat("\n").concat("Session ID: ").concat(groupId);
+            } else if (concurrentSends > 1
+                && !connectionType.equals(AzServiceBusClientParams.CONNECTION_TYPE_DEFINED_TRANSACTION) && !getCreateTransaction()) {
+                producer = serviceBusClientParams.getProducer();
+                requestBody
+                    = "Endpoint: sb://".concat(producer.getFullyQualifiedNamespace()).concat("\n")
+                    .concat("Queue/Topic name: ").concat(producer.getEntityPath())
+                    .concat(describeSessions(selector));
+
+                // the sends are in flight at the same time, so every send gets its own batch
+                List<AzAmqpMessage> msgs = new ArrayList<>();
+                List<AzUtilCompressedBody> bodies = new ArrayList<>();
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+                    AzUtilCompressedBody body = encoder.encode(msg);
+                    msgs.add(msg);
+                    bodies.add(body);
+                    bodyBytes += body.getBytes().length;
+                    requestBody = requestBody.concat("\n\n").concat(AzServiceBusMessageBuilder.describe(msg, msgs.size()));
                 }
-
-                String partitionKey = msg.getPartitionKey();
-                if (!partitionKey.isEmpty()) {
-                    serviceBusMessage.setPartitionKey(partitionKey);
-                    requestBody = requestBody.concat("\n").concat("Partition Key: ").concat(partitionKey);
+                requestBody = requestBody.concat("\n\n")
+                    .concat("Concurrent sends: ").concat(String.valueOf(concurrentSends))
+                    .concat(" (").concat(AzUtilBlockingExecutor.describe()).concat(")");
+
+                // the blocking sends run on the shared executor, this thread only waits for them
+                final ServiceBusSenderClient client = producer;
+                List<CompletableFuture<Integer>> sends = new ArrayList<>();
+                for (int i = 0; i < concurrentSends; i++) {
+                    List<String> sessionIds = new ArrayList<>();
+                    for (AzAmqpMessage msg : msgs) {
+                        sessionIds.add(selector != null ? selector.select(msg) : null);
+                    }
+                    final ServiceBusMessageBatch batch = client.createMessageBatch();
+                    for (ServiceBusMessage serviceBusMessage : createMessages(msgs, bodies, sessionIds, caller)) {
+                        batch.tryAddMessage(serviceBusMessage);
+                    }
+                    bytes += batch.getSizeInBytes();
+                    sends.add(AzUtilBlockingExecutor.supplyAsync(() -> {
+                        long sendStart = System.nanoTime();
+                        client.sendMessages(batch);
+                        AzUtilMetrics.recordSend(getName(), client.getEntityPath(), (System.nanoTime() - sendStart) / 1000, batch.getCount(), batch.getSizeInBytes());
+                        return batch.getSizeInBytes();
+                    }));
                 }
-
-                String customProperties = msg.getCustomProperties();
-                if (!customProperties.isEmpty()) {
-                    ObjectMapper mapper = new ObjectMapper();
-                    Map<String, Object> properties = mapper.readValue(customProperties, new TypeReference<Map<String, Object>>(){});
-                    serviceBusMessage.getApplicationProperties().putAll(properties);
+                bodyBytes *= concurrentSends;
+                int failed = 0;
+                Throwable firstError = null;
+                for (CompletableFuture<Integer> send : sends) {
+                    try {
+                        sentBytes += send.join();
+                    } catch (CompletionException ex) {
+                        failed++;
+                        if (firstError == null) {
+                            firstError = ex.getCause();
+                        }
+                        AzUtilErrorCounters.count(getName(), AzServiceBusErrorClassifier.classify(ex.getCause()));
+                    }
                 }
-
-                String contentType = msg.getContentType();
-                if (!contentType.isEmpty()) {
-                    serviceBusMessage.setContentType(contentType);
-                    requestBody = requestBody.concat("\n").concat("Content Type: ").concat(contentType);
+                res.latencyEnd();
+                res.sampleEnd(); // End timing
+                res.setDataType(SampleResult.TEXT);
+                res.setResponseData(String.valueOf(concurrentSends - failed).concat(" of ")
+                    .concat(String.valueOf(concurrentSends)).concat(" sends succeeded."), "UTF-8");
+                if (failed == 0) {
+                    responseMessage = "OK";
+                    isSuccessful = true;
+                } else {
+                    responseMessage = String.valueOf(failed).concat(" of ").concat(String.valueOf(concurrentSends))
+                        .concat(" sends did not succeed.\n").concat(String.valueOf(firstError.getMessage()));
+                    res.setResponseCode(AzServiceBusErrorClassifier.classify(firstError));
                 }
+            } else {
+                if (connectionType.equals(AzServiceBusClientParams.CONNECTION_TYPE_DEFINED_TRANSACTION)) {
+                    String definedConnectionName = serviceBusClientParams.getDefinedConnectionName();
+                    Object tempObject = getThreadContext().getVariables().getObject(definedConnectionName);
+                    if (tempObject == null) {
+                        throw new NullPointerException("Transaction \"".concat(definedConnectionName).concat("\" is not defined."));
+                    } else if (!(tempObject instanceof TransactionClass)) {
+                        throw new ClassCastException("The \"".concat(definedConnectionName).concat("\" you specified is not a transaction."));
+                    }
+                    TransactionClass tran = (TransactionClass) tempObject;
 
-                String label = msg.getLabel();
-                if (!label.isEmpty()) {
-                    serviceBusMessage.setSubject(label);
-                    requestBody = requestBody.concat("\n").concat("Label/Subject: ").concat(label);
+                    transaction = tran.getTransaction();
+                    producer = tran.getProducer();
+                    log.debug("Get defined connection: {}", transaction.toString());
+                } else { // CONNECTION_TYPE_NEW_CONNECTION or CONNECTION_TYPE_DEFINED_CONNECTION
+                    producer = serviceBusClientParams.getProducer();
                 }
-
-                String standardProperties = msg.getStandardProperties();
-                if (!standardProperties.isEmpty()) {
-                    ObjectMapper mapper = new ObjectMapper();
-                    Map<String, String> properties = mapper.readValue(standardProperties, new TypeReference<Map<String, String>>(){});
-                    for (Map.Entry<String, String> property : properties.entrySet()) {
-                        switch (property.getKey().toLowerCase()) {
-                            case "correlation-id":
-                            case "correlationid":
-                            serviceBusMessage.setCorrelationId(property.getValue());
-                            break;
-
-                            case "reply-to":
-                            case "replyto":
-                            serviceBusMessage.setReplyTo(property.getValue());
-                            break;
-
-                            case "reply-to-group-id":
-                            case "replytosessionid":
-                            serviceBusMessage.setReplyToSessionId(property.getValue());
-                            break;
-
-                            case "to":
-                            serviceBusMessage.setTo(property.getValue());
-                            break;
-
-                            case "ttl":
-                            case "timetolive":
-                            Pattern pattern = Pattern.compile("([0-9]+)(.*)");
-                            Matcher matcher = pattern.matcher(property.getValue());
-                            if (matcher.find()) {
-                                String unit;
-                                if (matcher.group(2).trim().length() == 0) {
-                                    unit = "SECONDS";
-                                } else {
-                                    unit = matcher.group(2).trim().toUpperCase();
-                                }
-                                try {
-                                    serviceBusMessage.setTimeToLive(Duration.of(Long.parseLong(matcher.group(1)), chronoUnit.get(unit)));
-                                } catch (NullPointerException exTtl) {
-                                    throw new Exception("Error calling ".concat(threadName).concat(":").concat(this.getName()).concat(". The \"").concat(property.getKey()).concat("\": \"").concat(property.getValue()).concat("\" in \"headers/properties/annotations\" was ignored. Only MILLIS, SECONDS, MINUTES, HOURS, and DAYS can be used for units."));
-                                }
-                            }
-                            break;
-
-                            case "x-opt-scheduled-enqueue-time":
-                            case "scheduledenqueuetime":
-                            serviceBusMessage.setScheduledEnqueueTime(OffsetDateTime.parse(property.getValue()));
-                            break;
-
-                            default:
-                            throw new Exception("Error calling ".concat(threadName).concat(":").concat(this.getName()).concat(". The \"").concat(property.getKey()).concat("\": \"").concat(property.getValue()).concat("\" in \"headers/properties/annotations\" was ignored."));
-                        }
+                requestBody
+                    = "Endpoint: sb://".concat(producer.getFullyQualifiedNamespace()).concat("\n")
+                    .concat("Queue/Topic name: ").concat(producer.getEntityPath())
+                    .concat(describeSessions(selector));
+
+                log.info("AzServiceBusSampler.sampler() createMessageBatch: {}", producer);
+                ServiceBusMessageBatch batch = producer.createMessageBatch();
+
+                PropertyIterator iter = getMessages().iterator();
+                int msgCount = 0;
+                while (iter.hasNext()) {
+                    msgCount ++;
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+
+                    ServiceBusMessage serviceBusMessage = AzServiceBusMessageBuilder.build(msg, encoder.encode(msg), caller);
+                    if (selector != null) {
+                        serviceBusMessage.setSessionId(selector.select(msg));
                     }
-                    
-                }
-
-                batch.tryAddMessage(serviceBusMessage);
-                bodyBytes += serviceBusMessage.getBody().toBytes().length;
-
-                requestBody = requestBody.concat("\n")
-                    .concat("Message type: ").concat(msg.getMessageType()).concat("\n")
-                    .concat("Body: ").concat(msg.getMessage());
-            }
+                    requestBody = requestBody.concat("\n\n").concat(AzServiceBusMessageBuilder.describe(msg, msgCount));
 
-            bytes = batch.getSizeInBytes();
-
-            // send the batch of messages to the Service Bus
-            if (connectionType.equals(AzServiceBusClientParams.CONNECTION_TYPE_DEFINED_TRANSACTION)) {
-                if (getRollabckTransaction()) {
-                    producer.rollbackTransaction(transaction);
-                    getThreadContext().getVariables().remove(serviceBusClientParams.getDefinedConnectionName());
-                    transaction = null;
+                    batch.tryAddMessage(serviceBusMessage);
+                    bodyBytes += serviceBusMessage.getBody().toBytes().length;
+                }
 
-                    producer.sendMessages(batch);
-                } else { // Continue transaction or Commit transaction
-                    producer.sendMessages(batch, transaction);
+                bytes = batch.getSizeInBytes();
 
-                    if (getCommitTransaction()) {
-                        producer.commitTransaction(transaction);
+                // send the batch of messages to the Service Bus
+                long sendStart = System.nanoTime();
+                if (connectionType.equals(AzServiceBusClientParams.CONNECTION_TYPE_DEFINED_TRANSACTION)) {
+                    if (getRollabckTransaction()) {
+                        producer.rollbackTransaction(transaction);
                         getThreadContext().getVariables().remove(serviceBusClientParams.getDefinedConnectionName());
                         transaction = null;
+
+                        producer.sendMessages(batch);
+                    } else { // Continue transaction or Commit transaction
+                        producer.sendMessages(batch, transaction);
+
+                        if (getCommitTransaction()) {
+                            producer.commitTransaction(transaction);
+                            getThreadContext().getVariables().remove(serviceBusClientParams.getDefinedConnectionName());
+                            transaction = null;
+                        }
                     }
-                }
-            } else { // CONNECTION_TYPE_NEW_CONNECTION or CONNECTION_TYPE_DEFINED_CONNECTION
-                if (getCreateTransaction()) {
-                    String tranName = getCreateTransactionName();
-                    if (JOrphanUtils.isBlank(tranName)) {
-                        throw new Exception("Name for transaction must not be empty in " + getName());
-                    } else if (getThreadContext().getVariables().getObject(tranName) != null) {
-                        throw new Exception("Transaction already defined for ".concat(tranName));
-                    } else {
-                        transaction = producer.createTransaction();
-                        getThreadContext().getVariables().putObject(getCreateTransactionName(), new TransactionClass(producer, transaction));
+                } else { // CONNECTION_TYPE_NEW_CONNECTION or CONNECTION_TYPE_DEFINED_CONNECTION
+                    if (getCreateTransaction()) {
+                        String tranName = getCreateTransactionName();
+                        if (JOrphanUtils.isBlank(tranName)) {
+                            throw new Exception("Name for transaction must not be empty in " + getName());
+                        } else if (getThreadContext().getVariables().getObject(tranName) != null) {
+                            throw new Exception("Transaction already defined for ".concat(tranName));
+                        } else {
+                            transaction = producer.createTransaction();
+                            getThreadContext().getVariables().putObject(getCreateTransactionName(), new TransactionClass(producer, transaction));
+                        }
+                        producer.sendMessages(batch, transaction);
+                    } else { // Don't create transaction, so that a send that failed can be retried
+                        final ServiceBusSenderClient sender = producer;
+                        retry.run(res, getName(), AzServiceBusSampler::isTransient, () -> sender.sendMessages(batch));
                     }
-                    producer.sendMessages(batch, transaction);
-                } else { // Don't create transaction
-                    producer.sendMessages(batch);
                 }
-            }
-
-            sentBytes = batch.getSizeInBytes();
-            res.latencyEnd();
-            res.setDataType(SampleResult.TEXT);
 
-            //res.setResponseHeaders();
-            //res.setResponseMessage();
-            //res.setResponseCodeOK();
-            responseMessage = "OK";
-            isSuccessful = true;
-            res.sampleEnd(); // End timing
+                // with retries, the send latency is the one of the attempt that succeeded
+                long sendMicros = retry.getRetries() > 0 ? retry.getLastAttemptMicros() : (System.nanoTime() - sendStart) / 1000;
+                AzUtilMetrics.recordSend(getName(), producer.getEntityPath(), sendMicros, batch.getCount(), batch.getSizeInBytes());
+                sentBytes = batch.getSizeInBytes();
+                res.latencyEnd();
+                res.setDataType(SampleResult.TEXT);
+
+                //res.setResponseHeaders();
+                //res.setResponseMessage();
+                //res.setResponseCodeOK();
+                responseMessage = "OK";
+                isSuccessful = true;
+                res.sampleEnd(); // End timing
+            }
         } catch (AmqpException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             if (ex.isTransient()) {
@@ -429,21 +624,37 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
             }
             responseMessage = responseMessage.concat(ex.getMessage());
             res.setResponseData(ex.getMessage(), "UTF-8");
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
         } catch (FileNotFoundException | ClassCastException | JsonParseException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             res.setResponseData(ex.getMessage(), "UTF-8");
             responseMessage = responseMessage.concat(ex.getMessage());
+            errorClass = AzUtilErrorCounters.CLIENT;
         } catch (ServiceBusException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             res.setResponseData(ex.toString(), "UTF-8");
             responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
         } catch (Exception ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             res.setResponseData(ex.toString(), "UTF-8");
             responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
         } finally {
-            if (producer != null && connectionType == AzServiceBusClientParams.CONNECTION_TYPE_NEW_CONNECTION) {
-                producer.close();
+            if (asyncProducer != null) {
+                asyncProducer.close();
+            }
+            if (!encoder.describe().isEmpty()) {
+                requestBody = requestBody.concat("\n\n").concat(encoder.describe());
+            }
+            if (retry != null && retry.getRetries() > 0) { // retries are only made by the producer
+                AzUtilMetrics.recordValue(AzUtilMetrics.METRIC_RETRY_TIME, getName(), producer.getEntityPath(), retry.getRetryMicros());
+                AzUtilMetrics.recordValue(AzUtilMetrics.METRIC_RETRIES, getName(), producer.getEntityPath(), retry.getRetries());
+                responseMessage = responseMessage.concat("\n").concat(retry.describe());
+            }
+            if (errorClass != null) {
+                res.setResponseCode(errorClass);
+                AzUtilErrorCounters.count(getName(), errorClass);
             }
             res.setSamplerData(requestBody); // Request Body
             res.setBytes(bytes);
@@ -453,6 +664,7 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
         }
 
         res.setSuccessful(isSuccessful);
+        AzUtilMetrics.recordSample(getName(), res);
         return res;
     }
 
@@ -474,7 +686,56 @@ public class AzServiceBusSampler extends AbstractSampler implements TestStateLis
     // Ensure any remaining contexts are closed
     @Override
     public void testEnded(String host) {
+        AzUtilCompression.clearCache();
+        AzUtilWarmup.stop();
+        AzUtilMetrics.stop();
+        AzUtilErrorCounters.stop();
+    }
+
+    /**
+     * Warm up before the first sample of the thread: acquire the Azure AD token, and open the connection
+     * and the send link of the queue/topic. A defined connection and the sender of "Create New Connection"
+     * both belong to the thread and stay open for its samples, so every thread warms up its own. A defined
+     * transaction is already open.
+     */
+    @Override
+    public void threadStarted() {
+        AzUtilWarmup warmup = AzUtilWarmup.get();
+        AzServiceBusClientParams serviceBusClientParams = getServiceBusClientParams();
+        if (!warmup.isEnabled() || serviceBusClientParams == null) {
+            return;
+        }
+        String connectionType = serviceBusClientParams.getConnectionType();
+        String entity = serviceBusClientParams.getNamespaceName().concat("/").concat(serviceBusClientParams.getQueueName());
+        try {
+            // every thread has its own sender, so every thread warms up
+            String key = "servicebus\n".concat(Thread.currentThread().getName()).concat("\n").concat(getName());
+            if (connectionType.equals(AzServiceBusClientParams.CONNECTION_TYPE_DEFINED_CONNECTION)) {
+                String definedConnectionName = serviceBusClientParams.getDefinedConnectionName();
+                final ServiceBusSenderClient producer = serviceBusClientParams.getProducer();
+                warmup.warmUp(getName(), definedConnectionName, key, () -> producer.createMessageBatch());
+            } else if (connectionType.equals(AzServiceBusClientParams.CONNECTION_TYPE_NEW_CONNECTION)) {
+                String aadCredential = serviceBusClientParams.getAadCredential();
+                if (serviceBusClientParams.getAuthType().equals(AzServiceBusClientParams.AUTHTYPE_AAD)) {
+                    final TokenCredential credential = AzAdCredential.getCredential(aadCredential).getCredential();
+                    warmup.warmUp(getName(), aadCredential, "aad\n".concat(aadCredential).concat("\n").concat(AAD_SCOPE),
+                        () -> credential.getToken(new TokenRequestContext().addScopes(AAD_SCOPE)).block());
+                }
+                // the sender is created on this thread, whose variables hold the Azure AD credential
+                final ServiceBusSenderClient producer = serviceBusClientParams.getProducer();
+                warmup.warmUp(getName(), serviceBusClientParams.getQueueName(), key, () -> producer.createMessageBatch());
+            }
+        } catch (Exception ex) {
+            log.info("Warm-up of {} ({}) failed: {}", entity, getName(), ex.toString());
+        }
+    }
 
+    @Override
+    public void threadFinished() {
+        AzServiceBusClientParams serviceBusClientParams = getServiceBusClientParams();
+        if (serviceBusClientParams != null) {
+            serviceBusClientParams.closeProducer();
+        }
     }
 
     /**
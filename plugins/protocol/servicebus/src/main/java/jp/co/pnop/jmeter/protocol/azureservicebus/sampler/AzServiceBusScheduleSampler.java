@@ -0,0 +1,510 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.azure.core.amqp.exception.AmqpException;
+import com.azure.messaging.servicebus.ServiceBusException;
+import com.azure.messaging.servicebus.ServiceBusMessage;
+import com.azure.messaging.servicebus.ServiceBusSenderClient;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpFeederMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpMessageEncoder;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusErrorClassifier;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusMessageBuilder;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusParamParser;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+import jp.co.pnop.jmeter.util.metrics.AzUtilMetrics;
+
+/**
+ * Azure Service Bus Schedule Sampler
+ * <p>
+ * Schedules messages in bulk with scheduleMessages, and cancels them in bulk with cancelScheduledMessages.
+ * Each call schedules "messages per call" messages, cycling through the rows of the messages, for the same
+ * enqueue time. The enqueue times of the calls are spread over a window after the delay.
+ * <p>
+ * The sequence numbers of the scheduled messages can be stored in a variable as a comma-separated list,
+ * so that a later "Cancel" sampler cancels them.
+ */
+public class AzServiceBusScheduleSampler extends AbstractSampler implements TestStateListener, ThreadListener {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AzServiceBusScheduleSampler.class);
+
+    private static final Set<String> APPLIABLE_CONFIG_CLASSES = new HashSet<>(
+        Arrays.asList(
+            "org.apache.jmeter.config.gui.SimpleConfigGui"
+        )
+    );
+
+    public static final String OPERATION = "Schedule.operation";
+    public static final String CALLS = "Schedule.calls";
+    public static final String MESSAGES_PER_CALL = "Schedule.messagesPerCall";
+    public static final String DELAY = "Schedule.delay";
+    public static final String SPREAD = "Schedule.spread";
+    public static final String SPREAD_TYPE = "Schedule.spreadType";
+    public static final String SEQUENCE_NUMBERS_VARIABLE = "Schedule.sequenceNumbersVariable";
+    public static final String MESSAGES = "messages";
+
+    public static final String OPERATION_SCHEDULE = "Schedule";
+    public static final String OPERATION_CANCEL = "Cancel";
+    public static final String OPERATION_SCHEDULE_AND_CANCEL = "Schedule and cancel";
+
+    public static final String[] OPERATIONS = {
+        OPERATION_SCHEDULE,
+        OPERATION_CANCEL,
+        OPERATION_SCHEDULE_AND_CANCEL
+    };
+
+    public static final String SPREAD_TYPE_EVEN = "Even";
+    public static final String SPREAD_TYPE_RANDOM = "Random";
+
+    public static final String[] SPREAD_TYPES = {
+        SPREAD_TYPE_EVEN,
+        SPREAD_TYPE_RANDOM
+    };
+
+    private static final String METRIC_CANCEL_LATENCY = "cancel_latency_us";
+
+    private static final int DEFAULT_CALLS = 1;
+    private static final double DEFAULT_DELAY = 60; // sec
+
+    private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
+
+    public AzServiceBusScheduleSampler() {
+        super();
+        classCount.incrementAndGet();
+        trace("AzServiceBusScheduleSampler()");
+    }
+
+    /**
+     * Clear the messages.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+
+        setProperty(new StringProperty(OPERATION, OPERATION_SCHEDULE));
+        setProperty(new StringProperty(CALLS, ""));
+        setProperty(new StringProperty(MESSAGES_PER_CALL, ""));
+        setProperty(new StringProperty(DELAY, ""));
+        setProperty(new StringProperty(SPREAD, ""));
+        setProperty(new StringProperty(SPREAD_TYPE, SPREAD_TYPE_EVEN));
+        setProperty(new StringProperty(SEQUENCE_NUMBERS_VARIABLE, ""));
+        setProperty(new TestElementProperty(MESSAGES, null));
+        setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, null));
+    }
+
+    public void setServiceBusClientParams(AzServiceBusClientParams sbcParams) {
+        setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, sbcParams));
+    }
+
+    public AzServiceBusClientParams getServiceBusClientParams() {
+        return (AzServiceBusClientParams) getProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS).getObjectValue();
+    }
+
+    public void setOperation(String operation) {
+        setProperty(new StringProperty(OPERATION, operation));
+    }
+
+    public String getOperation() {
+        return getPropertyAsString(OPERATION, OPERATION_SCHEDULE);
+    }
+
+    public void setCalls(String calls) {
+        setProperty(new StringProperty(CALLS, calls));
+    }
+
+    public String getCalls() {
+        return getPropertyAsString(CALLS);
+    }
+
+    public void setMessagesPerCall(String messagesPerCall) {
+        setProperty(new StringProperty(MESSAGES_PER_CALL, messagesPerCall));
+    }
+
+    public String getMessagesPerCall() {
+        return getPropertyAsString(MESSAGES_PER_CALL);
+    }
+
+    public void setDelay(String delay) {
+        setProperty(new StringProperty(DELAY, delay));
+    }
+
+    public String getDelay() {
+        return getPropertyAsString(DELAY);
+    }
+
+    public void setSpread(String spread) {
+        setProperty(new StringProperty(SPREAD, spread));
+    }
+
+    public String getSpread() {
+        return getPropertyAsString(SPREAD);
+    }
+
+    public void setSpreadType(String spreadType) {
+        setProperty(new StringProperty(SPREAD_TYPE, spreadType));
+    }
+
+    public String getSpreadType() {
+        return getPropertyAsString(SPREAD_TYPE, SPREAD_TYPE_EVEN);
+    }
+
+    public void setSequenceNumbersVariable(String sequenceNumbersVariable) {
+        setProperty(new StringProperty(SEQUENCE_NUMBERS_VARIABLE, sequenceNumbersVariable));
+    }
+
+    public String getSequenceNumbersVariable() {
+        return getPropertyAsString(SEQUENCE_NUMBERS_VARIABLE);
+    }
+
+    public void setMessages(AzAmqpMessages messages) {
+        setProperty(new TestElementProperty(MESSAGES, messages));
+    }
+
+    public AzAmqpMessages getMessages() {
+        return (AzAmqpMessages) getProperty(MESSAGES).getObjectValue();
+    }
+
+    /**
+     * Get the offset of the enqueue time of a call from the end of the delay.
+     *
+     * @param call         index of the call (starting from 0)
+     * @param calls        number of calls in the sample
+     * @param spreadMillis length of the window
+     * @param spreadType   "Even" spaces the calls evenly over the window, "Random" picks a uniform time in the window
+     * @return the offset in milliseconds, 0 to spreadMillis
+     */
+    static long spreadOffsetMillis(int call, int calls, long spreadMillis, String spreadType) {
+        if (spreadMillis <= 0) {
+            return 0;
+        }
+        if (spreadType.equals(SPREAD_TYPE_RANDOM)) {
+            return ThreadLocalRandom.current().nextLong(spreadMillis + 1);
+        }
+        return calls <= 1 ? 0 : spreadMillis * call / (calls - 1);
+    }
+
+    /**
+     * Parse a comma-separated list of sequence numbers.
+     *
+     * @param sequenceNumbers e.g. "12,13,14"
+     * @return the sequence numbers
+     * @throws NumberFormatException if a sequence number is not a number
+     */
+    static List<Long> parseSequenceNumbers(String sequenceNumbers) {
+        List<Long> numbers = new ArrayList<>();
+        if (sequenceNumbers == null) {
+            return numbers;
+        }
+        for (String number : sequenceNumbers.split(",")) {
+            if (!number.trim().isEmpty()) {
+                numbers.add(Long.parseLong(number.trim()));
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Summary of the calls of one operation.
+     */
+    private static class CallStats {
+        private final String operation;
+        private int calls = 0;
+        private long messages = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+
+        CallStats(String operation) {
+            this.operation = operation;
+        }
+
+        void add(long nanos, int count) {
+            calls++;
+            messages += count;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        @Override
+        public String toString() {
+            double totalMillis = totalNanos / 1e6;
+            return operation.concat(": ")
+                .concat(String.valueOf(calls)).concat(" calls, ")
+                .concat(String.valueOf(messages)).concat(" messages, ")
+                .concat(String.format("%.1f", calls == 0 ? 0.0 : totalMillis / calls)).concat(" ms avg/call, ")
+                .concat(String.format("%.1f", maxNanos / 1e6)).concat(" ms max/call, ")
+                .concat(String.format("%.1f", totalMillis == 0 ? 0.0 : messages * 1000.0 / totalMillis)).concat(" messages/sec");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SampleResult sample(Entry e) {
+        trace("sample()");
+        boolean isSuccessful = false;
+
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(this.getName());
+
+        String threadName = Thread.currentThread().getName();
+        String responseMessage = "";
+        String requestBody = "";
+        long bodyBytes = 0;
+
+        ServiceBusSenderClient producer = null;
+        AzServiceBusClientParams serviceBusClientParams = getServiceBusClientParams();
+        String caller = threadName.concat(":").concat(this.getName());
+        AzAmqpMessageEncoder encoder = new AzAmqpMessageEncoder();
+        String errorClass = null;
+
+        try {
+            res.sampleStart(); // Start timing
+
+            String operation = getOperation();
+            String variableName = getSequenceNumbersVariable().trim();
+            producer = serviceBusClientParams.getProducer();
+            final String entityPath = producer.getEntityPath();
+            requestBody
+                = "Endpoint: sb://".concat(producer.getFullyQualifiedNamespace()).concat("\n")
+                .concat("Queue/Topic name: ").concat(entityPath).concat("\n")
+                .concat("Operation: ").concat(operation);
+
+            List<Long> sequenceNumbers = new ArrayList<>();
+            List<CallStats> stats = new ArrayList<>();
+            int messagesPerCall;
+
+            if (operation.equals(OPERATION_CANCEL)) {
+                if (variableName.isEmpty()) {
+                    throw new IllegalArgumentException("Variable name for sequence numbers must not be empty in ".concat(getName()));
+                }
+                sequenceNumbers = parseSequenceNumbers(getThreadContext().getVariables().get(variableName));
+                messagesPerCall = AzServiceBusParamParser.toPositiveInt(getMessagesPerCall(), Math.max(1, sequenceNumbers.size()), "Messages per call");
+                requestBody = requestBody.concat("\n")
+                    .concat("Sequence numbers variable: ").concat(variableName).concat("\n")
+                    .concat("Sequence numbers: ").concat(String.valueOf(sequenceNumbers.size()));
+            } else { // OPERATION_SCHEDULE or OPERATION_SCHEDULE_AND_CANCEL
+                List<AzAmqpMessage> rows = new ArrayList<>();
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    JMeterProperty property = iter.next();
+                    rows.add((AzAmqpMessage) property.getObjectValue());
+                }
+                if (rows.isEmpty()) {
+                    throw new IllegalArgumentException("No messages to schedule in ".concat(getName()));
+                }
+
+                int calls = AzServiceBusParamParser.toPositiveInt(getCalls(), DEFAULT_CALLS, "Calls per sample");
+                messagesPerCall = AzServiceBusParamParser.toPositiveInt(getMessagesPerCall(), rows.size(), "Messages per call");
+                long delayMillis = AzServiceBusParamParser.toMillis(getDelay(), DEFAULT_DELAY, "Delay");
+                long spreadMillis = AzServiceBusParamParser.toMillis(getSpread(), 0, "Spread");
+                String spreadType = getSpreadType();
+                requestBody = requestBody.concat("\n")
+                    .concat("Calls per sample: ").concat(String.valueOf(calls)).concat("\n")
+                    .concat("Messages per call: ").concat(String.valueOf(messagesPerCall)).concat("\n")
+                    .concat("Delay: ").concat(String.valueOf(delayMillis)).concat(" ms\n")
+                    .concat("Spread: ").concat(String.valueOf(spreadMillis)).concat(" ms (").concat(spreadType).concat(")");
+                for (int i = 0; i < rows.size(); i++) {
+                    requestBody = requestBody.concat("\n\n").concat(AzServiceBusMessageBuilder.describe(rows.get(i), i + 1));
+                }
+
+                CallStats scheduleStats = new CallStats("Schedule");
+                stats.add(scheduleStats);
+                OffsetDateTime start = OffsetDateTime.now();
+                int row = 0;
+                for (int call = 0; call < calls; call++) {
+                    List<ServiceBusMessage> messages = new ArrayList<>(messagesPerCall);
+                    long callBytes = 0;
+                    for (int i = 0; i < messagesPerCall; i++) {
+                        AzAmqpMessage msg = AzAmqpFeederMessages.resolve(rows.get(row));
+                        row = (row + 1) % rows.size();
+                        ServiceBusMessage serviceBusMessage = AzServiceBusMessageBuilder.build(msg, encoder.encode(msg), caller);
+                        messages.add(serviceBusMessage);
+                        callBytes += serviceBusMessage.getBody().toBytes().length;
+                    }
+                    bodyBytes += callBytes;
+                    OffsetDateTime enqueueTime = start.plusNanos(
+                        (delayMillis + spreadOffsetMillis(call, calls, spreadMillis, spreadType)) * 1000000
+                    );
+
+                    long callStart = System.nanoTime();
+                    for (Long sequenceNumber : producer.scheduleMessages(messages, enqueueTime)) {
+                        sequenceNumbers.add(sequenceNumber);
+                    }
+                    long elapsed = System.nanoTime() - callStart;
+                    scheduleStats.add(elapsed, messages.size());
+                    AzUtilMetrics.recordSend(getName(), entityPath, elapsed / 1000, messages.size(), callBytes);
+                }
+
+                if (!variableName.isEmpty() && operation.equals(OPERATION_SCHEDULE)) {
+                    StringBuilder joined = new StringBuilder(sequenceNumbers.size() * 8);
+                    for (Long sequenceNumber : sequenceNumbers) {
+                        joined.append(joined.length() == 0 ? "" : ",").append(sequenceNumber);
+                    }
+                    getThreadContext().getVariables().put(variableName, joined.toString());
+                }
+            }
+
+            if (!operation.equals(OPERATION_SCHEDULE)) {
+                CallStats cancelStats = new CallStats("Cancel");
+                stats.add(cancelStats);
+                for (int from = 0; from < sequenceNumbers.size(); from += messagesPerCall) {
+                    List<Long> chunk = sequenceNumbers.subList(from, Math.min(from + messagesPerCall, sequenceNumbers.size()));
+                    long callStart = System.nanoTime();
+                    producer.cancelScheduledMessages(chunk);
+                    long elapsed = System.nanoTime() - callStart;
+                    cancelStats.add(elapsed, chunk.size());
+                    AzUtilMetrics.recordValue(METRIC_CANCEL_LATENCY, getName(), entityPath, elapsed / 1000);
+                }
+                if (operation.equals(OPERATION_CANCEL)) {
+                    getThreadContext().getVariables().remove(variableName);
+                }
+            }
+
+            res.latencyEnd();
+            res.sampleEnd(); // End timing
+            String responseBody = "";
+            for (CallStats stat : stats) {
+                responseBody = responseBody.concat(responseBody.isEmpty() ? "" : "\n").concat(stat.toString());
+            }
+            res.setDataType(SampleResult.TEXT);
+            res.setResponseData(responseBody, "UTF-8");
+            responseMessage = "OK";
+            isSuccessful = true;
+        } catch (AmqpException ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            if (ex.isTransient()) {
+                responseMessage = "A transient error occurred in ".concat(threadName).concat(" sampler. Please try again later.\n");
+            }
+            responseMessage = responseMessage.concat(ex.getMessage());
+            res.setResponseData(ex.getMessage(), "UTF-8");
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } catch (ServiceBusException ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            res.setResponseData(ex.toString(), "UTF-8");
+            responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } catch (Exception ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            res.setResponseData(ex.toString(), "UTF-8");
+            responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } finally {
+            if (errorClass != null) {
+                res.setResponseCode(errorClass);
+                AzUtilErrorCounters.count(getName(), errorClass);
+            }
+            if (!encoder.describe().isEmpty()) {
+                requestBody = requestBody.concat("\n\n").concat(encoder.describe());
+            }
+            res.setSamplerData(requestBody); // Request Body
+            res.setBytes(bodyBytes);
+            res.setBodySize(bodyBytes);
+            res.setSentBytes(bodyBytes);
+            res.setResponseMessage(responseMessage);
+        }
+
+        res.setSuccessful(isSuccessful);
+        AzUtilMetrics.recordSample(getName(), res);
+        return res;
+    }
+
+    @Override
+    public void testStarted() {
+        testStarted(""); // $NON-NLS-1$
+    }
+
+    @Override
+    public void testEnded() {
+        testEnded(""); // $NON-NLS-1$
+    }
+
+    @Override
+    public void testStarted(String host) {
+        // ignored
+    }
+
+    @Override
+    public void testEnded(String host) {
+        AzUtilCompression.clearCache();
+        AzUtilMetrics.stop();
+        AzUtilErrorCounters.stop();
+    }
+
+    @Override
+    public void threadStarted() {
+        // ignored
+    }
+
+    // the sender of "Create New Connection" is kept for the samples of the thread
+    @Override
+    public void threadFinished() {
+        AzServiceBusClientParams serviceBusClientParams = getServiceBusClientParams();
+        if (serviceBusClientParams != null) {
+            serviceBusClientParams.closeProducer();
+        }
+    }
+
+    /**
+     * @see org.apache.jmeter.samplers.AbstractSampler#applies(org.apache.jmeter.config.ConfigTestElement)
+     */
+    @Override
+    public boolean applies(ConfigTestElement configElement) {
+        String guiClass = configElement.getProperty(TestElement.GUI_CLASS).getStringValue();
+        return APPLIABLE_CONFIG_CLASSES.contains(guiClass);
+    }
+
+    /*
+     * Helper method
+     */
+    private void trace(String s) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ({}) {} {} {}", Thread.currentThread().getName(), classCount.get(),
+                    this.getName(), s, this.toString());
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.azure.core.amqp.exception.AmqpException;
+import com.azure.messaging.servicebus.ServiceBusClientBuilder;
+import com.azure.messaging.servicebus.ServiceBusException;
+import com.azure.messaging.servicebus.ServiceBusProcessorClient;
+import com.azure.messaging.servicebus.ServiceBusReceivedMessage;
+import com.azure.messaging.servicebus.models.ServiceBusReceiveMode;
+
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusErrorClassifier;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusParamParser;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusReceiveStats;
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+import jp.co.pnop.jmeter.util.metrics.AzUtilMetrics;
+
+/**
+ * Azure Service Bus Session Receiver Sampler
+ * <p>
+ * Receives messages from a session-enabled queue or subscription with a session processor for the
+ * receive window of the sample. The processor handles up to "max concurrent sessions" sessions at the same
+ * time, with up to "max concurrent calls per session" messages of a session in process at the same time.
+ * <p>
+ * The response data reports the received messages per second, the number of sessions, the messages received
+ * out of order within a session, and the end-to-end latency from the enqueued time of the messages.
+ */
+public class AzServiceBusSessionReceiverSampler extends AbstractSampler implements TestStateListener {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AzServiceBusSessionReceiverSampler.class);
+
+    private static final Set<String> APPLIABLE_CONFIG_CLASSES = new HashSet<>(
+        Arrays.asList(
+            "org.apache.jmeter.config.gui.SimpleConfigGui"
+        )
+    );
+
+    public static final String SUBSCRIPTION_NAME = "Receive.subscriptionName";
+    public static final String MAX_CONCURRENT_SESSIONS = "Receive.maxConcurrentSessions";
+    public static final String MAX_CONCURRENT_CALLS = "Receive.maxConcurrentCallsPerSession";
+    public static final String RECEIVE_MODE = "Receive.mode";
+    public static final String DURATION = "Receive.duration";
+    public static final String MAX_MESSAGES = "Receive.maxMessages";
+
+    public static final String RECEIVE_MODE_PEEK_LOCK = "Peek lock";
+    public static final String RECEIVE_MODE_RECEIVE_AND_DELETE = "Receive and delete";
+
+    public static final String[] RECEIVE_MODES = {
+        RECEIVE_MODE_PEEK_LOCK,
+        RECEIVE_MODE_RECEIVE_AND_DELETE
+    };
+
+    private static final String METRIC_RECEIVE_LATENCY = "receive_latency_ms";
+
+    private static final int DEFAULT_MAX_CONCURRENT_SESSIONS = 1;
+    private static final int DEFAULT_MAX_CONCURRENT_CALLS = 1;
+    private static final double DEFAULT_DURATION = 10; // sec
+
+    private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
+
+    public AzServiceBusSessionReceiverSampler() {
+        super();
+        classCount.incrementAndGet();
+        trace("AzServiceBusSessionReceiverSampler()");
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+
+        setProperty(new StringProperty(SUBSCRIPTION_NAME, ""));
+        setProperty(new StringProperty(MAX_CONCURRENT_SESSIONS, ""));
+        setProperty(new StringProperty(MAX_CONCURRENT_CALLS, ""));
+        setProperty(new StringProperty(RECEIVE_MODE, RECEIVE_MODE_PEEK_LOCK));
+        setProperty(new StringProperty(DURATION, ""));
+        setProperty(new StringProperty(MAX_MESSAGES, ""));
+        setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, null));
+    }
+
+    public void setServiceBusClientParams(AzServiceBusClientParams sbcParams) {
+        setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, sbcParams));
+    }
+
+    public AzServiceBusClientParams getServiceBusClientParams() {
+        return (AzServiceBusClientParams) getProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS).getObjectValue();
+    }
+
+    public void setSubscriptionName(String subscriptionName) {
+        setProperty(new StringProperty(SUBSCRIPTION_NAME, subscriptionName));
+    }
+
+    public String getSubscriptionName() {
+        return getPropertyAsString(SUBSCRIPTION_NAME);
+    }
+
+    public void setMaxConcurrentSessions(String maxConcurrentSessions) {
+        setProperty(new StringProperty(MAX_CONCURRENT_SESSIONS, maxConcurrentSessions));
+    }
+
+    public String getMaxConcurrentSessions() {
+        return getPropertyAsString(MAX_CONCURRENT_SESSIONS);
+    }
+
+    public void setMaxConcurrentCalls(String maxConcurrentCalls) {
+        setProperty(new StringProperty(MAX_CONCURRENT_CALLS, maxConcurrentCalls));
+    }
+
+    public String getMaxConcurrentCalls() {
+        return getPropertyAsString(MAX_CONCURRENT_CALLS);
+    }
+
+    public void setReceiveMode(String receiveMode) {
+        setProperty(new StringProperty(RECEIVE_MODE, receiveMode));
+    }
+
+    public String getReceiveMode() {
+        return getPropertyAsString(RECEIVE_MODE, RECEIVE_MODE_PEEK_LOCK);
+    }
+
+    public void setDuration(String duration) {
+        setProperty(new StringProperty(DURATION, duration));
+    }
+
+    public String getDuration() {
+        return getPropertyAsString(DURATION);
+    }
+
+    public void setMaxMessages(String maxMessages) {
+        setProperty(new StringProperty(MAX_MESSAGES, maxMessages));
+    }
+
+    public String getMaxMessages() {
+        return getPropertyAsString(MAX_MESSAGES);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SampleResult sample(Entry e) {
+        trace("sample()");
+        boolean isSuccessful = false;
+
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(this.getName());
+
+        String threadName = Thread.currentThread().getName();
+        String responseMessage = "";
+        String requestBody = "";
+
+        ServiceBusProcessorClient processor = null;
+        AzServiceBusClientParams serviceBusClientParams = getServiceBusClientParams();
+        AzServiceBusReceiveStats stats = new AzServiceBusReceiveStats();
+        String errorClass = null;
+
+        try {
+            res.sampleStart(); // Start timing
+
+            if (!serviceBusClientParams.getConnectionType().equals(AzServiceBusClientParams.CONNECTION_TYPE_NEW_CONNECTION)) {
+                throw new IllegalArgumentException("Session receiver can only be used with \""
+                    .concat(AzServiceBusClientParams.CONNECTION_TYPE_NEW_CONNECTION).concat("\"."));
+            }
+            int maxConcurrentSessions = AzServiceBusParamParser.toPositiveInt(getMaxConcurrentSessions(), DEFAULT_MAX_CONCURRENT_SESSIONS, "Max concurrent sessions");
+            int maxConcurrentCalls = AzServiceBusParamParser.toPositiveInt(getMaxConcurrentCalls(), DEFAULT_MAX_CONCURRENT_CALLS, "Max concurrent calls per session");
+            long durationMillis = AzServiceBusParamParser.toMillis(getDuration(), DEFAULT_DURATION, "Receive window");
+            final long maxMessages = JOrphanUtils.isBlank(getMaxMessages()) ? Long.MAX_VALUE : AzServiceBusParamParser.toPositiveInt(getMaxMessages(), 1, "Max messages");
+            boolean receiveAndDelete = getReceiveMode().equals(RECEIVE_MODE_RECEIVE_AND_DELETE);
+            boolean topic = serviceBusClientParams.getDestType().equals(AzServiceBusClientParams.DEST_TYPE_TOPIC);
+            final String entityPath = topic
+                ? serviceBusClientParams.getQueueName().concat("/subscriptions/").concat(getSubscriptionName())
+                : serviceBusClientParams.getQueueName();
+
+            requestBody
+                = "Endpoint: sb://".concat(serviceBusClientParams.getNamespaceName()).concat("\n")
+                .concat("Queue/Subscription: ").concat(entityPath).concat("\n")
+                .concat("Max concurrent sessions: ").concat(String.valueOf(maxConcurrentSessions)).concat("\n")
+                .concat("Max concurrent calls per session: ").concat(String.valueOf(maxConcurrentCalls)).concat("\n")
+                .concat("Receive mode: ").concat(getReceiveMode()).concat("\n")
+                .concat("Receive window: ").concat(String.valueOf(durationMillis)).concat(" ms")
+                .concat(maxMessages == Long.MAX_VALUE ? "" : "\nMax messages: ".concat(String.valueOf(maxMessages)))
+                .concat(serviceBusClientParams.describeTuning());
+
+            CountDownLatch done = new CountDownLatch(1);
+            ServiceBusClientBuilder.ServiceBusSessionProcessorClientBuilder processorBuilder
+                = serviceBusClientParams.createClientBuilder().sessionProcessor();
+            if (topic) {
+                processorBuilder.topicName(serviceBusClientParams.getQueueName()).subscriptionName(getSubscriptionName());
+            } else {
+                processorBuilder.queueName(serviceBusClientParams.getQueueName());
+            }
+            Integer prefetchCount = serviceBusClientParams.getPrefetchCountValue();
+            if (prefetchCount != null) {
+                processorBuilder.prefetchCount(prefetchCount);
+            }
+            processor = processorBuilder
+                .maxConcurrentSessions(maxConcurrentSessions)
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .receiveMode(receiveAndDelete ? ServiceBusReceiveMode.RECEIVE_AND_DELETE : ServiceBusReceiveMode.PEEK_LOCK)
+                .processMessage(context -> {
+                    ServiceBusReceivedMessage message = context.getMessage();
+                    long latency = message.getEnqueuedTime() == null
+                        ? 0 : System.currentTimeMillis() - message.getEnqueuedTime().toInstant().toEpochMilli();
+                    stats.received(message.getSessionId(), message.getSequenceNumber(), latency, message.getBody().toBytes().length);
+                    AzUtilMetrics.recordValue(METRIC_RECEIVE_LATENCY, getName(), entityPath, latency);
+                    if (stats.getMessages() >= maxMessages) {
+                        done.countDown();
+                    }
+                })
+                .processError(context -> {
+                    stats.error();
+                    AzUtilErrorCounters.count(getName(), AzServiceBusErrorClassifier.classify(context.getException()));
+                    log.info("Error receiving in {} sampler. ", threadName, context.getException());
+                })
+                .buildProcessorClient();
+
+            long receiveStart = System.currentTimeMillis();
+            processor.start();
+            done.await(durationMillis, TimeUnit.MILLISECONDS);
+            processor.stop();
+            long elapsed = System.currentTimeMillis() - receiveStart;
+
+            res.latencyEnd();
+            res.sampleEnd(); // End timing
+            res.setDataType(SampleResult.TEXT);
+            res.setResponseData(stats.summary(elapsed), "UTF-8");
+            if (stats.getErrors() == 0) {
+                responseMessage = "OK";
+                isSuccessful = true;
+            } else {
+                responseMessage = String.valueOf(stats.getErrors()).concat(" errors occurred while receiving.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.info("Error calling {} sampler. ", threadName, ex);
+            res.setResponseData(ex.toString(), "UTF-8");
+            responseMessage = responseMessage.concat(ex.toString());
+        } catch (AmqpException ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            if (ex.isTransient()) {
+                responseMessage = "A transient error occurred in ".concat(threadName).concat(" sampler. Please try again later.\n");
+            }
+            responseMessage = responseMessage.concat(ex.getMessage());
+            res.setResponseData(ex.getMessage(), "UTF-8");
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } catch (ServiceBusException ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            res.setResponseData(ex.toString(), "UTF-8");
+            responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } catch (Exception ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            res.setResponseData(ex.toString(), "UTF-8");
+            responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } finally {
+            if (errorClass != null) {
+                res.setResponseCode(errorClass);
+                AzUtilErrorCounters.count(getName(), errorClass);
+            }
+            if (processor != null) {
+                processor.close();
+            }
+            res.setSamplerData(requestBody); // Request Body
+            res.setBytes(stats.getBytes());
+            res.setBodySize(stats.getBytes());
+            res.setResponseMessage(responseMessage);
+        }
+
+        res.setSuccessful(isSuccessful);
+        AzUtilMetrics.recordSample(getName(), res);
+        return res;
+    }
+
+    @Override
+    public void testStarted() {
+        testStarted(""); // $NON-NLS-1$
+    }
+
+    @Override
+    public void testEnded() {
+        testEnded(""); // $NON-NLS-1$
+    }
+
+    @Override
+    public void testStarted(String host) {
+        // ignored
+    }
+
+    @Override
+    public void testEnded(String host) {
+        AzUtilMetrics.stop();
+        AzUtilErrorCounters.stop();
+    }
+
+    /**
+     * @see org.apache.jmeter.samplers.AbstractSampler#applies(org.apache.jmeter.config.ConfigTestElement)
+     */
+    @Override
+    public boolean applies(ConfigTestElement configElement) {
+        String guiClass = configElement.getProperty(TestElement.GUI_CLASS).getStringValue();
+        return APPLIABLE_CONFIG_CLASSES.contains(guiClass);
+    }
+
+    /*
+     * Helper method
+     */
+    private void trace(String s) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ({}) {} {} {}", Thread.currentThread().getName(), classCount.get(),
+                    this.getName(), s, this.toString());
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.property.BooleanProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.azure.core.amqp.exception.AmqpException;
+import com.azure.messaging.servicebus.ServiceBusClientBuilder;
+import com.azure.messaging.servicebus.ServiceBusException;
+import com.azure.messaging.servicebus.ServiceBusMessage;
+import com.azure.messaging.servicebus.ServiceBusSenderAsyncClient;
+import com.azure.messaging.servicebus.ServiceBusTransactionContext;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpFeederMessages;
+import jp.co.pnop.jmeter.protocol.amqp.util.AzAmqpMessageEncoder;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusErrorClassifier;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusMessageBuilder;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusParamParser;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+import jp.co.pnop.jmeter.util.metrics.AzUtilMetrics;
+
+/**
+ * Azure Service Bus Transactional Batch Sampler
+ * <p>
+ * Sends the messages N times within one transaction in a single sample: the transaction is created,
+ * the sends are pipelined on one connection, and the transaction is committed (or rolled back).
+ * Each phase is reported as a sub-result, so the numbers are not blurred by the per-sample overhead
+ * of JMeter that the "Use Defined Transaction" flow of {@link AzServiceBusSampler} has.
+ * <p>
+ * If a send-via queue is specified, cross-entity transactions are enabled on the connection and
+ * the sender of the send-via queue is created first, so the sends to the queue/topic are transferred via it.
+ */
+public class AzServiceBusTransactionSampler extends AbstractSampler implements TestStateListener {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AzServiceBusTransactionSampler.class);
+
+    private static final Set<String> APPLIABLE_CONFIG_CLASSES = new HashSet<>(
+        Arrays.asList(
+            "org.apache.jmeter.config.gui.SimpleConfigGui"
+        )
+    );
+
+    public static final String SEND_COUNT = "Transaction.sendCount";
+    public static final String MAX_CONCURRENT_SENDS = "Transaction.maxConcurrentSends";
+    public static final String SEND_VIA_QUEUE_NAME = "Transaction.sendViaQueueName";
+    public static final String ROLLBACK = "Transaction.rollback";
+    public static final String MESSAGES = "messages";
+
+    private static final int DEFAULT_SEND_COUNT = 1;
+
+    private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
+
+    public AzServiceBusTransactionSampler() {
+        super();
+        classCount.incrementAndGet();
+        trace("AzServiceBusTransactionSampler()");
+    }
+
+    /**
+     * Clear the messages.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+
+        setProperty(new StringProperty(SEND_COUNT, ""));
+        setProperty(new StringProperty(MAX_CONCURRENT_SENDS, ""));
+        setProperty(new StringProperty(SEND_VIA_QUEUE_NAME, ""));
+        setProperty(new BooleanProperty(ROLLBACK, false));
+        setProperty(new TestElementProperty(MESSAGES, null));
+        setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, null));
+    }
+
+    public void setServiceBusClientParams(AzServiceBusClientParams sbcParams) {
+        setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, sbcParams));
+    }
+
+    public AzServiceBusClientParams getServiceBusClientParams() {
+        return (AzServiceBusClientParams) getProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS).getObjectValue();
+    }
+
+    public void setSendCount(String sendCount) {
+        setProperty(new StringProperty(SEND_COUNT, sendCount));
+    }
+
+    public String getSendCount() {
+        return getPropertyAsString(SEND_COUNT);
+    }
+
+    public void setMaxConcurrentSends(String maxConcurrentSends) {
+        setProperty(new StringProperty(MAX_CONCURRENT_SENDS, maxConcurrentSends));
+    }
+
+    public String getMaxConcurrentSends() {
+        return getPropertyAsString(MAX_CONCURRENT_SENDS);
+    }
+
+    public void setSendViaQueueName(String sendViaQueueName) {
+        setProperty(new StringProperty(SEND_VIA_QUEUE_NAME, sendViaQueueName));
+    }
+
+    public String getSendViaQueueName() {
+        return getPropertyAsString(SEND_VIA_QUEUE_NAME);
+    }
+
+    public void setRollback(boolean rollback) {
+        setProperty(new BooleanProperty(ROLLBACK, rollback));
+    }
+
+    public boolean getRollback() {
+        return getPropertyAsBoolean(ROLLBACK);
+    }
+
+    public void setMessages(AzAmqpMessages messages) {
+        setProperty(new TestElementProperty(MESSAGES, messages));
+    }
+
+    public AzAmqpMessages getMessages() {
+        return (AzAmqpMessages) getProperty(MESSAGES).getObjectValue();
+    }
+
+    /**
+     * Get the number of sends within the transaction.
+     *
+     * @return the number of sends, 1 if blank
+     * @throws NumberFormatException if the number is not a positive integer
+     */
+    public int getSendCountValue() {
+        return AzServiceBusParamParser.toPositiveInt(getSendCount(), DEFAULT_SEND_COUNT, "Number of sends");
+    }
+
+    /**
+     * Get the number of sends in flight at the same time.
+     *
+     * @return the number of concurrent sends, the number of sends if blank
+     * @throws NumberFormatException if the number is not a positive integer
+     */
+    public int getMaxConcurrentSendsValue() {
+        return AzServiceBusParamParser.toPositiveInt(getMaxConcurrentSends(), getSendCountValue(), "Max concurrent sends");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SampleResult sample(Entry e) {
+        trace("sample()");
+        boolean isSuccessful = false;
+
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(this.getName());
+
+        String threadName = Thread.currentThread().getName();
+        String responseMessage = "";
+        String responseBody = "";
+        String requestBody = "";
+        long bodyBytes = 0;
+        long sentBytes = 0;
+
+        ServiceBusSenderAsyncClient producer = null;
+        ServiceBusSenderAsyncClient viaProducer = null;
+        ServiceBusTransactionContext transaction = null;
+        ServiceBusSenderAsyncClient transactionProducer = null;
+        AzServiceBusClientParams serviceBusClientParams = getServiceBusClientParams();
+        String caller = threadName.concat(":").concat(this.getName());
+        AzAmqpMessageEncoder encoder = new AzAmqpMessageEncoder();
+        String errorClass = null;
+
+        try {
+            res.sampleStart(); // Start timing
+
+            if (!serviceBusClientParams.getConnectionType().equals(AzServiceBusClientParams.CONNECTION_TYPE_NEW_CONNECTION)) {
+                throw new IllegalArgumentException("Transactional batch can only be used with \""
+                    .concat(AzServiceBusClientParams.CONNECTION_TYPE_NEW_CONNECTION).concat("\"."));
+            }
+            int sendCount = getSendCountValue();
+            int maxConcurrentSends = getMaxConcurrentSendsValue();
+            String sendViaQueueName = getSendViaQueueName().trim();
+
+            ServiceBusClientBuilder producerBuilder = serviceBusClientParams.createClientBuilder();
+            if (!sendViaQueueName.isEmpty()) {
+                // The first entity of the connection becomes the send-via entity of the transactions.
+                producerBuilder.enableCrossEntityTransactions();
+                viaProducer = producerBuilder.sender().queueName(sendViaQueueName).buildAsyncClient();
+            }
+            producer = serviceBusClientParams.getAsyncProducer(producerBuilder);
+            transactionProducer = viaProducer != null ? viaProducer : producer;
+
+            requestBody
+                = "Endpoint: sb://".concat(producer.getFullyQualifiedNamespace()).concat("\n")
+                .concat("Queue/Topic name: ").concat(producer.getEntityPath()).concat("\n")
+                .concat("Send-via queue name: ").concat(sendViaQueueName).concat("\n")
+                .concat("Number of sends: ").concat(String.valueOf(sendCount)).concat("\n")
+                .concat("Max concurrent sends: ").concat(String.valueOf(maxConcurrentSends)).concat("\n")
+                .concat("End of transaction: ").concat(getRollback() ? "Rollback" : "Commit");
+
+            // Build the messages of all sends before the transaction, so that reading the bodies is not timed.
+            List<List<ServiceBusMessage>> sends = new ArrayList<>(sendCount);
+            for (int i = 0; i < sendCount; i++) {
+                List<ServiceBusMessage> messages = new ArrayList<>();
+                PropertyIterator iter = getMessages().iterator();
+                while (iter.hasNext()) {
+                    AzAmqpMessage msg = AzAmqpFeederMessages.resolve((AzAmqpMessage) iter.next().getObjectValue());
+                    ServiceBusMessage serviceBusMessage = AzServiceBusMessageBuilder.build(msg, encoder.encode(msg), caller);
+                    messages.add(serviceBusMessage);
+                    bodyBytes += serviceBusMessage.getBody().toBytes().length;
+                    if (i == 0) {
+                        requestBody = requestBody.concat("\n\n").concat(AzServiceBusMessageBuilder.describe(msg, messages.size()));
+                    }
+                }
+                sends.add(messages);
+            }
+            final int messagesPerSend = sends.get(0).size();
+
+            // Phase 1: create the transaction
+            SampleResult createResult = startPhase("create transaction");
+            transaction = transactionProducer.createTransaction().block();
+            responseBody = endPhase(res, createResult, responseBody, "Create transaction");
+
+            // Phase 2: pipeline the sends
+            SampleResult sendResult = startPhase("send x".concat(String.valueOf(sendCount)));
+            final ServiceBusSenderAsyncClient client = producer;
+            final ServiceBusTransactionContext context = transaction;
+            final String entityPath = producer.getEntityPath();
+            final long sendBytes = bodyBytes / sendCount;
+            Flux.fromIterable(sends)
+                .flatMap(messages -> Mono.defer(() -> {
+                    long sendStart = System.nanoTime();
+                    return client.sendMessages(messages, context)
+                        .doOnSuccess(v -> AzUtilMetrics.recordSend(getName(), entityPath, (System.nanoTime() - sendStart) / 1000, messages.size(), sendBytes));
+                }), maxConcurrentSends)
+                .then()
+                .block();
+            sentBytes = bodyBytes;
+            sendResult.setSentBytes(sentBytes);
+            responseBody = endPhase(res, sendResult, responseBody, String.valueOf(sendCount).concat(" sends of ")
+                .concat(String.valueOf(messagesPerSend)).concat(" messages"));
+
+            // Phase 3: commit or roll back the transaction
+            if (getRollback()) {
+                SampleResult rollbackResult = startPhase("rollback");
+                transactionProducer.rollbackTransaction(transaction).block();
+                transaction = null;
+                responseBody = endPhase(res, rollbackResult, responseBody, "Rollback");
+            } else {
+                SampleResult commitResult = startPhase("commit");
+                transactionProducer.commitTransaction(transaction).block();
+                transaction = null;
+                responseBody = endPhase(res, commitResult, responseBody, "Commit");
+            }
+
+            res.latencyEnd();
+            res.setDataType(SampleResult.TEXT);
+            res.setResponseData(responseBody, "UTF-8");
+            responseMessage = "OK";
+            isSuccessful = true;
+            res.sampleEnd(); // End timing
+        } catch (AmqpException ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            if (ex.isTransient()) {
+                responseMessage = "A transient error occurred in ".concat(threadName).concat(" sampler. Please try again later.\n");
+            }
+            responseMessage = responseMessage.concat(ex.getMessage());
+            res.setResponseData(responseBody.concat(responseBody.isEmpty() ? "" : "\n").concat(ex.getMessage()), "UTF-8");
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } catch (ServiceBusException ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            res.setResponseData(responseBody.concat(responseBody.isEmpty() ? "" : "\n").concat(ex.toString()), "UTF-8");
+            responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } catch (Exception ex) {
+            log.info("Error calling {} sampler. ", threadName, ex);
+            res.setResponseData(responseBody.concat(responseBody.isEmpty() ? "" : "\n").concat(ex.toString()), "UTF-8");
+            responseMessage = responseMessage.concat(ex.toString());
+            errorClass = AzServiceBusErrorClassifier.classify(ex);
+        } finally {
+            if (errorClass != null) {
+                res.setResponseCode(errorClass);
+                AzUtilErrorCounters.count(getName(), errorClass);
+            }
+            if (transaction != null) {
+                // A phase failed: don't leave the transaction open until it times out.
+                try {
+                    transactionProducer.rollbackTransaction(transaction).block();
+                } catch (RuntimeException ex) {
+                    log.info("Error rolling back the transaction in {} sampler. ", threadName, ex);
+                }
+            }
+            if (producer != null) {
+                producer.close();
+            }
+            if (viaProducer != null) {
+                viaProducer.close();
+            }
+            if (!encoder.describe().isEmpty()) {
+                requestBody = requestBody.concat("\n\n").concat(encoder.describe());
+            }
+            res.setSamplerData(requestBody); // Request Body
+            res.setBytes(sentBytes);
+            res.setBodySize(bodyBytes);
+            res.setSentBytes(sentBytes);
+            res.setResponseMessage(responseMessage);
+        }
+
+        res.setSuccessful(isSuccessful);
+        AzUtilMetrics.recordSample(getName(), res);
+        return res;
+    }
+
+    /**
+     * Start timing a phase of the transaction.
+     */
+    private SampleResult startPhase(String phase) {
+        SampleResult subResult = new SampleResult();
+        subResult.setSampleLabel(getName().concat(" [").concat(phase).concat("]"));
+        subResult.setDataType(SampleResult.TEXT);
+        subResult.sampleStart();
+        return subResult;
+    }
+
+    /**
+     * End timing a phase of the transaction, and add it to the sample result.
+     *
+     * @return the response body with the summary of the phase
+     */
+    private String endPhase(SampleResult res, SampleResult subResult, String responseBody, String phaseSummary) {
+        subResult.sampleEnd();
+        String summary = phaseSummary.concat(": ").concat(String.valueOf(subResult.getTime())).concat(" ms");
+        subResult.setResponseData(summary, "UTF-8");
+        subResult.setResponseMessage("OK");
+        subResult.setSuccessful(true);
+        // keep the phase in the label; addRawSubResult() would rename it to "name-N"
+        res.storeSubResult(subResult, false);
+        return responseBody.concat(responseBody.isEmpty() ? "" : "\n").concat(summary);
+    }
+
+    @Override
+    public void testStarted() {
+        testStarted(""); // $NON-NLS-1$
+    }
+
+    @Override
+    public void testEnded() {
+        testEnded(""); // $NON-NLS-1$
+    }
+
+    @Override
+    public void testStarted(String host) {
+        // ignored
+    }
+
+    @Override
+    public void testEnded(String host) {
+        AzUtilCompression.clearCache();
+        AzUtilMetrics.stop();
+        AzUtilErrorCounters.stop();
+    }
+
+    /**
+     * @see org.apache.jmeter.samplers.AbstractSampler#applies(org.apache.jmeter.config.ConfigTestElement)
+     */
+    @Override
+    public boolean applies(ConfigTestElement configElement) {
+        String guiClass = configElement.getProperty(TestElement.GUI_CLASS).getStringValue();
+        return APPLIABLE_CONFIG_CLASSES.contains(guiClass);
+    }
+
+    /*
+     * Helper method
+     */
+    private void trace(String s) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ({}) {} {} {}", Thread.currentThread().getName(), classCount.get(),
+                    this.getName(), s, this.toString());
+        }
+    }
+}
@@ -35,13 +35,20 @@ import org.apache.jmeter.gui.util.VerticalPanel;
 import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jorphan.gui.JLabeledChoice;
 import org.apache.jorphan.gui.JLabeledTextField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpDispatchParams;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpRetryParams;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.gui.AzAmqpDispatchParamsPanel;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.gui.AzAmqpRetryParamsPanel;
 import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
 import jp.co.pnop.jmeter.protocol.azureservicebus.common.gui.AzServiceBusClientParamsPanel;
 import jp.co.pnop.jmeter.protocol.azureservicebus.sampler.AzServiceBusSampler;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinderParams;
+import jp.co.pnop.jmeter.util.throughput.gui.AzUtilThroughputFinderParamsPanel;
 
 public class AzServiceBusSamplerGui extends AbstractSamplerGui implements PropertyChangeListener, ChangeListener {
     private static final long serialVersionUID = 1L;
@@ -52,9 +59,21 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
     private JRadioButton continueTransaction;
     private JRadioButton commitTransaction;
     private JRadioButton rollbackTransaction;
+    private JLabeledChoice sessionIdType;
+    private JLabeledTextField sessionCount;
+    private JLabeledTextField sessionIdPrefix;
+    private JLabeledTextField concurrentSends;
+    private String[] SESSION_ID_TYPE_LABELS = {
+        AzServiceBusSampler.SESSION_ID_TYPE_MESSAGE,
+        AzServiceBusSampler.SESSION_ID_TYPE_ROUND_ROBIN,
+        AzServiceBusSampler.SESSION_ID_TYPE_HASH
+    };
 
     private AzServiceBusClientParamsPanel sbclientPanel = new AzServiceBusClientParamsPanel();
     private AzServiceBusMessagesPanel messagesPanel = new AzServiceBusMessagesPanel();
+    private AzAmqpDispatchParamsPanel dispatchPanel = new AzAmqpDispatchParamsPanel();
+    private AzAmqpRetryParamsPanel retryPanel = new AzAmqpRetryParamsPanel();
+    private AzUtilThroughputFinderParamsPanel finderPanel = new AzUtilThroughputFinderParamsPanel();
 
     private ButtonGroup transactionStatusGroup = new ButtonGroup();
 
@@ -84,8 +103,16 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
         continueTransaction.setSelected(element.getPropertyAsBoolean(AzServiceBusSampler.CONTINUE_TRANSACTION));
         commitTransaction.setSelected(element.getPropertyAsBoolean(AzServiceBusSampler.COMMIT_TRANSACTION));
         rollbackTransaction.setSelected(element.getPropertyAsBoolean(AzServiceBusSampler.ROLLBACK_TRANSACTION));
+        sessionIdType.setText(element.getPropertyAsString(AzServiceBusSampler.SESSION_ID_TYPE, AzServiceBusSampler.SESSION_ID_TYPE_MESSAGE));
+        sessionCount.setText(element.getPropertyAsString(AzServiceBusSampler.SESSION_COUNT));
+        sessionIdPrefix.setText(element.getPropertyAsString(AzServiceBusSampler.SESSION_ID_PREFIX));
+        toggleSessionIdType();
+        concurrentSends.setText(element.getPropertyAsString(AzServiceBusSampler.CONCURRENT_SENDS));
         sbclientPanel.configure((TestElement)element.getProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS).getObjectValue());
         messagesPanel.configure((TestElement)element.getProperty(AzServiceBusSampler.MESSAGES).getObjectValue());
+        dispatchPanel.configure((TestElement)element.getProperty(AzAmqpDispatchParams.DISPATCH_PARAMS).getObjectValue());
+        retryPanel.configure((TestElement)element.getProperty(AzAmqpRetryParams.RETRY_PARAMS).getObjectValue());
+        finderPanel.configure((TestElement)element.getProperty(AzUtilThroughputFinderParams.FINDER_PARAMS).getObjectValue());
     }
 
     @Override
@@ -111,7 +138,14 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
         sampler.setProperty(AzServiceBusSampler.CONTINUE_TRANSACTION, continueTransaction.isSelected());
         sampler.setProperty(AzServiceBusSampler.COMMIT_TRANSACTION, commitTransaction.isSelected());
         sampler.setProperty(AzServiceBusSampler.ROLLBACK_TRANSACTION, rollbackTransaction.isSelected());
+        sampler.setProperty(AzServiceBusSampler.SESSION_ID_TYPE, sessionIdType.getText());
+        sampler.setProperty(AzServiceBusSampler.SESSION_COUNT, sessionCount.getText());
+        sampler.setProperty(AzServiceBusSampler.SESSION_ID_PREFIX, sessionIdPrefix.getText());
+        sampler.setProperty(AzServiceBusSampler.CONCURRENT_SENDS, concurrentSends.getText());
         sampler.setProperty(new TestElementProperty(AzServiceBusSampler.MESSAGES, messagesPanel.createTestElement()));
+        sampler.setProperty(new TestElementProperty(AzAmqpDispatchParams.DISPATCH_PARAMS, dispatchPanel.createTestElement()));
+        sampler.setProperty(new TestElementProperty(AzAmqpRetryParams.RETRY_PARAMS, retryPanel.createTestElement()));
+        sampler.setProperty(new TestElementProperty(AzUtilThroughputFinderParams.FINDER_PARAMS, finderPanel.createTestElement()));
     }
 
     /**
@@ -131,7 +165,16 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
         commitTransaction.setEnabled(false);
         rollbackTransaction.setSelected(false);
         rollbackTransaction.setEnabled(false);
+        sessionIdType.setText(AzServiceBusSampler.SESSION_ID_TYPE_MESSAGE);
+        sessionCount.setText("");
+        sessionIdPrefix.setText("");
+        toggleSessionIdType();
+        concurrentSends.setText("");
+        toggleConcurrentSends();
         messagesPanel.clear();
+        dispatchPanel.clearGui();
+        retryPanel.clearGui();
+        finderPanel.clearGui();
     }
 
     @Override
@@ -188,6 +231,36 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
         return panel;
     }
 
+    private JPanel createSessionPanel() {
+        JLabel sessionIdTypeLabel = new JLabel("Session ID:");
+        sessionIdType = new JLabeledChoice("", SESSION_ID_TYPE_LABELS);
+        sessionIdType.setName(AzServiceBusSampler.SESSION_ID_TYPE);
+        sessionIdType.addChangeListener(this);
+
+        sessionCount = new JLabeledTextField("Number of sessions:", 6);
+        sessionCount.setName(AzServiceBusSampler.SESSION_COUNT);
+        sessionIdPrefix = new JLabeledTextField("Session ID prefix:", 10);
+        sessionIdPrefix.setName(AzServiceBusSampler.SESSION_ID_PREFIX);
+
+        HorizontalPanel panel = new HorizontalPanel();
+        panel.add(sessionIdTypeLabel);
+        panel.add(sessionIdType);
+        panel.add(sessionCount);
+        panel.add(sessionIdPrefix);
+
+        return panel;
+    }
+
+    private JPanel createConcurrentSendsPanel() {
+        concurrentSends = new JLabeledTextField("Concurrent sends:");
+        concurrentSends.setName(AzServiceBusSampler.CONCURRENT_SENDS);
+
+        JPanel panel = new JPanel(new BorderLayout(5, 0));
+        panel.add(concurrentSends);
+
+        return panel;
+    }
+
     private JPanel createMessagesPanel() {
         JPanel panel = new JPanel(new BorderLayout(5, 0));
         panel.add(messagesPanel, BorderLayout.CENTER);
@@ -206,6 +279,11 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
         sbclientPanel.addPropertyChangeListener(this);
         servicebusPanel.add(createCreateTransactionPanel());
         servicebusPanel.add(createTransactionStatusPanel());
+        servicebusPanel.add(createSessionPanel());
+        servicebusPanel.add(createConcurrentSendsPanel());
+        servicebusPanel.add(dispatchPanel);
+        servicebusPanel.add(retryPanel);
+        servicebusPanel.add(finderPanel);
 
         mainPanel.add(servicebusPanel, BorderLayout.NORTH);
         mainPanel.add(createMessagesPanel(), BorderLayout.CENTER);
@@ -226,6 +304,7 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
                 createTransactionName.setEnabled(false);
                 createTransactionName.setText("");
             }
+            toggleConcurrentSends();
         }
     }
 
@@ -233,15 +312,34 @@ public class AzServiceBusSamplerGui extends AbstractSamplerGui implements Proper
     public void stateChanged(ChangeEvent e) {
         if (e.getSource().equals(createTransaction)) {
             toggleCreateTransaction();
+        } else if (e.getSource().equals(sessionIdType)) {
+            toggleSessionIdType();
         }
     }
 
+    /*
+     * Updated "Session ID" choice.
+     */
+    private void toggleSessionIdType() {
+        boolean distributed = !AzServiceBusSampler.SESSION_ID_TYPE_MESSAGE.equals(sessionIdType.getText());
+        sessionCount.setEnabled(distributed);
+        sessionIdPrefix.setEnabled(distributed);
+    }
+
     /*
      * Updated "Create transaction before sending messages" checkbox.
      */
     private void toggleCreateTransaction() {
         Boolean status = createTransaction.isSelected();
         createTransactionName.setEnabled(status);
+        toggleConcurrentSends();
+    }
+
+    /*
+     * The sends of a transaction are not concurrent.
+     */
+    private void toggleConcurrentSends() {
+        concurrentSends.setEnabled(createTransaction.isEnabled() && !createTransaction.isSelected());
     }
 
     /*
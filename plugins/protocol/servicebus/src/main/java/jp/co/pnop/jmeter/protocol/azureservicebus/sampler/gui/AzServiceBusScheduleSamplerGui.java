@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler.gui;
+
+import java.awt.BorderLayout;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.apache.jmeter.gui.util.HorizontalPanel;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jorphan.gui.JLabeledChoice;
+import org.apache.jorphan.gui.JLabeledTextField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.gui.AzServiceBusClientParamsPanel;
+import jp.co.pnop.jmeter.protocol.azureservicebus.sampler.AzServiceBusScheduleSampler;
+
+public class AzServiceBusScheduleSamplerGui extends AbstractSamplerGui implements ChangeListener {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AzServiceBusScheduleSamplerGui.class);
+
+    private JLabeledChoice operation;
+    private JLabeledTextField calls;
+    private JLabeledTextField messagesPerCall;
+    private JLabeledTextField delay;
+    private JLabeledTextField spread;
+    private JLabeledChoice spreadType;
+    private JLabeledTextField sequenceNumbersVariable;
+
+    private AzServiceBusClientParamsPanel sbclientPanel = new AzServiceBusClientParamsPanel();
+    private AzServiceBusMessagesPanel messagesPanel = new AzServiceBusMessagesPanel();
+
+    private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
+
+    public AzServiceBusScheduleSamplerGui() {
+        init();
+        classCount.incrementAndGet();
+        trace("AzServiceBusScheduleSamplerGui()");
+    }
+
+    /**
+     * A newly created component can be initialized with the contents of a Test
+     * Element object by calling this method. The component is responsible for
+     * querying the Test Element object for the relevant information to display
+     * in its GUI.
+     *
+     * @param element
+     *            the TestElement to configure
+     */
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+
+        sbclientPanel.configure((TestElement)element.getProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS).getObjectValue());
+        operation.setText(element.getPropertyAsString(AzServiceBusScheduleSampler.OPERATION, AzServiceBusScheduleSampler.OPERATION_SCHEDULE));
+        calls.setText(element.getPropertyAsString(AzServiceBusScheduleSampler.CALLS));
+        messagesPerCall.setText(element.getPropertyAsString(AzServiceBusScheduleSampler.MESSAGES_PER_CALL));
+        delay.setText(element.getPropertyAsString(AzServiceBusScheduleSampler.DELAY));
+        spread.setText(element.getPropertyAsString(AzServiceBusScheduleSampler.SPREAD));
+        spreadType.setText(element.getPropertyAsString(AzServiceBusScheduleSampler.SPREAD_TYPE, AzServiceBusScheduleSampler.SPREAD_TYPE_EVEN));
+        sequenceNumbersVariable.setText(element.getPropertyAsString(AzServiceBusScheduleSampler.SEQUENCE_NUMBERS_VARIABLE));
+        messagesPanel.configure((TestElement)element.getProperty(AzServiceBusScheduleSampler.MESSAGES).getObjectValue());
+        toggleOperation();
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        AzServiceBusScheduleSampler sampler = new AzServiceBusScheduleSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    /**
+     * Modifies a given TestElement to mirror the data in the gui components.
+     *
+     * @see org.apache.jmeter.gui.JMeterGUIComponent#modifyTestElement(TestElement)
+     */
+    @Override
+    public void modifyTestElement(TestElement sampler) {
+        sampler.clear();
+        super.configureTestElement(sampler);
+
+        sampler.setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, sbclientPanel.createTestElement()));
+        sampler.setProperty(AzServiceBusScheduleSampler.OPERATION, operation.getText());
+        sampler.setProperty(AzServiceBusScheduleSampler.CALLS, calls.getText());
+        sampler.setProperty(AzServiceBusScheduleSampler.MESSAGES_PER_CALL, messagesPerCall.getText());
+        sampler.setProperty(AzServiceBusScheduleSampler.DELAY, delay.getText());
+        sampler.setProperty(AzServiceBusScheduleSampler.SPREAD, spread.getText());
+        sampler.setProperty(AzServiceBusScheduleSampler.SPREAD_TYPE, spreadType.getText());
+        sampler.setProperty(AzServiceBusScheduleSampler.SEQUENCE_NUMBERS_VARIABLE, sequenceNumbersVariable.getText());
+        sampler.setProperty(new TestElementProperty(AzServiceBusScheduleSampler.MESSAGES, messagesPanel.createTestElement()));
+    }
+
+    /**
+     * Implements JMeterGUIComponent.clearGui
+     */
+    @Override
+    public void clearGui() {
+        super.clearGui();
+
+        sbclientPanel.clearGui();
+        operation.setText(AzServiceBusScheduleSampler.OPERATION_SCHEDULE);
+        calls.setText("");
+        messagesPerCall.setText("");
+        delay.setText("");
+        spread.setText("");
+        spreadType.setText(AzServiceBusScheduleSampler.SPREAD_TYPE_EVEN);
+        sequenceNumbersVariable.setText("");
+        messagesPanel.clear();
+        toggleOperation();
+    }
+
+    @Override
+    public String getLabelResource() {
+        return null;
+    }
+
+    public String getStaticLabel() {
+        return "Azure Service Bus Schedule Sampler";
+    }
+
+    private JPanel createSchedulePanel() {
+        JLabel operationLabel = new JLabel("Operation:");
+        operation = new JLabeledChoice("", AzServiceBusScheduleSampler.OPERATIONS);
+        operation.setName(AzServiceBusScheduleSampler.OPERATION);
+        operation.addChangeListener(this);
+
+        JPanel operationPanel = new JPanel(new BorderLayout(5, 0));
+        operationPanel.add(operationLabel, BorderLayout.WEST);
+        operationPanel.add(operation, BorderLayout.CENTER);
+
+        calls = new JLabeledTextField("Calls per sample:", 6);
+        calls.setName(AzServiceBusScheduleSampler.CALLS);
+        messagesPerCall = new JLabeledTextField("Messages per call:", 6);
+        messagesPerCall.setName(AzServiceBusScheduleSampler.MESSAGES_PER_CALL);
+
+        HorizontalPanel callsPanel = new HorizontalPanel();
+        callsPanel.add(calls);
+        callsPanel.add(messagesPerCall);
+
+        delay = new JLabeledTextField("Delay (sec):", 6);
+        delay.setName(AzServiceBusScheduleSampler.DELAY);
+        spread = new JLabeledTextField("Spread (sec):", 6);
+        spread.setName(AzServiceBusScheduleSampler.SPREAD);
+        spreadType = new JLabeledChoice("Spread type:", AzServiceBusScheduleSampler.SPREAD_TYPES);
+        spreadType.setName(AzServiceBusScheduleSampler.SPREAD_TYPE);
+
+        HorizontalPanel timePanel = new HorizontalPanel();
+        timePanel.add(delay);
+        timePanel.add(spread);
+        timePanel.add(spreadType);
+
+        sequenceNumbersVariable = new JLabeledTextField("Variable name for sequence numbers:");
+        sequenceNumbersVariable.setName(AzServiceBusScheduleSampler.SEQUENCE_NUMBERS_VARIABLE);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Schedule"));
+        panel.add(operationPanel);
+        panel.add(callsPanel);
+        panel.add(timePanel);
+        panel.add(sequenceNumbersVariable);
+
+        return panel;
+    }
+
+    private JPanel createMessagesPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 0));
+        panel.add(messagesPanel, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+        add(makeTitlePanel(), BorderLayout.NORTH);
+        // MAIN PANEL
+        VerticalPanel mainPanel = new VerticalPanel();
+        VerticalPanel servicebusPanel = new VerticalPanel();
+
+        servicebusPanel.add(sbclientPanel);
+        servicebusPanel.add(createSchedulePanel());
+
+        mainPanel.add(servicebusPanel, BorderLayout.NORTH);
+        mainPanel.add(createMessagesPanel(), BorderLayout.CENTER);
+
+        add(mainPanel, BorderLayout.CENTER);
+    }
+
+    @Override
+    public void stateChanged(ChangeEvent e) {
+        if (e.getSource().equals(operation)) {
+            toggleOperation();
+        }
+    }
+
+    /*
+     * Enable/disable the fields which are not used by "Cancel".
+     */
+    private void toggleOperation() {
+        boolean schedule = !AzServiceBusScheduleSampler.OPERATION_CANCEL.equals(operation.getText());
+        calls.setEnabled(schedule);
+        delay.setEnabled(schedule);
+        spread.setEnabled(schedule);
+        spreadType.setEnabled(schedule);
+        messagesPanel.setEnabled(schedule);
+    }
+
+    /*
+     * Helper method
+     */
+    private void trace(String s) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ({}) {} {} {}", Thread.currentThread().getName(), classCount.get(),
+                    this.getName(), s, this.toString());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler.gui;
+
+import java.awt.BorderLayout;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import org.apache.jmeter.gui.util.HorizontalPanel;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jorphan.gui.JLabeledChoice;
+import org.apache.jorphan.gui.JLabeledTextField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.gui.AzServiceBusClientParamsPanel;
+import jp.co.pnop.jmeter.protocol.azureservicebus.sampler.AzServiceBusSessionReceiverSampler;
+
+public class AzServiceBusSessionReceiverSamplerGui extends AbstractSamplerGui {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AzServiceBusSessionReceiverSamplerGui.class);
+
+    private JLabeledTextField subscriptionName;
+    private JLabeledTextField maxConcurrentSessions;
+    private JLabeledTextField maxConcurrentCalls;
+    private JLabeledChoice receiveMode;
+    private JLabeledTextField duration;
+    private JLabeledTextField maxMessages;
+
+    private AzServiceBusClientParamsPanel sbclientPanel = new AzServiceBusClientParamsPanel(false);
+
+    private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
+
+    public AzServiceBusSessionReceiverSamplerGui() {
+        init();
+        classCount.incrementAndGet();
+        trace("AzServiceBusSessionReceiverSamplerGui()");
+    }
+
+    /**
+     * A newly created component can be initialized with the contents of a Test
+     * Element object by calling this method. The component is responsible for
+     * querying the Test Element object for the relevant information to display
+     * in its GUI.
+     *
+     * @param element
+     *            the TestElement to configure
+     */
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+
+        sbclientPanel.configure((TestElement)element.getProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS).getObjectValue());
+        subscriptionName.setText(element.getPropertyAsString(AzServiceBusSessionReceiverSampler.SUBSCRIPTION_NAME));
+        maxConcurrentSessions.setText(element.getPropertyAsString(AzServiceBusSessionReceiverSampler.MAX_CONCURRENT_SESSIONS));
+        maxConcurrentCalls.setText(element.getPropertyAsString(AzServiceBusSessionReceiverSampler.MAX_CONCURRENT_CALLS));
+        receiveMode.setText(element.getPropertyAsString(AzServiceBusSessionReceiverSampler.RECEIVE_MODE, AzServiceBusSessionReceiverSampler.RECEIVE_MODE_PEEK_LOCK));
+        duration.setText(element.getPropertyAsString(AzServiceBusSessionReceiverSampler.DURATION));
+        maxMessages.setText(element.getPropertyAsString(AzServiceBusSessionReceiverSampler.MAX_MESSAGES));
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        AzServiceBusSessionReceiverSampler sampler = new AzServiceBusSessionReceiverSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    /**
+     * Modifies a given TestElement to mirror the data in the gui components.
+     *
+     * @see org.apache.jmeter.gui.JMeterGUIComponent#modifyTestElement(TestElement)
+     */
+    @Override
+    public void modifyTestElement(TestElement sampler) {
+        sampler.clear();
+        super.configureTestElement(sampler);
+
+        sampler.setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, sbclientPanel.createTestElement()));
+        sampler.setProperty(AzServiceBusSessionReceiverSampler.SUBSCRIPTION_NAME, subscriptionName.getText());
+        sampler.setProperty(AzServiceBusSessionReceiverSampler.MAX_CONCURRENT_SESSIONS, maxConcurrentSessions.getText());
+        sampler.setProperty(AzServiceBusSessionReceiverSampler.MAX_CONCURRENT_CALLS, maxConcurrentCalls.getText());
+        sampler.setProperty(AzServiceBusSessionReceiverSampler.RECEIVE_MODE, receiveMode.getText());
+        sampler.setProperty(AzServiceBusSessionReceiverSampler.DURATION, duration.getText());
+        sampler.setProperty(AzServiceBusSessionReceiverSampler.MAX_MESSAGES, maxMessages.getText());
+    }
+
+    /**
+     * Implements JMeterGUIComponent.clearGui
+     */
+    @Override
+    public void clearGui() {
+        super.clearGui();
+
+        sbclientPanel.clearGui();
+        subscriptionName.setText("");
+        maxConcurrentSessions.setText("");
+        maxConcurrentCalls.setText("");
+        receiveMode.setText(AzServiceBusSessionReceiverSampler.RECEIVE_MODE_PEEK_LOCK);
+        duration.setText("");
+        maxMessages.setText("");
+    }
+
+    @Override
+    public String getLabelResource() {
+        return null;
+    }
+
+    public String getStaticLabel() {
+        return "Azure Service Bus Session Receiver Sampler";
+    }
+
+    private JPanel createReceivePanel() {
+        subscriptionName = new JLabeledTextField("Subscription name (for a topic):");
+        subscriptionName.setName(AzServiceBusSessionReceiverSampler.SUBSCRIPTION_NAME);
+
+        maxConcurrentSessions = new JLabeledTextField("Max concurrent sessions:", 6);
+        maxConcurrentSessions.setName(AzServiceBusSessionReceiverSampler.MAX_CONCURRENT_SESSIONS);
+        maxConcurrentCalls = new JLabeledTextField("Max concurrent calls per session:", 6);
+        maxConcurrentCalls.setName(AzServiceBusSessionReceiverSampler.MAX_CONCURRENT_CALLS);
+
+        HorizontalPanel concurrencyPanel = new HorizontalPanel();
+        concurrencyPanel.add(maxConcurrentSessions);
+        concurrencyPanel.add(maxConcurrentCalls);
+
+        JLabel receiveModeLabel = new JLabel("Receive mode:");
+        receiveMode = new JLabeledChoice("", AzServiceBusSessionReceiverSampler.RECEIVE_MODES);
+        receiveMode.setName(AzServiceBusSessionReceiverSampler.RECEIVE_MODE);
+        duration = new JLabeledTextField("Receive window per sample (sec):", 6);
+        duration.setName(AzServiceBusSessionReceiverSampler.DURATION);
+        maxMessages = new JLabeledTextField("Max messages per sample:", 6);
+        maxMessages.setName(AzServiceBusSessionReceiverSampler.MAX_MESSAGES);
+
+        HorizontalPanel receiveModePanel = new HorizontalPanel();
+        receiveModePanel.add(receiveModeLabel);
+        receiveModePanel.add(receiveMode);
+        receiveModePanel.add(duration);
+        receiveModePanel.add(maxMessages);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Session Receiver"));
+        panel.add(subscriptionName);
+        panel.add(concurrencyPanel);
+        panel.add(receiveModePanel);
+
+        return panel;
+    }
+
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+        add(makeTitlePanel(), BorderLayout.NORTH);
+        // MAIN PANEL
+        VerticalPanel mainPanel = new VerticalPanel();
+
+        mainPanel.add(sbclientPanel);
+        mainPanel.add(createReceivePanel());
+
+        add(mainPanel, BorderLayout.CENTER);
+    }
+
+    /*
+     * Helper method
+     */
+    private void trace(String s) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ({}) {} {} {}", Thread.currentThread().getName(), classCount.get(),
+                    this.getName(), s, this.toString());
+        }
+    }
+}
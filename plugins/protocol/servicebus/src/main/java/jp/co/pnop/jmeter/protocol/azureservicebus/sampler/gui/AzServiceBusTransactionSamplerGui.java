@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler.gui;
+
+import java.awt.BorderLayout;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+
+import org.apache.jmeter.gui.util.HorizontalPanel;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jorphan.gui.JLabeledTextField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.gui.AzServiceBusClientParamsPanel;
+import jp.co.pnop.jmeter.protocol.azureservicebus.sampler.AzServiceBusTransactionSampler;
+
+public class AzServiceBusTransactionSamplerGui extends AbstractSamplerGui {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AzServiceBusTransactionSamplerGui.class);
+
+    private JLabeledTextField sendCount;
+    private JLabeledTextField maxConcurrentSends;
+    private JLabeledTextField sendViaQueueName;
+    private JCheckBox rollback;
+
+    private AzServiceBusClientParamsPanel sbclientPanel = new AzServiceBusClientParamsPanel(false);
+    private AzServiceBusMessagesPanel messagesPanel = new AzServiceBusMessagesPanel();
+
+    private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
+
+    public AzServiceBusTransactionSamplerGui() {
+        init();
+        classCount.incrementAndGet();
+        trace("AzServiceBusTransactionSamplerGui()");
+    }
+
+    /**
+     * A newly created component can be initialized with the contents of a Test
+     * Element object by calling this method. The component is responsible for
+     * querying the Test Element object for the relevant information to display
+     * in its GUI.
+     *
+     * @param element
+     *            the TestElement to configure
+     */
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+
+        sbclientPanel.configure((TestElement)element.getProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS).getObjectValue());
+        sendCount.setText(element.getPropertyAsString(AzServiceBusTransactionSampler.SEND_COUNT));
+        maxConcurrentSends.setText(element.getPropertyAsString(AzServiceBusTransactionSampler.MAX_CONCURRENT_SENDS));
+        sendViaQueueName.setText(element.getPropertyAsString(AzServiceBusTransactionSampler.SEND_VIA_QUEUE_NAME));
+        rollback.setSelected(element.getPropertyAsBoolean(AzServiceBusTransactionSampler.ROLLBACK));
+        messagesPanel.configure((TestElement)element.getProperty(AzServiceBusTransactionSampler.MESSAGES).getObjectValue());
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        AzServiceBusTransactionSampler sampler = new AzServiceBusTransactionSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    /**
+     * Modifies a given TestElement to mirror the data in the gui components.
+     *
+     * @see org.apache.jmeter.gui.JMeterGUIComponent#modifyTestElement(TestElement)
+     */
+    @Override
+    public void modifyTestElement(TestElement sampler) {
+        sampler.clear();
+        super.configureTestElement(sampler);
+
+        sampler.setProperty(new TestElementProperty(AzServiceBusClientParams.SERVICEBUS_CLIENT_PARAMS, sbclientPanel.createTestElement()));
+        sampler.setProperty(AzServiceBusTransactionSampler.SEND_COUNT, sendCount.getText());
+        sampler.setProperty(AzServiceBusTransactionSampler.MAX_CONCURRENT_SENDS, maxConcurrentSends.getText());
+        sampler.setProperty(AzServiceBusTransactionSampler.SEND_VIA_QUEUE_NAME, sendViaQueueName.getText());
+        sampler.setProperty(AzServiceBusTransactionSampler.ROLLBACK, rollback.isSelected());
+        sampler.setProperty(new TestElementProperty(AzServiceBusTransactionSampler.MESSAGES, messagesPanel.createTestElement()));
+    }
+
+    /**
+     * Implements JMeterGUIComponent.clearGui
+     */
+    @Override
+    public void clearGui() {
+        super.clearGui();
+
+        sbclientPanel.clearGui();
+        sendCount.setText("");
+        maxConcurrentSends.setText("");
+        sendViaQueueName.setText("");
+        rollback.setSelected(false);
+        messagesPanel.clear();
+    }
+
+    @Override
+    public String getLabelResource() {
+        return null;
+    }
+
+    public String getStaticLabel() {
+        return "Azure Service Bus Transactional Batch Sampler";
+    }
+
+    private JPanel createTransactionPanel() {
+        sendCount = new JLabeledTextField("Number of sends:", 6);
+        sendCount.setName(AzServiceBusTransactionSampler.SEND_COUNT);
+        maxConcurrentSends = new JLabeledTextField("Max concurrent sends:", 6);
+        maxConcurrentSends.setName(AzServiceBusTransactionSampler.MAX_CONCURRENT_SENDS);
+        sendViaQueueName = new JLabeledTextField("Send-via queue name:");
+        sendViaQueueName.setName(AzServiceBusTransactionSampler.SEND_VIA_QUEUE_NAME);
+        rollback = new JCheckBox("Rollback instead of commit");
+        rollback.setName(AzServiceBusTransactionSampler.ROLLBACK);
+
+        HorizontalPanel countPanel = new HorizontalPanel();
+        countPanel.add(sendCount);
+        countPanel.add(maxConcurrentSends);
+        countPanel.add(rollback);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Transaction"));
+        panel.add(countPanel);
+        panel.add(sendViaQueueName);
+
+        return panel;
+    }
+
+    private JPanel createMessagesPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 0));
+        panel.add(messagesPanel, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+        add(makeTitlePanel(), BorderLayout.NORTH);
+        // MAIN PANEL
+        VerticalPanel mainPanel = new VerticalPanel();
+        VerticalPanel servicebusPanel = new VerticalPanel();
+
+        servicebusPanel.add(sbclientPanel);
+        servicebusPanel.add(createTransactionPanel());
+
+        mainPanel.add(servicebusPanel, BorderLayout.NORTH);
+        mainPanel.add(createMessagesPanel(), BorderLayout.CENTER);
+
+        add(mainPanel, BorderLayout.CENTER);
+    }
+
+    /*
+     * Helper method
+     */
+    private void trace(String s) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ({}) {} {} {}", Thread.currentThread().getName(), classCount.get(),
+                    this.getName(), s, this.toString());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class AzServiceBusReceiveStatsTest {
+
+    @Test
+    public void countsMessagesPerSession() {
+        AzServiceBusReceiveStats stats = new AzServiceBusReceiveStats();
+        stats.received("a", 1, 10, 100);
+        stats.received("a", 2, 30, 100);
+        stats.received("b", 3, 20, 50);
+
+        assertEquals(3, stats.getMessages());
+        assertEquals(250, stats.getBytes());
+        assertEquals(2, stats.getSessionCount());
+        assertEquals(0, stats.getOutOfOrder());
+
+        String summary = stats.summary(1000);
+        assertTrue(summary.startsWith("Received: 3 messages, 3.0 messages/sec, 2 sessions (1 to 2 messages/session)"), summary);
+        assertTrue(summary.contains("End-to-end latency: 20.0 ms avg, 30 ms max"), summary);
+        assertTrue(summary.contains("Session a: 2 messages\nSession b: 1 messages"), summary);
+    }
+
+    @Test
+    public void detectsOutOfOrderWithinSession() {
+        AzServiceBusReceiveStats stats = new AzServiceBusReceiveStats();
+        stats.received("a", 5, 0, 0);
+        stats.received("b", 1, 0, 0);
+        stats.received("a", 4, 0, 0);
+        stats.received("a", 6, 0, 0);
+        assertEquals(1, stats.getOutOfOrder());
+    }
+}
@@ -0,0 +1,58 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.azureservicebus.sampler.AzServiceBusSampler;
+
+public class AzServiceBusSessionSelectorTest {
+
+    private static AzAmqpMessage message(String sessionId) {
+        AzAmqpMessage msg = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+        msg.setGroupId(sessionId);
+        return msg;
+    }
+
+    @Test
+    public void roundRobinStartsAtOffsetAndWraps() {
+        AzServiceBusSessionSelector selector
+            = new AzServiceBusSessionSelector(AzServiceBusSampler.SESSION_ID_TYPE_ROUND_ROBIN, "3", "s-", 4);
+        AzAmqpMessage msg = message("");
+        assertEquals("s-1", selector.select(msg));
+        assertEquals("s-2", selector.select(msg));
+        assertEquals("s-0", selector.select(msg));
+        assertEquals(3, selector.getSessionCount());
+    }
+
+    @Test
+    public void hashIsStableAndSpreads() {
+        AzServiceBusSessionSelector selector
+            = new AzServiceBusSessionSelector(AzServiceBusSampler.SESSION_ID_TYPE_HASH, "8", "session-", 0);
+        assertEquals(selector.select(message("order-1")), selector.select(message("order-1")));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 8000; i++) {
+            counts.merge(selector.select(message("order-".concat(String.valueOf(i)))), 1, Integer::sum);
+        }
+        assertEquals(8, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 800, counts.toString()));
+
+        assertThrows(IllegalArgumentException.class, () -> selector.select(message("")));
+    }
+
+    @Test
+    public void sessionCountMustBePositive() {
+        assertThrows(NumberFormatException.class,
+            () -> new AzServiceBusSessionSelector(AzServiceBusSampler.SESSION_ID_TYPE_ROUND_ROBIN, "0", "s-", 0));
+        assertThrows(NumberFormatException.class,
+            () -> new AzServiceBusSessionSelector(AzServiceBusSampler.SESSION_ID_TYPE_ROUND_ROBIN, "many", "s-", 0));
+    }
+}
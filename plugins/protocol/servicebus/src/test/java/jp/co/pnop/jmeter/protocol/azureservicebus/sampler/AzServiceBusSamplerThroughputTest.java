@@ -0,0 +1,101 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpLoadRunner;
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpTestBroker;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+
+/**
+ * Throughput of the Service Bus sampler against the local AMQP broker.
+ * Run with: mvn test -P throughput
+ * <p>
+ * The gates are half the throughput and 1.25 times the allocation of the slowest of three
+ * runs on JDK 17 with one CPU, so that a regression fails while the usual jitter does not.
+ */
+@Tag("throughput")
+public class AzServiceBusSamplerThroughputTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AzServiceBusSamplerThroughputTest.class);
+
+    private static final String QUEUE_NAME = "throughput";
+
+    private static AzAmqpTestBroker broker;
+
+    @BeforeAll
+    public static void startBroker() throws Exception {
+        broker = new AzAmqpTestBroker();
+        broker.start();
+        AzAmqpLoadRunner.initJMeter();
+    }
+
+    @AfterAll
+    public static void stopBroker() throws Exception {
+        broker.stop();
+    }
+
+    @ParameterizedTest(name = "{0} threads, {1} messages per sample, {2} concurrent sends")
+    @CsvSource({
+        // threads, messages, concurrent sends, min msgs/s, max bytes allocated/msg
+        "1, 1, 1, 90, 39000",
+        "1, 10, 1, 740, 13500",
+        "4, 1, 1, 235, 39000",
+        "4, 10, 1, 2050, 13500",
+        "1, 1, 8, 210, 14500",
+        "4, 10, 4, 4600, 4700",
+    })
+    public void sendBatch(int concurrency, int messagesPerSample, int concurrentSends,
+            double minMessagesPerSecond, long maxAllocatedBytesPerMessage) throws Exception {
+        broker.reset();
+        AzAmqpLoadRunner runner = new AzAmqpLoadRunner(concurrency, messagesPerSample * concurrentSends);
+        AzAmqpLoadRunner.Result result = runner.run(() -> createSampler(messagesPerSample, concurrentSends));
+        log.info("Service Bus {} threads, {} messages/sample, {} concurrent sends: {}", concurrency, messagesPerSample, concurrentSends, result);
+
+        assertEquals(0, result.getFailedSamples(), result.getFirstFailure());
+        assertTrue(broker.getMessageCount(QUEUE_NAME) >= result.getMessages(),
+            "Messages missing at the broker: ".concat(result.toString()));
+        assertTrue(result.getMessagesPerSecond() >= AzAmqpLoadRunner.minMessagesPerSecond(minMessagesPerSecond),
+            "Throughput regressed: ".concat(result.toString()));
+        assertTrue(result.getAllocatedBytesPerMessage() <= AzAmqpLoadRunner.maxAllocatedBytesPerMessage(maxAllocatedBytesPerMessage),
+            "Allocation regressed: ".concat(result.toString()));
+    }
+
+    private static AzServiceBusSampler createSampler(int messagesPerSample, int concurrentSends) {
+        AzAmqpMessages messages = new AzAmqpMessages();
+        for (int i = 0; i < messagesPerSample; i++) {
+            AzAmqpMessage msg = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+            msg.setMessage(StringUtils.repeat('x', 256));
+            messages.addMessage(msg);
+        }
+
+        AzServiceBusClientParams params = new AzServiceBusClientParams();
+        params.clear();
+        params.setNamespaceName(AzAmqpTestBroker.getNamespaceName());
+        params.setAuthType(AzServiceBusClientParams.AUTHTYPE_SAS);
+        params.setSharedAccessKeyName("RootManageSharedAccessKey");
+        params.setSharedAccessKey("dGhyb3VnaHB1dC10ZXN0LWtleQ==");
+        params.setDestType(AzServiceBusClientParams.DEST_TYPE_QUEUE);
+        params.setQueueName(QUEUE_NAME);
+        params.setProtocol(AzServiceBusClientParams.PROTOCOL_AMQP);
+        params.setCustomEndpoint(broker.getEndpoint());
+
+        AzServiceBusSampler sampler = new AzServiceBusSampler();
+        sampler.setName("Service Bus throughput");
+        sampler.setServiceBusClientParams(params);
+        sampler.setMessages(messages);
+        sampler.setConcurrentSends(String.valueOf(concurrentSends));
+        return sampler;
+    }
+}
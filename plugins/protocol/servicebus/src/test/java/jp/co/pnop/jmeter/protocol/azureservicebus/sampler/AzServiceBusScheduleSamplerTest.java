@@ -0,0 +1,123 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpLoadRunner;
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpTestBroker;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+
+/**
+ * Schedule sampler against the local AMQP broker.
+ */
+public class AzServiceBusScheduleSamplerTest {
+
+    private static final String QUEUE_NAME = "schedule";
+    private static final String VARIABLE_NAME = "sequenceNumbers";
+
+    private static AzAmqpTestBroker broker;
+
+    @BeforeAll
+    public static void startBroker() throws Exception {
+        broker = new AzAmqpTestBroker();
+        broker.start();
+        AzAmqpLoadRunner.initJMeter();
+    }
+
+    @AfterAll
+    public static void stopBroker() throws Exception {
+        broker.stop();
+    }
+
+    @BeforeEach
+    public void reset() {
+        broker.reset();
+        JMeterContextService.getContext().setVariables(new JMeterVariables());
+    }
+
+    @Test
+    public void sequenceNumbersRoundTripThroughTheVariable() {
+        // 3 calls of 4 messages, cycling through 2 rows
+        AzServiceBusScheduleSampler schedule = createSampler(AzServiceBusScheduleSampler.OPERATION_SCHEDULE, "3", "4");
+        SampleResult scheduled = schedule.sample(null);
+        schedule.threadFinished();
+
+        assertTrue(scheduled.isSuccessful(), scheduled.getResponseDataAsString());
+        assertEquals(3, broker.getManagementRequestCount(AzAmqpTestBroker.SCHEDULE_MESSAGE_OPERATION));
+        List<Long> sequenceNumbers = broker.getScheduledSequenceNumbers();
+        assertEquals(12, sequenceNumbers.size());
+        assertEquals(join(sequenceNumbers), JMeterContextService.getContext().getVariables().get(VARIABLE_NAME));
+
+        // cancelled in chunks of 5, 5 and 2
+        AzServiceBusScheduleSampler cancel = createSampler(AzServiceBusScheduleSampler.OPERATION_CANCEL, "", "5");
+        SampleResult cancelled = cancel.sample(null);
+        cancel.threadFinished();
+
+        assertTrue(cancelled.isSuccessful(), cancelled.getResponseDataAsString());
+        assertEquals(3, broker.getManagementRequestCount(AzAmqpTestBroker.CANCEL_SCHEDULED_MESSAGE_OPERATION));
+        assertEquals(sequenceNumbers, broker.getCancelledSequenceNumbers());
+        assertNull(JMeterContextService.getContext().getVariables().get(VARIABLE_NAME));
+    }
+
+    @Test
+    public void scheduleAndCancelUsesTheSameChunks() {
+        AzServiceBusScheduleSampler sampler = createSampler(AzServiceBusScheduleSampler.OPERATION_SCHEDULE_AND_CANCEL, "2", "3");
+        SampleResult res = sampler.sample(null);
+        sampler.threadFinished();
+
+        assertTrue(res.isSuccessful(), res.getResponseDataAsString());
+        assertEquals(2, broker.getManagementRequestCount(AzAmqpTestBroker.SCHEDULE_MESSAGE_OPERATION));
+        assertEquals(2, broker.getManagementRequestCount(AzAmqpTestBroker.CANCEL_SCHEDULED_MESSAGE_OPERATION));
+        assertEquals(broker.getScheduledSequenceNumbers(), broker.getCancelledSequenceNumbers());
+        // the variable is only set by "Schedule"
+        assertNull(JMeterContextService.getContext().getVariables().get(VARIABLE_NAME));
+    }
+
+    private static String join(List<Long> sequenceNumbers) {
+        return sequenceNumbers.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static AzServiceBusScheduleSampler createSampler(String operation, String calls, String messagesPerCall) {
+        AzAmqpMessages messages = new AzAmqpMessages();
+        for (int i = 0; i < 2; i++) {
+            AzAmqpMessage msg = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+            msg.setMessage("message ".concat(String.valueOf(i)));
+            messages.addMessage(msg);
+        }
+
+        AzServiceBusClientParams params = new AzServiceBusClientParams();
+        params.clear();
+        params.setNamespaceName(AzAmqpTestBroker.getNamespaceName());
+        params.setAuthType(AzServiceBusClientParams.AUTHTYPE_SAS);
+        params.setSharedAccessKeyName("RootManageSharedAccessKey");
+        params.setSharedAccessKey("c2NoZWR1bGUtdGVzdC1rZXk=");
+        params.setDestType(AzServiceBusClientParams.DEST_TYPE_QUEUE);
+        params.setQueueName(QUEUE_NAME);
+        params.setProtocol(AzServiceBusClientParams.PROTOCOL_AMQP);
+        params.setCustomEndpoint(broker.getEndpoint());
+
+        AzServiceBusScheduleSampler sampler = new AzServiceBusScheduleSampler();
+        sampler.setName("Service Bus schedule");
+        sampler.setServiceBusClientParams(params);
+        sampler.setMessages(messages);
+        sampler.setOperation(operation);
+        sampler.setCalls(calls);
+        sampler.setMessagesPerCall(messagesPerCall);
+        sampler.setSequenceNumbersVariable(VARIABLE_NAME);
+        return sampler;
+    }
+}
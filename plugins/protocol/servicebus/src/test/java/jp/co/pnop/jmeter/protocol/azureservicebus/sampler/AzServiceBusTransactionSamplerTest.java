@@ -0,0 +1,114 @@
+package jp.co.pnop.jmeter.protocol.azureservicebus.sampler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpLoadRunner;
+import jp.co.pnop.jmeter.protocol.amqp.harness.AzAmqpTestBroker;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessage;
+import jp.co.pnop.jmeter.protocol.amqp.sampler.AzAmqpMessages;
+import jp.co.pnop.jmeter.protocol.azureservicebus.common.AzServiceBusClientParams;
+
+/**
+ * Transactional batch sampler against the local AMQP broker.
+ */
+public class AzServiceBusTransactionSamplerTest {
+
+    private static final String QUEUE_NAME = "transaction";
+
+    private static AzAmqpTestBroker broker;
+
+    @BeforeAll
+    public static void startBroker() throws Exception {
+        broker = new AzAmqpTestBroker();
+        broker.start();
+        AzAmqpLoadRunner.initJMeter();
+    }
+
+    @AfterAll
+    public static void stopBroker() throws Exception {
+        broker.stop();
+    }
+
+    @BeforeEach
+    public void resetBroker() {
+        broker.reset();
+    }
+
+    @Test
+    public void phasesAreSubResults() {
+        SampleResult res = createSampler(false, "message").sample(null);
+
+        assertTrue(res.isSuccessful(), res.getResponseDataAsString());
+        SampleResult[] phases = res.getSubResults();
+        assertEquals(3, phases.length);
+        assertTrue(phases[0].getSampleLabel().endsWith("[create transaction]"), phases[0].getSampleLabel());
+        assertTrue(phases[1].getSampleLabel().endsWith("[send x3]"), phases[1].getSampleLabel());
+        assertTrue(phases[2].getSampleLabel().endsWith("[commit]"), phases[2].getSampleLabel());
+        assertEquals(6, broker.getMessageCount(QUEUE_NAME));
+        assertEquals(1, broker.getCommittedTransactions());
+        assertEquals(0, broker.getRolledBackTransactions());
+    }
+
+    @Test
+    public void rollsBackWhenAsked() {
+        SampleResult res = createSampler(true, "message").sample(null);
+
+        assertTrue(res.isSuccessful(), res.getResponseDataAsString());
+        assertTrue(res.getSubResults()[2].getSampleLabel().endsWith("[rollback]"), res.getSubResults()[2].getSampleLabel());
+        assertEquals(0, broker.getCommittedTransactions());
+        assertEquals(1, broker.getRolledBackTransactions());
+    }
+
+    @Test
+    public void rollsBackWhenASendFails() {
+        // larger than the maximum message size of the link, so the send fails
+        char[] body = new char[2 * 1024 * 1024];
+        Arrays.fill(body, 'x');
+        SampleResult res = createSampler(false, new String(body)).sample(null);
+
+        assertFalse(res.isSuccessful());
+        // only the phase that passed is reported
+        assertEquals(1, res.getSubResults().length);
+        assertEquals(0, broker.getMessageCount(QUEUE_NAME));
+        assertEquals(0, broker.getCommittedTransactions());
+        assertEquals(1, broker.getRolledBackTransactions());
+    }
+
+    private static AzServiceBusTransactionSampler createSampler(boolean rollback, String body) {
+        AzAmqpMessages messages = new AzAmqpMessages();
+        for (int i = 0; i < 2; i++) {
+            AzAmqpMessage msg = new AzAmqpMessage(AzAmqpMessages.MESSAGE_TYPE_STRING);
+            msg.setMessage(body);
+            messages.addMessage(msg);
+        }
+
+        AzServiceBusClientParams params = new AzServiceBusClientParams();
+        params.clear();
+        params.setNamespaceName(AzAmqpTestBroker.getNamespaceName());
+        params.setAuthType(AzServiceBusClientParams.AUTHTYPE_SAS);
+        params.setSharedAccessKeyName("RootManageSharedAccessKey");
+        params.setSharedAccessKey("dHJhbnNhY3Rpb24tdGVzdC1rZXk=");
+        params.setDestType(AzServiceBusClientParams.DEST_TYPE_QUEUE);
+        params.setQueueName(QUEUE_NAME);
+        params.setProtocol(AzServiceBusClientParams.PROTOCOL_AMQP);
+        params.setCustomEndpoint(broker.getEndpoint());
+
+        AzServiceBusTransactionSampler sampler = new AzServiceBusTransactionSampler();
+        sampler.setName("Service Bus transaction");
+        sampler.setServiceBusClientParams(params);
+        sampler.setMessages(messages);
+        sampler.setSendCount("3");
+        sampler.setRollback(rollback);
+        return sampler;
+    }
+}
@@ -42,6 +42,13 @@ public class AzStorageConnectionParams extends AbstractTestElement {
 
     private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
 
+    // Every thread has its own clone of the parameters, so the client is reused across
+    // the samples of a thread and rebuilt only when a parameter value changes.
+    private transient QueueClient queueClient;
+    private transient String queueClientKey;
+    private transient QueueAsyncClient queueAsyncClient;
+    private transient String queueAsyncClientKey;
+
     /**
      * Create a new Azure Service Bus Client object with no messages.
      */
@@ -187,12 +194,48 @@ public class AzStorageConnectionParams extends AbstractTestElement {
         return params;
     }
 
-    public QueueClient getConnection() throws Exception {
-        QueueClientBuilder queueClientBuilder = new QueueClientBuilder();
-        QueueClient queueClient = null;
+    /**
+     * Get the queue client for the current parameter values.
+     * The client, and the connection pool of its HTTP client, is created once and reused
+     * while the values stay the same.
+     */
+    public synchronized QueueClient getConnection() throws Exception {
+        String key = getConnectionKey();
+        if (queueClient != null && key.equals(queueClientKey)) {
+            return queueClient;
+        }
 
-        String authType = getAuthType();
+        queueClient = createClientBuilder().buildClient();
+        queueClientKey = key;
+        log.debug("Created connection: {}", queueClient.toString());
+        return queueClient;
+    }
 
+    /**
+     * Get the async queue client for the current parameter values, reused in the same way as {@link #getConnection()}.
+     * It is used where the sends are dispatched without waiting for each other.
+     */
+    public synchronized QueueAsyncClient getAsyncConnection() throws Exception {
+        String key = getConnectionKey();
+        if (queueAsyncClient != null && key.equals(queueAsyncClientKey)) {
+            return queueAsyncClient;
+        }
+
+        queueAsyncClient = createClientBuilder().buildAsyncClient();
+        queueAsyncClientKey = key;
+        log.debug("Created async connection: {}", queueAsyncClient.toString());
+        return queueAsyncClient;
+    }
+
+    private String getConnectionKey() {
+        return getAuthType().concat("\n").concat(getConnectionString()).concat("\n")
+            .concat(getEndpointUrl()).concat("\n").concat(getQueueName()).concat("\n")
+            .concat(getSasToken()).concat("\n").concat(getAadCredential());
+    }
+
+    private QueueClientBuilder createClientBuilder() throws Exception {
+        String authType = getAuthType();
+        QueueClientBuilder queueClientBuilder = new QueueClientBuilder();
         if (authType.equals(AUTHTYPE_CONNECTION_STRING) || authType.equals(AUTHTYPE_KEY)) {
             queueClientBuilder = queueClientBuilder.connectionString(getConnectionString());
             if (!JOrphanUtils.isBlank(getQueueName())) {
@@ -214,12 +257,7 @@ public class AzStorageConnectionParams extends AbstractTestElement {
             AzAdCredentialComponentImpl credential = AzAdCredential.getCredential(getAadCredential());
             queueClientBuilder = queueClientBuilder.credential(credential.getCredential());
         }
-
-        queueClientBuilder =  queueClientBuilder.httpClient(AzUtilHttpClient.httpClientBase());
-        queueClient = queueClientBuilder.buildClient();
-        log.debug("Created connection: {}", queueClient.toString());
-
-        return queueClient;
+        return queueClientBuilder.httpClient(AzUtilHttpClient.httpClientBase());
     }
 
     /*
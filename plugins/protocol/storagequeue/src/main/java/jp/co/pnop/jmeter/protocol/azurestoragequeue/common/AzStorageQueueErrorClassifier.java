@@ -0,0 +1,80 @@
+package jp.co.pnop.jmeter.protocol.azurestoragequeue.common;
+
+import com.azure.storage.queue.models.QueueStorageException;
+
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+
+/**
+ * Classifies the errors of the Storage Queue sampler by the error code and status of the
+ * {@link QueueStorageException}, into the error classes of {@link AzUtilErrorCounters}.
+ * <p>
+ * Storage returns "ServerBusy" both when a partition is busy and when the account is over its
+ * scalability targets; the latter ("... is over the account limit") is classified as QuotaExceeded.
+ */
+public class AzStorageQueueErrorClassifier {
+
+    private AzStorageQueueErrorClassifier() {
+    }
+
+    /**
+     * @param ex the error of a queue operation
+     * @return the error class, e.g. {@link AzUtilErrorCounters#SERVER_BUSY}
+     */
+    public static String classify(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueueStorageException) {
+                QueueStorageException storageException = (QueueStorageException) cause;
+                return classify(String.valueOf(storageException.getErrorCode()), storageException.getStatusCode(),
+                    storageException.getMessage());
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return AzUtilErrorCounters.classifyCause(ex);
+    }
+
+    /**
+     * @param errorCode  the x-ms-error-code of the response
+     * @param statusCode the HTTP status of the response
+     * @param message    the message of the error
+     * @return the error class
+     */
+    public static String classify(String errorCode, int statusCode, String message) {
+        switch (errorCode) {
+            case "ServerBusy":
+                return String.valueOf(message).contains("over the account limit")
+                    ? AzUtilErrorCounters.QUOTA_EXCEEDED : AzUtilErrorCounters.SERVER_BUSY;
+            case "OperationTimedOut":
+                return AzUtilErrorCounters.TIMEOUT;
+            case "AuthenticationFailed":
+            case "AuthorizationFailure":
+            case "AuthorizationPermissionMismatch":
+            case "InsufficientAccountPermissions":
+                return AzUtilErrorCounters.UNAUTHORIZED;
+            case "QueueNotFound":
+            case "MessageNotFound":
+            case "ResourceNotFound":
+                return AzUtilErrorCounters.NOT_FOUND;
+            case "MessageTooLarge":
+            case "RequestBodyTooLarge":
+                return AzUtilErrorCounters.MESSAGE_SIZE_EXCEEDED;
+            default:
+                break;
+        }
+        if (statusCode == 503 || statusCode == 429) {
+            return AzUtilErrorCounters.SERVER_BUSY;
+        } else if (statusCode == 408 || statusCode == 504) {
+            return AzUtilErrorCounters.TIMEOUT;
+        } else if (statusCode == 401 || statusCode == 403) {
+            return AzUtilErrorCounters.UNAUTHORIZED;
+        } else if (statusCode == 404) {
+            return AzUtilErrorCounters.NOT_FOUND;
+        } else if (statusCode == 413) {
+            return AzUtilErrorCounters.MESSAGE_SIZE_EXCEEDED;
+        } else if (statusCode >= 400 && statusCode < 500) {
+            return AzUtilErrorCounters.CLIENT;
+        }
+        return AzUtilErrorCounters.OTHER;
+    }
+}
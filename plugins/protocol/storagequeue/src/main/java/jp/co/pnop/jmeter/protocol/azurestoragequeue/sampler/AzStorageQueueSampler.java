@@ -2,11 +2,16 @@ package jp.co.pnop.jmeter.protocol.azurestoragequeue.sampler;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
@@ -16,6 +21,7 @@ import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.testelement.property.StringProperty;
 import org.apache.jmeter.testelement.property.TestElementProperty;
 import org.apache.jorphan.util.JOrphanUtils;
@@ -29,8 +35,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jp.co.pnop.jmeter.protocol.azurestoragequeue.common.AzStorageConnectionParams;
-
-public class AzStorageQueueSampler extends AbstractSampler implements TestStateListener {
+import jp.co.pnop.jmeter.protocol.azurestoragequeue.common.AzStorageQueueErrorClassifier;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompressedBody;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+import jp.co.pnop.jmeter.util.feeder.AzMessageFeeder;
+import jp.co.pnop.jmeter.util.metrics.AzUtilErrorCounters;
+import jp.co.pnop.jmeter.util.metrics.AzUtilMetrics;
+import jp.co.pnop.jmeter.util.metrics.AzUtilWarmup;
+import jp.co.pnop.jmeter.util.throughput.AzUtilBlockingExecutor;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinder;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinderParams;
+
+public class AzStorageQueueSampler extends AbstractSampler implements TestStateListener, ThreadListener {
     
     private static final long serialVersionUID = 1L;
     private static final Logger log = LoggerFactory.getLogger(AzStorageQueueSampler.class);
@@ -47,9 +63,12 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
     public static final String VISIBILITY_TIMEOUT = "visibilityTimeout";
     public static final String TIME_TO_LIVE = "timeToLive";
     public static final String TIMEOUT = "timeout";
+    public static final String COMPRESSION = "compression";
+    public static final String CONCURRENT_SENDS = "concurrentSends";
     
     public static final String MESSAGE_TYPE_STRING = "String / Base64 encoded binary";
     public static final String MESSAGE_TYPE_FILE = "File";
+    public static final String MESSAGE_TYPE_FEEDER = "Message feeder";
 
     private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
 
@@ -73,6 +92,8 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
         setProperty(new StringProperty(VISIBILITY_TIMEOUT, ""));
         setProperty(new StringProperty(TIME_TO_LIVE, ""));
         setProperty(new StringProperty(TIMEOUT, ""));
+        setProperty(new StringProperty(COMPRESSION, AzUtilCompression.COMPRESSION_NONE));
+        setProperty(new StringProperty(CONCURRENT_SENDS, ""));
     }
 
     public void setStorageConnectionParams(AzStorageConnectionParams connectionParams) {
@@ -131,6 +152,30 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
         return getPropertyAsString(TIMEOUT);
     }
 
+    public void setCompression(String compression) {
+        setProperty(new StringProperty(COMPRESSION, compression));
+    }
+
+    public String getCompression() {
+        return getPropertyAsString(COMPRESSION, AzUtilCompression.COMPRESSION_NONE);
+    }
+
+    public void setConcurrentSends(String concurrentSends) {
+        setProperty(new StringProperty(CONCURRENT_SENDS, concurrentSends));
+    }
+
+    public String getConcurrentSends() {
+        return getPropertyAsString(CONCURRENT_SENDS);
+    }
+
+    public void setFinderParams(AzUtilThroughputFinderParams finderParams) {
+        setProperty(new TestElementProperty(AzUtilThroughputFinderParams.FINDER_PARAMS, finderParams));
+    }
+
+    public AzUtilThroughputFinderParams getFinderParams() {
+        return (AzUtilThroughputFinderParams) getProperty(AzUtilThroughputFinderParams.FINDER_PARAMS).getObjectValue();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -153,6 +198,9 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
 
         QueueClient connection = null;
         AzStorageConnectionParams connectionParams = getStorageConnectionParams();
+        AzUtilThroughputFinderParams finderParams = getFinderParams();
+        boolean findMaxRate = finderParams != null && finderParams.isEnabled();
+        String errorClass = null;
 
         try {
             res.sampleStart(); // Start timing
@@ -181,45 +229,153 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
                     throw new NumberFormatException(exc.getMessage().concat(" [Timeout]"));
                 }
             }
+            int concurrentSends = 1;
+            if (!JOrphanUtils.isBlank(getConcurrentSends())) {
+                try {
+                    concurrentSends = Integer.parseInt(getConcurrentSends().trim());
+                } catch (NumberFormatException exc) {
+                    throw new NumberFormatException(exc.getMessage().concat(" [Concurrent sends]"));
+                }
+            }
 
+            // compressed bodies are sent Base64 encoded, queue messages have no content-encoding
             String message = "";
+            String compression = getCompression();
+            AzUtilCompressedBody body = null;
             if (getMessageType().equals(MESSAGE_TYPE_FILE)) {
-                byte[] file = FileUtils.readFileToByteArray(new File(getMessageFile()));
-                message = Base64.getEncoder().encodeToString(file);
+                body = AzUtilCompression.compressStatic(compression, Arrays.asList(MESSAGE_TYPE_FILE, getMessageFile()),
+                    () -> FileUtils.readFileToByteArray(new File(getMessageFile())));
+                message = Base64.getEncoder().encodeToString(body.getBytes());
                 requestBody = "Filename: ".concat(getMessageFile());
+            } else if (getMessageType().equals(MESSAGE_TYPE_FEEDER)) {
+                String feederBody = AzMessageFeeder.nextRecord(getMessage()).getBody();
+                if (AzUtilCompression.isCompressed(compression)) {
+                    body = AzUtilCompression.compress(compression, feederBody.getBytes(StandardCharsets.UTF_8));
+                    message = Base64.getEncoder().encodeToString(body.getBytes());
+                } else {
+                    message = feederBody;
+                }
+                requestBody = "Message feeder: ".concat(getMessage()).concat("\n\n").concat(feederBody);
             } else { // MESSAGE_TYPE_STRING
-                message = getMessage();
-                requestBody = message;
+                if (AzUtilCompression.isCompressed(compression)) {
+                    body = AzUtilCompression.compressStatic(compression, Arrays.asList(MESSAGE_TYPE_STRING, getMessage()),
+                        () -> getMessage().getBytes(StandardCharsets.UTF_8));
+                    message = Base64.getEncoder().encodeToString(body.getBytes());
+                } else {
+                    message = getMessage();
+                }
+                requestBody = getMessage();
+            }
+            if (body != null && body.isCompressed()) {
+                requestBody = requestBody.concat("\n\n")
+                    .concat("Compression: ").concat(compression).concat("\n")
+                    .concat(AzUtilCompressedBody.describe(body.getRawLength(), body.getBytes().length));
             }
             requestHeaders = connectionParams.getMaskedParams();
-
-            connection = connectionParams.getConnection();
-            Response<SendMessageResult> response = connection.sendMessageWithResponse(message, visibilityTimeout, timeToLive, timeout, null);
-            
-            res.setResponseCode(String.valueOf(response.getStatusCode()));
-            responseData = "Message Id: ".concat(response.getValue().getMessageId()).concat("\n")
-                         .concat("Pop Receipt: ").concat(response.getValue().getPopReceipt());
-            
-            res.latencyEnd();
-            responseMessage = response.getValue().getMessageId().toString();
-            isSuccessful = true;
-            res.sampleEnd();
+            // sent bytes are the encoded message, the body size is the raw body before compression
+            final long messageBytes = message.getBytes(StandardCharsets.UTF_8).length;
+            final long rawBytes = body != null ? body.getRawLength() : messageBytes;
+
+            if (findMaxRate) {
+                // the same message is sent at every step, the timeout is replaced by the drain timeout
+                QueueAsyncClient asyncConnection = connectionParams.getAsyncConnection();
+                final String sendMessage = message;
+                final Duration sendVisibilityTimeout = visibilityTimeout;
+                final Duration sendTimeToLive = timeToLive;
+                requestBody = requestBody.concat("\n\n").concat(finderParams.describe());
+                AzUtilThroughputFinder.Report report = finderParams.createFinder().run(AzUtilThroughputFinder.openLoop(
+                    () -> asyncConnection.sendMessageWithResponse(sendMessage, sendVisibilityTimeout, sendTimeToLive).toFuture(),
+                    1, finderParams.getDrainTimeoutMillis()));
+                res.latencyEnd();
+                res.sampleEnd();
+                report.addSubResults(res, getName());
+                responseData = report.toString();
+                responseMessage = report.getResponseMessage();
+                isSuccessful = report.getKnee() != null;
+            } else if (concurrentSends > 1) {
+                // the blocking sends run on the shared executor, this thread only waits for them
+                final QueueClient client = connectionParams.getConnection();
+                final String sendMessage = message;
+                final Duration sendVisibilityTimeout = visibilityTimeout;
+                final Duration sendTimeToLive = timeToLive;
+                final Duration sendTimeout = timeout;
+                requestBody = requestBody.concat("\n\n")
+                    .concat("Concurrent sends: ").concat(String.valueOf(concurrentSends))
+                    .concat(" (").concat(AzUtilBlockingExecutor.describe()).concat(")");
+                List<CompletableFuture<Response<SendMessageResult>>> sends = new ArrayList<>();
+                for (int i = 0; i < concurrentSends; i++) {
+                    sends.add(AzUtilBlockingExecutor.supplyAsync(() -> {
+                        long sendStart = System.nanoTime();
+                        Response<SendMessageResult> response
+                            = client.sendMessageWithResponse(sendMessage, sendVisibilityTimeout, sendTimeToLive, sendTimeout, null);
+                        AzUtilMetrics.recordSend(getName(), client.getQueueName(), (System.nanoTime() - sendStart) / 1000, 1, messageBytes);
+                        return response;
+                    }));
+                }
+                int failed = 0;
+                Throwable firstError = null;
+                for (CompletableFuture<Response<SendMessageResult>> send : sends) {
+                    try {
+                        send.join();
+                    } catch (CompletionException ex) {
+                        failed++;
+                        if (firstError == null) {
+                            firstError = ex.getCause();
+                        }
+                        AzUtilErrorCounters.count(getName(), AzStorageQueueErrorClassifier.classify(ex.getCause()));
+                    }
+                }
+                res.latencyEnd();
+                res.sampleEnd();
+                sentBytes = messageBytes * (concurrentSends - failed);
+                bodyBytes = rawBytes * (concurrentSends - failed);
+                responseData = String.valueOf(concurrentSends - failed).concat(" of ")
+                    .concat(String.valueOf(concurrentSends)).concat(" sends succeeded.");
+                if (failed == 0) {
+                    responseMessage = "OK";
+                    isSuccessful = true;
+                } else {
+                    responseMessage = String.valueOf(failed).concat(" of ").concat(String.valueOf(concurrentSends))
+                        .concat(" sends did not succeed.\n").concat(String.valueOf(firstError.getMessage()));
+                    res.setResponseCode(AzStorageQueueErrorClassifier.classify(firstError));
+                }
+            } else {
+                connection = connectionParams.getConnection();
+                long sendStart = System.nanoTime();
+                Response<SendMessageResult> response = connection.sendMessageWithResponse(message, visibilityTimeout, timeToLive, timeout, null);
+                AzUtilMetrics.recordSend(getName(), connection.getQueueName(), (System.nanoTime() - sendStart) / 1000, 1, messageBytes);
+                sentBytes = messageBytes;
+                bodyBytes = rawBytes;
+
+                res.setResponseCode(String.valueOf(response.getStatusCode()));
+                responseData = "Message Id: ".concat(response.getValue().getMessageId()).concat("\n")
+                             .concat("Pop Receipt: ").concat(response.getValue().getPopReceipt());
+
+                res.latencyEnd();
+                responseMessage = response.getValue().getMessageId().toString();
+                isSuccessful = true;
+                res.sampleEnd();
+            }
         } catch (QueueStorageException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             responseData = ex.getMessage();
             responseMessage = responseMessage.concat(responseData);
+            errorClass = AzStorageQueueErrorClassifier.classify(ex);
         } catch (IllegalStateException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             responseData = ex.getMessage();
             responseMessage = responseMessage.concat(responseData);
+            errorClass = AzStorageQueueErrorClassifier.classify(ex);
         } catch (IllegalArgumentException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             responseData = ex.getMessage();
             responseMessage = responseMessage.concat(responseData);
+            errorClass = AzStorageQueueErrorClassifier.classify(ex);
         } catch (FileNotFoundException ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             responseData = ex.getMessage();
             responseMessage = responseMessage.concat(responseData);
+            errorClass = AzStorageQueueErrorClassifier.classify(ex);
         } catch (Exception ex) {
             log.info("Error calling {} sampler. ", threadName, ex);
             
@@ -235,7 +391,12 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
                 responseData = ex.toString();
             }
             responseMessage = responseMessage.concat(responseData);
+            errorClass = AzStorageQueueErrorClassifier.classify(ex);
         } finally {
+            if (errorClass != null) {
+                res.setResponseCode(errorClass);
+                AzUtilErrorCounters.count(getName(), errorClass);
+            }
             res.setDataType(SampleResult.TEXT);
             res.setResponseData(responseData, "UTF-8");
             res.setSamplerData(requestBody); // Request Body
@@ -247,6 +408,7 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
         }
 
         res.setSuccessful(isSuccessful);
+        AzUtilMetrics.recordSample(getName(), res);
         return res;
     }
 
@@ -268,7 +430,37 @@ public class AzStorageQueueSampler extends AbstractSampler implements TestStateL
     // Ensure any remaining contexts are closed
     @Override
     public void testEnded(String host) {
+        AzUtilCompression.clearCache();
+        AzUtilWarmup.stop();
+        AzUtilMetrics.stop();
+        AzUtilErrorCounters.stop();
+    }
+
+    /**
+     * Warm up before the first sample of the thread: create the queue client of this thread and get the
+     * properties of the queue, which opens an HTTP connection of the shared pool and acquires the
+     * Azure AD token of the client. Every thread has its own client, so every thread warms up.
+     */
+    @Override
+    public void threadStarted() {
+        AzUtilWarmup warmup = AzUtilWarmup.get();
+        AzStorageConnectionParams connectionParams = getStorageConnectionParams();
+        if (!warmup.isEnabled() || connectionParams == null) {
+            return;
+        }
+        String key = "storagequeue\n".concat(Thread.currentThread().getName()).concat("\n").concat(getName());
+        try {
+            // the client is created on this thread, whose variables hold the Azure AD credential
+            final QueueClient client = connectionParams.getConnection();
+            warmup.warmUp(getName(), connectionParams.getQueueName(), key, () -> client.getProperties());
+        } catch (Exception ex) {
+            log.info("Warm-up of {} ({}) failed: {}", connectionParams.getQueueName(), getName(), ex.toString());
+        }
+    }
 
+    @Override
+    public void threadFinished() {
+        // ignored
     }
 
     /**
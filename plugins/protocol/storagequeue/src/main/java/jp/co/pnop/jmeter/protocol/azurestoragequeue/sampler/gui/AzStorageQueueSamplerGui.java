@@ -23,6 +23,9 @@ import org.slf4j.LoggerFactory;
 import jp.co.pnop.jmeter.protocol.azurestoragequeue.common.AzStorageConnectionParams;
 import jp.co.pnop.jmeter.protocol.azurestoragequeue.common.gui.AzStorageConnectionParamsPanel;
 import jp.co.pnop.jmeter.protocol.azurestoragequeue.sampler.AzStorageQueueSampler;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinderParams;
+import jp.co.pnop.jmeter.util.throughput.gui.AzUtilThroughputFinderParamsPanel;
 
 public class AzStorageQueueSamplerGui extends AbstractSamplerGui implements ChangeListener {
     private static final long serialVersionUID = 1L;
@@ -30,17 +33,21 @@ public class AzStorageQueueSamplerGui extends AbstractSamplerGui implements Chan
     private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
 
     private AzStorageConnectionParamsPanel connectionPanel = new AzStorageConnectionParamsPanel();
+    private AzUtilThroughputFinderParamsPanel finderPanel = new AzUtilThroughputFinderParamsPanel();
 
     private JLabeledChoice messageType = new JLabeledChoice();
     private String[] MESSAGE_TYPE_LABELS = {
         AzStorageQueueSampler.MESSAGE_TYPE_STRING,
-        AzStorageQueueSampler.MESSAGE_TYPE_FILE
+        AzStorageQueueSampler.MESSAGE_TYPE_FILE,
+        AzStorageQueueSampler.MESSAGE_TYPE_FEEDER
     };
     private JLabeledTextArea message;
     private JLabeledTextField messageFile;
     private JLabeledTextField visibilityTimeout;
     private JLabeledTextField timeToLive;
     private JLabeledTextField timeout;
+    private JLabeledTextField concurrentSends;
+    private JLabeledChoice compression;
     private JTabbedPane messageTabbedPane;
 
     public AzStorageQueueSamplerGui() {
@@ -69,6 +76,9 @@ public class AzStorageQueueSamplerGui extends AbstractSamplerGui implements Chan
         visibilityTimeout.setText(element.getPropertyAsString(AzStorageQueueSampler.VISIBILITY_TIMEOUT));
         timeToLive.setText(element.getPropertyAsString(AzStorageQueueSampler.TIME_TO_LIVE));
         timeout.setText(element.getPropertyAsString(AzStorageQueueSampler.TIMEOUT));
+        concurrentSends.setText(element.getPropertyAsString(AzStorageQueueSampler.CONCURRENT_SENDS));
+        compression.setText(element.getPropertyAsString(AzStorageQueueSampler.COMPRESSION, AzUtilCompression.COMPRESSION_NONE));
+        finderPanel.configure((TestElement)element.getProperty(AzUtilThroughputFinderParams.FINDER_PARAMS).getObjectValue());
     }
 
     @Override
@@ -92,12 +102,15 @@ public class AzStorageQueueSamplerGui extends AbstractSamplerGui implements Chan
         sampler.setProperty(AzStorageQueueSampler.MESSAGE_TYPE, messageType.getText());
         if (messageType.getText().equals(AzStorageQueueSampler.MESSAGE_TYPE_FILE)) {
             sampler.setProperty(AzStorageQueueSampler.MESSAGE_FILE, messageFile.getText());
-        } else { // STRING
+        } else { // STRING, FEEDER
             sampler.setProperty(AzStorageQueueSampler.MESSAGE, message.getText());
         }
         sampler.setProperty(AzStorageQueueSampler.VISIBILITY_TIMEOUT, visibilityTimeout.getText());
         sampler.setProperty(AzStorageQueueSampler.TIME_TO_LIVE, timeToLive.getText());
         sampler.setProperty(AzStorageQueueSampler.TIMEOUT, timeout.getText());
+        sampler.setProperty(AzStorageQueueSampler.CONCURRENT_SENDS, concurrentSends.getText());
+        sampler.setProperty(AzStorageQueueSampler.COMPRESSION, compression.getText());
+        sampler.setProperty(new TestElementProperty(AzUtilThroughputFinderParams.FINDER_PARAMS, finderPanel.createTestElement()));
     }
 
     /**
@@ -115,6 +128,9 @@ public class AzStorageQueueSamplerGui extends AbstractSamplerGui implements Chan
         visibilityTimeout.setText("");
         timeToLive.setText("");
         timeout.setText("");
+        concurrentSends.setText("");
+        compression.setText(AzUtilCompression.COMPRESSION_NONE);
+        finderPanel.clearGui();
         messageTabbedPane.setSelectedIndex(0);
     }
 
@@ -174,10 +190,19 @@ public class AzStorageQueueSamplerGui extends AbstractSamplerGui implements Chan
         timeout = new JLabeledTextField("Timeout (sec):");
         timeout.setName(AzStorageQueueSampler.TIMEOUT);
 
+        compression = new JLabeledChoice("Compression:", AzUtilCompression.COMPRESSION_TYPES);
+        compression.setName(AzStorageQueueSampler.COMPRESSION);
+
+        concurrentSends = new JLabeledTextField("Concurrent sends:");
+        concurrentSends.setName(AzStorageQueueSampler.CONCURRENT_SENDS);
+
         VerticalPanel panel = new VerticalPanel();
         panel.add(visibilityTimeout);
         panel.add(timeToLive);
         panel.add(timeout);
+        panel.add(compression);
+        panel.add(concurrentSends);
+        panel.add(finderPanel);
         return panel;
     }
 
@@ -207,7 +232,7 @@ public class AzStorageQueueSamplerGui extends AbstractSamplerGui implements Chan
         if (type.equals(AzStorageQueueSampler.MESSAGE_TYPE_FILE)) {
             message.setVisible(false);
             messageFile.setVisible(true);
-        } else { // MESSAGE_TYPE_STRING
+        } else { // MESSAGE_TYPE_STRING, MESSAGE_TYPE_FEEDER
             message.setVisible(true);
             messageFile.setVisible(false);
         }
@@ -0,0 +1,79 @@
+package jp.co.pnop.jmeter.protocol.azurestoragequeue.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.azure.storage.queue.QueueClient;
+import com.azure.storage.queue.models.QueueMessageItem;
+
+import jp.co.pnop.jmeter.protocol.azurestoragequeue.harness.AzStorageQueueTestServer;
+
+public class AzStorageConnectionParamsTest {
+
+    private static AzStorageQueueTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        File properties = File.createTempFile("jmeter", ".properties");
+        properties.deleteOnExit();
+        JMeterUtils.loadJMeterProperties(properties.getAbsolutePath());
+        server = new AzStorageQueueTestServer();
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    public void resetServer() {
+        server.reset();
+    }
+
+    @Test
+    public void connectionIsReused() throws Exception {
+        AzStorageConnectionParams params = createParams(server, "reuse");
+
+        QueueClient first = params.getConnection();
+        assertSame(first, params.getConnection());
+
+        params.setQueueName("another");
+        QueueClient second = params.getConnection();
+        assertNotSame(first, second);
+        assertEquals("another", second.getQueueName());
+    }
+
+    @Test
+    public void putGetDeleteMessage() throws Exception {
+        QueueClient queue = createParams(server, "roundtrip").getConnection();
+
+        queue.sendMessage("hello");
+        assertEquals(1, server.getMessageCount("roundtrip"));
+
+        QueueMessageItem item = queue.receiveMessage();
+        assertEquals("hello", item.getMessageText());
+        assertEquals(0, server.getMessageCount("roundtrip"));
+
+        queue.deleteMessage(item.getMessageId(), item.getPopReceipt());
+        assertEquals(1, server.getDeleteCount());
+    }
+
+    static AzStorageConnectionParams createParams(AzStorageQueueTestServer server, String queueName) {
+        AzStorageConnectionParams params = new AzStorageConnectionParams();
+        params.clear();
+        params.setAuthType(AzStorageConnectionParams.AUTHTYPE_CONNECTION_STRING);
+        params.setConnectionString(server.getConnectionString());
+        params.setQueueName(queueName);
+        return params;
+    }
+}
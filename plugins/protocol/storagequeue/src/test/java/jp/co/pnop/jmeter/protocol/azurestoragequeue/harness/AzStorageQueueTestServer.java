@@ -0,0 +1,317 @@
+package jp.co.pnop.jmeter.protocol.azurestoragequeue.harness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the Storage Queue REST API, compatible with the
+ * Azurite development storage account.
+ * <p>
+ * Put Message, Get Messages and Delete Message are implemented on path-style URLs
+ * ("/devstoreaccount1/{queue}/messages"). Queues are created on first use, requests
+ * are not authenticated and visibility timeouts are not enforced: a received message
+ * simply leaves the queue until it is deleted. Every TCP connection is counted so that
+ * tests can check that clients and their connection pools are reused.
+ */
+public class AzStorageQueueTestServer implements AutoCloseable {
+
+    public static final String ACCOUNT_NAME = "devstoreaccount1";
+    public static final String ACCOUNT_KEY
+        = "Eby8vdM02xNOcqFlqUwJPLlmEtlCDXJ1OUzFT50uSRZ6IFsuFq2UVErCz4I6tq/K1SZFPTOtr/KBHBeksoGMGw==";
+
+    private static final String API_VERSION = "2020-10-02";
+    private static final Pattern MESSAGES_PATH = Pattern.compile("^/([^/]+)/([^/]+)/messages(?:/([^/]+))?/?$");
+    private static final Pattern MESSAGE_TEXT = Pattern.compile("<MessageText>(.*)</MessageText>", Pattern.DOTALL);
+    private static final DateTimeFormatter RFC_1123 = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+
+    private final Map<String, Deque<QueueMessage>> queues = new ConcurrentHashMap<>();
+    private final Map<String, QueueMessage> invisible = new ConcurrentHashMap<>();
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong putCount = new AtomicLong();
+    private final AtomicLong getCount = new AtomicLong();
+    private final AtomicLong deleteCount = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "storage-queue-test-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getQueueEndpoint() {
+        return "http://127.0.0.1:".concat(String.valueOf(getPort())).concat("/").concat(ACCOUNT_NAME);
+    }
+
+    /**
+     * Connection string in the format used by Azurite.
+     */
+    public String getConnectionString() {
+        return "DefaultEndpointsProtocol=http;AccountName=".concat(ACCOUNT_NAME).concat(";")
+            .concat("AccountKey=").concat(ACCOUNT_KEY).concat(";")
+            .concat("QueueEndpoint=").concat(getQueueEndpoint()).concat(";");
+    }
+
+    public int getMessageCount(String queueName) {
+        Deque<QueueMessage> queue = queues.get(queueName);
+        return queue == null ? 0 : queue.size();
+    }
+
+    public long getPutCount() {
+        return putCount.get();
+    }
+
+    public long getGetCount() {
+        return getCount.get();
+    }
+
+    public long getDeleteCount() {
+        return deleteCount.get();
+    }
+
+    /**
+     * Number of distinct TCP connections the server has seen.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public void reset() {
+        queues.clear();
+        invisible.clear();
+        connections.clear();
+        putCount.set(0);
+        getCount.set(0);
+        deleteCount.set(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress().toString());
+        try {
+            URI uri = exchange.getRequestURI();
+            Matcher matcher = MESSAGES_PATH.matcher(uri.getRawPath());
+            if (!matcher.matches()) {
+                drain(exchange);
+                sendError(exchange, 400, "InvalidUri", "Only queue message operations are supported.");
+                return;
+            }
+            String queueName = matcher.group(2);
+            String messageId = matcher.group(3);
+            Map<String, String> query = parseQuery(uri.getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (method.equals("POST") && messageId == null) {
+                putMessage(exchange, queueName, query);
+            } else if (method.equals("GET") && messageId == null) {
+                getMessages(exchange, queueName, query);
+            } else if (method.equals("DELETE") && messageId != null) {
+                deleteMessage(exchange, messageId, query);
+            } else {
+                drain(exchange);
+                sendError(exchange, 405, "UnsupportedHttpVerb", "The resource doesn't support the specified HTTP verb.");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void putMessage(HttpExchange exchange, String queueName, Map<String, String> query) throws IOException {
+        String body = new String(drain(exchange), StandardCharsets.UTF_8);
+        Matcher matcher = MESSAGE_TEXT.matcher(body);
+        if (!matcher.find()) {
+            sendError(exchange, 400, "InvalidXmlDocument", "MessageText is missing.");
+            return;
+        }
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        long ttl = query.containsKey("messagettl") ? Long.parseLong(query.get("messagettl")) : 7 * 24 * 3600;
+        long visibility = query.containsKey("visibilitytimeout") ? Long.parseLong(query.get("visibilitytimeout")) : 0;
+        QueueMessage msg = new QueueMessage(UUID.randomUUID().toString(), matcher.group(1), now,
+            ttl < 0 ? now.plusYears(1000) : now.plusSeconds(ttl), now.plusSeconds(visibility));
+        queues.computeIfAbsent(queueName, k -> new ConcurrentLinkedDeque<>()).addLast(msg);
+        putCount.incrementAndGet();
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?><QueueMessagesList>");
+        appendMessage(xml, msg, false);
+        xml.append("</QueueMessagesList>");
+        send(exchange, 201, xml.toString());
+    }
+
+    private void getMessages(HttpExchange exchange, String queueName, Map<String, String> query) throws IOException {
+        drain(exchange);
+        int count = query.containsKey("numofmessages") ? Integer.parseInt(query.get("numofmessages")) : 1;
+        boolean peekOnly = "true".equals(query.get("peekonly"));
+        long visibility = query.containsKey("visibilitytimeout") ? Long.parseLong(query.get("visibilitytimeout")) : 30;
+        Deque<QueueMessage> queue = queues.computeIfAbsent(queueName, k -> new ConcurrentLinkedDeque<>());
+        getCount.incrementAndGet();
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?><QueueMessagesList>");
+        for (int i = 0; i < count; i++) {
+            QueueMessage msg = peekOnly ? queue.peekFirst() : queue.pollFirst();
+            if (msg == null) {
+                break;
+            }
+            if (!peekOnly) {
+                msg.dequeueCount++;
+                msg.popReceipt = UUID.randomUUID().toString();
+                msg.timeNextVisible = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(visibility);
+                invisible.put(msg.messageId, msg);
+            }
+            appendMessage(xml, msg, true);
+            if (peekOnly) {
+                break;
+            }
+        }
+        xml.append("</QueueMessagesList>");
+        send(exchange, 200, xml.toString());
+    }
+
+    private void deleteMessage(HttpExchange exchange, String messageId, Map<String, String> query) throws IOException {
+        drain(exchange);
+        QueueMessage msg = invisible.get(messageId);
+        if (msg == null || !msg.popReceipt.equals(query.get("popreceipt"))) {
+            sendError(exchange, 404, "MessageNotFound", "The specified message does not exist.");
+            return;
+        }
+        invisible.remove(messageId);
+        deleteCount.incrementAndGet();
+        send(exchange, 204, null);
+    }
+
+    private static void appendMessage(StringBuilder xml, QueueMessage msg, boolean withText) {
+        xml.append("<QueueMessage>")
+            .append("<MessageId>").append(msg.messageId).append("</MessageId>")
+            .append("<InsertionTime>").append(RFC_1123.format(msg.insertionTime)).append("</InsertionTime>")
+            .append("<ExpirationTime>").append(RFC_1123.format(msg.expirationTime)).append("</ExpirationTime>")
+            .append("<PopReceipt>").append(msg.popReceipt).append("</PopReceipt>")
+            .append("<TimeNextVisible>").append(RFC_1123.format(msg.timeNextVisible)).append("</TimeNextVisible>");
+        if (withText) {
+            xml.append("<DequeueCount>").append(msg.dequeueCount).append("</DequeueCount>")
+                .append("<MessageText>").append(msg.messageText).append("</MessageText>");
+        }
+        xml.append("</QueueMessage>");
+    }
+
+    private static void send(HttpExchange exchange, int status, String xml) throws IOException {
+        exchange.getResponseHeaders().add("x-ms-request-id", UUID.randomUUID().toString());
+        exchange.getResponseHeaders().add("x-ms-version", API_VERSION);
+        exchange.getResponseHeaders().add("Date", RFC_1123.format(ZonedDateTime.now(ZoneOffset.UTC)));
+        if (xml == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        exchange.getResponseHeaders().add("x-ms-error-code", code);
+        send(exchange, status, "<?xml version=\"1.0\" encoding=\"utf-8\"?><Error><Code>".concat(code)
+            .concat("</Code><Message>").concat(message).concat("</Message></Error>"));
+    }
+
+    private static byte[] drain(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8").toLowerCase(),
+                    URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return query;
+    }
+
+    private static class QueueMessage {
+        private final String messageId;
+        private final String messageText;
+        private final ZonedDateTime insertionTime;
+        private final ZonedDateTime expirationTime;
+        private ZonedDateTime timeNextVisible;
+        private String popReceipt = UUID.randomUUID().toString();
+        private int dequeueCount = 0;
+
+        QueueMessage(String messageId, String messageText, ZonedDateTime insertionTime,
+                ZonedDateTime expirationTime, ZonedDateTime timeNextVisible) {
+            this.messageId = messageId;
+            this.messageText = messageText;
+            this.insertionTime = insertionTime;
+            this.expirationTime = expirationTime;
+            this.timeNextVisible = timeNextVisible;
+        }
+    }
+}
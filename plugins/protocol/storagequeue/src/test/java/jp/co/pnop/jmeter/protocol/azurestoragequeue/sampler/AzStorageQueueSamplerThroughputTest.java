@@ -0,0 +1,151 @@
+package jp.co.pnop.jmeter.protocol.azurestoragequeue.sampler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.co.pnop.jmeter.protocol.azurestoragequeue.common.AzStorageConnectionParams;
+import jp.co.pnop.jmeter.protocol.azurestoragequeue.harness.AzStorageQueueTestServer;
+import jp.co.pnop.jmeter.util.compression.AzUtilCompression;
+
+/**
+ * Throughput of the Storage Queue sampler against the local Storage Queue stand-in.
+ * Run with: mvn test -P throughput
+ * <p>
+ * Besides messages/s, the number of TCP connections is checked: a sampler that builds
+ * a new client (and with it a new connection pool) for every sample opens a connection
+ * per sample instead of a few per thread. A few more than one per thread are allowed, because
+ * the shared connection pool now and then opens a connection while the previous one is still
+ * being released.
+ * <p>
+ * The throughput gates are half the slowest of three runs on JDK 17 with one CPU, so that a
+ * regression fails while the usual jitter does not.
+ */
+@Tag("throughput")
+public class AzStorageQueueSamplerThroughputTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AzStorageQueueSamplerThroughputTest.class);
+
+    private static final String QUEUE_NAME = "throughput";
+    private static final int SAMPLES_PER_THREAD = Integer.getInteger("storage.harness.samplesPerThread", 200);
+
+    private static AzStorageQueueTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        File properties = File.createTempFile("jmeter", ".properties");
+        properties.deleteOnExit();
+        JMeterUtils.loadJMeterProperties(properties.getAbsolutePath());
+        server = new AzStorageQueueTestServer();
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @ParameterizedTest(name = "{0} threads")
+    @CsvSource({
+        // threads, min msgs/s
+        "1, 20",
+        "4, 45",
+        "16, 180",
+    })
+    public void sendMessage(int concurrency, double minMessagesPerSecond) throws Exception {
+        server.reset();
+        final CountDownLatch ready = new CountDownLatch(concurrency);
+        final CountDownLatch go = new CountDownLatch(1);
+        final AtomicLong failed = new AtomicLong();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            final AzStorageQueueSampler sampler = createSampler();
+            Thread thread = new Thread(() -> {
+                try {
+                    // warm-up: builds the client and opens the connection
+                    sampler.sample(null);
+                    ready.countDown();
+                    go.await();
+                    for (int n = 0; n < SAMPLES_PER_THREAD; n++) {
+                        SampleResult res = sampler.sample(null);
+                        if (!res.isSuccessful()) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double messagesPerSecond = (double) concurrency * SAMPLES_PER_THREAD * 1e9 / (System.nanoTime() - start);
+        String result = String.format("%.1f msgs/s, %d connections", messagesPerSecond, server.getConnectionCount());
+        log.info("Storage Queue {} threads: {}", concurrency, result);
+
+        assertEquals(0, failed.get(), "Failed samples: ".concat(result));
+        assertEquals(concurrency * (SAMPLES_PER_THREAD + 1), server.getMessageCount(QUEUE_NAME),
+            "Messages missing at the server: ".concat(result));
+        assertTrue(server.getConnectionCount() <= concurrency * 2 + 2, "Clients are not reused: ".concat(result));
+        assertTrue(messagesPerSecond >= Double.parseDouble(System.getProperty("storage.harness.minMessagesPerSecond",
+            String.valueOf(minMessagesPerSecond))), "Throughput regressed: ".concat(result));
+    }
+
+    @Test
+    public void sentBytesAndBodySize() {
+        server.reset();
+        AzStorageQueueSampler sampler = createSampler();
+        SampleResult res = sampler.sample(null);
+        assertTrue(res.isSuccessful(), res.getResponseMessage());
+        assertEquals(256, res.getSentBytes());
+        assertEquals(256, res.getBodySize());
+
+        // compressed bodies are sent Base64 encoded
+        sampler.setCompression(AzUtilCompression.COMPRESSION_GZIP);
+        res = sampler.sample(null);
+        assertTrue(res.isSuccessful(), res.getResponseMessage());
+        assertTrue(res.getSentBytes() > 0 && res.getSentBytes() < 256, String.valueOf(res.getSentBytes()));
+        assertEquals(256, res.getBodySize());
+    }
+
+    private AzStorageQueueSampler createSampler() {
+        AzStorageConnectionParams params = new AzStorageConnectionParams();
+        params.clear();
+        params.setAuthType(AzStorageConnectionParams.AUTHTYPE_CONNECTION_STRING);
+        params.setConnectionString(server.getConnectionString());
+        params.setQueueName(QUEUE_NAME);
+
+        AzStorageQueueSampler sampler = new AzStorageQueueSampler();
+        sampler.clear();
+        sampler.setName("Storage Queue throughput");
+        sampler.setStorageConnectionParams(params);
+        sampler.setMessageType(AzStorageQueueSampler.MESSAGE_TYPE_STRING);
+        sampler.setMessage(StringUtils.repeat('x', 256));
+        return sampler;
+    }
+}
@@ -0,0 +1,52 @@
+package jp.co.pnop.jmeter.util.compression;
+
+/**
+ * A message body and the size of the body before compression.
+ */
+public class AzUtilCompressedBody {
+
+    private final byte[] bytes;
+    private final int rawLength;
+    private final String contentEncoding;
+
+    AzUtilCompressedBody(byte[] bytes, int rawLength, String contentEncoding) {
+        this.bytes = bytes;
+        this.rawLength = rawLength;
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return the body to send. Cached bodies are shared, so the array must not be modified.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * @return the content-encoding of the body, or null if the body is not compressed
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public boolean isCompressed() {
+        return contentEncoding != null;
+    }
+
+    /**
+     * Describe the sizes for the request body of a sample result.
+     *
+     * @param rawBytes        bytes before compression
+     * @param compressedBytes bytes after compression
+     * @return e.g. "Body bytes: 1024 raw, 312 compressed (30.5%)"
+     */
+    public static String describe(long rawBytes, long compressedBytes) {
+        return "Body bytes: ".concat(String.valueOf(rawBytes)).concat(" raw, ")
+            .concat(String.valueOf(compressedBytes)).concat(" compressed (")
+            .concat(String.format("%.1f", rawBytes == 0 ? 100.0 : compressedBytes * 100.0 / rawBytes)).concat("%)");
+    }
+}
@@ -0,0 +1,149 @@
+package jp.co.pnop.jmeter.util.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.Zstd;
+
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * Compresses message bodies of the samplers.
+ * <p>
+ * The names of the compressions are also the values of the content-encoding of the messages.
+ * "lz4" is the LZ4 frame format, and "deflate" is the zlib format of RFC 1950, the same as the HTTP content-encoding.
+ * <p>
+ * Compressed forms of static bodies (strings and files of the test plan) are cached, so that
+ * the same body is compressed once in a test. Bodies generated for each message are compressed every time.
+ */
+public class AzUtilCompression {
+
+    public static final String COMPRESSION_NONE = "None";
+    public static final String COMPRESSION_GZIP = "gzip";
+    public static final String COMPRESSION_DEFLATE = "deflate";
+    public static final String COMPRESSION_LZ4 = "lz4";
+    public static final String COMPRESSION_ZSTD = "zstd";
+
+    public static final String[] COMPRESSION_TYPES = {
+        COMPRESSION_NONE,
+        COMPRESSION_GZIP,
+        COMPRESSION_DEFLATE,
+        COMPRESSION_LZ4,
+        COMPRESSION_ZSTD
+    };
+
+    static final int CACHE_MAX_ENTRIES = 1024;
+
+    private static final int ZSTD_LEVEL = 3;
+
+    private static final Map<List<String>, AzUtilCompressedBody> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the uncompressed body.
+     */
+    public interface BodySource {
+        byte[] read() throws IOException;
+    }
+
+    private AzUtilCompression() {
+    }
+
+    /**
+     * @param compression name of the compression
+     * @return false if the compression is empty or "None"
+     */
+    public static boolean isCompressed(String compression) {
+        return compression != null && !compression.isEmpty() && !compression.equals(COMPRESSION_NONE);
+    }
+
+    /**
+     * Compress a body.
+     *
+     * @param compression name of the compression
+     * @param raw         the uncompressed body
+     * @return the compressed body, or the body itself if the compression is "None"
+     * @throws IOException if the compression is unknown
+     */
+    public static AzUtilCompressedBody compress(String compression, byte[] raw) throws IOException {
+        if (!isCompressed(compression)) {
+            return new AzUtilCompressedBody(raw, raw.length, null);
+        }
+        return new AzUtilCompressedBody(compressBytes(compression, raw), raw.length, compression);
+    }
+
+    /**
+     * Compress a static body, using the cache.
+     * <p>
+     * The key identifies the body, e.g. the message type and the message of the test plan.
+     * The body is read only if it is not cached. When the cache is full, bodies are compressed every time.
+     *
+     * @param compression name of the compression
+     * @param key         key of the body
+     * @param source      reads the uncompressed body
+     * @return the compressed body
+     * @throws IOException if the body can not be read or the compression is unknown
+     */
+    public static AzUtilCompressedBody compressStatic(String compression, List<String> key, BodySource source) throws IOException {
+        if (!isCompressed(compression)) {
+            return compress(compression, source.read());
+        }
+        List<String> cacheKey = new ArrayList<>(key.size() + 1);
+        cacheKey.add(compression);
+        cacheKey.addAll(key);
+        AzUtilCompressedBody body = cache.get(cacheKey);
+        if (body == null) {
+            body = compress(compression, source.read());
+            if (cache.size() < CACHE_MAX_ENTRIES) {
+                AzUtilCompressedBody cached = cache.putIfAbsent(cacheKey, body);
+                if (cached != null) {
+                    body = cached;
+                }
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Clear the cache of compressed static bodies, e.g. at the end of a test.
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    static int cacheSize() {
+        return cache.size();
+    }
+
+    private static byte[] compressBytes(String compression, byte[] raw) throws IOException {
+        if (compression.equals(COMPRESSION_ZSTD)) {
+            return Zstd.compress(raw, ZSTD_LEVEL);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+        OutputStream out;
+        switch (compression) {
+            case COMPRESSION_GZIP:
+                out = new GZIPOutputStream(bytes);
+                break;
+            case COMPRESSION_DEFLATE:
+                out = new DeflaterOutputStream(bytes);
+                break;
+            case COMPRESSION_LZ4:
+                out = new LZ4FrameOutputStream(bytes);
+                break;
+            default:
+                throw new IOException("Unknown compression: ".concat(compression));
+        }
+        try (OutputStream stream = out) {
+            stream.write(raw);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,109 @@
+package jp.co.pnop.jmeter.util.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.luben.zstd.Zstd;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+
+public class AzUtilCompressionTest {
+
+    private static final byte[] RAW = new String(new char[200]).replace("\0", "{\"deviceId\":\"d1\",\"value\":1}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void noneReturnsTheBody() throws Exception {
+        AzUtilCompressedBody body = AzUtilCompression.compress(AzUtilCompression.COMPRESSION_NONE, RAW);
+        assertSame(RAW, body.getBytes());
+        assertEquals(RAW.length, body.getRawLength());
+        assertNull(body.getContentEncoding());
+    }
+
+    @Test
+    public void gzipRoundTrip() throws Exception {
+        AzUtilCompressedBody body = AzUtilCompression.compress(AzUtilCompression.COMPRESSION_GZIP, RAW);
+        assertEquals("gzip", body.getContentEncoding());
+        assertEquals(RAW.length, body.getRawLength());
+        assertTrue(body.getBytes().length < RAW.length);
+        assertArrayEquals(RAW, readAll(new GZIPInputStream(new ByteArrayInputStream(body.getBytes()))));
+    }
+
+    @Test
+    public void deflateRoundTrip() throws Exception {
+        AzUtilCompressedBody body = AzUtilCompression.compress(AzUtilCompression.COMPRESSION_DEFLATE, RAW);
+        assertArrayEquals(RAW, readAll(new InflaterInputStream(new ByteArrayInputStream(body.getBytes()))));
+    }
+
+    @Test
+    public void lz4RoundTrip() throws Exception {
+        AzUtilCompressedBody body = AzUtilCompression.compress(AzUtilCompression.COMPRESSION_LZ4, RAW);
+        assertArrayEquals(RAW, readAll(new LZ4FrameInputStream(new ByteArrayInputStream(body.getBytes()))));
+    }
+
+    @Test
+    public void zstdRoundTrip() throws Exception {
+        AzUtilCompressedBody body = AzUtilCompression.compress(AzUtilCompression.COMPRESSION_ZSTD, RAW);
+        assertArrayEquals(RAW, Zstd.decompress(body.getBytes(), RAW.length));
+    }
+
+    @Test
+    public void unknownCompressionIsRejected() {
+        assertThrows(IOException.class, () -> AzUtilCompression.compress("brotli", RAW));
+    }
+
+    @Test
+    public void staticBodiesAreCompressedOnce() throws Exception {
+        AzUtilCompression.clearCache();
+        AtomicInteger reads = new AtomicInteger();
+        AzUtilCompressedBody first = null;
+        for (int i = 0; i < 3; i++) {
+            AzUtilCompressedBody body = AzUtilCompression.compressStatic(AzUtilCompression.COMPRESSION_GZIP,
+                Arrays.asList("String", "payload"), () -> {
+                    reads.incrementAndGet();
+                    return RAW;
+                });
+            if (first == null) {
+                first = body;
+            }
+            assertSame(first, body);
+        }
+        assertEquals(1, reads.get());
+
+        AzUtilCompression.compressStatic(AzUtilCompression.COMPRESSION_DEFLATE, Arrays.asList("String", "payload"), () -> RAW);
+        assertEquals(2, AzUtilCompression.cacheSize());
+        AzUtilCompression.clearCache();
+        assertEquals(0, AzUtilCompression.cacheSize());
+    }
+
+    @Test
+    public void describesSizes() {
+        assertEquals("Body bytes: 1000 raw, 250 compressed (25.0%)", AzUtilCompressedBody.describe(1000, 250));
+    }
+}
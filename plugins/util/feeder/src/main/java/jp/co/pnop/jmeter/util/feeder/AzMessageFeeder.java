@@ -0,0 +1,189 @@
+package jp.co.pnop.jmeter.util.feeder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jorphan.util.JOrphanUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Message feeder config element.
+ * <p>
+ * Opens an NDJSON or CSV file when the test starts and binds it to a variable name.
+ * The samplers take the records with {@link #nextRecord(String)}, so the records are not
+ * copied into JMeter variables, and all the threads share one cursor of the file.
+ */
+public class AzMessageFeeder extends ConfigTestElement implements TestStateListener {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AzMessageFeeder.class);
+
+    public static final String FEEDER_NAME = "feederName";
+    public static final String FILENAME = "filename";
+    public static final String FILE_FORMAT = "fileFormat";
+    public static final String END_OF_FILE = "endOfFile";
+
+    public static final String END_OF_FILE_RECYCLE = "Recycle";
+    public static final String END_OF_FILE_STOP_THREAD = "Stop thread";
+
+    private static AtomicInteger classCount = new AtomicInteger(0); // keep track of classes created
+
+    private transient AzMessageFeederFile file;
+
+    public AzMessageFeeder() {
+        classCount.incrementAndGet();
+        trace("AzMessageFeeder()");
+    }
+
+    /**
+     * Clear the settings.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        setProperty(new StringProperty(FEEDER_NAME, ""));
+        setProperty(new StringProperty(FILENAME, ""));
+        setProperty(new StringProperty(FILE_FORMAT, AzMessageFeederFile.FORMAT_NDJSON));
+        setProperty(new StringProperty(END_OF_FILE, END_OF_FILE_RECYCLE));
+    }
+
+    public void setFeederName(String feederName) {
+        setProperty(new StringProperty(FEEDER_NAME, feederName));
+    }
+
+    public String getFeederName() {
+        return getPropertyAsString(FEEDER_NAME);
+    }
+
+    public void setFilename(String filename) {
+        setProperty(new StringProperty(FILENAME, filename));
+    }
+
+    public String getFilename() {
+        return getPropertyAsString(FILENAME);
+    }
+
+    public void setFileFormat(String fileFormat) {
+        setProperty(new StringProperty(FILE_FORMAT, fileFormat));
+    }
+
+    public String getFileFormat() {
+        return getPropertyAsString(FILE_FORMAT, AzMessageFeederFile.FORMAT_NDJSON);
+    }
+
+    public void setEndOfFile(String endOfFile) {
+        setProperty(new StringProperty(END_OF_FILE, endOfFile));
+    }
+
+    public String getEndOfFile() {
+        return getPropertyAsString(END_OF_FILE, END_OF_FILE_RECYCLE);
+    }
+
+    @Override
+    public void testStarted() {
+        this.setRunningVersion(true);
+        JMeterVariables variables = getThreadContext().getVariables();
+
+        String feederName = getFeederName();
+        if (JOrphanUtils.isBlank(feederName)) {
+            log.error("Name for message feeder must not be empty in " + getName());
+        } else if (variables.getObject(feederName) != null) {
+            log.error("Message feeder already defined for: {}", feederName);
+        } else {
+            try {
+                synchronized (this) {
+                    file = new AzMessageFeederFile(Paths.get(getFilename()), getFileFormat(), getEndOfFile().equals(END_OF_FILE_RECYCLE));
+                }
+                variables.putObject(feederName, file);
+            } catch (IOException ex) {
+                log.error("Failed to open the file of message feeder {}: {}", feederName, getFilename(), ex);
+            }
+        }
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        synchronized (this) {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ex) {
+                    log.warn("Failed to close the file of message feeder {}", getFeederName(), ex);
+                }
+                file = null;
+            }
+        }
+        if (!JOrphanUtils.isBlank(getFeederName())) {
+            getThreadContext().getVariables().remove(getFeederName());
+        }
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
+    @Override
+    public Object clone() {
+        AzMessageFeeder feeder = (AzMessageFeeder) super.clone();
+        synchronized (this) {
+            feeder.file = file;
+        }
+        return feeder;
+    }
+
+    /**
+     * Take the next record of the message feeder bound to the variable name.
+     * At the end of the file, if the feeder does not recycle the file, the current thread is stopped.
+     *
+     * @param feederName variable name of the message feeder
+     * @return the record
+     * @throws EOFException at the end of the file
+     * @throws Exception if there is no message feeder of the name, or the record can not be read
+     */
+    public static AzMessageFeederRecord nextRecord(String feederName) throws Exception {
+        JMeterContext context = JMeterContextService.getContext();
+        Object feederObject = context.getVariables().getObject(feederName);
+        if (!(feederObject instanceof AzMessageFeederFile)) {
+            throw new Exception("No message feeder found named: '" + feederName + "', ensure Variable Name matches Variable Name of Message Feeder.");
+        }
+        AzMessageFeederRecord record = ((AzMessageFeederFile) feederObject).next();
+        if (record == null) {
+            if (context.getThread() != null) {
+                context.getThread().stop();
+            }
+            throw new EOFException("End of file of message feeder: ".concat(feederName));
+        }
+        return record;
+    }
+
+    @Override
+    public boolean expectsModification() {
+        return false;
+    }
+
+    /*
+     * Helper method
+     */
+    private void trace(String s) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} ({}) {} {} {}", Thread.currentThread().getName(), classCount.get(),
+                    getName(), s, this.toString());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package jp.co.pnop.jmeter.util.feeder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the records of an NDJSON or CSV file for all the threads.
+ * <p>
+ * The file is memory-mapped in segments of 1 GiB, so that files larger than the heap can be replayed.
+ * The segments overlap by the maximum record size, so a record starting in a segment can be read from it.
+ * The threads share a cursor of the file position; a thread takes the next record by advancing the cursor
+ * with compare-and-set, without locking.
+ * <p>
+ * A record is a line. Quoted CSV values can not contain line breaks.
+ */
+public class AzMessageFeederFile implements Closeable {
+
+    public static final String FORMAT_NDJSON = "NDJSON";
+    public static final String FORMAT_CSV = "CSV";
+
+    static final long SEGMENT_SIZE = 1L << 30;
+    static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long segmentSize;
+    private final long size;
+    private final long dataStart;
+    private final boolean recycle;
+    private final String format;
+    private final Map<String, Integer> columns;
+    private final AtomicLong position;
+
+    public AzMessageFeederFile(Path path, String format, boolean recycle) throws IOException {
+        this(path, format, recycle, SEGMENT_SIZE);
+    }
+
+    AzMessageFeederFile(Path path, String format, boolean recycle, long segmentSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.format = format;
+        this.recycle = recycle;
+        this.segmentSize = segmentSize;
+        this.size = channel.size();
+
+        int count = (int) ((size + segmentSize - 1) / segmentSize);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize + MAX_RECORD_SIZE, size - start));
+        }
+
+        if (format.equals(FORMAT_CSV)) {
+            if (size == 0) {
+                close();
+                throw new IOException("CSV file has no header: ".concat(path.toString()));
+            }
+            long end = findLineEnd(0);
+            columns = new HashMap<>();
+            List<String> header = parseCsv(readLine(0, end));
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim(), i);
+            }
+            if (!columns.containsKey(AzMessageFeederRecord.BODY)) {
+                close();
+                throw new IOException("CSV header has no \"body\" column: ".concat(path.toString()));
+            }
+            dataStart = Math.min(end + 1, size);
+        } else { // FORMAT_NDJSON
+            columns = null;
+            dataStart = 0;
+        }
+        position = new AtomicLong(dataStart);
+    }
+
+    /**
+     * Take the next record.
+     *
+     * @return the record, or null at the end of the file if the file is not recycled
+     * @throws IOException if the record can not be parsed
+     */
+    public AzMessageFeederRecord next() throws IOException {
+        while (true) {
+            long start = position.get();
+            if (start >= size) {
+                if (!recycle || dataStart >= size) {
+                    return null;
+                }
+                position.compareAndSet(start, dataStart);
+                continue;
+            }
+            long end = findLineEnd(start);
+            if (!position.compareAndSet(start, end + 1)) {
+                continue; // taken by another thread
+            }
+            String line = readLine(start, end);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            return format.equals(FORMAT_CSV) ? csvRecord(line) : ndjsonRecord(line);
+        }
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return the position of the line feed ending the line, or the size of the file
+     */
+    private long findLineEnd(long start) throws IOException {
+        int index = (int) (start / segmentSize);
+        MappedByteBuffer segment = segments[index];
+        int offset = (int) (start - index * segmentSize);
+        int limit = segment.limit();
+        for (int i = offset; i < limit; i++) {
+            if (segment.get(i) == '\n') {
+                return index * segmentSize + i;
+            }
+        }
+        long end = index * segmentSize + limit;
+        if (end < size) {
+            throw new IOException("Record at ".concat(String.valueOf(start))
+                .concat(" is larger than ").concat(String.valueOf(MAX_RECORD_SIZE)).concat(" bytes."));
+        }
+        return end;
+    }
+
+    private String readLine(long start, long end) {
+        int index = (int) (start / segmentSize);
+        ByteBuffer segment = segments[index].duplicate();
+        int length = (int) (end - start);
+        if (length > 0 && segment.get((int) (end - 1 - index * segmentSize)) == '\r') {
+            length--;
+        }
+        byte[] line = new byte[length];
+        segment.position((int) (start - index * segmentSize));
+        segment.get(line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    private AzMessageFeederRecord ndjsonRecord(String line) throws IOException {
+        JsonNode json = mapper.readTree(line);
+        if (!json.isObject()) {
+            throw new IOException("NDJSON record is not an object: ".concat(line));
+        }
+        JsonNode body = json.get(AzMessageFeederRecord.BODY);
+        return new AzMessageFeederRecord(
+            body == null || body.isNull() ? "" : (body.isTextual() ? body.asText() : body.toString()),
+            text(json, AzMessageFeederRecord.MESSAGE_TYPE, "String"),
+            text(json, AzMessageFeederRecord.MESSAGE_ID, ""),
+            text(json, AzMessageFeederRecord.SESSION_ID, ""),
+            text(json, AzMessageFeederRecord.PARTITION_KEY, ""),
+            text(json, AzMessageFeederRecord.CONTENT_TYPE, ""),
+            text(json, AzMessageFeederRecord.SUBJECT, ""),
+            text(json, AzMessageFeederRecord.PROPERTIES, ""),
+            text(json, AzMessageFeederRecord.HEADERS, "")
+        );
+    }
+
+    private static String text(JsonNode json, String name, String defaultValue) {
+        JsonNode value = json.get(name);
+        if (value == null || value.isNull()) {
+            return defaultValue;
+        }
+        return value.isValueNode() ? value.asText() : value.toString();
+    }
+
+    private AzMessageFeederRecord csvRecord(String line) {
+        List<String> values = parseCsv(line);
+        return new AzMessageFeederRecord(
+            column(values, AzMessageFeederRecord.BODY, ""),
+            column(values, AzMessageFeederRecord.MESSAGE_TYPE, "String"),
+            column(values, AzMessageFeederRecord.MESSAGE_ID, ""),
+            column(values, AzMessageFeederRecord.SESSION_ID, ""),
+            column(values, AzMessageFeederRecord.PARTITION_KEY, ""),
+            column(values, AzMessageFeederRecord.CONTENT_TYPE, ""),
+            column(values, AzMessageFeederRecord.SUBJECT, ""),
+            column(values, AzMessageFeederRecord.PROPERTIES, ""),
+            column(values, AzMessageFeederRecord.HEADERS, "")
+        );
+    }
+
+    private String column(List<String> values, String name, String defaultValue) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size() || values.get(index).isEmpty()) {
+            return defaultValue;
+        }
+        return values.get(index);
+    }
+
+    /**
+     * Split a CSV line. Values can be quoted with '"', and '""' in a quoted value is a '"'.
+     */
+    static List<String> parseCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+}
@@ -0,0 +1,83 @@
+package jp.co.pnop.jmeter.util.feeder;
+
+/**
+ * A message read by the message feeder.
+ * <p>
+ * The names of the fields are the keys of the NDJSON objects and the column names of the CSV header.
+ * "properties" and "headers" are JSON objects, the same as the "custom properties" and
+ * "headers/properties/annotations" columns of the messages table of the samplers.
+ */
+public class AzMessageFeederRecord {
+
+    public static final String BODY = "body";
+    public static final String MESSAGE_TYPE = "messageType";
+    public static final String MESSAGE_ID = "messageId";
+    public static final String SESSION_ID = "sessionId";
+    public static final String PARTITION_KEY = "partitionKey";
+    public static final String CONTENT_TYPE = "contentType";
+    public static final String SUBJECT = "subject";
+    public static final String PROPERTIES = "properties";
+    public static final String HEADERS = "headers";
+
+    private final String body;
+    private final String messageType;
+    private final String messageId;
+    private final String sessionId;
+    private final String partitionKey;
+    private final String contentType;
+    private final String subject;
+    private final String properties;
+    private final String headers;
+
+    AzMessageFeederRecord(String body, String messageType, String messageId, String sessionId, String partitionKey,
+                          String contentType, String subject, String properties, String headers) {
+        this.body = body;
+        this.messageType = messageType;
+        this.messageId = messageId;
+        this.sessionId = sessionId;
+        this.partitionKey = partitionKey;
+        this.contentType = contentType;
+        this.subject = subject;
+        this.properties = properties;
+        this.headers = headers;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return the message type of the samplers, "String" if not set
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getProperties() {
+        return properties;
+    }
+
+    public String getHeaders() {
+        return headers;
+    }
+}
@@ -0,0 +1,129 @@
+package jp.co.pnop.jmeter.util.feeder.gui;
+
+import java.awt.BorderLayout;
+
+import javax.swing.BorderFactory;
+import javax.swing.JPanel;
+
+import org.apache.jmeter.config.gui.AbstractConfigGui;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.gui.JLabeledChoice;
+import org.apache.jorphan.gui.JLabeledTextField;
+
+import jp.co.pnop.jmeter.util.feeder.AzMessageFeeder;
+import jp.co.pnop.jmeter.util.feeder.AzMessageFeederFile;
+
+public class AzMessageFeederGui extends AbstractConfigGui {
+    private static final long serialVersionUID = 1L;
+
+    private String[] FILE_FORMAT_LABELS = {
+        AzMessageFeederFile.FORMAT_NDJSON,
+        AzMessageFeederFile.FORMAT_CSV
+    };
+
+    private String[] END_OF_FILE_LABELS = {
+        AzMessageFeeder.END_OF_FILE_RECYCLE,
+        AzMessageFeeder.END_OF_FILE_STOP_THREAD
+    };
+
+    private JLabeledTextField feederName;
+    private JLabeledTextField filename;
+    private JLabeledChoice fileFormat;
+    private JLabeledChoice endOfFile;
+
+    public AzMessageFeederGui() {
+        init();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        feederName.setText(element.getPropertyAsString(AzMessageFeeder.FEEDER_NAME));
+        filename.setText(element.getPropertyAsString(AzMessageFeeder.FILENAME));
+        fileFormat.setText(element.getPropertyAsString(AzMessageFeeder.FILE_FORMAT, AzMessageFeederFile.FORMAT_NDJSON));
+        endOfFile.setText(element.getPropertyAsString(AzMessageFeeder.END_OF_FILE, AzMessageFeeder.END_OF_FILE_RECYCLE));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLabelResource() {
+        return null;
+    }
+
+    public String getStaticLabel() {
+        return "Azure Message Feeder";
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        element.clear();
+        super.configureTestElement(element);
+        element.setProperty(AzMessageFeeder.FEEDER_NAME, feederName.getText());
+        element.setProperty(AzMessageFeeder.FILENAME, filename.getText());
+        element.setProperty(AzMessageFeeder.FILE_FORMAT, fileFormat.getText());
+        element.setProperty(AzMessageFeeder.END_OF_FILE, endOfFile.getText());
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+
+        feederName.setText("");
+        filename.setText("");
+        fileFormat.setText(AzMessageFeederFile.FORMAT_NDJSON);
+        endOfFile.setText(AzMessageFeeder.END_OF_FILE_RECYCLE);
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        AzMessageFeeder feeder = new AzMessageFeeder();
+        modifyTestElement(feeder);
+        return feeder;
+    }
+
+    private JPanel createFeederNamePanel() {
+        feederName = new JLabeledTextField("Variable Name for created message feeder:");
+        feederName.setName(AzMessageFeeder.FEEDER_NAME);
+
+        JPanel panel = new JPanel(new BorderLayout(5, 0));
+        panel.setBorder(BorderFactory.createTitledBorder("Variable Name Bound to Message Feeder"));
+        panel.add(feederName);
+
+        return panel;
+    }
+
+    private JPanel createFilePanel() {
+        filename = new JLabeledTextField("Filename:");
+        filename.setName(AzMessageFeeder.FILENAME);
+        fileFormat = new JLabeledChoice("File format:", FILE_FORMAT_LABELS);
+        fileFormat.setName(AzMessageFeeder.FILE_FORMAT);
+        endOfFile = new JLabeledChoice("At end of file:", END_OF_FILE_LABELS);
+        endOfFile.setName(AzMessageFeeder.END_OF_FILE);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("File configuration"));
+        panel.add(filename);
+        panel.add(fileFormat);
+        panel.add(endOfFile);
+
+        return panel;
+    }
+
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+        add(makeTitlePanel(), BorderLayout.NORTH);
+
+        VerticalPanel mainPanel = new VerticalPanel();
+        mainPanel.add(createFeederNamePanel());
+        mainPanel.add(createFilePanel());
+
+        add(mainPanel, BorderLayout.CENTER);
+    }
+}
@@ -0,0 +1,139 @@
+package jp.co.pnop.jmeter.util.feeder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class AzMessageFeederFileTest {
+
+    private static Path write(String suffix, String content) throws IOException {
+        Path path = Files.createTempFile("feeder", suffix);
+        path.toFile().deleteOnExit();
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test
+    public void readsNdjsonRecords() throws Exception {
+        Path path = write(".ndjson",
+            "{\"body\":\"hello\",\"sessionId\":\"s1\",\"properties\":{\"a\":1}}\r\n"
+            + "\n"
+            + "{\"body\":{\"x\":2},\"messageType\":\"Base64 encoded binary\"}\n");
+        try (AzMessageFeederFile file = new AzMessageFeederFile(path, AzMessageFeederFile.FORMAT_NDJSON, false)) {
+            AzMessageFeederRecord first = file.next();
+            assertEquals("hello", first.getBody());
+            assertEquals("String", first.getMessageType());
+            assertEquals("s1", first.getSessionId());
+            assertEquals("{\"a\":1}", first.getProperties());
+            AzMessageFeederRecord second = file.next();
+            assertEquals("{\"x\":2}", second.getBody());
+            assertEquals("Base64 encoded binary", second.getMessageType());
+            assertNull(file.next());
+        }
+    }
+
+    @Test
+    public void readsCsvRecords() throws Exception {
+        Path path = write(".csv",
+            "messageId,body,subject\n"
+            + "1,\"a, \"\"quoted\"\" body\",s\n"
+            + "2,plain,");
+        try (AzMessageFeederFile file = new AzMessageFeederFile(path, AzMessageFeederFile.FORMAT_CSV, false)) {
+            AzMessageFeederRecord first = file.next();
+            assertEquals("1", first.getMessageId());
+            assertEquals("a, \"quoted\" body", first.getBody());
+            assertEquals("s", first.getSubject());
+            AzMessageFeederRecord second = file.next();
+            assertEquals("plain", second.getBody());
+            assertEquals("", second.getSubject());
+            assertNull(file.next());
+        }
+    }
+
+    @Test
+    public void csvWithoutBodyColumnIsRejected() throws Exception {
+        Path path = write(".csv", "messageId,subject\n1,s\n");
+        assertThrows(IOException.class, () -> new AzMessageFeederFile(path, AzMessageFeederFile.FORMAT_CSV, false));
+    }
+
+    @Test
+    public void recyclesFromFirstRecord() throws Exception {
+        Path path = write(".csv", "body\nA\nB\n");
+        try (AzMessageFeederFile file = new AzMessageFeederFile(path, AzMessageFeederFile.FORMAT_CSV, true)) {
+            StringBuilder bodies = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                bodies.append(file.next().getBody());
+            }
+            assertEquals("ABABA", bodies.toString());
+        }
+    }
+
+    @Test
+    public void readsRecordsAcrossSegments() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("{\"body\":\"").append(i).append("\"}\n");
+        }
+        Path path = write(".ndjson", content.toString());
+        try (AzMessageFeederFile file = new AzMessageFeederFile(path, AzMessageFeederFile.FORMAT_NDJSON, false, 64)) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(String.valueOf(i), file.next().getBody());
+            }
+            assertNull(file.next());
+        }
+    }
+
+    @Test
+    public void threadsTakeEachRecordOnce() throws Exception {
+        int count = 10000;
+        StringBuilder content = new StringBuilder("body\n");
+        for (int i = 0; i < count; i++) {
+            content.append(i).append('\n');
+        }
+        Path path = write(".csv", content.toString());
+        try (AzMessageFeederFile file = new AzMessageFeederFile(path, AzMessageFeederFile.FORMAT_CSV, false, 4096)) {
+            List<String> taken = Collections.synchronizedList(new ArrayList<>());
+            Thread[] threads = new Thread[8];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    try {
+                        AzMessageFeederRecord record;
+                        while ((record = file.next()) != null) {
+                            taken.add(record.getBody());
+                        }
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            int[] seen = new int[count];
+            for (String body : taken) {
+                seen[Integer.parseInt(body)]++;
+            }
+            int[] once = new int[count];
+            Arrays.fill(once, 1);
+            assertEquals(Arrays.toString(once), Arrays.toString(seen));
+        }
+    }
+
+    @Test
+    public void parsesCsvLine() {
+        assertEquals(Arrays.asList("a", "", "b,c", "d\"e"), AzMessageFeederFile.parseCsv("a,,\"b,c\",\"d\"\"e\""));
+    }
+}
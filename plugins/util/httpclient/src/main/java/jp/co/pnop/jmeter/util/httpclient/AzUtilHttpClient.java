@@ -1,33 +1,231 @@
 package jp.co.pnop.jmeter.util.httpclient;
 
+import java.lang.reflect.InvocationTargetException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 
 import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
 import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpClientProvider;
 import com.azure.core.http.ProxyOptions;
+import com.azure.core.util.HttpClientOptions;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.resources.ConnectionProvider;
 
 import org.apache.jmeter.util.JMeterUtils;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.co.pnop.jmeter.util.proxy.AzUtilProxyConfig;
+
+/**
+ * The HTTP client shared by every Azure SDK client of the plugins (Storage Queue, Azure AD credentials,
+ * Key Vault of GetSecret).
+ * <p>
+ * The client is created on first use and kept for the life of the process, so that its connection pool
+ * and event loops are shared instead of being created for every sample, credential or secret.
+ * The pool and the timeouts are set with the "azure_util_httpclient.*" properties.
+ * <p>
+ * "azure_util_httpclient.transport" selects the implementation: "netty" (default, included), "okhttp"
+ * (com.azure:azure-core-http-okhttp) or "jdk" (com.azure:azure-core-http-jdk-httpclient, Java 11 or later).
+ * The JDK HttpClient transport is included in the runtime jar; the jars of OkHttp have to be copied to lib/ext.
+ * Both are loaded by class name, so that the plugins need neither at build time.
+ */
 public class AzUtilHttpClient {
-    private static final String proxyHost = JMeterUtils.getPropDefault("https.proxyHost", "").trim();
-    private static final int proxyPort = Integer.parseInt(JMeterUtils.getPropDefault("https.proxyPort", "3128").trim());
+    private static final Logger log = LoggerFactory.getLogger(AzUtilHttpClient.class);
+
+    private static final String PLUGIN = "azure_util_httpclient";
+    private static final String JMPROPS_CATEGORY = PLUGIN.toLowerCase();
+    private static final String JMPROPS_MAX_CONNECTIONS = new StringBuilder(JMPROPS_CATEGORY).append(".max_connections").toString();
+    private static final String JMPROPS_PENDING_ACQUIRE_MAX_COUNT = new StringBuilder(JMPROPS_CATEGORY).append(".pending_acquire_max_count").toString();
+    private static final String JMPROPS_PENDING_ACQUIRE_TIMEOUT = new StringBuilder(JMPROPS_CATEGORY).append(".pending_acquire_timeout").toString();
+    private static final String JMPROPS_CONNECT_TIMEOUT = new StringBuilder(JMPROPS_CATEGORY).append(".connect_timeout").toString();
+    private static final String JMPROPS_READ_TIMEOUT = new StringBuilder(JMPROPS_CATEGORY).append(".read_timeout").toString();
+    private static final String JMPROPS_WRITE_TIMEOUT = new StringBuilder(JMPROPS_CATEGORY).append(".write_timeout").toString();
+    private static final String JMPROPS_RESPONSE_TIMEOUT = new StringBuilder(JMPROPS_CATEGORY).append(".response_timeout").toString();
+    private static final String JMPROPS_MAX_IDLE_TIME = new StringBuilder(JMPROPS_CATEGORY).append(".max_idle_time").toString();
+    private static final String JMPROPS_EVICTION_INTERVAL = new StringBuilder(JMPROPS_CATEGORY).append(".eviction_interval").toString();
+    private static final String JMPROPS_TRANSPORT = new StringBuilder(JMPROPS_CATEGORY).append(".transport").toString();
+
+    public static final String TRANSPORT_NETTY = "netty";
+    public static final String TRANSPORT_OKHTTP = "okhttp";
+    public static final String TRANSPORT_JDK = "jdk";
+
+    private static final String OKHTTP_PROVIDER = "com.azure.core.http.okhttp.OkHttpAsyncClientProvider";
+    private static final String JDK_PROVIDER = "com.azure.core.http.jdk.httpclient.JdkHttpClientProvider";
 
+    private static volatile HttpClient httpClient = null;
+
+    private AzUtilHttpClient() {
+    }
+
+    /**
+     * @return the shared HTTP client, created on first use
+     */
     public static HttpClient httpClientBase() {
-        InetSocketAddress address = new InetSocketAddress(proxyHost, proxyPort);
-        String nonProxyHosts = JMeterUtils.getPropDefault("https.nonProxyHosts", "").trim();
-        ProxyOptions proxyOptions = new ProxyOptions(ProxyOptions.Type.HTTP, address).setNonProxyHosts(nonProxyHosts);
-        final String proxyUser = JMeterUtils.getPropDefault("http.proxyUser", "").trim();
-        final String proxyPass = JMeterUtils.getPropDefault("http.proxyPass", "");
-
-        nonProxyHosts = nonProxyHosts.concat("|169.254.169.254").replaceFirst("^|", "");
-
-        if (proxyHost.length() > 0) {
-            proxyOptions.setNonProxyHosts(nonProxyHosts);
-            if (proxyUser.length() > 0) {
-                proxyOptions.setCredentials(proxyUser, proxyPass);
+        HttpClient client = httpClient;
+        if (client == null) {
+            synchronized (AzUtilHttpClient.class) {
+                client = httpClient;
+                if (client == null) {
+                    client = createHttpClient(JMeterUtils.getPropDefault(JMPROPS_TRANSPORT, TRANSPORT_NETTY));
+                    httpClient = client;
+                }
             }
-            return (HttpClient) new NettyAsyncHttpClientBuilder().proxy(proxyOptions).build();
         }
-        return HttpClient.createDefault();
+        return client;
+    }
+
+    /**
+     * Create a new HTTP client, which is not shared, with the pool, timeouts and proxy of the properties.
+     *
+     * @param transport "netty", "okhttp" or "jdk"
+     * @return the HTTP client
+     * @throws IllegalArgumentException if the transport is unknown
+     * @throws IllegalStateException    if the jar of the transport is not in the class path, or the JDK HttpClient is not available
+     */
+    public static HttpClient createHttpClient(String transport) {
+        String name = transport.trim().toLowerCase();
+        switch (name) {
+            case TRANSPORT_NETTY:
+            return createNettyHttpClient();
+
+            case TRANSPORT_OKHTTP:
+            return createProviderHttpClient(name, OKHTTP_PROVIDER, "com.azure:azure-core-http-okhttp");
+
+            case TRANSPORT_JDK:
+            String version = System.getProperty("java.specification.version");
+            if (version.startsWith("1.")) {
+                throw new IllegalStateException(
+                    new StringBuilder("The jdk HTTP transport needs Java 11 or later (running on ")
+                    .append(System.getProperty("java.version")).append(").")
+                    .toString()
+                );
+            }
+            return createProviderHttpClient(name, JDK_PROVIDER, "com.azure:azure-core-http-jdk-httpclient");
+
+            default:
+            throw new IllegalArgumentException(
+                new StringBuilder("Unknown HTTP transport \"").append(transport).append("\". ")
+                .append("Set ").append(TRANSPORT_NETTY).append(", ").append(TRANSPORT_OKHTTP).append(" or ").append(TRANSPORT_JDK)
+                .append(" for ").append(JMPROPS_TRANSPORT).append(" in the jmeter.properties file or user.properties file.")
+                .toString()
+            );
+        }
+    }
+
+    private static HttpClient createNettyHttpClient() {
+        int maxConnections = getIntProperty(JMPROPS_MAX_CONNECTIONS, 500);
+        int pendingAcquireMaxCount = getIntProperty(JMPROPS_PENDING_ACQUIRE_MAX_COUNT, 10000);
+        ConnectionProvider.Builder pool = ConnectionProvider.builder(PLUGIN)
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMaxCount)
+            .pendingAcquireTimeout(getDurationProperty(JMPROPS_PENDING_ACQUIRE_TIMEOUT, 45000));
+        Duration maxIdleTime = getDurationProperty(JMPROPS_MAX_IDLE_TIME, 60000);
+        if (!maxIdleTime.isZero()) {
+            pool.maxIdleTime(maxIdleTime);
+        }
+        Duration evictionInterval = getDurationProperty(JMPROPS_EVICTION_INTERVAL, 30000);
+        if (!evictionInterval.isZero()) {
+            pool.evictInBackground(evictionInterval);
+        }
+
+        int connectTimeout = getIntProperty(JMPROPS_CONNECT_TIMEOUT, 10000);
+        reactor.netty.http.client.HttpClient nettyClient = reactor.netty.http.client.HttpClient.create(pool.build())
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout);
+
+        NettyAsyncHttpClientBuilder builder = new NettyAsyncHttpClientBuilder(nettyClient)
+            .readTimeout(getDurationProperty(JMPROPS_READ_TIMEOUT, 60000))
+            .writeTimeout(getDurationProperty(JMPROPS_WRITE_TIMEOUT, 60000))
+            .responseTimeout(getDurationProperty(JMPROPS_RESPONSE_TIMEOUT, 60000));
+
+        ProxyOptions proxyOptions = proxyOptions();
+        if (proxyOptions != null) {
+            builder.proxy(proxyOptions);
+        }
+
+        log.info("HTTP client (netty): max connections per host {}, pending acquire max count {}, connect timeout {} ms{}.",
+            maxConnections, pendingAcquireMaxCount, connectTimeout, describeProxy());
+        return builder.build();
+    }
+
+    /**
+     * Create a client of another azure-core HTTP transport through its {@link HttpClientProvider}.
+     * HttpClientOptions has no connect timeout, so the transport keeps its own default.
+     */
+    private static HttpClient createProviderHttpClient(String transport, String providerClassName, String artifact) {
+        int maxConnections = getIntProperty(JMPROPS_MAX_CONNECTIONS, 500);
+        HttpClientOptions options = new HttpClientOptions()
+            .setProxyOptions(proxyOptions())
+            .setReadTimeout(getDurationProperty(JMPROPS_READ_TIMEOUT, 60000))
+            .setWriteTimeout(getDurationProperty(JMPROPS_WRITE_TIMEOUT, 60000))
+            .setResponseTimeout(getDurationProperty(JMPROPS_RESPONSE_TIMEOUT, 60000))
+            .setMaximumConnectionPoolSize(maxConnections);
+        Duration maxIdleTime = getDurationProperty(JMPROPS_MAX_IDLE_TIME, 60000);
+        if (!maxIdleTime.isZero()) {
+            options.setConnectionIdleTimeout(maxIdleTime);
+        }
+
+        HttpClient client;
+        try {
+            HttpClientProvider provider = Class.forName(providerClassName).asSubclass(HttpClientProvider.class)
+                .getDeclaredConstructor().newInstance();
+            client = provider.createInstance(options);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException(
+                new StringBuilder("The ").append(transport).append(" HTTP transport is not installed. ")
+                .append("Copy ").append(artifact).append(" and its dependencies to lib/ext.")
+                .toString(), ex
+            );
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException | LinkageError ex) {
+            throw new IllegalStateException(
+                new StringBuilder("Failed to create the ").append(transport).append(" HTTP transport. ")
+                .append("Check that ").append(artifact).append(" matches the version of azure-core. ")
+                .append(ex.toString())
+                .toString(), ex
+            );
+        }
+
+        log.info("HTTP client ({}): max connections {}{}.", transport, maxConnections, describeProxy());
+        return client;
+    }
+
+    /**
+     * @return the proxy of the shared proxy settings, or null if no proxy is set
+     */
+    private static ProxyOptions proxyOptions() {
+        AzUtilProxyConfig proxy = AzUtilProxyConfig.get();
+        if (!proxy.isEnabled()) {
+            return null;
+        }
+        InetSocketAddress address = new InetSocketAddress(proxy.getHost(), proxy.getPort());
+        ProxyOptions proxyOptions = new ProxyOptions(ProxyOptions.Type.HTTP, address).setNonProxyHosts(proxy.getNonProxyHosts());
+        if (proxy.hasCredentials()) {
+            proxyOptions.setCredentials(proxy.getUser(), proxy.getPassword());
+        }
+        return proxyOptions;
+    }
+
+    private static String describeProxy() {
+        AzUtilProxyConfig proxy = AzUtilProxyConfig.get();
+        return proxy.isEnabled() ? ", proxy ".concat(proxy.getHost()).concat(":").concat(String.valueOf(proxy.getPort())) : "";
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        String value = JMeterUtils.getPropDefault(name, "").trim();
+        try {
+            return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(name).concat("]"));
+        }
+    }
+
+    /**
+     * @return the duration of a property in milliseconds
+     */
+    private static Duration getDurationProperty(String name, long defaultMillis) {
+        return Duration.ofMillis(getIntProperty(name, (int) defaultMillis));
     }
-}
\ No newline at end of file
+}
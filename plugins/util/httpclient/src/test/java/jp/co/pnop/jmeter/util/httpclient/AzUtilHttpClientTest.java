@@ -0,0 +1,73 @@
+package jp.co.pnop.jmeter.util.httpclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class AzUtilHttpClientTest {
+
+    private static HttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        File properties = File.createTempFile("jmeter", ".properties");
+        properties.deleteOnExit();
+        JMeterUtils.loadJMeterProperties(properties.getAbsolutePath());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void nettyTransportSendsRequests() {
+        assertRoundTrip(AzUtilHttpClient.createHttpClient(AzUtilHttpClient.TRANSPORT_NETTY));
+    }
+
+    @Test
+    public void jdkTransportSendsRequests() {
+        assumeFalse(System.getProperty("java.specification.version").startsWith("1."), "the jdk transport needs Java 11");
+        assertRoundTrip(AzUtilHttpClient.createHttpClient(" JDK "));
+    }
+
+    @Test
+    public void unknownTransportIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AzUtilHttpClient.createHttpClient("curl"));
+    }
+
+    private static void assertRoundTrip(HttpClient client) {
+        for (int i = 0; i < 3; i++) {
+            String path = "/queue/messages/".concat(String.valueOf(i));
+            String url = "http://127.0.0.1:".concat(String.valueOf(server.getAddress().getPort())).concat(path);
+            HttpResponse response = client.send(new HttpRequest(HttpMethod.GET, url)).block();
+            assertEquals(200, response.getStatusCode());
+            assertEquals(path, response.getBodyAsString().block());
+        }
+    }
+}
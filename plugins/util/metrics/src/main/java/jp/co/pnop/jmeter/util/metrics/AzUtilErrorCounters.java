@@ -0,0 +1,200 @@
+package jp.co.pnop.jmeter.util.metrics;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts the failures of the samplers per sampler and error class, and logs a summary
+ * of the errors periodically while there are new ones.
+ * <p>
+ * The error class is also set as the response code of the failed sample, so that
+ * throttling (ServerBusy, QuotaExceeded) can be told apart from timeouts and
+ * authorization errors in listeners. The classes are chosen by the classifier of each
+ * protocol; {@link #classifyCause(Throwable)} covers the exceptions of the JDK.
+ * <p>
+ * Counting is lock-free and can be called from any sampler or SDK thread.
+ */
+public class AzUtilErrorCounters {
+    private static final Logger log = LoggerFactory.getLogger(AzUtilErrorCounters.class);
+
+    private static final String PLUGIN = "azure_util_errors";
+    private static final String JMPROPS_CATEGORY = PLUGIN.toLowerCase();
+    private static final String JMPROPS_SUMMARY_INTERVAL = new StringBuilder(JMPROPS_CATEGORY).append(".summary_interval").toString();
+
+    public static final String SERVER_BUSY = "ServerBusy";
+    public static final String QUOTA_EXCEEDED = "QuotaExceeded";
+    public static final String TIMEOUT = "Timeout";
+    public static final String UNAUTHORIZED = "Unauthorized";
+    public static final String NOT_FOUND = "NotFound";
+    public static final String MESSAGE_SIZE_EXCEEDED = "MessageSizeExceeded";
+    public static final String LOCK_LOST = "LockLost";
+    public static final String CONNECTION = "ConnectionError";
+    public static final String CLIENT = "ClientError";
+    public static final String OTHER = "OtherError";
+
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    // counts at the last summary, only used by the summary
+    private static final Map<String, Long> lastCounts = new HashMap<>();
+    private static ScheduledExecutorService scheduler = null;
+
+    private AzUtilErrorCounters() {
+    }
+
+    /**
+     * Count one error.
+     *
+     * @param sampler    sampler label
+     * @param errorClass class of the error, e.g. {@link #SERVER_BUSY}
+     */
+    public static void count(String sampler, String errorClass) {
+        count(sampler, errorClass, 1);
+    }
+
+    /**
+     * Count errors of the same class, e.g. the sends of an open-model sample that timed out.
+     *
+     * @param sampler    sampler label
+     * @param errorClass class of the errors
+     * @param errors     number of errors; nothing is counted if 0 or less
+     */
+    public static void count(String sampler, String errorClass, long errors) {
+        if (errors <= 0) {
+            return;
+        }
+        String key = sampler.concat("/").concat(errorClass);
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+            start();
+        }
+        counter.add(errors);
+    }
+
+    /**
+     * @return the number of errors of the class counted for the sampler since the test started
+     */
+    public static long getCount(String sampler, String errorClass) {
+        LongAdder counter = counters.get(sampler.concat("/").concat(errorClass));
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Classify the exceptions of the JDK found on the cause chain, for errors that did not
+     * come with an error code of the service.
+     *
+     * @param ex the error
+     * @return {@link #TIMEOUT}, {@link #CONNECTION}, {@link #CLIENT} or {@link #OTHER}
+     */
+    public static String classifyCause(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof SocketTimeoutException) {
+                return TIMEOUT;
+            }
+            if (cause instanceof UnknownHostException || cause instanceof ConnectException
+                || cause instanceof ClosedChannelException
+                || cause.getClass().getTypeName().equals("io.netty.channel.AbstractChannel$AnnotatedConnectException")) {
+                return CONNECTION;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        if (ex instanceof IllegalArgumentException || ex instanceof IllegalStateException
+            || ex instanceof FileNotFoundException) {
+            return CLIENT;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Summarize the errors counted since the test started.
+     *
+     * @param sinceLast whether to add the number of errors since the last summary
+     * @return e.g. "Sampler A: ServerBusy 120 (+20), Timeout 3 (+0)", one line per sampler
+     */
+    public static synchronized String summary(boolean sinceLast) {
+        Map<String, Map<String, Long>> samplers = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            int slash = counter.getKey().lastIndexOf('/');
+            samplers.computeIfAbsent(counter.getKey().substring(0, slash), s -> new TreeMap<>())
+                .put(counter.getKey().substring(slash + 1), counter.getValue().sum());
+        }
+
+        String summary = "";
+        for (Map.Entry<String, Map<String, Long>> sampler : samplers.entrySet()) {
+            String line = sampler.getKey().concat(":");
+            String separator = " ";
+            for (Map.Entry<String, Long> errorClass : sampler.getValue().entrySet()) {
+                line = line.concat(separator).concat(errorClass.getKey()).concat(" ").concat(String.valueOf(errorClass.getValue()));
+                if (sinceLast) {
+                    String key = sampler.getKey().concat("/").concat(errorClass.getKey());
+                    long previous = lastCounts.getOrDefault(key, 0L);
+                    line = line.concat(" (+").concat(String.valueOf(errorClass.getValue() - previous)).concat(")");
+                    lastCounts.put(key, errorClass.getValue());
+                }
+                separator = ", ";
+            }
+            summary = summary.concat(summary.isEmpty() ? "" : "\n").concat(line);
+        }
+        return summary;
+    }
+
+    /**
+     * Log the last summary and reset the counters for the next test.
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        if (!counters.isEmpty()) {
+            log.info("Errors by class:\n{}", summary(false));
+        }
+        counters.clear();
+        lastCounts.clear();
+    }
+
+    private static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        long interval = Long.parseLong(JMeterUtils.getPropDefault(JMPROPS_SUMMARY_INTERVAL, "10").trim());
+        if (interval <= 0) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AzUtilErrorCounters");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(AzUtilErrorCounters::logSummary, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static synchronized void logSummary() {
+        long total = 0;
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            total += counter.getValue().sum() - lastCounts.getOrDefault(counter.getKey(), 0L);
+        }
+        if (total > 0) {
+            log.warn("{} errors since the last summary:\n{}", total, summary(true));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package jp.co.pnop.jmeter.util.metrics;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records HdrHistograms per sampler and entity, and writes them periodically
+ * to an interval histogram log (.hlog).
+ * <p>
+ * Recording is wait-free and can be called from any sampler thread. Nothing is
+ * recorded unless "azure_util_metrics.enabled" is set to true.
+ * <p>
+ * Each histogram in the log is tagged "&lt;metric&gt;/&lt;sampler&gt;/&lt;entity&gt;".
+ * Latencies are recorded in microseconds, batch sizes in messages and payloads in bytes.
+ * <p>
+ * Each engine of a distributed test writes its own log, named after the engine. The
+ * histograms of the logs can be added up into exact percentiles over all engines with
+ * {@link AzUtilMetricsMerge}.
+ */
+public class AzUtilMetrics {
+    private static final Logger log = LoggerFactory.getLogger(AzUtilMetrics.class);
+
+    private static final String PLUGIN = "azure_util_metrics";
+    private static final String JMPROPS_CATEGORY = PLUGIN.toLowerCase();
+    private static final String JMPROPS_ENABLED = new StringBuilder(JMPROPS_CATEGORY).append(".enabled").toString();
+    private static final String JMPROPS_DIRECTORY = new StringBuilder(JMPROPS_CATEGORY).append(".directory").toString();
+    private static final String JMPROPS_INTERVAL = new StringBuilder(JMPROPS_CATEGORY).append(".interval").toString();
+    private static final String JMPROPS_SIGNIFICANT_DIGITS = new StringBuilder(JMPROPS_CATEGORY).append(".significant_digits").toString();
+    private static final String JMPROPS_ENGINE = new StringBuilder(JMPROPS_CATEGORY).append(".engine").toString();
+
+    public static final String METRIC_SEND_LATENCY = "send_latency_us";
+    public static final String METRIC_BATCH_SIZE = "batch_size";
+    public static final String METRIC_BYTES = "bytes";
+    public static final String METRIC_RETRY_TIME = "retry_time_us";
+    public static final String METRIC_RETRIES = "retries";
+    public static final String METRIC_ELAPSED = "elapsed_ms";
+    public static final String METRIC_WARMUP = "warmup_ms";
+
+    private static final Map<String, IntervalRecorder> recorders = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService scheduler = null;
+    private static HistogramLogWriter writer = null;
+    private static PrintStream logStream = null;
+
+    private static volatile Boolean enabled = null;
+
+    private AzUtilMetrics() {
+    }
+
+    /**
+     * @return whether "azure_util_metrics.enabled" is set to true
+     */
+    public static boolean isEnabled() {
+        if (enabled == null) {
+            enabled = Boolean.valueOf(JMeterUtils.getPropDefault(JMPROPS_ENABLED, "false").trim());
+        }
+        return enabled;
+    }
+
+    /**
+     * Record one send.
+     *
+     * @param sampler       sampler label
+     * @param entity        Event Hub, queue or topic the send went to
+     * @param latencyMicros time spent in the send call
+     * @param batchSize     number of messages in the send
+     * @param bytes         payload bytes in the send
+     */
+    public static void recordSend(String sampler, String entity, long latencyMicros, long batchSize, long bytes) {
+        if (!isEnabled()) {
+            return;
+        }
+        recordValue(METRIC_SEND_LATENCY, sampler, entity, latencyMicros);
+        recordValue(METRIC_BATCH_SIZE, sampler, entity, batchSize);
+        recordValue(METRIC_BYTES, sampler, entity, bytes);
+    }
+
+    /**
+     * Record the elapsed time of a sample, as reported by listeners, under the sampler label.
+     *
+     * @param sampler sampler label
+     * @param res     the sample; if it was not ended, the time until now is recorded
+     */
+    public static void recordSample(String sampler, SampleResult res) {
+        if (!isEnabled()) {
+            return;
+        }
+        long elapsed = res.getEndTime() > 0 ? res.getTime() : System.currentTimeMillis() - res.getStartTime();
+        recordValue(METRIC_ELAPSED, sampler, "", elapsed);
+    }
+
+    /**
+     * Record a value to the histogram of the metric, sampler and entity.
+     *
+     * @param metric  metric name
+     * @param sampler sampler label
+     * @param entity  Event Hub, queue or topic
+     * @param value   value to record (negative values are recorded as 0)
+     */
+    public static void recordValue(String metric, String sampler, String entity, long value) {
+        if (!isEnabled()) {
+            return;
+        }
+        String key = metric.concat("/").concat(sampler).concat("/").concat(entity == null ? "" : entity);
+        IntervalRecorder recorder = recorders.get(key);
+        if (recorder == null) {
+            recorder = recorders.computeIfAbsent(key, IntervalRecorder::new);
+            start();
+        }
+        recorder.recordValue(Math.max(0, value));
+    }
+
+    /**
+     * Write the last interval and close the histogram log. Recording after this
+     * starts a new log file.
+     */
+    public static synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        writeIntervals();
+        logStream.close();
+        scheduler = null;
+        writer = null;
+        logStream = null;
+        recorders.clear();
+        enabled = null;
+    }
+
+    private static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        String directory = JMeterUtils.getPropDefault(JMPROPS_DIRECTORY, ".").trim();
+        long interval = Long.parseLong(JMeterUtils.getPropDefault(JMPROPS_INTERVAL, "10").trim());
+        String engine = JMeterUtils.getPropDefault(JMPROPS_ENGINE, hostName()).trim().replaceAll("[^A-Za-z0-9_.-]", "_");
+        File file = new File(directory, "azure-metrics-".concat(engine).concat("-")
+            .concat(new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date())).concat("-")
+            .concat(pid()).concat(".hlog"));
+        try {
+            file.getParentFile().mkdirs();
+            logStream = new PrintStream(file, "UTF-8");
+        } catch (FileNotFoundException | UnsupportedEncodingException ex) {
+            log.error("Could not open histogram log {}. Metrics are disabled.", file, ex);
+            enabled = false;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        writer = new HistogramLogWriter(logStream);
+        writer.outputLogFormatVersion();
+        writer.outputComment("Azure samplers: " + METRIC_SEND_LATENCY + " in microseconds, " + METRIC_BATCH_SIZE + " in messages, " + METRIC_BYTES + " in bytes, " + METRIC_ELAPSED + " and " + METRIC_WARMUP + " in milliseconds");
+        writer.outputComment("Engine: " + engine);
+        writer.outputStartTime(now);
+        writer.setBaseTime(now);
+        writer.outputLegend();
+        log.info("Writing histogram log to {} every {} seconds.", file.getAbsolutePath(), interval);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AzUtilMetrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(AzUtilMetrics::writeIntervals, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static synchronized void writeIntervals() {
+        if (writer == null) {
+            return;
+        }
+        for (IntervalRecorder recorder : recorders.values()) {
+            Histogram histogram = recorder.getIntervalHistogram();
+            if (histogram.getTotalCount() > 0) {
+                writer.outputIntervalHistogram(histogram);
+            }
+        }
+        logStream.flush();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            return "localhost";
+        }
+    }
+
+    private static String pid() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : name;
+    }
+
+    /**
+     * A recorder and the histogram that is recycled for each interval.
+     */
+    static class IntervalRecorder {
+        private final String tag;
+        private final Recorder recorder;
+        private Histogram interval = null;
+
+        IntervalRecorder(String key) {
+            // Tags in histogram logs must not contain commas or whitespace.
+            this.tag = key.replaceAll("[,\\s]", "_");
+            this.recorder = new Recorder(Integer.parseInt(JMeterUtils.getPropDefault(JMPROPS_SIGNIFICANT_DIGITS, "3").trim()));
+        }
+
+        void recordValue(long value) {
+            recorder.recordValue(value);
+        }
+
+        Histogram getIntervalHistogram() {
+            interval = recorder.getIntervalHistogram(interval);
+            interval.setTag(tag);
+            return interval;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package jp.co.pnop.jmeter.util.metrics;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+
+/**
+ * Merges the histogram logs written by {@link AzUtilMetrics} on several engines, and
+ * reports exact percentiles over all engines for each tag ("&lt;metric&gt;/&lt;sampler&gt;/&lt;entity&gt;").
+ * <p>
+ * The interval histograms of all logs are added up per tag. Unlike averaging the
+ * percentiles of each engine, the percentiles of the sum are the percentiles of all
+ * recorded values, to the precision of the histograms.
+ * <pre>
+ * java -jar jmeter-plugins-azure-util-metrics-0.1.0.jar [-start seconds] [-end seconds]
+ *     [-percentiles 50,90,99] [-csv] [-o merged.hlog] (file.hlog | directory) ...
+ * </pre>
+ */
+public class AzUtilMetricsMerge {
+
+    public static final double[] DEFAULT_PERCENTILES = {50.0, 90.0, 95.0, 99.0, 99.9, 99.99};
+
+    private final double startSeconds;
+    private final double endSeconds;
+    private final Map<String, Histogram> histograms = new TreeMap<>();
+    private int logs = 0;
+
+    /**
+     * @param startSeconds skip the intervals that start before this offset from the start of each log, e.g. the warm-up
+     * @param endSeconds   skip the intervals that end after this offset from the start of each log
+     */
+    public AzUtilMetricsMerge(double startSeconds, double endSeconds) {
+        this.startSeconds = startSeconds;
+        this.endSeconds = endSeconds;
+    }
+
+    public AzUtilMetricsMerge() {
+        this(0.0, Double.MAX_VALUE);
+    }
+
+    /**
+     * Add the histograms of a log, or of all logs (*.hlog) in a directory.
+     *
+     * @param file histogram log or directory
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public void add(File file) throws FileNotFoundException {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles((dir, name) -> name.endsWith(".hlog"));
+            if (files != null) {
+                for (File log : files) {
+                    add(log);
+                }
+            }
+            return;
+        }
+
+        HistogramLogReader reader = new HistogramLogReader(file);
+        try {
+            EncodableHistogram interval;
+            while ((interval = reader.nextIntervalHistogram(startSeconds, endSeconds)) != null) {
+                if (interval instanceof Histogram) {
+                    add((Histogram) interval);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        logs++;
+    }
+
+    /**
+     * Add an interval histogram to the sum of its tag.
+     */
+    public void add(Histogram interval) {
+        String tag = interval.getTag() == null ? "" : interval.getTag();
+        Histogram sum = histograms.get(tag);
+        if (sum == null) {
+            // auto-resizing, so that the logs of engines may have different value ranges
+            sum = new Histogram(interval.getNumberOfSignificantValueDigits());
+            sum.setTag(tag);
+            sum.setStartTimeStamp(interval.getStartTimeStamp());
+            sum.setEndTimeStamp(interval.getEndTimeStamp());
+            histograms.put(tag, sum);
+        }
+        sum.add(interval);
+        sum.setStartTimeStamp(Math.min(sum.getStartTimeStamp(), interval.getStartTimeStamp()));
+        sum.setEndTimeStamp(Math.max(sum.getEndTimeStamp(), interval.getEndTimeStamp()));
+    }
+
+    /**
+     * @return the merged histograms by tag
+     */
+    public Map<String, Histogram> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * @return the number of logs added
+     */
+    public int getLogs() {
+        return logs;
+    }
+
+    /**
+     * @param percentiles percentiles to report, e.g. 99.9
+     * @param csv         comma separated values with a header instead of a table
+     * @return count, min, mean, percentiles and max of each tag
+     */
+    public String report(double[] percentiles, boolean csv) {
+        List<String> header = new ArrayList<>();
+        header.add("tag");
+        header.add("count");
+        header.add("min");
+        header.add("mean");
+        for (double percentile : percentiles) {
+            header.add("p".concat(formatPercentile(percentile)));
+        }
+        header.add("max");
+
+        List<List<String>> rows = new ArrayList<>();
+        rows.add(header);
+        for (Histogram histogram : histograms.values()) {
+            List<String> row = new ArrayList<>();
+            row.add(histogram.getTag());
+            row.add(String.valueOf(histogram.getTotalCount()));
+            row.add(String.valueOf(histogram.getMinValue()));
+            row.add(String.format("%.1f", histogram.getMean()));
+            for (double percentile : percentiles) {
+                row.add(String.valueOf(histogram.getValueAtPercentile(percentile)));
+            }
+            row.add(String.valueOf(histogram.getMaxValue()));
+            rows.add(row);
+        }
+
+        String report = "";
+        if (csv) {
+            for (List<String> row : rows) {
+                report = report.concat(String.join(",", row)).concat("\n");
+            }
+            return report;
+        }
+
+        int[] widths = new int[header.size()];
+        for (List<String> row : rows) {
+            for (int i = 0; i < row.size(); i++) {
+                widths[i] = Math.max(widths[i], row.get(i).length());
+            }
+        }
+        for (List<String> row : rows) {
+            String line = String.format("%-" + widths[0] + "s", row.get(0));
+            for (int i = 1; i < row.size(); i++) {
+                line = line.concat("  ").concat(String.format("%" + widths[i] + "s", row.get(i)));
+            }
+            report = report.concat(line).concat("\n");
+        }
+        return report;
+    }
+
+    /**
+     * Write the merged histograms to a histogram log, one histogram per tag.
+     *
+     * @param file histogram log to write
+     */
+    public void write(File file) throws FileNotFoundException, UnsupportedEncodingException {
+        long baseTime = Long.MAX_VALUE;
+        for (Histogram histogram : histograms.values()) {
+            baseTime = Math.min(baseTime, histogram.getStartTimeStamp());
+        }
+        if (baseTime == Long.MAX_VALUE) {
+            baseTime = System.currentTimeMillis();
+        }
+
+        try (PrintStream stream = new PrintStream(file, "UTF-8")) {
+            HistogramLogWriter writer = new HistogramLogWriter(stream);
+            writer.outputLogFormatVersion();
+            writer.outputComment("Merged from " + logs + " histogram logs");
+            writer.outputStartTime(baseTime);
+            writer.setBaseTime(baseTime);
+            writer.outputLegend();
+            for (Histogram histogram : histograms.values()) {
+                writer.outputIntervalHistogram(histogram);
+            }
+        }
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java -jar jmeter-plugins-azure-util-metrics.jar [-start seconds] [-end seconds]"
+            + " [-percentiles 50,90,99] [-csv] [-o merged.hlog] (file.hlog | directory) ...");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        double start = 0.0;
+        double end = Double.MAX_VALUE;
+        double[] percentiles = DEFAULT_PERCENTILES;
+        boolean csv = false;
+        String output = null;
+        List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-csv")) {
+                csv = true;
+            } else if (args[i].startsWith("-")) {
+                if (i + 1 >= args.length) {
+                    usage();
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "-start":
+                        start = Double.parseDouble(value);
+                        break;
+                    case "-end":
+                        end = Double.parseDouble(value);
+                        break;
+                    case "-percentiles":
+                        String[] values = value.split(",");
+                        percentiles = new double[values.length];
+                        for (int j = 0; j < values.length; j++) {
+                            percentiles[j] = Double.parseDouble(values[j].trim());
+                        }
+                        break;
+                    case "-o":
+                        output = value;
+                        break;
+                    default:
+                        usage();
+                }
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            usage();
+        }
+
+        AzUtilMetricsMerge merge = new AzUtilMetricsMerge(start, end);
+        for (File file : files) {
+            merge.add(file);
+        }
+        System.err.println("Merged " + merge.getLogs() + " histogram logs");
+        System.out.print(merge.report(percentiles, csv));
+        if (output != null) {
+            merge.write(new File(output));
+        }
+    }
+}
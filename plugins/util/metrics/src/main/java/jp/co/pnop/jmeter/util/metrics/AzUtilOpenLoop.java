@@ -0,0 +1,334 @@
+package jp.co.pnop.jmeter.util.metrics;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Issues asynchronous sends at a fixed arrival rate, independently of how fast
+ * the previous sends complete (open workload model).
+ * <p>
+ * Every send has an intended start time on a fixed schedule. The time between
+ * the intended start and the actual dispatch is reported as queueing delay, the
+ * time between dispatch and completion as service time, and the time between
+ * the intended start and completion as the coordinated-omission-corrected
+ * latency. The latencies are recorded into histograms, so the memory used does
+ * not grow with the number of sends.
+ */
+public class AzUtilOpenLoop {
+    private static final Logger log = LoggerFactory.getLogger(AzUtilOpenLoop.class);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Completion of one send. Only the first call counts; calls after the drain
+     * timed out the send are ignored.
+     */
+    public interface Completion {
+        void succeeded();
+
+        void failed(Throwable error);
+    }
+
+    /**
+     * Starts one send.
+     */
+    @FunctionalInterface
+    public interface Sender {
+        /**
+         * @param completion to call, from any thread, when the send completes
+         */
+        void send(Completion completion);
+    }
+
+    private final double sendsPerSecond;
+    private final long durationMillis;
+    private final long drainTimeoutMillis;
+
+    /**
+     * @param sendsPerSecond     number of sends to issue per second
+     * @param durationMillis     length of the dispatch window
+     * @param drainTimeoutMillis how long to wait for outstanding sends after the window
+     */
+    public AzUtilOpenLoop(double sendsPerSecond, long durationMillis, long drainTimeoutMillis) {
+        this.sendsPerSecond = sendsPerSecond;
+        this.durationMillis = durationMillis;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    /**
+     * Run the dispatch window on the calling thread.
+     *
+     * @param sender  starts the send on every tick; a RuntimeException counts as a failed send
+     * @param onError called with the error of every failed send, from the thread the send failed on
+     * @return the measurements of the window
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Summary run(Sender sender, Consumer<Throwable> onError) throws InterruptedException {
+        final long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / sendsPerSecond);
+        final int total = (int) Math.max(1, Math.round(sendsPerSecond * durationMillis / 1000.0));
+        final Window window = new Window(total, onError);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            final long intended = start + periodNanos * i;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            final Send send = window.dispatch(intended);
+            try {
+                sender.send(send);
+            } catch (RuntimeException ex) {
+                send.failed(ex);
+            }
+        }
+        final long dispatchEnd = System.nanoTime();
+
+        final long end = window.drain(drainTimeoutMillis);
+        return new Summary(window, start, dispatchEnd, end);
+    }
+
+    private static final class Send implements Completion {
+        private final Window window;
+        private final long intended;
+        private final long dispatched;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        private Send(Window window, long intended, long dispatched) {
+            this.window = window;
+            this.intended = intended;
+            this.dispatched = dispatched;
+        }
+
+        @Override
+        public void succeeded() {
+            window.complete(this, null);
+        }
+
+        @Override
+        public void failed(Throwable error) {
+            window.complete(this, error);
+        }
+    }
+
+    /**
+     * State of one dispatch window. A send is counted exactly once, by whichever
+     * of its completion and the end of the drain finishes it first.
+     */
+    private static final class Window {
+        private final int total;
+        private final Consumer<Throwable> onError;
+        private final Recorder queueing = new Recorder(SIGNIFICANT_DIGITS, true);
+        private final Recorder service = new Recorder(SIGNIFICANT_DIGITS, true);
+        private final Recorder corrected = new Recorder(SIGNIFICANT_DIGITS, true);
+        // sends that have been dispatched but not finished yet
+        private final Set<Send> pending = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch outstanding;
+        private final AtomicInteger completed = new AtomicInteger(0);
+        private final AtomicInteger failed = new AtomicInteger(0);
+        private final AtomicLong lastCompletion = new AtomicLong(0);
+        private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+        private int timedOut = 0;
+
+        private Window(int total, Consumer<Throwable> onError) {
+            this.total = total;
+            this.onError = onError;
+            this.outstanding = new CountDownLatch(total);
+        }
+
+        private Send dispatch(long intended) {
+            final Send send = new Send(this, intended, System.nanoTime());
+            queueing.recordValue(send.dispatched - intended);
+            pending.add(send);
+            return send;
+        }
+
+        // called from the threads the sends complete on
+        private void complete(Send send, Throwable error) {
+            final long now = System.nanoTime();
+            if (!send.finished.compareAndSet(false, true)) {
+                // already completed, or counted as timed out
+                return;
+            }
+            pending.remove(send);
+            service.recordValue(now - send.dispatched);
+            corrected.recordValue(now - send.intended);
+            lastCompletion.accumulateAndGet(now, Math::max);
+            if (error != null) {
+                failed.incrementAndGet();
+                firstError.compareAndSet(null, error);
+                onError.accept(error);
+            }
+            completed.incrementAndGet();
+            outstanding.countDown();
+        }
+
+        /**
+         * Wait for the outstanding sends and count the ones that did not complete
+         * in time as timed out. When this returns, no send is counted any more.
+         *
+         * @return the end of the window
+         */
+        private long drain(long drainTimeoutMillis) throws InterruptedException {
+            final boolean drained = outstanding.await(drainTimeoutMillis, TimeUnit.MILLISECONDS);
+            final long end = System.nanoTime();
+            if (!drained) {
+                for (Send send : pending) {
+                    if (send.finished.compareAndSet(false, true)) {
+                        // Still outstanding: count it as at least as slow as the end of the drain.
+                        corrected.recordValue(end - send.intended);
+                        timedOut++;
+                        outstanding.countDown();
+                    }
+                }
+                // Completions that finished their send before the loop above are still recording.
+                outstanding.await();
+                log.warn("{} of {} sends did not complete within {} ms.", timedOut, total, drainTimeoutMillis);
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Measurements of one dispatch window. Times are in nanoseconds.
+     */
+    public static class Summary {
+        private final int total;
+        private final int completed;
+        private final int failed;
+        private final int timedOut;
+        private final Throwable firstError;
+        private final long dispatchNanos;
+        private final long completionNanos;
+        private final long elapsedNanos;
+        private final Histogram queueing;
+        private final Histogram service;
+        private final Histogram corrected;
+
+        private Summary(Window window, long start, long dispatchEnd, long end) {
+            // Every send has been finished by the drain, so the counters and histograms no longer change.
+            this.total = window.total;
+            this.completed = window.completed.get();
+            this.failed = window.failed.get();
+            this.timedOut = window.timedOut;
+            this.firstError = window.firstError.get();
+            this.dispatchNanos = dispatchEnd - start;
+            this.completionNanos = (timedOut > 0 ? end : Math.max(dispatchEnd, window.lastCompletion.get())) - start;
+            this.elapsedNanos = end - start;
+            this.queueing = window.queueing.getIntervalHistogram();
+            this.service = window.service.getIntervalHistogram();
+            this.corrected = window.corrected.getIntervalHistogram();
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getSucceeded() {
+            return completed - failed;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getTimedOut() {
+            return timedOut;
+        }
+
+        public Throwable getFirstError() {
+            return firstError;
+        }
+
+        /**
+         * @return sends dispatched per second
+         */
+        public double getAchievedSendRate() {
+            return dispatchNanos > 0 ? total * 1e9 / dispatchNanos : 0;
+        }
+
+        /**
+         * @return sends that succeeded per second, up to the last completion, or
+         *         up to the end of the drain if sends timed out
+         */
+        public double getSucceededSendRate() {
+            return completionNanos > 0 ? getSucceeded() * 1e9 / completionNanos : 0;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getQueueingPercentile(double percentile) {
+            return percentile(queueing, percentile);
+        }
+
+        public long getServicePercentile(double percentile) {
+            return percentile(service, percentile);
+        }
+
+        public long getCorrectedPercentile(double percentile) {
+            return percentile(corrected, percentile);
+        }
+
+        /**
+         * Pass every corrected latency to the consumer, once per send, at the
+         * resolution of the histogram.
+         *
+         * @param consumer receives the latencies in nanoseconds
+         */
+        public void forEachCorrectedLatency(LongConsumer consumer) {
+            for (HistogramIterationValue value : corrected.recordedValues()) {
+                for (long i = 0; i < value.getCountAtValueIteratedTo(); i++) {
+                    consumer.accept(value.getValueIteratedTo());
+                }
+            }
+        }
+
+        private static long percentile(Histogram histogram, double percentile) {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getValueAtPercentile(percentile);
+        }
+
+        private static String ms(long nanos) {
+            return String.format("%.3f", nanos / 1e6);
+        }
+
+        @Override
+        public String toString() {
+            return "Sends: ".concat(String.valueOf(total))
+                .concat(" (succeeded: ").concat(String.valueOf(getSucceeded()))
+                .concat(", failed: ").concat(String.valueOf(failed))
+                .concat(", timed out: ").concat(String.valueOf(getTimedOut())).concat(")\n")
+                .concat("Achieved send rate: ").concat(String.format("%.2f", getAchievedSendRate())).concat(" /s\n")
+                .concat("Queueing delay (ms): p50=").concat(ms(getQueueingPercentile(50)))
+                .concat(" p99=").concat(ms(getQueueingPercentile(99)))
+                .concat(" max=").concat(ms(getQueueingPercentile(100))).concat("\n")
+                .concat("Service time (ms): p50=").concat(ms(getServicePercentile(50)))
+                .concat(" p99=").concat(ms(getServicePercentile(99)))
+                .concat(" max=").concat(ms(getServicePercentile(100))).concat("\n")
+                .concat("Corrected latency (ms): p50=").concat(ms(getCorrectedPercentile(50)))
+                .concat(" p90=").concat(ms(getCorrectedPercentile(90)))
+                .concat(" p99=").concat(ms(getCorrectedPercentile(99)))
+                .concat(" p99.9=").concat(ms(getCorrectedPercentile(99.9)))
+                .concat(" max=").concat(ms(getCorrectedPercentile(100)));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package jp.co.pnop.jmeter.util.metrics;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the warm-up of the samplers (AMQP connections and links, Azure AD tokens, HTTP connections)
+ * when the JMeter threads start, so that the first samples do not pay for it. It is off unless
+ * "azure_util_warmup.enabled" is true.
+ * <p>
+ * Each warm-up is identified by a key and runs once per test, however many threads ask for it; the
+ * other threads wait for the same warm-up. The warm-ups run on a pool of "azure_util_warmup.concurrency"
+ * threads, and each one starts after a random delay of up to "azure_util_warmup.jitter" milliseconds,
+ * so that hundreds of starting threads do not open their connections at the same instant.
+ * <p>
+ * The warm-ups are not samples. Their durations are logged, recorded as "warmup_ms" in the
+ * {@link AzUtilMetrics latency histograms} and summarized when the test ends. A failed warm-up is
+ * only logged; the error is reported by the sample that runs into it.
+ */
+public class AzUtilWarmup {
+    private static final Logger log = LoggerFactory.getLogger(AzUtilWarmup.class);
+
+    private static final String PLUGIN = "azure_util_warmup";
+    private static final String JMPROPS_CATEGORY = PLUGIN.toLowerCase();
+    private static final String JMPROPS_ENABLED = new StringBuilder(JMPROPS_CATEGORY).append(".enabled").toString();
+    private static final String JMPROPS_CONCURRENCY = new StringBuilder(JMPROPS_CATEGORY).append(".concurrency").toString();
+    private static final String JMPROPS_JITTER = new StringBuilder(JMPROPS_CATEGORY).append(".jitter").toString();
+    private static final String JMPROPS_TIMEOUT = new StringBuilder(JMPROPS_CATEGORY).append(".timeout").toString();
+
+    private static volatile AzUtilWarmup warmup = null;
+
+    private final boolean enabled;
+    private final long jitterMillis;
+    private final long timeoutMillis;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<String, Future<Long>> warmups = new ConcurrentHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong longestMillis = new AtomicLong(0);
+
+    /**
+     * @param enabled       whether to warm up at all
+     * @param concurrency   maximum number of warm-ups running at the same time
+     * @param jitterMillis  maximum random delay before each warm-up starts
+     * @param timeoutMillis how long a thread waits for a warm-up before it starts sampling anyway
+     */
+    public AzUtilWarmup(boolean enabled, int concurrency, long jitterMillis, long timeoutMillis) {
+        this.enabled = enabled;
+        this.jitterMillis = Math.max(0, jitterMillis);
+        this.timeoutMillis = Math.max(0, timeoutMillis);
+        final AtomicInteger count = new AtomicInteger(0);
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "AzUtilWarmup-".concat(String.valueOf(count.incrementAndGet())));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the warm-up of the JMeter properties, created on first use
+     */
+    public static AzUtilWarmup get() {
+        AzUtilWarmup current = warmup;
+        if (current == null) {
+            synchronized (AzUtilWarmup.class) {
+                current = warmup;
+                if (current == null) {
+                    current = new AzUtilWarmup(
+                        Boolean.valueOf(JMeterUtils.getPropDefault(JMPROPS_ENABLED, "false").trim()),
+                        getIntProperty(JMPROPS_CONCURRENCY, 8),
+                        getIntProperty(JMPROPS_JITTER, 500),
+                        getIntProperty(JMPROPS_TIMEOUT, 10000)
+                    );
+                    warmup = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Log the summary of the warm-ups and forget them, so that the next test warms up again.
+     */
+    public static synchronized void stop() {
+        AzUtilWarmup current = warmup;
+        if (current == null) {
+            return;
+        }
+        warmup = null;
+        current.executor.shutdownNow();
+        if (!current.warmups.isEmpty()) {
+            log.info("Warm-up: {}", current.describe());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Run a warm-up once for the key, and wait until it has finished.
+     *
+     * @param sampler sampler label, for the report
+     * @param entity  Event Hub, queue, topic or credential that is warmed up, for the report
+     * @param key     identifies the warm-up; warm-ups with the same key run only once
+     * @param task    the warm-up
+     * @return whether the warm-up has finished without error
+     */
+    public boolean warmUp(String sampler, String entity, String key, Callable<?> task) {
+        if (!enabled) {
+            return false;
+        }
+        long delay = jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0;
+        Future<Long> future = warmups.computeIfAbsent(key, k -> executor.schedule(() -> {
+            long start = System.nanoTime();
+            try {
+                task.call();
+            } catch (Exception ex) {
+                failed.increment();
+                log.info("Warm-up of {} ({}) failed: {}", entity, sampler, ex.toString());
+                throw ex;
+            }
+            long millis = (System.nanoTime() - start) / 1000000;
+            completed.increment();
+            longestMillis.accumulateAndGet(millis, Math::max);
+            AzUtilMetrics.recordValue(AzUtilMetrics.METRIC_WARMUP, sampler, entity, millis);
+            log.info("Warm-up of {} ({}) took {} ms.", entity, sampler, millis);
+            return millis;
+        }, delay, TimeUnit.MILLISECONDS));
+
+        try {
+            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException ex) {
+            // logged once by the warm-up itself
+        } catch (TimeoutException ex) {
+            log.info("Warm-up of {} ({}) did not finish within {} ms.", entity, sampler, timeoutMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * @return e.g. "12 completed, 1 failed, longest 840 ms"
+     */
+    public String describe() {
+        return String.valueOf(completed.sum()).concat(" completed, ")
+            .concat(String.valueOf(failed.sum())).concat(" failed, longest ")
+            .concat(String.valueOf(longestMillis.get())).concat(" ms");
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        String value = JMeterUtils.getPropDefault(name, "").trim();
+        try {
+            return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(name).concat("]"));
+        }
+    }
+}
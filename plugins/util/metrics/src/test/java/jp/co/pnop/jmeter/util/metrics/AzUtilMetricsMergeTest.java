@@ -0,0 +1,89 @@
+package jp.co.pnop.jmeter.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.jupiter.api.Test;
+
+public class AzUtilMetricsMergeTest {
+
+    private static final String TAG = "send_latency_us/Sampler/hub";
+
+    private static void writeLog(File file, long startTime, long... values) throws IOException {
+        try (PrintStream stream = new PrintStream(file, "UTF-8")) {
+            HistogramLogWriter writer = new HistogramLogWriter(stream);
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startTime);
+            writer.setBaseTime(startTime);
+            writer.outputLegend();
+            // two intervals per log, as written every few seconds by AzUtilMetrics
+            for (int half = 0; half < 2; half++) {
+                Histogram interval = new Histogram(3);
+                interval.setTag(TAG);
+                interval.setStartTimeStamp(startTime + half * 10000);
+                interval.setEndTimeStamp(startTime + (half + 1) * 10000);
+                for (int i = half; i < values.length; i += 2) {
+                    interval.recordValue(values[i]);
+                }
+                writer.outputIntervalHistogram(interval);
+            }
+        }
+    }
+
+    @Test
+    public void percentilesOfMergedLogsAreThoseOfAllValues() throws IOException {
+        File directory = Files.createTempDirectory("azure-metrics").toFile();
+        long[] fast = new long[900];
+        long[] slow = new long[100];
+        Histogram all = new Histogram(3);
+        for (int i = 0; i < fast.length; i++) {
+            fast[i] = 1000 + i;
+            all.recordValue(fast[i]);
+        }
+        for (int i = 0; i < slow.length; i++) {
+            slow[i] = 50000 + i * 100;
+            all.recordValue(slow[i]);
+        }
+        long now = System.currentTimeMillis();
+        writeLog(new File(directory, "azure-metrics-engine1.hlog"), now, fast);
+        writeLog(new File(directory, "azure-metrics-engine2.hlog"), now + 500, slow);
+
+        AzUtilMetricsMerge merge = new AzUtilMetricsMerge();
+        merge.add(directory);
+        assertEquals(2, merge.getLogs());
+        Histogram merged = merge.getHistograms().get(TAG);
+        assertEquals(1000L, merged.getTotalCount());
+        assertEquals(all.getValueAtPercentile(50.0), merged.getValueAtPercentile(50.0));
+        assertEquals(all.getValueAtPercentile(95.0), merged.getValueAtPercentile(95.0));
+        assertEquals(all.getValueAtPercentile(99.9), merged.getValueAtPercentile(99.9));
+        assertEquals(all.getMaxValue(), merged.getMaxValue());
+
+        String report = merge.report(new double[] {50.0, 99.9}, true);
+        assertTrue(report.startsWith("tag,count,min,mean,p50,p99.9,max\n"), report);
+        assertTrue(report.contains(TAG.concat(",1000,")), report);
+
+        File output = new File(directory, "merged.hlog.out");
+        merge.write(output);
+        AzUtilMetricsMerge reread = new AzUtilMetricsMerge();
+        reread.add(output);
+        assertEquals(all.getValueAtPercentile(99.0), reread.getHistograms().get(TAG).getValueAtPercentile(99.0));
+    }
+
+    @Test
+    public void skipsIntervalsOutsideTheRange() throws IOException {
+        File file = File.createTempFile("azure-metrics", ".hlog");
+        writeLog(file, System.currentTimeMillis(), 1, 2, 3, 4);
+
+        // only the second interval (10 to 20 seconds) is after the warm-up
+        AzUtilMetricsMerge merge = new AzUtilMetricsMerge(5.0, Double.MAX_VALUE);
+        merge.add(file);
+        assertEquals(2L, merge.getHistograms().get(TAG).getTotalCount());
+    }
+}
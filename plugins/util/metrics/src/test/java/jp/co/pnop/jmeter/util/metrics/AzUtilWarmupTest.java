@@ -0,0 +1,69 @@
+package jp.co.pnop.jmeter.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class AzUtilWarmupTest {
+
+    @Test
+    public void sameKeyWarmsUpOnce() {
+        AzUtilWarmup warmup = new AzUtilWarmup(true, 4, 20, 10000);
+        AtomicInteger runs = new AtomicInteger(0);
+        List<CompletableFuture<Boolean>> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            threads.add(CompletableFuture.supplyAsync(() -> warmup.warmUp("sampler", "queue", "connection", () -> {
+                Thread.sleep(50);
+                return runs.incrementAndGet();
+            })));
+        }
+        for (CompletableFuture<Boolean> thread : threads) {
+            assertTrue(thread.join());
+        }
+        assertEquals(1, runs.get());
+        assertTrue(warmup.describe().startsWith("1 completed, 0 failed"));
+    }
+
+    @Test
+    public void concurrencyIsBounded() {
+        AzUtilWarmup warmup = new AzUtilWarmup(true, 3, 10, 10000);
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(0);
+        List<CompletableFuture<Boolean>> threads = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String key = "connection-".concat(String.valueOf(i));
+            threads.add(CompletableFuture.supplyAsync(() -> warmup.warmUp("sampler", "queue", key, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(30);
+                return running.decrementAndGet();
+            })));
+        }
+        for (CompletableFuture<Boolean> thread : threads) {
+            assertTrue(thread.join());
+        }
+        assertTrue(maxRunning.get() <= 3);
+        assertTrue(warmup.describe().startsWith("12 completed"));
+    }
+
+    @Test
+    public void failedOrDisabledWarmUpIsNotAnError() {
+        AzUtilWarmup warmup = new AzUtilWarmup(true, 1, 0, 10000);
+        assertFalse(warmup.warmUp("sampler", "queue", "broken", () -> {
+            throw new IOException("connection refused");
+        }));
+        assertTrue(warmup.describe().startsWith("0 completed, 1 failed"));
+
+        AzUtilWarmup disabled = new AzUtilWarmup(false, 1, 0, 10000);
+        AtomicInteger runs = new AtomicInteger(0);
+        assertFalse(disabled.warmUp("sampler", "queue", "connection", runs::incrementAndGet));
+        assertEquals(0, runs.get());
+    }
+}
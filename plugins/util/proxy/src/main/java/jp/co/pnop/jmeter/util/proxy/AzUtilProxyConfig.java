@@ -0,0 +1,202 @@
+package jp.co.pnop.jmeter.util.proxy;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * The proxy settings of JMeter (https.proxyHost, https.proxyPort, https.nonProxyHosts, http.proxyUser
+ * and http.proxyPass), read once and shared by the HTTP client, the AMQP clients and the functions.
+ * <p>
+ * The non-proxy hosts are compiled into a set of exact host names and two character tries, one for
+ * "*.example.com" (suffix) and one for "10.0.*" (prefix) patterns, so deciding whether a host goes
+ * through the proxy takes one pass over the host name. The Azure instance metadata service
+ * (169.254.169.254) of managed identities is never proxied.
+ * <p>
+ * Instances are immutable.
+ */
+public final class AzUtilProxyConfig {
+
+    public static final String IMDS_HOST = "169.254.169.254";
+
+    private static volatile AzUtilProxyConfig config = null;
+
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final String nonProxyHosts;
+    private final Set<String> exactHosts = new HashSet<>();
+    private final Node suffixes = new Node();
+    private final Node prefixes = new Node();
+    private final boolean allHosts;
+
+    /**
+     * @param host          proxy host, or empty for no proxy
+     * @param port          proxy port
+     * @param nonProxyHosts hosts that bypass the proxy, separated by "|"; "*" may start or end a pattern
+     * @param user          user of the proxy, or empty
+     * @param password      password of the proxy
+     */
+    public AzUtilProxyConfig(String host, int port, String nonProxyHosts, String user, String password) {
+        this.host = host == null ? "" : host.trim();
+        this.port = port;
+        this.user = user == null ? "" : user.trim();
+        this.password = password == null ? "" : password;
+
+        Set<String> patterns = new LinkedHashSet<>();
+        boolean all = false;
+        for (String token : (nonProxyHosts == null ? "" : nonProxyHosts).split("\\|")) {
+            String pattern = token.trim().toLowerCase();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            patterns.add(pattern);
+            if (pattern.equals("*")) {
+                all = true;
+            } else if (pattern.startsWith("*")) {
+                suffixes.add(new StringBuilder(pattern.substring(1)).reverse());
+            } else if (pattern.endsWith("*")) {
+                prefixes.add(pattern.substring(0, pattern.length() - 1));
+            } else {
+                exactHosts.add(pattern);
+            }
+        }
+        patterns.add(IMDS_HOST);
+        exactHosts.add(IMDS_HOST);
+        this.allHosts = all;
+        this.nonProxyHosts = String.join("|", patterns);
+    }
+
+    /**
+     * @return the proxy settings of the JMeter properties, read on first use
+     */
+    public static AzUtilProxyConfig get() {
+        AzUtilProxyConfig current = config;
+        if (current == null) {
+            synchronized (AzUtilProxyConfig.class) {
+                current = config;
+                if (current == null) {
+                    current = fromProperties();
+                    config = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static AzUtilProxyConfig fromProperties() {
+        String port = JMeterUtils.getPropDefault("https.proxyPort", "3128").trim();
+        try {
+            return new AzUtilProxyConfig(
+                JMeterUtils.getPropDefault("https.proxyHost", ""),
+                Integer.parseInt(port),
+                JMeterUtils.getPropDefault("https.nonProxyHosts", ""),
+                JMeterUtils.getPropDefault("http.proxyUser", ""),
+                JMeterUtils.getPropDefault("http.proxyPass", "")
+            );
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [https.proxyPort]"));
+        }
+    }
+
+    /**
+     * @return whether a proxy host is set
+     */
+    public boolean isEnabled() {
+        return !host.isEmpty();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean hasCredentials() {
+        return !user.isEmpty();
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @return the non-proxy hosts separated by "|", including the instance metadata service,
+     *         in the format of the http.nonProxyHosts system property
+     */
+    public String getNonProxyHosts() {
+        return nonProxyHosts;
+    }
+
+    /**
+     * @param targetHost host name or address, without port
+     * @return whether the host matches one of the non-proxy hosts
+     */
+    public boolean isNonProxyHost(String targetHost) {
+        String name = targetHost.toLowerCase();
+        return allHosts || exactHosts.contains(name) || suffixes.matchesReversed(name) || prefixes.matches(name);
+    }
+
+    /**
+     * @param targetHost host name or address, without port
+     * @return whether connections to the host go through the proxy
+     */
+    public boolean useProxy(String targetHost) {
+        return isEnabled() && !isNonProxyHost(targetHost);
+    }
+
+    /**
+     * Character trie; a host matches if a pattern added to the trie is a prefix of it.
+     */
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private boolean terminal = false;
+
+        void add(CharSequence pattern) {
+            Node node = this;
+            for (int i = 0; i < pattern.length(); i++) {
+                node = node.children.computeIfAbsent(pattern.charAt(i), c -> new Node());
+            }
+            node.terminal = true;
+        }
+
+        boolean matches(String name) {
+            Node node = this;
+            for (int i = 0; i < name.length(); i++) {
+                node = node.children.get(name.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+                if (node.terminal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean matchesReversed(String name) {
+            Node node = this;
+            for (int i = name.length() - 1; i >= 0; i--) {
+                node = node.children.get(name.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+                if (node.terminal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
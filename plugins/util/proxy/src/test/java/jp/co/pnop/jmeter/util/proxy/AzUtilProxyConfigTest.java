@@ -0,0 +1,47 @@
+package jp.co.pnop.jmeter.util.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class AzUtilProxyConfigTest {
+
+    @Test
+    public void nonProxyHostsMatchExactSuffixAndPrefix() {
+        AzUtilProxyConfig config = new AzUtilProxyConfig("proxy.example.com", 8080,
+            " localhost|*.internal.example.com|10.0.*||*.Vault.Azure.NET ", "", "");
+
+        assertTrue(config.isEnabled());
+        assertFalse(config.useProxy("localhost"));
+        assertFalse(config.useProxy("build.internal.example.com"));
+        assertFalse(config.useProxy("10.0.1.4"));
+        assertFalse(config.useProxy("myvault.vault.azure.net"));
+        assertFalse(config.useProxy(AzUtilProxyConfig.IMDS_HOST));
+
+        assertTrue(config.useProxy("internal.example.com"));
+        assertTrue(config.useProxy("localhost.example.com"));
+        assertTrue(config.useProxy("110.0.1.4"));
+        assertTrue(config.useProxy("myaccount.queue.core.windows.net"));
+    }
+
+    @Test
+    public void nonProxyHostsStringHasNoEmptyPatterns() {
+        assertEquals(AzUtilProxyConfig.IMDS_HOST, new AzUtilProxyConfig("proxy", 3128, "", "", "").getNonProxyHosts());
+        assertEquals("localhost|*.example.com|".concat(AzUtilProxyConfig.IMDS_HOST),
+            new AzUtilProxyConfig("proxy", 3128, "|localhost||*.example.com|", "", "").getNonProxyHosts());
+    }
+
+    @Test
+    public void withoutProxyHostNothingIsProxied() {
+        AzUtilProxyConfig config = new AzUtilProxyConfig(" ", 3128, "", " user ", "pass");
+        assertFalse(config.isEnabled());
+        assertFalse(config.useProxy("myaccount.queue.core.windows.net"));
+        assertEquals("user", config.getUser());
+
+        AzUtilProxyConfig all = new AzUtilProxyConfig("proxy", 3128, "*", "", "");
+        assertFalse(all.useProxy("myaccount.queue.core.windows.net"));
+        assertFalse(all.hasCredentials());
+    }
+}
@@ -0,0 +1,116 @@
+package jp.co.pnop.jmeter.util.throughput;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs blocking SDK calls (e.g. the send of a synchronous client) concurrently, so that one
+ * JMeter thread can keep many operations outstanding.
+ * <p>
+ * On Java 21 or later, every call runs on its own virtual thread, so thousands of outstanding
+ * calls do not need thousands of OS threads. On older runtimes, or if "azure_util_executor.mode"
+ * is "platform", the calls run on a shared pool of "azure_util_executor.platform_threads" daemon
+ * threads, and calls beyond that wait in the queue of the pool.
+ * <p>
+ * The plugins are built for Java 8, so the virtual thread executor is looked up by reflection
+ * instead of being compiled into a multi-release jar.
+ */
+public class AzUtilBlockingExecutor {
+    private static final Logger log = LoggerFactory.getLogger(AzUtilBlockingExecutor.class);
+
+    private static final String PLUGIN = "azure_util_executor";
+    private static final String JMPROPS_CATEGORY = PLUGIN.toLowerCase();
+    private static final String JMPROPS_MODE = new StringBuilder(JMPROPS_CATEGORY).append(".mode").toString();
+    private static final String JMPROPS_PLATFORM_THREADS = new StringBuilder(JMPROPS_CATEGORY).append(".platform_threads").toString();
+
+    public static final String MODE_AUTO = "auto";
+    public static final String MODE_VIRTUAL = "virtual";
+    public static final String MODE_PLATFORM = "platform";
+
+    private static ExecutorService executor = null;
+    private static String description = null;
+
+    private AzUtilBlockingExecutor() {
+    }
+
+    /**
+     * Run a blocking call on the shared executor.
+     *
+     * @param call the blocking call
+     * @return the result of the call; completes exceptionally with the error of the call
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Callable<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, getExecutor());
+    }
+
+    /**
+     * @return the shared executor, created on first use
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            String mode = JMeterUtils.getPropDefault(JMPROPS_MODE, MODE_AUTO).trim().toLowerCase();
+            if (!mode.equals(MODE_PLATFORM)) {
+                executor = newVirtualThreadExecutor();
+                if (executor != null) {
+                    description = "virtual threads";
+                } else if (mode.equals(MODE_VIRTUAL)) {
+                    log.warn("Virtual threads need Java 21 or later (running on {}). Using platform threads.",
+                        System.getProperty("java.version"));
+                }
+            }
+            if (executor == null) {
+                int threads = Integer.parseInt(JMeterUtils.getPropDefault(JMPROPS_PLATFORM_THREADS, "200").trim());
+                executor = newPlatformThreadExecutor(threads);
+                description = String.valueOf(threads).concat(" platform threads");
+            }
+            log.info("Blocking calls run on {}.", description);
+        }
+        return executor;
+    }
+
+    /**
+     * @return e.g. "virtual threads" or "200 platform threads"
+     */
+    public static synchronized String describe() {
+        getExecutor();
+        return description;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread for each task, or null before Java 21
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return null;
+        }
+    }
+
+    static ExecutorService newPlatformThreadExecutor(int threads) {
+        final AtomicInteger count = new AtomicInteger(0);
+        return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "AzUtilBlockingExecutor-".concat(String.valueOf(count.incrementAndGet())));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,277 @@
+package jp.co.pnop.jmeter.util.throughput;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+import jp.co.pnop.jmeter.util.metrics.AzUtilOpenLoop;
+
+/**
+ * Finds the maximum sustainable throughput of a send path, AIMD-style.
+ * <p>
+ * The offered rate is run in steps of a fixed length. A step passes if its p99 latency and its error rate
+ * are within the targets and the achieved rate keeps up with the offered rate. After a step that passes,
+ * the rate is increased by the rate increase (additive increase). After a step that fails, the rate is
+ * cut by half, but not below the highest rate that passed, and the rate increase is halved (multiplicative
+ * decrease), so that the steps close in on the knee point. The search ends when the rate increase is
+ * smaller than 2% of the rate, or after the maximum number of steps.
+ * <p>
+ * The knee point is the highest offered rate that passed. The report lists it with the latency curve of all steps.
+ */
+public class AzUtilThroughputFinder {
+
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double MIN_ACHIEVED_RATIO = 0.9;
+    private static final double CONVERGENCE_RATIO = 0.02;
+
+    /**
+     * Runs one step at an offered rate.
+     */
+    @FunctionalInterface
+    public interface StepRunner {
+        /**
+         * @param rate           offered rate in messages per second
+         * @param durationMillis length of the step
+         * @return the measurements of the step
+         * @throws Exception if the step could not be run
+         */
+        Step run(double rate, long durationMillis) throws Exception;
+    }
+
+    private final double startRate;
+    private final double rateIncrease;
+    private final long stepMillis;
+    private final double targetP99Millis;
+    private final double maxErrorRate;
+    private final int maxSteps;
+
+    /**
+     * @param startRate       offered rate of the first step, in messages per second
+     * @param rateIncrease    rate added after a step that passes, in messages per second
+     * @param stepMillis      length of each step
+     * @param targetP99Millis highest p99 latency of a step that passes
+     * @param maxErrorRate    highest fraction of failed sends of a step that passes, from 0 to 1
+     * @param maxSteps        maximum number of steps
+     */
+    public AzUtilThroughputFinder(double startRate, double rateIncrease, long stepMillis,
+            double targetP99Millis, double maxErrorRate, int maxSteps) {
+        this.startRate = startRate;
+        this.rateIncrease = rateIncrease;
+        this.stepMillis = stepMillis;
+        this.targetP99Millis = targetP99Millis;
+        this.maxErrorRate = maxErrorRate;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Run the steps on the calling thread.
+     *
+     * @param runner runs each step
+     * @return the steps and the knee point
+     * @throws Exception the error of a step that could not be run
+     */
+    public Report run(StepRunner runner) throws Exception {
+        List<Step> steps = new ArrayList<>();
+        Step knee = null;
+        double rate = startRate;
+        double increase = rateIncrease;
+        for (int i = 0; i < maxSteps; i++) {
+            Step step = runner.run(rate, stepMillis);
+            step.passed = step.p99Millis <= targetP99Millis
+                && step.errorRate <= maxErrorRate
+                && step.achievedRate >= rate * MIN_ACHIEVED_RATIO;
+            steps.add(step);
+
+            if (step.passed) {
+                if (knee == null || step.offeredRate > knee.offeredRate) {
+                    knee = step;
+                }
+                rate += increase;
+            } else {
+                increase /= 2;
+                rate = Math.max(knee == null ? 0 : knee.offeredRate, rate * DECREASE_FACTOR);
+            }
+            if (increase < rate * CONVERGENCE_RATIO) {
+                break;
+            }
+        }
+        return new Report(steps, knee, targetP99Millis, maxErrorRate);
+    }
+
+    /**
+     * Create a step runner that sends at the offered rate without waiting for earlier sends to complete
+     * (open workload model). The latency of a send is measured from its intended start time, so that
+     * a send path that can not keep up shows up as latency. Sends that do not complete within the drain
+     * timeout count as errors. The achieved rate is measured up to the last completion, so that it
+     * includes the time the send path needs to catch up after the step.
+     *
+     * @param sender             starts a send and returns its completion
+     * @param messagesPerSend    number of messages of each send
+     * @param drainTimeoutMillis how long to wait for outstanding sends after the step
+     * @return the step runner
+     */
+    public static StepRunner openLoop(Supplier<CompletableFuture<?>> sender, int messagesPerSend, long drainTimeoutMillis) {
+        return (rate, durationMillis) -> {
+            AzUtilOpenLoop.Summary summary = new AzUtilOpenLoop(rate / Math.max(1, messagesPerSend), durationMillis, drainTimeoutMillis)
+                .run(completion -> sender.get().whenComplete((unused, error) -> {
+                    if (error == null) {
+                        completion.succeeded();
+                    } else {
+                        completion.failed(error);
+                    }
+                }), error -> { });
+            int errors = summary.getFailed() + summary.getTimedOut();
+            return new Step(
+                rate,
+                summary.getSucceededSendRate() * Math.max(1, messagesPerSend),
+                summary.getCorrectedPercentile(50) / 1e6,
+                summary.getCorrectedPercentile(99) / 1e6,
+                errors / (double) summary.getTotal(),
+                summary.getTotal(),
+                summary.getElapsedNanos());
+        };
+    }
+
+    /**
+     * Measurements of one step.
+     */
+    public static class Step {
+        private final double offeredRate;
+        private final double achievedRate;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double errorRate;
+        private final int sends;
+        private final long elapsedNanos;
+        private boolean passed;
+
+        /**
+         * @param offeredRate  offered rate in messages per second
+         * @param achievedRate rate of the messages that were sent successfully, up to the last completion, in messages per second
+         * @param p50Millis    median latency
+         * @param p99Millis    p99 latency
+         * @param errorRate    fraction of the sends that failed, from 0 to 1
+         * @param sends        number of sends
+         * @param elapsedNanos length of the step including the drain
+         */
+        public Step(double offeredRate, double achievedRate, double p50Millis, double p99Millis,
+                double errorRate, int sends, long elapsedNanos) {
+            this.offeredRate = offeredRate;
+            this.achievedRate = achievedRate;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.errorRate = errorRate;
+            this.sends = sends;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getOfferedRate() {
+            return offeredRate;
+        }
+
+        public double getAchievedRate() {
+            return achievedRate;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%10.1f %11.1f %9.1f %9.1f %8.2f %7d  %s",
+                offeredRate, achievedRate, p50Millis, p99Millis, errorRate * 100, sends, passed ? "pass" : "fail");
+        }
+    }
+
+    /**
+     * Result of a search.
+     */
+    public static class Report {
+        private static final String HEADER = "Step  Offered/s  Achieved/s    p50 ms    p99 ms Errors %   Sends  Result";
+
+        private final List<Step> steps;
+        private final Step knee;
+        private final double targetP99Millis;
+        private final double maxErrorRate;
+
+        Report(List<Step> steps, Step knee, double targetP99Millis, double maxErrorRate) {
+            this.steps = Collections.unmodifiableList(steps);
+            this.knee = knee;
+            this.targetP99Millis = targetP99Millis;
+            this.maxErrorRate = maxErrorRate;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return the step with the highest offered rate that passed, or null if no step passed
+         */
+        public Step getKnee() {
+            return knee;
+        }
+
+        /**
+         * @return e.g. "Max sustainable rate: 1200.0 messages/sec", or a message that no step passed
+         */
+        public String getResponseMessage() {
+            if (knee == null) {
+                return "No step met the targets. Lower the start rate.";
+            }
+            return "Max sustainable rate: ".concat(String.format("%.1f", knee.offeredRate)).concat(" messages/sec");
+        }
+
+        /**
+         * Add each step to a sample result as a sub-result, labelled "[step N: rate/s]".
+         *
+         * @param res   sample result of the search
+         * @param label label of the sub-results
+         */
+        public void addSubResults(SampleResult res, String label) {
+            long stepStart = res.getStartTime();
+            for (int i = 0; i < steps.size(); i++) {
+                Step step = steps.get(i);
+                long elapsedMillis = step.elapsedNanos / 1000000;
+                SampleResult subResult = new SampleResult(stepStart, elapsedMillis);
+                subResult.setSampleLabel(label.concat(String.format(" [step %d: %.1f/s]", i + 1, step.offeredRate)));
+                subResult.setDataType(SampleResult.TEXT);
+                subResult.setResponseData(HEADER.concat("\n").concat(String.format("%4d", i + 1)).concat(step.toString()), "UTF-8");
+                subResult.setResponseMessage(step.passed ? "OK" : "Target not met");
+                subResult.setSuccessful(step.passed);
+                res.addRawSubResult(subResult);
+                stepStart += elapsedMillis;
+            }
+        }
+
+        @Override
+        public String toString() {
+            String report = getResponseMessage();
+            if (knee != null) {
+                report = report.concat(String.format(" (achieved %.1f messages/sec, p99 %.1f ms, errors %.2f %%)",
+                    knee.achievedRate, knee.p99Millis, knee.errorRate * 100));
+            }
+            report = report.concat("\n")
+                .concat(String.format("Targets: p99 <= %.1f ms, errors <= %.2f %%, achieved >= %.0f %% of offered",
+                    targetP99Millis, maxErrorRate * 100, MIN_ACHIEVED_RATIO * 100))
+                .concat("\n\n").concat(HEADER);
+            for (int i = 0; i < steps.size(); i++) {
+                report = report.concat("\n").concat(String.format("%4d", i + 1)).concat(steps.get(i).toString());
+            }
+            return report;
+        }
+    }
+}
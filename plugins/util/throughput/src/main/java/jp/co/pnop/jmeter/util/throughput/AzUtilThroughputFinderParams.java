@@ -0,0 +1,176 @@
+package jp.co.pnop.jmeter.util.throughput;
+
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.property.BooleanProperty;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Parameters of {@link AzUtilThroughputFinder}, shared by the samplers that can search for their maximum sustainable throughput.
+ */
+public class AzUtilThroughputFinderParams extends AbstractTestElement {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String FINDER_PARAMS = "finderParams"; //$NON-NLS$
+    public static final String ENABLED = "Finder.enabled"; //$NON-NLS$
+    public static final String START_RATE = "Finder.startRate"; //$NON-NLS$
+    public static final String RATE_INCREASE = "Finder.rateIncrease"; //$NON-NLS$
+    public static final String STEP_DURATION = "Finder.stepDuration"; //$NON-NLS$
+    public static final String DRAIN_TIMEOUT = "Finder.drainTimeout"; //$NON-NLS$
+    public static final String TARGET_P99 = "Finder.targetP99"; //$NON-NLS$
+    public static final String MAX_ERROR_RATE = "Finder.maxErrorRate"; //$NON-NLS$
+    public static final String MAX_STEPS = "Finder.maxSteps"; //$NON-NLS$
+
+    private static final double DEFAULT_STEP_DURATION = 10; // sec
+    private static final double DEFAULT_DRAIN_TIMEOUT = 30; // sec
+    private static final double DEFAULT_MAX_ERROR_RATE = 1; // %
+    private static final int DEFAULT_MAX_STEPS = 20;
+
+    public AzUtilThroughputFinderParams() {
+        super();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        setProperty(new BooleanProperty(ENABLED, false));
+        setProperty(new StringProperty(START_RATE, ""));
+        setProperty(new StringProperty(RATE_INCREASE, ""));
+        setProperty(new StringProperty(STEP_DURATION, ""));
+        setProperty(new StringProperty(DRAIN_TIMEOUT, ""));
+        setProperty(new StringProperty(TARGET_P99, ""));
+        setProperty(new StringProperty(MAX_ERROR_RATE, ""));
+        setProperty(new StringProperty(MAX_STEPS, ""));
+    }
+
+    public void setEnabled(boolean enabled) {
+        setProperty(new BooleanProperty(ENABLED, enabled));
+    }
+
+    public boolean isEnabled() {
+        return getPropertyAsBoolean(ENABLED);
+    }
+
+    public void setStartRate(String startRate) {
+        setProperty(new StringProperty(START_RATE, startRate));
+    }
+
+    public String getStartRate() {
+        return getPropertyAsString(START_RATE);
+    }
+
+    public void setRateIncrease(String rateIncrease) {
+        setProperty(new StringProperty(RATE_INCREASE, rateIncrease));
+    }
+
+    public String getRateIncrease() {
+        return getPropertyAsString(RATE_INCREASE);
+    }
+
+    public void setStepDuration(String stepDuration) {
+        setProperty(new StringProperty(STEP_DURATION, stepDuration));
+    }
+
+    public String getStepDuration() {
+        return getPropertyAsString(STEP_DURATION);
+    }
+
+    public void setDrainTimeout(String drainTimeout) {
+        setProperty(new StringProperty(DRAIN_TIMEOUT, drainTimeout));
+    }
+
+    public String getDrainTimeout() {
+        return getPropertyAsString(DRAIN_TIMEOUT);
+    }
+
+    public void setTargetP99(String targetP99) {
+        setProperty(new StringProperty(TARGET_P99, targetP99));
+    }
+
+    public String getTargetP99() {
+        return getPropertyAsString(TARGET_P99);
+    }
+
+    public void setMaxErrorRate(String maxErrorRate) {
+        setProperty(new StringProperty(MAX_ERROR_RATE, maxErrorRate));
+    }
+
+    public String getMaxErrorRate() {
+        return getPropertyAsString(MAX_ERROR_RATE);
+    }
+
+    public void setMaxSteps(String maxSteps) {
+        setProperty(new StringProperty(MAX_STEPS, maxSteps));
+    }
+
+    public String getMaxSteps() {
+        return getPropertyAsString(MAX_STEPS);
+    }
+
+    /**
+     * Get how long to wait for outstanding sends after each step in milliseconds.
+     *
+     * @return the drain timeout
+     */
+    public long getDrainTimeoutMillis() {
+        return (long) (toDouble(getDrainTimeout(), DEFAULT_DRAIN_TIMEOUT, "Drain timeout") * 1000);
+    }
+
+    /**
+     * Create the finder from the parameters.
+     *
+     * @return the finder
+     * @throws NumberFormatException if a parameter is not a number, or the start rate or target p99 is not set
+     */
+    public AzUtilThroughputFinder createFinder() {
+        double startRate = toPositive(getStartRate(), "Start rate");
+        double targetP99 = toPositive(getTargetP99(), "Target p99");
+        double rateIncrease = JOrphanUtils.isBlank(getRateIncrease()) ? startRate : toPositive(getRateIncrease(), "Rate increase");
+        int maxSteps = DEFAULT_MAX_STEPS;
+        if (!JOrphanUtils.isBlank(getMaxSteps())) {
+            try {
+                maxSteps = Integer.parseInt(getMaxSteps().trim());
+            } catch (NumberFormatException ex) {
+                throw new NumberFormatException(ex.getMessage().concat(" [Max steps]"));
+            }
+        }
+        return new AzUtilThroughputFinder(
+            startRate,
+            rateIncrease,
+            (long) (toDouble(getStepDuration(), DEFAULT_STEP_DURATION, "Step duration") * 1000),
+            targetP99,
+            toDouble(getMaxErrorRate(), DEFAULT_MAX_ERROR_RATE, "Max error rate") / 100,
+            maxSteps);
+    }
+
+    /**
+     * Describe the parameters for the request body of a sample result.
+     */
+    public String describe() {
+        return "Find max sustainable rate: start ".concat(getStartRate()).concat(" messages/sec")
+            .concat(", target p99 ").concat(getTargetP99()).concat(" ms");
+    }
+
+    private static double toPositive(String value, String label) {
+        if (JOrphanUtils.isBlank(value)) {
+            throw new NumberFormatException("Value is not set. [".concat(label).concat("]"));
+        }
+        double number = toDouble(value, 0, label);
+        if (number <= 0) {
+            throw new NumberFormatException("Value must be greater than 0. [".concat(label).concat("]"));
+        }
+        return number;
+    }
+
+    private static double toDouble(String value, double defaultValue, String label) {
+        if (JOrphanUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException(ex.getMessage().concat(" [").concat(label).concat("]"));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package jp.co.pnop.jmeter.util.throughput.gui;
+
+import java.awt.BorderLayout;
+import java.util.Collection;
+
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.apache.jmeter.config.gui.AbstractConfigGui;
+import org.apache.jmeter.gui.util.HorizontalPanel;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.gui.JLabeledTextField;
+
+import jp.co.pnop.jmeter.util.throughput.AzUtilThroughputFinderParams;
+
+public class AzUtilThroughputFinderParamsPanel extends AbstractConfigGui implements ChangeListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private JCheckBox enabled;
+    private JLabeledTextField startRate;
+    private JLabeledTextField rateIncrease;
+    private JLabeledTextField stepDuration;
+    private JLabeledTextField drainTimeout;
+    private JLabeledTextField targetP99;
+    private JLabeledTextField maxErrorRate;
+    private JLabeledTextField maxSteps;
+
+    public AzUtilThroughputFinderParamsPanel() {
+        init();
+    }
+
+    @Override
+    public Collection<String> getMenuCategories() {
+        return null;
+    }
+
+    @Override
+    public String getLabelResource() {
+        return null; // $NON-NLS-1$
+    }
+
+    /* Implements JMeterGUIComponent.createTestElement() */
+    @Override
+    public TestElement createTestElement() {
+        AzUtilThroughputFinderParams params = new AzUtilThroughputFinderParams();
+        modifyTestElement(params);
+        return (TestElement) params.clone();
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        element.clear();
+        super.configureTestElement(element);
+
+        element.setProperty(AzUtilThroughputFinderParams.ENABLED, enabled.isSelected());
+        element.setProperty(AzUtilThroughputFinderParams.START_RATE, startRate.getText());
+        element.setProperty(AzUtilThroughputFinderParams.RATE_INCREASE, rateIncrease.getText());
+        element.setProperty(AzUtilThroughputFinderParams.STEP_DURATION, stepDuration.getText());
+        element.setProperty(AzUtilThroughputFinderParams.DRAIN_TIMEOUT, drainTimeout.getText());
+        element.setProperty(AzUtilThroughputFinderParams.TARGET_P99, targetP99.getText());
+        element.setProperty(AzUtilThroughputFinderParams.MAX_ERROR_RATE, maxErrorRate.getText());
+        element.setProperty(AzUtilThroughputFinderParams.MAX_STEPS, maxSteps.getText());
+    }
+
+    /**
+     * A newly created component can be initialized with the contents of a Test
+     * Element object by calling this method. The component is responsible for
+     * querying the Test Element object for the relevant information to display
+     * in its GUI.
+     *
+     * @param element
+     *            the TestElement to configure
+     */
+    @Override
+    public void configure(TestElement element) {
+        if (element == null) {
+            clearGui();
+            return;
+        }
+        super.configure(element);
+
+        enabled.setSelected(element.getPropertyAsBoolean(AzUtilThroughputFinderParams.ENABLED));
+        startRate.setText(element.getPropertyAsString(AzUtilThroughputFinderParams.START_RATE));
+        rateIncrease.setText(element.getPropertyAsString(AzUtilThroughputFinderParams.RATE_INCREASE));
+        stepDuration.setText(element.getPropertyAsString(AzUtilThroughputFinderParams.STEP_DURATION));
+        drainTimeout.setText(element.getPropertyAsString(AzUtilThroughputFinderParams.DRAIN_TIMEOUT));
+        targetP99.setText(element.getPropertyAsString(AzUtilThroughputFinderParams.TARGET_P99));
+        maxErrorRate.setText(element.getPropertyAsString(AzUtilThroughputFinderParams.MAX_ERROR_RATE));
+        maxSteps.setText(element.getPropertyAsString(AzUtilThroughputFinderParams.MAX_STEPS));
+        toggleEnabled();
+    }
+
+    /**
+     * Implements JMeterGUIComponent.clearGui
+     */
+    @Override
+    public void clearGui() {
+        super.clearGui();
+
+        enabled.setSelected(false);
+        startRate.setText("");
+        rateIncrease.setText("");
+        stepDuration.setText("");
+        drainTimeout.setText("");
+        targetP99.setText("");
+        maxErrorRate.setText("");
+        maxSteps.setText("");
+        toggleEnabled();
+    }
+
+    /**
+     * Initialize the components and layout of this component.
+     */
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        setLayout(new BorderLayout(0, 5));
+
+        enabled = new JCheckBox("Find max sustainable rate (each sample runs the whole search)");
+        enabled.setName(AzUtilThroughputFinderParams.ENABLED);
+        enabled.addChangeListener(this);
+
+        startRate = new JLabeledTextField("Start rate (messages/sec):", 6);
+        startRate.setName(AzUtilThroughputFinderParams.START_RATE);
+        rateIncrease = new JLabeledTextField("Rate increase (messages/sec):", 6);
+        rateIncrease.setName(AzUtilThroughputFinderParams.RATE_INCREASE);
+        maxSteps = new JLabeledTextField("Max steps:", 6);
+        maxSteps.setName(AzUtilThroughputFinderParams.MAX_STEPS);
+
+        HorizontalPanel ratePanel = new HorizontalPanel();
+        ratePanel.add(startRate);
+        ratePanel.add(rateIncrease);
+        ratePanel.add(maxSteps);
+
+        targetP99 = new JLabeledTextField("Target p99 (ms):", 6);
+        targetP99.setName(AzUtilThroughputFinderParams.TARGET_P99);
+        maxErrorRate = new JLabeledTextField("Max error rate (%):", 6);
+        maxErrorRate.setName(AzUtilThroughputFinderParams.MAX_ERROR_RATE);
+        stepDuration = new JLabeledTextField("Step duration (sec):", 6);
+        stepDuration.setName(AzUtilThroughputFinderParams.STEP_DURATION);
+        drainTimeout = new JLabeledTextField("Wait for outstanding sends (sec):", 6);
+        drainTimeout.setName(AzUtilThroughputFinderParams.DRAIN_TIMEOUT);
+
+        HorizontalPanel targetPanel = new HorizontalPanel();
+        targetPanel.add(targetP99);
+        targetPanel.add(maxErrorRate);
+        targetPanel.add(stepDuration);
+        targetPanel.add(drainTimeout);
+
+        VerticalPanel panel = new VerticalPanel();
+        panel.setBorder(BorderFactory.createTitledBorder("Maximum Sustainable Throughput"));
+        panel.add(enabled);
+        panel.add(ratePanel);
+        panel.add(targetPanel);
+
+        add(panel, BorderLayout.CENTER);
+        toggleEnabled();
+    }
+
+    @Override
+    public void stateChanged(ChangeEvent event) {
+        if (event.getSource().equals(enabled)) {
+            toggleEnabled();
+        }
+    }
+
+    /**
+     * enable/disable fields related to the finder
+     */
+    private void toggleEnabled() {
+        boolean finder = enabled.isSelected();
+        startRate.setEnabled(finder);
+        rateIncrease.setEnabled(finder);
+        maxSteps.setEnabled(finder);
+        targetP99.setEnabled(finder);
+        maxErrorRate.setEnabled(finder);
+        stepDuration.setEnabled(finder);
+        drainTimeout.setEnabled(finder);
+    }
+}
@@ -0,0 +1,67 @@
+package jp.co.pnop.jmeter.util.throughput;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class AzUtilBlockingExecutorTest {
+
+    @Test
+    public void virtualThreadsOnlyFromJava21() {
+        String version = System.getProperty("java.specification.version");
+        int feature = Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+        ExecutorService executor = AzUtilBlockingExecutor.newVirtualThreadExecutor();
+        if (feature >= 21) {
+            assertNotNull(executor);
+            executor.shutdown();
+        } else {
+            assertNull(executor);
+        }
+    }
+
+    @Test
+    public void blockingCallsRunConcurrently() throws InterruptedException {
+        ExecutorService executor = AzUtilBlockingExecutor.newPlatformThreadExecutor(50);
+        // every call blocks until all of them have started
+        CountDownLatch started = new CountDownLatch(50);
+        List<CompletableFuture<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> {
+                started.countDown();
+                try {
+                    return started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    return false;
+                }
+            }, executor));
+        }
+        for (CompletableFuture<Boolean> call : calls) {
+            assertTrue(call.join());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void supplyAsyncPassesResultsAndErrors() {
+        assertEquals("sent", AzUtilBlockingExecutor.supplyAsync(() -> "sent").join());
+
+        CompletionException ex = assertThrows(CompletionException.class,
+            () -> AzUtilBlockingExecutor.supplyAsync(() -> {
+                throw new IOException("send failed");
+            }).join());
+        assertTrue(ex.getCause() instanceof IOException);
+    }
+}
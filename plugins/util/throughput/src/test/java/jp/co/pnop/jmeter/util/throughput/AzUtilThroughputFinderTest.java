@@ -0,0 +1,78 @@
+package jp.co.pnop.jmeter.util.throughput;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class AzUtilThroughputFinderTest {
+
+    /**
+     * A send path whose p99 latency is 10 ms up to 1000 messages/sec and grows steeply above it.
+     */
+    private static AzUtilThroughputFinder.Step simulated(double rate, long durationMillis) {
+        double p99 = rate <= 1000 ? 10 : 10 + (rate - 1000);
+        return new AzUtilThroughputFinder.Step(rate, rate, 5, p99, 0, (int) rate, durationMillis * 1000000);
+    }
+
+    @Test
+    public void convergesOnTheKnee() throws Exception {
+        AzUtilThroughputFinder finder = new AzUtilThroughputFinder(200, 200, 1000, 50, 0.01, 30);
+        AzUtilThroughputFinder.Report report = finder.run(AzUtilThroughputFinderTest::simulated);
+
+        double knee = report.getKnee().getOfferedRate();
+        assertTrue(knee >= 1000 && knee <= 1040, String.valueOf(knee));
+        assertTrue(report.getSteps().size() < 30, String.valueOf(report.getSteps().size()));
+        assertTrue(report.toString().startsWith("Max sustainable rate: "), report.toString());
+    }
+
+    @Test
+    public void errorRateFailsAStep() throws Exception {
+        AzUtilThroughputFinder finder = new AzUtilThroughputFinder(100, 100, 1000, 50, 0.01, 3);
+        AzUtilThroughputFinder.Report report = finder.run((rate, durationMillis)
+            -> new AzUtilThroughputFinder.Step(rate, rate, 5, 10, 0.05, 100, 0));
+
+        assertNull(report.getKnee());
+        assertEquals(3, report.getSteps().size());
+        assertTrue(report.getResponseMessage().startsWith("No step"));
+    }
+
+    @Test
+    public void openLoopMeasuresCompletedSends() throws Exception {
+        AzUtilThroughputFinder.Step step = AzUtilThroughputFinder.openLoop(
+            () -> CompletableFuture.completedFuture(null), 2, 1000).run(200, 500);
+
+        assertEquals(0.0, step.getErrorRate());
+        assertTrue(step.getAchievedRate() > 150, String.valueOf(step.getAchievedRate()));
+
+        AzUtilThroughputFinder.Step failing = AzUtilThroughputFinder.openLoop(
+            () -> { throw new IllegalStateException(); }, 1, 1000).run(100, 100);
+        assertEquals(1.0, failing.getErrorRate());
+    }
+
+    @Test
+    public void openLoopAchievedRateIncludesTheDrain() throws Exception {
+        // 10 sends dispatched within 100 ms, each completing 200 ms later
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        AzUtilThroughputFinder.Step step;
+        try {
+            step = AzUtilThroughputFinder.openLoop(() -> {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                executor.schedule(() -> future.complete(null), 200, TimeUnit.MILLISECONDS);
+                return future;
+            }, 1, 5000).run(100, 100);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0.0, step.getErrorRate());
+        assertTrue(step.getAchievedRate() < 60, String.valueOf(step.getAchievedRate()));
+        assertTrue(step.getP99Millis() >= 200, String.valueOf(step.getP99Millis()));
+    }
+}